@@ -0,0 +1,47 @@
+package com.conorsheppard.benchmark;
+
+import com.conorsheppard.queue.ConcurrentQueue;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// Each operation is an enqueue followed by a dequeue, so the queue stays small however many threads run
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ConcurrentQueueBenchmark {
+    private static final String URL = "https://example.com/catalogue/category/books/travel_2/index.html";
+
+    private ConcurrentQueue queue;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        queue = new ConcurrentQueue();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public String enqueueDequeue1Thread() {
+        return enqueueDequeue();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public String enqueueDequeue4Threads() {
+        return enqueueDequeue();
+    }
+
+    @Benchmark
+    @Threads(16)
+    public String enqueueDequeue16Threads() {
+        return enqueueDequeue();
+    }
+
+    private String enqueueDequeue() {
+        queue.enqueue(URL);
+        return queue.dequeue();
+    }
+}
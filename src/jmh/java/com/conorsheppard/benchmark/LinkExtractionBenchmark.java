@@ -0,0 +1,67 @@
+package com.conorsheppard.benchmark;
+
+import com.conorsheppard.parser.LinkExtractor;
+import com.conorsheppard.parser.LinkExtractorType;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LinkExtractionBenchmark {
+    private static final String BASE_URI = "https://example.com/catalogue/index.html";
+
+    @Param({"DOM", "STREAMING"})
+    private LinkExtractorType extractorType;
+
+    // Roughly a blog article and a large product listing
+    @Param({"20", "1000"})
+    private int links;
+
+    private LinkExtractor extractor;
+    private byte[] page;
+
+    @Setup
+    public void setUp() {
+        extractor = extractorType.create();
+        page = page(links).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public void extract(Blackhole blackhole) throws IOException {
+        extractor.extract(new ByteArrayInputStream(page), "UTF-8", BASE_URI, blackhole::consume);
+    }
+
+    static String page(int links) {
+        StringBuilder html = new StringBuilder("<!DOCTYPE html><html lang=\"en\"><head><meta charset=\"utf-8\">")
+                .append("<title>Catalogue &amp; more</title>")
+                .append("<link rel=\"stylesheet\" href=\"/static/site.css\">")
+                .append("<style>.product > a { color: #333; } .price { font-weight: bold; }</style>")
+                .append("<script>window.analytics = { track: function (e) { return e < 1 && e > 0; } };</script>")
+                .append("</head><body><header><nav><ul>");
+        for (int i = 0; i < 5; i++) {
+            html.append("<li><a href=\"/section/").append(i).append("/\">Section ").append(i).append("</a></li>");
+        }
+        html.append("</ul></nav></header><main>");
+        for (int i = 5; i < links; i++) {
+            html.append("<article class=\"product\" data-id=\"").append(i).append("\">")
+                    .append("<!-- product ").append(i).append(" -->")
+                    .append("<img src=\"/media/").append(i).append(".jpg\" alt=\"Product ").append(i).append("\">")
+                    .append("<h3><a href=\"../products/item-").append(i).append("/index.html?ref=list&amp;page=1\"")
+                    .append(" title=\"Item ").append(i).append("\">Item ").append(i).append("</a></h3>")
+                    .append("<p class=\"price\">&pound;").append(10 + i % 90).append(".99</p>")
+                    .append("<p>Lorem ipsum dolor sit amet, consectetur adipiscing elit, sed do eiusmod tempor ")
+                    .append("incididunt ut labore et dolore magna aliqua.</p></article>");
+        }
+        return html.append("</main><footer><a href=\"https://other.example.org/\">Partner</a></footer></body></html>")
+                .toString();
+    }
+}
@@ -0,0 +1,118 @@
+package com.conorsheppard.benchmark;
+
+import com.conorsheppard.cache.InMemoryUrlCache;
+import com.conorsheppard.crawler.CrawlConfig;
+import com.conorsheppard.crawler.SimpleWebCrawler;
+import com.conorsheppard.queue.ConcurrentQueue;
+import com.conorsheppard.robots.RobotsCache;
+import com.conorsheppard.robots.RobotsParser;
+import com.conorsheppard.robots.RobotsRules;
+import com.conorsheppard.url.QueryRules;
+import com.conorsheppard.url.UrlCanonicalizer;
+import com.conorsheppard.web.JSoupWebClient;
+import org.jline.terminal.Terminal;
+import org.jline.terminal.TerminalBuilder;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+// Normalisation, validation and the robots check run for every <a href> on every page
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UrlBenchmark {
+    // A mix of the shapes seen on real pages: fragments, queries, case, trailing slashes and ignored files
+    static final String[] LINKS = {
+            "https://example.com/",
+            "https://example.com/catalogue/category/books/travel_2/index.html",
+            "https://example.com/supporting-Customers/#mainContent",
+            "https://Example.com/page///",
+            "https://example.com/search?q=web+crawler&page=2",
+            "https://example.com/a/b/../c/./d",
+            "https://example.com/docs/Annual Report.PDF",
+            "https://example.com/media/video.mp4?autoplay=1",
+            "https://cdn.example.net/static/app.js",
+            "https://example.com:443/about-us",
+    };
+
+    // Keeping queries costs a pass over the parameters, checked against the tracking list and a host's own rules
+    private final UrlCanonicalizer keepingQueries = new UrlCanonicalizer(QueryRules.compile(
+            List.of("example.com allow q page", "deny sessionid"), 10, 256));
+
+    // Paths checked against a fixed robots.txt with prefix rules, wildcards and an end anchor, not a fetched one
+    static final String[] PATHS = {
+            "/",
+            "/catalogue/category/books/travel_2/index.html",
+            "/private/",
+            "/private/reports/2024.html",
+            "/search?q=web+crawler&page=2",
+            "/docs/Annual%20Report.PDF",
+            "/media/video.mp4?autoplay=1",
+            "/cart/checkout",
+            "/about-us",
+            "/public/private/page",
+    };
+    private final RobotsRules robotsRules = RobotsParser.parse("""
+            User-agent: *
+            Disallow: /private/
+            Allow: /private/reports/
+            Disallow: /search
+            Disallow: /*.PDF$
+            Disallow: /cart/
+            Disallow: /*?autoplay=
+            """, RobotsCache.PRODUCT_TOKEN);
+
+    private ExecutorService executor;
+    private Terminal terminal;
+    private SimpleWebCrawler crawler;
+
+    @Setup
+    public void setUp() throws IOException {
+        executor = Executors.newSingleThreadExecutor();
+        terminal = TerminalBuilder.builder().dumb(true)
+                .streams(InputStream.nullInputStream(), OutputStream.nullOutputStream()).build();
+        // Robots are benchmarked on their own below, here they'd mean a live fetch of example.com's robots.txt
+        crawler = new SimpleWebCrawler("https://example.com", new ConcurrentQueue(), new InMemoryUrlCache(),
+                executor, terminal, new JSoupWebClient(), CrawlConfig.builder().respectRobots(false).build());
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        executor.shutdownNow();
+        terminal.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(10)
+    public void normalizeUrl(Blackhole blackhole) {
+        for (String link : LINKS) blackhole.consume(SimpleWebCrawler.normalizeUrl(link));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(10)
+    public void canonicalizeKeepingQueries(Blackhole blackhole) {
+        for (String link : LINKS) blackhole.consume(keepingQueries.canonicalize(link));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(10)
+    public void isValidUrl(Blackhole blackhole) {
+        for (String link : LINKS) blackhole.consume(crawler.isValidUrl(link));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(10)
+    public void robotsIsAllowed(Blackhole blackhole) {
+        for (String path : PATHS) blackhole.consume(robotsRules.isAllowed(path));
+    }
+}
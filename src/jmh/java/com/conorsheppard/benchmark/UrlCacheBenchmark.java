@@ -0,0 +1,62 @@
+package com.conorsheppard.benchmark;
+
+import com.conorsheppard.cache.FingerprintUrlCache;
+import com.conorsheppard.cache.InMemoryUrlCache;
+import com.conorsheppard.cache.UrlCache;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Every discovered link goes through the cache, most of them already seen, from every worker at once
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UrlCacheBenchmark {
+    private static final int DISTINCT_URLS = 1 << 16;
+    private static final String[] URLS = new String[DISTINCT_URLS];
+
+    static {
+        for (int i = 0; i < DISTINCT_URLS; i++) {
+            URLS[i] = "https://example.com/catalogue/category/books/item-" + i + "/index.html";
+        }
+    }
+
+    @Param({"in-memory", "fingerprint"})
+    private String cacheType;
+
+    private UrlCache cache;
+
+    // A fresh cache per iteration so each one sees both first sightings and duplicates
+    @Setup(Level.Iteration)
+    public void setUp() {
+        cache = cacheType.equals("fingerprint")
+                ? FingerprintUrlCache.builder().expectedUrls(DISTINCT_URLS).build()
+                : new InMemoryUrlCache();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public boolean add1Thread() {
+        return add();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean add4Threads() {
+        return add();
+    }
+
+    @Benchmark
+    @Threads(16)
+    public boolean add16Threads() {
+        return add();
+    }
+
+    private boolean add() {
+        return cache.add(URLS[ThreadLocalRandom.current().nextInt(DISTINCT_URLS)]);
+    }
+}
@@ -1,14 +1,46 @@
 package com.conorsheppard;
 
+import com.conorsheppard.cache.BloomFilteredUrlCache;
+import com.conorsheppard.cache.FingerprintUrlCache;
 import com.conorsheppard.cache.InMemoryUrlCache;
 import com.conorsheppard.cache.RedisUrlCache;
+import com.conorsheppard.cache.ShardedRedisUrlCache;
 import com.conorsheppard.cache.UrlCache;
+import com.conorsheppard.checkpoint.CrawlCheckpointer;
+import com.conorsheppard.checkpoint.SeenUrlStore;
+import com.conorsheppard.cluster.ClusterCoordinator;
+import com.conorsheppard.cluster.LocalCoordinator;
+import com.conorsheppard.cluster.RedisClusterStore;
+import com.conorsheppard.crawler.CrawlConfig;
+import com.conorsheppard.crawler.CrawlEngine;
+import com.conorsheppard.crawler.FetchMode;
 import com.conorsheppard.crawler.SimpleWebCrawler;
+import com.conorsheppard.metrics.CrawlMetrics;
+import com.conorsheppard.metrics.InstrumentedUrlCache;
+import com.conorsheppard.metrics.InstrumentedUrlQueue;
+import com.conorsheppard.metrics.InstrumentedWebClient;
+import com.conorsheppard.metrics.MetricsServer;
+import com.conorsheppard.parser.LinkExtractorType;
 import com.conorsheppard.queue.ConcurrentQueue;
 import com.conorsheppard.queue.KafkaQueue;
+import com.conorsheppard.queue.PoliteQueue;
+import com.conorsheppard.queue.PolitenessPolicy;
+import com.conorsheppard.queue.PriorityFrontier;
+import com.conorsheppard.queue.SegmentedLogQueue;
 import com.conorsheppard.queue.UrlQueue;
-import com.conorsheppard.web.JSoupWebClient;
+import com.conorsheppard.queue.UrlScorer;
+import com.conorsheppard.queue.WeightedUrlScorer;
+import com.conorsheppard.recrawl.CrawlHistory;
+import com.conorsheppard.recrawl.RecrawlWebClient;
+import com.conorsheppard.recrawl.RevisitPolicy;
+import com.conorsheppard.url.QueryRules;
+import com.conorsheppard.web.BodyLimit;
+import com.conorsheppard.web.CachingWebClient;
+import com.conorsheppard.web.PageCache;
+import com.conorsheppard.web.WebClient;
+import com.conorsheppard.web.WebClientType;
 import io.lettuce.core.RedisClient;
+import io.lettuce.core.api.StatefulRedisConnection;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 import org.jline.terminal.TerminalBuilder;
@@ -16,10 +48,19 @@ import picocli.CommandLine;
 import picocli.CommandLine.Command;
 import picocli.CommandLine.Option;
 
-import java.util.ArrayList;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
+import java.util.Set;
 import java.util.concurrent.Callable;
-import java.util.concurrent.Executors;
+import java.util.regex.Pattern;
 
 import static picocli.CommandLine.Parameters;
 
@@ -37,35 +78,265 @@ public class Application implements Callable<Integer> {
     @Option(names = {"-d", "--dist", "--distributed"}, description = "Uses Kafka & Redis for distributed crawling", defaultValue = "false")
     private boolean isDistributed;
 
+    @Option(names = {"--fingerprint-cache"}, description = "Keep compact off-heap URL fingerprints instead of URLs in memory",
+            defaultValue = "false")
+    private boolean fingerprintCache;
+
+    @Option(names = {"--expected-urls"}, description = "Expected number of URLs, sizes the fingerprint cache",
+            defaultValue = "10000000")
+    private long expectedUrls;
+
+    @Option(names = {"--max-collision-probability"},
+            description = "Acceptable chance of two URLs sharing a fingerprint, 128-bit fingerprints are used above it",
+            defaultValue = "1e-6")
+    private double maxCollisionProbability;
+
+    @Option(names = {"--bloom-filter"}, description = "Answer repeat URLs from a local Bloom filter in front of Redis",
+            defaultValue = "false")
+    private boolean bloomFilter;
+
+    @Option(names = {"--bloom-false-positive-rate"}, description = "Chance of the Bloom filter skipping a new URL",
+            defaultValue = "1e-4")
+    private double bloomFalsePositiveRate;
+
+    @Option(names = {"--redis-fingerprints"},
+            description = "Keep URL fingerprints in small sharded Redis hashes instead of one set of URLs",
+            defaultValue = "false")
+    private boolean redisFingerprints;
+
+    @Option(names = {"--migrate-redis-set"}, description = "Copy the URLs in the Redis set into the fingerprint shards "
+            + "before crawling", defaultValue = "false")
+    private boolean migrateRedisSet;
+
+    @Option(names = {"--frontier-dir"},
+            description = "Keep the queue in memory-mapped files under this directory with the URLs seen so far, "
+                    + "resuming whatever is left there")
+    private Path frontierDir;
+
+    @Option(names = {"--priority"}, description = "Crawl the best scored URLs first instead of in the order found",
+            defaultValue = "false")
+    private boolean priority;
+
+    @Option(names = {"--depth-weight"}, description = "Score lost per link from the start URL with --priority",
+            defaultValue = "1")
+    private double depthWeight;
+
+    @Option(names = {"--in-link-weight"}, description = "Score gained per doubling of the pages linking to a URL "
+            + "with --priority", defaultValue = "1")
+    private double inLinkWeight;
+
+    @Option(names = {"--freshness-weight"}, description = "Score gained by a URL dated today with --priority, "
+            + "halving every 30 days", defaultValue = "1")
+    private double freshnessWeight;
+
+    @Option(names = {"--priority-pattern"}, description = "Score added to URLs matching a regex with --priority, "
+            + "e.g. /product/=2, repeatable")
+    private Map<String, Double> priorityPatterns = new LinkedHashMap<>();
+
+    @Option(names = {"--max-depth"}, description = "Don't follow links on pages this many links from the URL, "
+            + "-1 for unbounded", defaultValue = "-1")
+    private int maxDepth;
+
+    @Option(names = {"--max-pages"}, description = "Stop queueing URLs after this many, 0 for unbounded",
+            defaultValue = "0")
+    private int maxPages;
+
+    @Option(names = {"--max-duration"}, description = "Stop crawling after this long, e.g. 90s, 30m or 2h, 0 for "
+            + "unbounded", defaultValue = "0", converter = DurationConverter.class)
+    private Duration maxDuration;
+
+    @Option(names = {"--keep-query"}, description = "Keep query strings on links, less tracking parameters such as "
+            + "utm_*, instead of dropping them", defaultValue = "false")
+    private boolean keepQuery;
+
+    @Option(names = {"--query-rules"}, description = "Per host allow and deny lists of query parameters to keep, "
+            + "implies --keep-query")
+    private Path queryRulesFile;
+
+    @Option(names = {"--max-query-params"}, description = "Drop queries keeping more parameters than this, 0 for "
+            + "unlimited", defaultValue = "10")
+    private int maxQueryParams;
+
+    @Option(names = {"--near-duplicates"}, description = "Don't follow links from a page whose text is within this "
+            + "many bits of a page already crawled, from 0 for exact copies up to 7, -1 to follow them all",
+            defaultValue = "-1")
+    private int nearDuplicateDistance;
+
+    @Option(names = {"--checkpoint"},
+            description = "Snapshot the in-memory queue and cache to this file periodically and when the crawl ends")
+    private Path checkpointFile;
+
+    @Option(names = {"--checkpoint-interval"},
+            description = "Seconds between snapshots with --checkpoint, or saves of the seen URLs with --frontier-dir",
+            defaultValue = "60")
+    private long checkpointInterval;
+
+    @Option(names = {"--resume"}, description = "Carry on from the snapshot in --checkpoint instead of the URL",
+            defaultValue = "false")
+    private boolean resume;
+
     @Option(names = {"-t", "--threads"}, description = "Max number of threads", defaultValue = "30")
     private int maxThreads;
 
+    @Option(names = {"--client"}, description = "HTTP client: ${COMPLETION-CANDIDATES}", defaultValue = "jsoup")
+    private WebClientType clientType;
+
+    @Option(names = {"--fetch-mode"}, description = "How pages are fetched: ${COMPLETION-CANDIDATES}",
+            defaultValue = "single_request")
+    private FetchMode fetchMode;
+
+    @Option(names = {"--link-extractor"}, description = "How links are pulled out of pages: ${COMPLETION-CANDIDATES}",
+            defaultValue = "streaming")
+    private LinkExtractorType linkExtractor;
+
+    @Option(names = {"--max-body-bytes"}, description = "Truncate HTML bodies after this many bytes, 0 for unlimited",
+            defaultValue = "2097152")
+    private int maxBodyBytes;
+
+    @Option(names = {"--range-requests"}, description = "Send a Range header matching --max-body-bytes",
+            defaultValue = "false")
+    private boolean rangeRequests;
+
+    @Option(names = {"-e", "--engine"}, description = "Crawl engine: ${COMPLETION-CANDIDATES}", defaultValue = "platform")
+    private CrawlEngine engine;
+
+    @Option(names = {"--max-in-flight"}, description = "Max concurrent fetches with the virtual engine", defaultValue = "1000")
+    private int maxInFlight;
+
+    @Option(names = {"--max-per-host"}, description = "Max concurrent fetches against a single host", defaultValue = "100")
+    private int maxPerHost;
+
+    @Option(names = {"--ignore-robots"}, description = "Don't fetch or obey robots.txt", defaultValue = "false")
+    private boolean ignoreRobots;
+
+    @Option(names = {"--polite"}, description = "Rate limit each host and back off when throttled", defaultValue = "false")
+    private boolean polite;
+
+    @Option(names = {"--host-rate"}, description = "Requests per second per host with --polite", defaultValue = "5")
+    private double hostRate;
+
+    @Option(names = {"--host-burst"}, description = "Requests a host may receive back to back with --polite",
+            defaultValue = "5")
+    private int hostBurst;
+
+    @Option(names = {"--recrawl"}, description = "Keep a history of crawled pages in this file, and on later runs "
+            + "only revisit pages that are due and follow links from those that changed")
+    private Path historyFile;
+
+    @Option(names = {"--revisit-interval"}, description = "How long a newly found page is left before it's revisited "
+            + "with --recrawl, e.g. 12h or 1d", defaultValue = "1d", converter = DurationConverter.class)
+    private Duration revisitInterval;
+
+    @Option(names = {"--min-revisit-interval"}, description = "Shortest a page that keeps changing is left with "
+            + "--recrawl", defaultValue = "1h", converter = DurationConverter.class)
+    private Duration minRevisitInterval;
+
+    @Option(names = {"--max-revisit-interval"}, description = "Longest a page that never changes is left with "
+            + "--recrawl", defaultValue = "30d", converter = DurationConverter.class)
+    private Duration maxRevisitInterval;
+
+    @Option(names = {"--http-cache-dir"}, description = "Keep validators and links of fetched pages under this "
+            + "directory and revalidate them on the next crawl instead of downloading them again")
+    private Path httpCacheDir;
+
+    @Option(names = {"--http-cache-size"}, description = "Megabytes the page cache may use on disk",
+            defaultValue = "512")
+    private long httpCacheMegabytes;
+
+    @Option(names = {"--metrics-port"}, description = "Serve Prometheus metrics on this localhost port, 0 for none",
+            defaultValue = "0")
+    private int metricsPort;
+
+    @Option(names = {"--metrics-report"}, description = "Write a JSON summary of the crawl's metrics to this file")
+    private Path metricsReport;
+
+    @Option(names = {"--urls-file"}, description = "Write each URL to this file as it's crawled instead of logging it")
+    private Path urlsFile;
+
+    private CrawlCheckpointer checkpointer;
+
+    // Only with --frontier-dir, the cache that goes with the frontier on disk
+    private SeenUrlStore seenUrls;
+
+    // Null unless metrics were asked for, then the client, queue and cache are wrapped to record them
+    private CrawlMetrics metrics;
+
+    private CachingWebClient cachingClient;
+
+    private CrawlHistory history;
+
+    // Shared by the URL cache and the cluster coordinator in distributed mode
+    private StatefulRedisConnection<String, String> redisConnection;
+
+    // Null unless --urls-file was given, crawled URLs are streamed out rather than kept until the end
+    private BufferedWriter urlsWriter;
+
     @SneakyThrows
     @Override
     public Integer call() {
         getBaseURL();
-        if (baseURL.isEmpty()) return 1;
+        if (baseURL.isEmpty() || !inMemoryOptionsValid()) return 1;
+        checkpointer = getCheckpointer();
+        if (frontierDir != null) seenUrls = SeenUrlStore.open(frontierDir, Duration.ofSeconds(checkpointInterval));
+        history = getHistory();
+        if (metricsPort > 0 || metricsReport != null) metrics = new CrawlMetrics();
+        if (urlsFile != null) urlsWriter = Files.newBufferedWriter(urlsFile);
         UrlQueue queue = getQueue();
         UrlCache cache = getCache();
+        if (metrics != null && cache instanceof BloomFilteredUrlCache filtered) metrics.bloomFilter(filtered::stats);
+        List<String> due = history != null ? markKnownPages(cache) : List.of();
         logCrawlerInfo();
-        SimpleWebCrawler crawler = new SimpleWebCrawler(baseURL, queue, cache, Executors.newFixedThreadPool(maxThreads),
-                TerminalBuilder.builder().dumb(true).build(), new JSoupWebClient());
+        MetricsServer metricsServer = metricsPort > 0 ? new MetricsServer(metrics, metricsPort) : null;
+        SimpleWebCrawler crawler = new SimpleWebCrawler(baseURL, queue,
+                metrics == null ? cache : new InstrumentedUrlCache(cache, metrics), engine.newExecutor(maxThreads),
+                TerminalBuilder.builder().dumb(true).build(), getWebClient(), getCrawlConfig());
+        crawler.seed(due);
+        if (checkpointer != null) checkpointer.start();
+        if (seenUrls != null) seenUrls.start();
         crawler.crawl();
-        askToPrintUrls(crawler);
+        if (checkpointer != null) checkpointer.close();
+        if (seenUrls != null) seenUrls.close();
+        if (metricsServer != null) metricsServer.close();
+        if (cachingClient != null) {
+            cachingClient.close();
+            log.info(cachingClient.summary());
+        }
+        if (history != null) history.writeTo(historyFile);
+        reportMetrics();
+        if (queue instanceof Closeable closeable) closeable.close();
+        if (cache instanceof FingerprintUrlCache fingerprints) log.info(fingerprints.memoryReport().summary());
+        if (cache instanceof BloomFilteredUrlCache filtered) log.info(filtered.stats().summary());
+        if (urlsWriter != null) {
+            urlsWriter.close();
+            log.info("Crawled URLs written to {}", urlsFile);
+        }
         return 0;
     }
 
     public static void main(String[] args) {
-        int exitCode = new CommandLine(new Application()).execute(args);
+        int exitCode = new CommandLine(new Application()).setCaseInsensitiveEnumValuesAllowed(true).execute(args);
         System.exit(exitCode);
     }
 
-    private void askToPrintUrls(SimpleWebCrawler crawler) {
-        Scanner scanner = new Scanner(System.in);
-        log.info("Do you want to see all the URLs? (Y/n): ");
-        String input = scanner.nextLine().trim().toLowerCase();
-        if (input.isEmpty() || input.equals("y")) {
-            new ArrayList<>(crawler.getVisitedUrlSet()).reversed().forEach(url -> log.info("{}", url));
+    @SneakyThrows
+    private void reportMetrics() {
+        if (metrics == null) return;
+        log.info(metrics.summary());
+        if (metricsReport != null) {
+            Files.writeString(metricsReport, metrics.jsonSummary());
+            log.info("Metrics summary written to {}", metricsReport);
+        }
+    }
+
+    @SneakyThrows
+    private void crawled(String url) {
+        if (urlsWriter == null) {
+            log.debug("Crawled {}", url);
+            return;
+        }
+        synchronized (urlsWriter) {
+            urlsWriter.write(url);
+            urlsWriter.newLine();
         }
     }
 
@@ -81,17 +352,176 @@ public class Application implements Callable<Integer> {
         }
     }
 
+    // Snapshots and the priority frontier only cover the in-memory queue and cache
+    private boolean inMemoryOptionsValid() {
+        if (priority && (isDistributed || frontierDir != null)) {
+            log.error("--priority only works with the in-memory queue");
+            return false;
+        }
+        if (resume && checkpointFile == null) {
+            log.error("--resume needs --checkpoint to say where the snapshot is");
+            return false;
+        }
+        if (checkpointFile != null && (isDistributed || fingerprintCache || frontierDir != null)) {
+            log.error("--checkpoint only works with the in-memory queue and cache");
+            return false;
+        }
+        // The seen URLs are saved next to the frontier, from a cache that can list its fingerprints
+        if (frontierDir != null && (isDistributed || fingerprintCache)) {
+            log.error("--frontier-dir doesn't work with --dist or --fingerprint-cache");
+            return false;
+        }
+        if (nearDuplicateDistance > 7) {
+            log.error("--near-duplicates can't be more than 7 bits");
+            return false;
+        }
+        // The history is one node's, and seeding the frontier from it would fight a checkpoint doing the same
+        if (historyFile != null && (isDistributed || checkpointFile != null)) {
+            log.error("--recrawl doesn't work with --dist or --checkpoint");
+            return false;
+        }
+        return true;
+    }
+
+    @SneakyThrows
+    private CrawlHistory getHistory() {
+        if (historyFile == null) return null;
+        return CrawlHistory.load(historyFile, RevisitPolicy.builder()
+                .initialInterval(revisitInterval)
+                .minInterval(minRevisitInterval)
+                .maxInterval(maxRevisitInterval)
+                .build());
+    }
+
+    // Every known page counts as seen so only new links are queued, the ones due a visit are queued directly
+    // Pages that aren't due are marked as seen so links to them aren't followed. The due ones are left for the
+    // crawler to seed, so they go through the page budget like the start URL
+    private List<String> markKnownPages(UrlCache cache) {
+        List<String> due = history.due();
+        Set<String> notDue = new HashSet<>(history.urls());
+        due.forEach(notDue::remove);
+        cache.addAll(notDue);
+        if (history.size() > 0) log.info("Revisiting {} of {} known pages", due.size(), history.size());
+        return due;
+    }
+
+    @SneakyThrows
+    private CrawlCheckpointer getCheckpointer() {
+        if (checkpointFile == null) return null;
+        Duration interval = Duration.ofSeconds(checkpointInterval);
+        return resume ? CrawlCheckpointer.resume(checkpointFile, interval)
+                : new CrawlCheckpointer(checkpointFile, interval, new InMemoryUrlCache());
+    }
+
+    private CrawlConfig getCrawlConfig() {
+        return CrawlConfig.builder()
+                .maxInFlight(engine == CrawlEngine.VIRTUAL ? maxInFlight : maxThreads)
+                .maxPerHost(maxPerHost)
+                .fetchMode(fetchMode)
+                .linkExtractor(linkExtractor.create())
+                .respectRobots(!ignoreRobots)
+                .maxDepth(maxDepth)
+                .maxPages(maxPages)
+                .maxDuration(maxDuration)
+                .maxNearDuplicateDistance(nearDuplicateDistance)
+                .queryRules(getQueryRules())
+                .crawledUrlListener(this::crawled)
+                .coordinator(isDistributed ? new ClusterCoordinator(new RedisClusterStore(getRedisConnection()))
+                        : new LocalCoordinator())
+                .build();
+    }
+
+    @SneakyThrows
+    private QueryRules getQueryRules() {
+        if (queryRulesFile != null) {
+            return QueryRules.load(queryRulesFile, maxQueryParams, QueryRules.DEFAULT_MAX_VALUE_LENGTH);
+        }
+        return keepQuery ? QueryRules.compile(List.of(), maxQueryParams, QueryRules.DEFAULT_MAX_VALUE_LENGTH)
+                : QueryRules.NONE;
+    }
+
+    @SneakyThrows
+    private WebClient getWebClient() {
+        WebClient client = clientType.create(new BodyLimit(maxBodyBytes, rangeRequests));
+        if (httpCacheDir != null) {
+            if (fetchMode != FetchMode.SINGLE_REQUEST) {
+                log.warn("--http-cache-dir only caches pages with --fetch-mode single_request");
+            }
+            cachingClient = new CachingWebClient(client, new PageCache(httpCacheDir, httpCacheMegabytes * 1024 * 1024));
+            client = cachingClient;
+        }
+        // Outside the cache, a 304 it answered is an unchanged page
+        if (history != null) {
+            if (fetchMode != FetchMode.SINGLE_REQUEST) {
+                log.warn("--recrawl only tells changed pages apart with --fetch-mode single_request");
+            }
+            client = new RecrawlWebClient(client, history);
+        }
+        // Outside the cache so a 304 is timed as the GET it is
+        return metrics == null ? client : new InstrumentedWebClient(client, metrics);
+    }
+
     private UrlQueue getQueue() {
-        return isDistributed ? new KafkaQueue() : new ConcurrentQueue();
+        UrlQueue queue = isDistributed ? new KafkaQueue()
+                : frontierDir != null ? new SegmentedLogQueue(frontierDir)
+                : priority ? new PriorityFrontier(getUrlScorer()) : new ConcurrentQueue();
+        if (polite) queue = new PoliteQueue(queue, getPolitenessPolicy());
+        if (checkpointer != null) {
+            queue = checkpointer.wrap(queue);
+            checkpointer.enqueuePending(queue);
+        }
+        return metrics == null ? queue : new InstrumentedUrlQueue(queue, metrics);
+    }
+
+    private UrlScorer getUrlScorer() {
+        WeightedUrlScorer.WeightedUrlScorerBuilder scorer = WeightedUrlScorer.builder()
+                .depthWeight(depthWeight)
+                .inLinkWeight(inLinkWeight)
+                .freshnessWeight(freshnessWeight);
+        priorityPatterns.forEach((regex, weight) -> scorer.patternWeight(Pattern.compile(regex), weight));
+        return scorer.build();
+    }
+
+    private PolitenessPolicy getPolitenessPolicy() {
+        return PolitenessPolicy.builder()
+                .requestsPerSecond(hostRate)
+                .burst(hostBurst)
+                .maxPerHost(maxPerHost)
+                .build();
+    }
+
+    private StatefulRedisConnection<String, String> getRedisConnection() {
+        if (redisConnection == null) {
+            String redisUri = System.getenv().getOrDefault("ENVIRONMENT", "prod").equals("dev")
+                    ? "redis://localhost:6379" : "redis://redis-web-crawler:6379";
+            redisConnection = RedisClient.create(redisUri).connect();
+        }
+        return redisConnection;
     }
 
     private UrlCache getCache() {
-        String redisUri = System.getenv().getOrDefault("ENVIRONMENT", "prod").equals("dev")
-                ? "redis://localhost:6379" : "redis://redis-web-crawler:6379";
-        return isDistributed ? new RedisUrlCache(RedisClient.create(redisUri).connect())
+        if (isDistributed) {
+            UrlCache redis = getRedisCache();
+            return bloomFilter ? new BloomFilteredUrlCache(redis, expectedUrls, bloomFalsePositiveRate) : redis;
+        }
+        if (checkpointer != null) return checkpointer.urlCache();
+        if (seenUrls != null) return seenUrls.urlCache();
+        return fingerprintCache
+                ? FingerprintUrlCache.builder()
+                .expectedUrls(expectedUrls)
+                .maxCollisionProbability(maxCollisionProbability)
+                .build()
                 : new InMemoryUrlCache();
     }
 
+    private UrlCache getRedisCache() {
+        var connection = getRedisConnection();
+        if (!redisFingerprints) return new RedisUrlCache(connection);
+        ShardedRedisUrlCache sharded = new ShardedRedisUrlCache(connection, expectedUrls);
+        if (migrateRedisSet) sharded.migrateFromUrlSet();
+        return sharded;
+    }
+
     public void logCrawlerInfo() {
         log.info("""
                         
@@ -99,12 +529,35 @@ public class Application implements Callable<Integer> {
                         🔗 URL: {}
                         🗂 Queue Type: {}
                         🛠 Cache Type: {}
-                        ⚡ Threads: {}
+                        🌐 Client: {}
+                        ⚙️ Engine: {}
+                        ⚡ Concurrency: {}
+                        🤝 Polite: {}
                         """,
                 baseURL,
-                isDistributed ? "kafka" : "concurrentQueue",
-                isDistributed ? "redis" : "inMemory",
-                maxThreads);
+                isDistributed ? "kafka" : frontierDir != null ? "segmentedLog" : priority ? "priority" : "concurrentQueue",
+                isDistributed ? redisFingerprints ? "redisFingerprints" : "redis" : fingerprintCache ? "fingerprint" : "inMemory",
+                clientType.name().toLowerCase(),
+                engine.name().toLowerCase(),
+                engine == CrawlEngine.VIRTUAL ? maxInFlight : maxThreads,
+                polite ? hostRate + " req/s per host" : "no");
 
     }
+
+    // A number with an s, m, h or d suffix, or an ISO-8601 duration
+    static class DurationConverter implements CommandLine.ITypeConverter<Duration> {
+        @Override
+        public Duration convert(String value) {
+            if (value.equals("0")) return Duration.ZERO;
+            if (value.startsWith("P") || value.startsWith("p")) return Duration.parse(value);
+            long amount = Long.parseLong(value.substring(0, value.length() - 1));
+            return switch (Character.toLowerCase(value.charAt(value.length() - 1))) {
+                case 's' -> Duration.ofSeconds(amount);
+                case 'm' -> Duration.ofMinutes(amount);
+                case 'h' -> Duration.ofHours(amount);
+                case 'd' -> Duration.ofDays(amount);
+                default -> throw new CommandLine.TypeConversionException("Expected e.g. 90s, 30m or 2h but got " + value);
+            };
+        }
+    }
 }
@@ -0,0 +1,73 @@
+package com.conorsheppard.cache;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// A lock-free Bloom filter over URL strings. The k bit positions come from the two halves of the murmur3
+// fingerprint by double hashing, so each lookup hashes the URL once
+public class BloomFilter {
+    private final AtomicLongArray words;
+    private final long bits;
+    private final int hashes;
+    private final LongAdder bitsSet = new LongAdder();
+
+    BloomFilter(long bits, int hashes) {
+        long wordCount = Math.max(1, (bits + Long.SIZE - 1) / Long.SIZE);
+        if (wordCount > Integer.MAX_VALUE) throw new IllegalArgumentException("Bloom filter too large: " + bits);
+        this.words = new AtomicLongArray((int) wordCount);
+        this.bits = wordCount * Long.SIZE;
+        this.hashes = hashes;
+    }
+
+    // Optimal size for n insertions at false positive rate p: m = -n ln p / (ln 2)^2 bits and k = m/n ln 2 hashes
+    public static BloomFilter create(long expectedInsertions, double falsePositiveRate) {
+        long n = Math.max(1, expectedInsertions);
+        long bits = (long) Math.ceil(-n * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        int hashes = Math.max(1, (int) Math.round((double) bits / n * Math.log(2)));
+        return new BloomFilter(bits, hashes);
+    }
+
+    public boolean mightContain(CharSequence url) {
+        long[] fingerprint = UrlFingerprints.murmur3(url);
+        long combined = fingerprint[0];
+        for (int i = 0; i < hashes; i++, combined += fingerprint[1]) {
+            long bit = (combined & Long.MAX_VALUE) % bits;
+            if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) return false;
+        }
+        return true;
+    }
+
+    // Returns true if any bit changed, i.e. the URL definitely wasn't in the filter before
+    public boolean put(CharSequence url) {
+        long[] fingerprint = UrlFingerprints.murmur3(url);
+        long combined = fingerprint[0];
+        boolean changed = false;
+        for (int i = 0; i < hashes; i++, combined += fingerprint[1]) {
+            long bit = (combined & Long.MAX_VALUE) % bits;
+            int index = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long word;
+            while (((word = words.get(index)) & mask) == 0) {
+                if (words.compareAndSet(index, word, word | mask)) {
+                    bitsSet.increment();
+                    changed = true;
+                    break;
+                }
+            }
+        }
+        return changed;
+    }
+
+    // False positive rate at the current fill: (fraction of bits set)^k
+    public double expectedFalsePositiveRate() {
+        return Math.pow((double) bitsSet.sum() / bits, hashes);
+    }
+
+    public long bitSize() {
+        return bits;
+    }
+
+    public int hashCount() {
+        return hashes;
+    }
+}
@@ -0,0 +1,94 @@
+package com.conorsheppard.cache;
+
+import lombok.Value;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+// Answers repeats of URLs this node has already added or seen from a local Bloom filter, so only URLs the filter
+// has never seen cost a round-trip to the shared cache. The trade-off is the filter's false positive rate: a new
+// URL that happens to match is taken as seen and skipped. A negative can't be answered locally either, since
+// other crawler nodes may have added the URL to the shared cache
+public class BloomFilteredUrlCache implements UrlCache {
+    private final UrlCache delegate;
+    private final BloomFilter filter;
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder localHits = new LongAdder();
+
+    public BloomFilteredUrlCache(UrlCache delegate, long expectedUrls, double falsePositiveRate) {
+        this(delegate, BloomFilter.create(expectedUrls, falsePositiveRate));
+    }
+
+    BloomFilteredUrlCache(UrlCache delegate, BloomFilter filter) {
+        this.delegate = delegate;
+        this.filter = filter;
+    }
+
+    @Override
+    public boolean contains(String url) {
+        if (seenLocally(url)) return true;
+        boolean contains = delegate.contains(url);
+        if (contains) filter.put(url);
+        return contains;
+    }
+
+    @Override
+    public boolean add(String url) {
+        if (seenLocally(url)) return false;
+        boolean added = delegate.add(url);
+        filter.put(url);
+        return added;
+    }
+
+    // Only the links the filter hasn't seen go to the shared cache, still as one batch
+    @Override
+    public List<String> addAll(Collection<String> urls) {
+        List<String> unseen = new ArrayList<>(urls.size());
+        for (String url : urls) {
+            if (!seenLocally(url)) unseen.add(url);
+        }
+        if (unseen.isEmpty()) return List.of();
+        List<String> added = delegate.addAll(unseen);
+        unseen.forEach(filter::put);
+        return added;
+    }
+
+    @Override
+    public int size() {
+        return delegate.size();
+    }
+
+    private boolean seenLocally(String url) {
+        lookups.increment();
+        if (!filter.mightContain(url)) return false;
+        localHits.increment();
+        return true;
+    }
+
+    public Stats stats() {
+        return new Stats(lookups.sum(), localHits.sum(), filter.bitSize(), filter.hashCount(),
+                filter.expectedFalsePositiveRate());
+    }
+
+    @Value
+    public static class Stats {
+        long lookups;
+        // Lookups answered without a round-trip
+        long localHits;
+        long bits;
+        int hashes;
+        double expectedFalsePositiveRate;
+
+        public double hitRatio() {
+            return lookups == 0 ? 0 : (double) localHits / lookups;
+        }
+
+        public String summary() {
+            return String.format("Bloom filter answered %,d of %,d lookups locally (%.1f%%), %,.1f MB with %d hashes, "
+                            + "false positive rate %.1e", localHits, lookups, hitRatio() * 100,
+                    bits / 8 / (1024.0 * 1024.0), hashes, expectedFalsePositiveRate);
+        }
+    }
+}
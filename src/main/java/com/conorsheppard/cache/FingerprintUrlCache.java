@@ -0,0 +1,182 @@
+package com.conorsheppard.cache;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.util.concurrent.atomic.LongAdder;
+
+// Keeps URL fingerprints rather than URLs, in open-addressing tables of primitive longs that are optionally
+// off-heap, so tens of millions of URLs cost 8 or 16 bytes each (plus load factor slack) and add nothing for the
+// GC to trace. The table is split into lock-striped segments picked by the top bits of the fingerprint, each
+// growing on its own. Fingerprints are 64 bits, or 128 when 64 would make a collision between any two of the
+// expected URLs likelier than maxCollisionProbability. A collision means a new URL is taken for a seen one
+public class FingerprintUrlCache implements UrlCache {
+    private static final double LOAD_FACTOR = 0.75;
+    private static final int MIN_STRIPE_SLOTS = 16;
+    // Direct buffers are int indexed by byte, so each stripe is kept to 1GB
+    private static final long MAX_STRIPE_BYTES = 1L << 30;
+
+    private final Stripe[] stripes;
+    private final int stripeShift;
+    private final int words;
+    private final boolean offHeap;
+    private final LongAdder size = new LongAdder();
+
+    @Builder
+    public FingerprintUrlCache(long expectedUrls, double maxCollisionProbability, int stripes, boolean offHeap) {
+        if (Integer.bitCount(stripes) != 1) throw new IllegalArgumentException("stripes must be a power of two");
+        this.words = fingerprintBits(expectedUrls, maxCollisionProbability) / Long.SIZE;
+        this.offHeap = offHeap;
+        this.stripeShift = Long.SIZE - Integer.numberOfTrailingZeros(stripes);
+        this.stripes = new Stripe[stripes];
+        long slotsPerStripe = Math.max(MIN_STRIPE_SLOTS, (long) Math.ceil(expectedUrls / (double) stripes / LOAD_FACTOR));
+        int initialSlots = (int) Math.min(Long.highestOneBit(slotsPerStripe - 1) << 1, maxSlots());
+        for (int i = 0; i < stripes; i++) this.stripes[i] = new Stripe(initialSlots);
+    }
+
+    public static class FingerprintUrlCacheBuilder {
+        private long expectedUrls = 1_000_000;
+        private double maxCollisionProbability = 1e-6;
+        private int stripes = 64;
+        private boolean offHeap = true;
+    }
+
+    // The chance of any collision among n random b-bit fingerprints is about n^2 / 2^(b+1)
+    static int fingerprintBits(long expectedUrls, double maxCollisionProbability) {
+        return collisionProbability(expectedUrls, 64) <= maxCollisionProbability ? 64 : 128;
+    }
+
+    static double collisionProbability(long urls, int bits) {
+        return Math.min(1, (double) urls * urls / Math.pow(2, bits + 1));
+    }
+
+    @Override
+    public boolean contains(String url) {
+        long[] fingerprint = UrlFingerprints.murmur3(url);
+        return stripeFor(fingerprint[0]).contains(fingerprint[0], fingerprint[1]);
+    }
+
+    @Override
+    public boolean add(String url) {
+        long[] fingerprint = UrlFingerprints.murmur3(url);
+        boolean added = stripeFor(fingerprint[0]).add(fingerprint[0], fingerprint[1]);
+        if (added) size.increment();
+        return added;
+    }
+
+    @Override
+    public int size() {
+        return (int) Math.min(Integer.MAX_VALUE, size.sum());
+    }
+
+    public MemoryReport memoryReport() {
+        long slots = 0;
+        for (Stripe stripe : stripes) slots += stripe.slots();
+        long entries = size.sum();
+        int bits = words * Long.SIZE;
+        return new MemoryReport(entries, slots, slots * words * Long.BYTES, offHeap, bits,
+                collisionProbability(entries, bits));
+    }
+
+    private Stripe stripeFor(long high) {
+        return stripes[stripeShift == Long.SIZE ? 0 : (int) (high >>> stripeShift)];
+    }
+
+    private long maxSlots() {
+        return MAX_STRIPE_BYTES / ((long) words * Long.BYTES);
+    }
+
+    @Value
+    public static class MemoryReport {
+        long entries;
+        long slots;
+        long bytes;
+        boolean offHeap;
+        int fingerprintBits;
+        // Chance that at least two of the URLs seen so far share a fingerprint
+        double collisionProbability;
+
+        public String summary() {
+            return String.format("%,d URL fingerprints in %,.1f MB %s (%d-bit, %.0f%% full, collision probability %.1e)",
+                    entries, bytes / (1024.0 * 1024.0), offHeap ? "off-heap" : "on-heap", fingerprintBits,
+                    slots == 0 ? 0 : entries * 100.0 / slots, collisionProbability);
+        }
+    }
+
+    // Linear probing over `words` longs per slot, the first word doubling as the occupied flag since it's never 0.
+    // The slot comes from the low bits of the first word, which are independent of the top bits picking the stripe
+    private final class Stripe {
+        private LongBuffer table;
+        private int mask;
+        private int size;
+
+        private Stripe(int slots) {
+            table = allocate(slots);
+            mask = slots - 1;
+        }
+
+        private synchronized int slots() {
+            return mask + 1;
+        }
+
+        private synchronized boolean contains(long high, long low) {
+            int slot = (int) high & mask;
+            while (true) {
+                long word = table.get(slot * words);
+                if (word == 0) return false;
+                if (word == high && (words == 1 || table.get(slot * words + 1) == low)) return true;
+                slot = (slot + 1) & mask;
+            }
+        }
+
+        private synchronized boolean add(long high, long low) {
+            int slot = (int) high & mask;
+            while (true) {
+                long word = table.get(slot * words);
+                if (word == 0) break;
+                if (word == high && (words == 1 || table.get(slot * words + 1) == low)) return false;
+                slot = (slot + 1) & mask;
+            }
+            // Probing relies on there always being an empty slot
+            if (size + 1 == mask + 1) {
+                throw new IllegalStateException("Fingerprint table stripe is full at " + size + " URLs");
+            }
+            put(table, slot, high, low);
+            if (++size > (mask + 1) * LOAD_FACTOR) grow();
+            return true;
+        }
+
+        private void grow() {
+            // At the size cap the stripe keeps filling past the load factor instead
+            long newSlots = (mask + 1L) << 1;
+            if (newSlots > maxSlots()) return;
+            LongBuffer old = table;
+            int oldSlots = mask + 1;
+            table = allocate((int) newSlots);
+            mask = (int) newSlots - 1;
+            for (int slot = 0; slot < oldSlots; slot++) {
+                long high = old.get(slot * words);
+                if (high == 0) continue;
+                int target = (int) high & mask;
+                while (table.get(target * words) != 0) target = (target + 1) & mask;
+                put(table, target, high, words == 1 ? 0 : old.get(slot * words + 1));
+            }
+        }
+
+        private void put(LongBuffer into, int slot, long high, long low) {
+            into.put(slot * words, high);
+            if (words == 2) into.put(slot * words + 1, low);
+        }
+
+        // Direct buffers come zeroed, which is every slot empty
+        private LongBuffer allocate(int slots) {
+            int longs = slots * words;
+            return offHeap
+                    ? ByteBuffer.allocateDirect(longs * Long.BYTES).order(ByteOrder.nativeOrder()).asLongBuffer()
+                    : LongBuffer.allocate(longs);
+        }
+    }
+}
@@ -1,23 +1,55 @@
 package com.conorsheppard.cache;
 
+import java.util.Arrays;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 public class InMemoryUrlCache implements UrlCache {
     private final Set<String> cache = ConcurrentHashMap.newKeySet();
+    // 64-bit fingerprints of URLs seen before a resume, sorted so lookups are a binary search
+    private final long[] restored;
+
+    public InMemoryUrlCache() {
+        this(new long[0]);
+    }
+
+    public InMemoryUrlCache(long[] restoredFingerprints) {
+        this.restored = restoredFingerprints;
+    }
 
     @Override
     public boolean contains(String url) {
-        return cache.contains(url);
+        return cache.contains(url) || wasRestored(url);
     }
 
     @Override
     public boolean add(String url) {
-        return cache.add(url);
+        return !wasRestored(url) && cache.add(url);
     }
 
     @Override
     public int size() {
-        return cache.size();
+        return cache.size() + restored.length;
+    }
+
+    // Sorted and distinct, read without stopping adds so a URL added meanwhile may or may not be in it
+    public long[] fingerprints() {
+        long[] fingerprints = new long[restored.length + cache.size()];
+        System.arraycopy(restored, 0, fingerprints, 0, restored.length);
+        int count = restored.length;
+        for (String url : cache) {
+            if (count == fingerprints.length) fingerprints = Arrays.copyOf(fingerprints, count * 2);
+            fingerprints[count++] = UrlFingerprints.murmur3(url)[0];
+        }
+        Arrays.sort(fingerprints, 0, count);
+        int distinct = 0;
+        for (int i = 0; i < count; i++) {
+            if (distinct == 0 || fingerprints[i] != fingerprints[distinct - 1]) fingerprints[distinct++] = fingerprints[i];
+        }
+        return Arrays.copyOf(fingerprints, distinct);
+    }
+
+    private boolean wasRestored(String url) {
+        return restored.length > 0 && Arrays.binarySearch(restored, UrlFingerprints.murmur3(url)[0]) >= 0;
     }
 }
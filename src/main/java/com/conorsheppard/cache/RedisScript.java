@@ -0,0 +1,38 @@
+package com.conorsheppard.cache;
+
+import io.lettuce.core.RedisNoScriptException;
+import io.lettuce.core.ScriptOutputType;
+import io.lettuce.core.api.sync.RedisCommands;
+import lombok.SneakyThrows;
+import lombok.Value;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+
+// A Lua script run by its SHA-1 so the body is only sent the first time a server sees it
+@Value
+public class RedisScript {
+    String body;
+    String sha;
+
+    public RedisScript(String body) {
+        this.body = body;
+        this.sha = sha1(body);
+    }
+
+    public <T> T run(RedisCommands<String, String> redis, ScriptOutputType output, String[] keys, String... values) {
+        try {
+            return redis.evalsha(sha, output, keys, values);
+        } catch (RedisNoScriptException e) {
+            // First call against this server, or its script cache was flushed. EVAL loads it for next time
+            return redis.eval(body, output, keys, values);
+        }
+    }
+
+    @SneakyThrows
+    private static String sha1(String script) {
+        byte[] digest = MessageDigest.getInstance("SHA-1").digest(script.getBytes(StandardCharsets.UTF_8));
+        return HexFormat.of().formatHex(digest);
+    }
+}
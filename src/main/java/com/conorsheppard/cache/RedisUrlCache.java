@@ -1,13 +1,27 @@
 package com.conorsheppard.cache;
 
+import io.lettuce.core.ScriptOutputType;
 import io.lettuce.core.api.StatefulRedisConnection;
 import io.lettuce.core.api.sync.RedisCommands;
 import lombok.Data;
 
+import java.util.Collection;
+import java.util.List;
+
 @Data
 public class RedisUrlCache implements UrlCache {
     private final RedisCommands<String, String> redis;
-    private static final String VISITED_URLS = "web-crawler-url-cache";
+    static final String VISITED_URLS = "web-crawler-url-cache";
+    // SADDs each URL server-side and returns the ones that were new, so a page of links is one round-trip
+    static final RedisScript ADD_ALL = new RedisScript("""
+            local added = {}
+            for _, url in ipairs(ARGV) do
+                if redis.call('SADD', KEYS[1], url) == 1 then
+                    added[#added + 1] = url
+                end
+            end
+            return added
+            """);
 
     public RedisUrlCache(StatefulRedisConnection<String, String> redisCommands) {
         this.redis = redisCommands.sync();
@@ -23,6 +37,12 @@ public class RedisUrlCache implements UrlCache {
         return redis.sadd(VISITED_URLS, url) > 0;
     }
 
+    @Override
+    public List<String> addAll(Collection<String> urls) {
+        if (urls.isEmpty()) return List.of();
+        return ADD_ALL.run(redis, ScriptOutputType.MULTI, new String[]{VISITED_URLS}, urls.toArray(String[]::new));
+    }
+
     @Override
     public int size() {
         return redis.scard(VISITED_URLS).intValue();
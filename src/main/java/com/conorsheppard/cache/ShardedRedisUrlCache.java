@@ -0,0 +1,123 @@
+package com.conorsheppard.cache;
+
+import io.lettuce.core.ScanArgs;
+import io.lettuce.core.ScanCursor;
+import io.lettuce.core.ScriptOutputType;
+import io.lettuce.core.ValueScanCursor;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.api.sync.RedisCommands;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+// Stores URL fingerprints instead of URLs, spread over many small hashes picked by the top bits of the fingerprint.
+// Small hashes keep Redis' listpack encoding, where a field that reads as a 64-bit integer costs a few bytes rather
+// than a dict entry and a string, and no single key is hot. The shard bits are stored in Redis on first use so every
+// node and every later run agrees on the layout, and a counter kept by the add script gives the size without
+// scanning the shards. Adds touch several keys in one script, so this needs a standalone Redis rather than a cluster
+@Slf4j
+@Getter
+public class ShardedRedisUrlCache implements UrlCache {
+    static final String KEY_PREFIX = "web-crawler-url-fp:";
+    static final String COUNT_KEY = KEY_PREFIX + "count";
+    static final String SHARD_BITS_KEY = KEY_PREFIX + "shard-bits";
+    // Half of Redis' default hash-max-listpack-entries of 128, leaving room for shards that fill unevenly
+    static final int URLS_PER_SHARD = 64;
+    private static final int MAX_SHARD_BITS = 24;
+    // HSETNXes each fingerprint into its shard and returns the 1-based positions of the ones that were new
+    static final RedisScript ADD_ALL = new RedisScript("""
+            local added = {}
+            for i, field in ipairs(ARGV) do
+                if redis.call('HSETNX', KEYS[i + 1], field, 1) == 1 then
+                    added[#added + 1] = i
+                end
+            end
+            if #added > 0 then
+                redis.call('INCRBY', KEYS[1], #added)
+            end
+            return added
+            """);
+
+    private final RedisCommands<String, String> redis;
+    private final int shardBits;
+
+    public ShardedRedisUrlCache(StatefulRedisConnection<String, String> connection, long expectedUrls) {
+        this.redis = connection.sync();
+        redis.setnx(SHARD_BITS_KEY, Integer.toString(shardBits(expectedUrls)));
+        this.shardBits = Integer.parseInt(redis.get(SHARD_BITS_KEY));
+    }
+
+    static int shardBits(long expectedUrls) {
+        long shards = Math.max(1, (expectedUrls + URLS_PER_SHARD - 1) / URLS_PER_SHARD);
+        return Math.min(MAX_SHARD_BITS, Long.SIZE - Long.numberOfLeadingZeros(shards - 1));
+    }
+
+    @Override
+    public boolean contains(String url) {
+        long[] fingerprint = UrlFingerprints.murmur3(url);
+        return redis.hexists(shardKey(fingerprint), field(fingerprint));
+    }
+
+    @Override
+    public boolean add(String url) {
+        return !addAll(List.of(url)).isEmpty();
+    }
+
+    @Override
+    public List<String> addAll(Collection<String> urls) {
+        if (urls.isEmpty()) return List.of();
+        List<String> ordered = List.copyOf(urls);
+        String[] keys = new String[ordered.size() + 1];
+        String[] fields = new String[ordered.size()];
+        keys[0] = COUNT_KEY;
+        for (int i = 0; i < fields.length; i++) {
+            long[] fingerprint = UrlFingerprints.murmur3(ordered.get(i));
+            keys[i + 1] = shardKey(fingerprint);
+            fields[i] = field(fingerprint);
+        }
+        List<Long> positions = ADD_ALL.run(redis, ScriptOutputType.MULTI, keys, fields);
+        List<String> added = new ArrayList<>(positions.size());
+        for (Long position : positions) added.add(ordered.get(position.intValue() - 1));
+        return added;
+    }
+
+    @Override
+    public int size() {
+        String count = redis.get(COUNT_KEY);
+        return count == null ? 0 : (int) Math.min(Integer.MAX_VALUE, Long.parseLong(count));
+    }
+
+    // Copies the URLs in a RedisUrlCache set across in batches, leaving the set itself for the caller to delete
+    // once the crawl has moved over. Safe to re-run, URLs already copied aren't counted twice
+    public long migrateFrom(String setKey, int batchSize) {
+        long migrated = 0;
+        long scanned = 0;
+        ScanCursor cursor = ScanCursor.INITIAL;
+        do {
+            ValueScanCursor<String> batch = redis.sscan(setKey, cursor, ScanArgs.Builder.limit(batchSize));
+            scanned += batch.getValues().size();
+            migrated += addAll(batch.getValues()).size();
+            cursor = batch;
+        } while (!cursor.isFinished());
+        log.info("Migrated {} of {} URLs from {} into {} fingerprint shards", migrated, scanned, setKey, 1 << shardBits);
+        return migrated;
+    }
+
+    public long migrateFromUrlSet() {
+        return migrateFrom(RedisUrlCache.VISITED_URLS, 1000);
+    }
+
+    String shardKey(long[] fingerprint) {
+        long shard = shardBits == 0 ? 0 : fingerprint[0] >>> (Long.SIZE - shardBits);
+        return KEY_PREFIX + Long.toHexString(shard);
+    }
+
+    // The shard already fixes the top bits of the high word, so the field is the low word. As a plain decimal long
+    // it's stored as an integer in the listpack, giving shardBits + 64 bits of fingerprint
+    static String field(long[] fingerprint) {
+        return Long.toString(fingerprint[1]);
+    }
+}
@@ -1,7 +1,21 @@
 package com.conorsheppard.cache;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
 public interface UrlCache {
     boolean contains(String url);
     boolean add(String url);
     int size();
+
+    // Adds every URL and returns the ones that weren't already there, in iteration order. Remote caches override
+    // this to check a whole page of links in one round-trip
+    default List<String> addAll(Collection<String> urls) {
+        List<String> added = new ArrayList<>();
+        for (String url : urls) {
+            if (add(url)) added.add(url);
+        }
+        return added;
+    }
 }
@@ -0,0 +1,63 @@
+package com.conorsheppard.cache;
+
+// MurmurHash3 x64 128-bit over the UTF-16 code units of a URL, read straight off the string so hashing doesn't
+// allocate an encoded copy. Zero is kept free as the empty-slot marker, so the high half is never zero
+public class UrlFingerprints {
+    private static final long C1 = 0x87c37b91114253d5L;
+    private static final long C2 = 0x4cf5ad432745937fL;
+
+    public static long[] murmur3(CharSequence url) {
+        int length = url.length();
+        long h1 = 0;
+        long h2 = 0;
+        int i = 0;
+        // Eight chars make one 16 byte block
+        for (; i + 8 <= length; i += 8) {
+            long k1 = pack(url, i, 4);
+            long k2 = pack(url, i + 4, 4);
+            h1 ^= mixK1(k1);
+            h1 = Long.rotateLeft(h1, 27) + h2;
+            h1 = h1 * 5 + 0x52dce729;
+            h2 ^= mixK2(k2);
+            h2 = Long.rotateLeft(h2, 31) + h1;
+            h2 = h2 * 5 + 0x38495ab5;
+        }
+        int remaining = length - i;
+        if (remaining > 4) h2 ^= mixK2(pack(url, i + 4, remaining - 4));
+        if (remaining > 0) h1 ^= mixK1(pack(url, i, Math.min(remaining, 4)));
+
+        long bytes = length * 2L;
+        h1 ^= bytes;
+        h2 ^= bytes;
+        h1 += h2;
+        h2 += h1;
+        h1 = fmix(h1);
+        h2 = fmix(h2);
+        h1 += h2;
+        h2 += h1;
+        return new long[]{h1 == 0 ? 1 : h1, h2};
+    }
+
+    private static long pack(CharSequence url, int from, int chars) {
+        long packed = 0;
+        for (int j = 0; j < chars; j++) packed |= (long) url.charAt(from + j) << (16 * j);
+        return packed;
+    }
+
+    private static long mixK1(long k1) {
+        return Long.rotateLeft(k1 * C1, 31) * C2;
+    }
+
+    private static long mixK2(long k2) {
+        return Long.rotateLeft(k2 * C2, 33) * C1;
+    }
+
+    private static long fmix(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+}
@@ -0,0 +1,178 @@
+package com.conorsheppard.checkpoint;
+
+import com.conorsheppard.cache.InMemoryUrlCache;
+import com.conorsheppard.cache.UrlCache;
+import com.conorsheppard.queue.CrawlOutcome;
+import com.conorsheppard.queue.ForwardingUrlQueue;
+import com.conorsheppard.queue.QueuedUrl;
+import com.conorsheppard.queue.UrlQueue;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+
+// Periodically snapshots an in-memory crawl to disk without stopping it. Rather than read the queue, it tracks every
+// URL from the moment it's offered to the cache until the queue says it's done, and that outstanding set is the
+// frontier. A snapshot reads the seen fingerprints first and the outstanding set second, both by weakly consistent
+// iteration. A URL is registered as outstanding before it reaches the cache, so anything in the seen part is either
+// in the frontier part or finished, and finished URLs had their links registered before they finished. URLs that
+// finish while the frontier is being read are kept in it, at worst something is crawled twice after a resume
+@Slf4j
+public class CrawlCheckpointer implements Closeable {
+    private static final Duration DEFAULT_INTERVAL = Duration.ofMinutes(1);
+
+    private final Path file;
+    private final Duration interval;
+    private final InMemoryUrlCache cache;
+    // URL to depth, zero until the URL reaches the queue
+    private final Map<String, Integer> outstanding = new ConcurrentHashMap<>();
+    // Non-null only while a snapshot is reading the frontier, catches URLs that finish under it
+    private volatile Queue<QueuedUrl> finishedDuringCapture;
+    private ScheduledExecutorService snapshots;
+
+    public CrawlCheckpointer(Path file) {
+        this(file, DEFAULT_INTERVAL, new InMemoryUrlCache());
+    }
+
+    public CrawlCheckpointer(Path file, Duration interval, InMemoryUrlCache cache) {
+        this.file = file;
+        this.interval = interval;
+        this.cache = cache;
+    }
+
+    // Reloads a snapshot, the caller puts its frontier back with enqueuePending before crawling
+    public static CrawlCheckpointer resume(Path file, Duration interval) throws IOException {
+        long start = System.nanoTime();
+        CrawlSnapshot snapshot = CrawlSnapshot.readFrom(file);
+        CrawlCheckpointer checkpointer = new CrawlCheckpointer(file, interval, new InMemoryUrlCache(snapshot.getFingerprints()));
+        for (QueuedUrl url : snapshot.getPending()) {
+            checkpointer.outstanding.put(url.getUrl(), url.getDepth());
+            checkpointer.cache.add(url.getUrl());
+        }
+        log.info("Resumed from {} with {} seen and {} pending URLs in {}ms", file, snapshot.getFingerprints().length,
+                snapshot.getPending().size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        return checkpointer;
+    }
+
+    public void enqueuePending(UrlQueue queue) {
+        outstanding.forEach((url, depth) -> queue.enqueue(new QueuedUrl(url, depth)));
+    }
+
+    public UrlCache urlCache() {
+        return new TrackingCache();
+    }
+
+    public UrlQueue wrap(UrlQueue queue) {
+        return new TrackingQueue(queue);
+    }
+
+    public void start() {
+        snapshots = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "checkpoint");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long millis = interval.toMillis();
+        snapshots.scheduleWithFixedDelay(this::checkpointQuietly, millis, millis, TimeUnit.MILLISECONDS);
+    }
+
+    // Seen before frontier, see the header
+    public CrawlSnapshot capture() {
+        long[] fingerprints = cache.fingerprints();
+        Queue<QueuedUrl> finished = new ConcurrentLinkedQueue<>();
+        finishedDuringCapture = finished;
+        Map<String, QueuedUrl> pending = new LinkedHashMap<>();
+        outstanding.forEach((url, depth) -> pending.put(url, new QueuedUrl(url, depth)));
+        finishedDuringCapture = null;
+        finished.forEach(url -> pending.putIfAbsent(url.getUrl(), url));
+        return new CrawlSnapshot(fingerprints, new ArrayList<>(pending.values()));
+    }
+
+    public void checkpoint() throws IOException {
+        long start = System.nanoTime();
+        CrawlSnapshot snapshot = capture();
+        snapshot.writeTo(file);
+        log.info("Checkpointed {} seen and {} pending URLs to {} in {}ms", snapshot.getFingerprints().length,
+                snapshot.getPending().size(), file, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    // Stops the background snapshots and writes a last one
+    @Override
+    public void close() throws IOException {
+        if (snapshots != null) {
+            snapshots.shutdownNow();
+            try {
+                snapshots.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        checkpoint();
+    }
+
+    private void checkpointQuietly() {
+        try {
+            checkpoint();
+        } catch (IOException | RuntimeException e) {
+            log.warn("Couldn't checkpoint the crawl to {}: {}", file, e.getMessage());
+        }
+    }
+
+    // Removed before finishedDuringCapture is read, so a URL a snapshot misses here had finished before it started
+    private void finished(String url) {
+        Integer depth = outstanding.remove(url);
+        Queue<QueuedUrl> capturing = finishedDuringCapture;
+        if (capturing != null && depth != null) capturing.add(new QueuedUrl(url, depth));
+    }
+
+    private final class TrackingCache implements UrlCache {
+        @Override
+        public boolean contains(String url) {
+            return cache.contains(url);
+        }
+
+        // Only the caller that registered the URL takes it back, it may already be outstanding from an earlier add
+        @Override
+        public boolean add(String url) {
+            boolean registered = outstanding.putIfAbsent(url, 0) == null;
+            boolean added = cache.add(url);
+            if (!added && registered) outstanding.remove(url);
+            return added;
+        }
+
+        @Override
+        public int size() {
+            return cache.size();
+        }
+    }
+
+    private final class TrackingQueue extends ForwardingUrlQueue {
+        TrackingQueue(UrlQueue delegate) {
+            super(delegate);
+        }
+
+        // Registered by the cache before the depth is known, so it's filled in here
+        @Override
+        public void enqueue(QueuedUrl url) {
+            outstanding.replace(url.getUrl(), url.getDepth());
+            super.enqueue(url);
+        }
+
+        @Override
+        public void enqueueLinks(QueuedUrl page, Collection<String> added, Collection<String> links) {
+            for (String url : added) outstanding.replace(url, page.getDepth() + 1);
+            super.enqueueLinks(page, added, links);
+        }
+
+        @Override
+        public boolean complete(String url, CrawlOutcome outcome) {
+            boolean done = super.complete(url, outcome);
+            if (done) finished(url);
+            return done;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.conorsheppard.checkpoint;
+
+import com.conorsheppard.io.BinaryFiles;
+import com.conorsheppard.queue.QueuedUrl;
+import lombok.Value;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.conorsheppard.io.BinaryFiles.readVarint;
+import static com.conorsheppard.io.BinaryFiles.writeVarint;
+
+// What an in-memory crawl needs to carry on: the fingerprints of every URL seen and the URLs not yet crawled. On disk
+// the fingerprints are sorted and stored as varint gaps, which for a few million spread over 64 bits is about six bytes
+// each instead of eight, then the pending URLs as their depth and length-prefixed UTF-8
+@Value
+public class CrawlSnapshot {
+    private static final int MAGIC = 0x5357434B;
+    private static final int VERSION = 2;
+
+    long[] fingerprints;
+    List<QueuedUrl> pending;
+
+    public void writeTo(Path file) throws IOException {
+        BinaryFiles.write(file, MAGIC, VERSION, out -> {
+            writeVarint(out, fingerprints.length);
+            long previous = 0;
+            for (long fingerprint : fingerprints) {
+                // Sorted as signed longs, so the gap from the previous one is positive when read as unsigned
+                writeVarint(out, fingerprint - previous);
+                previous = fingerprint;
+            }
+            writeVarint(out, pending.size());
+            for (QueuedUrl url : pending) {
+                writeVarint(out, url.getDepth());
+                byte[] bytes = url.getUrl().getBytes(StandardCharsets.UTF_8);
+                writeVarint(out, bytes.length);
+                out.write(bytes);
+            }
+        });
+    }
+
+    public static CrawlSnapshot readFrom(Path file) throws IOException {
+        return BinaryFiles.read(file, MAGIC, VERSION, "crawl snapshot", in -> {
+            long[] fingerprints = new long[(int) readVarint(in)];
+            long previous = 0;
+            for (int i = 0; i < fingerprints.length; i++) {
+                previous += readVarint(in);
+                fingerprints[i] = previous;
+            }
+            int pendingCount = (int) readVarint(in);
+            List<QueuedUrl> pending = new ArrayList<>(pendingCount);
+            for (int i = 0; i < pendingCount; i++) {
+                int depth = (int) readVarint(in);
+                byte[] bytes = new byte[(int) readVarint(in)];
+                in.readFully(bytes);
+                pending.add(new QueuedUrl(new String(bytes, StandardCharsets.UTF_8), depth));
+            }
+            return new CrawlSnapshot(fingerprints, pending);
+        });
+    }
+}
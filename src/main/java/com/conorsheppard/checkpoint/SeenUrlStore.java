@@ -0,0 +1,84 @@
+package com.conorsheppard.checkpoint;
+
+import com.conorsheppard.cache.InMemoryUrlCache;
+import com.conorsheppard.cache.UrlCache;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// The seen URLs of a crawl whose frontier is on disk, kept next to the frontier's segments so a restarted crawl only
+// follows links it hadn't seen. The frontier carries what's left to crawl, so this is a snapshot of the fingerprints
+// alone, written on an interval and when the crawl ends. A URL first seen after the last write may be queued again
+// after a crash, at worst it's crawled twice
+@Slf4j
+public class SeenUrlStore implements Closeable {
+    private static final String FILE = "seen";
+
+    private final Path file;
+    private final Duration interval;
+    private final InMemoryUrlCache cache;
+    private ScheduledExecutorService snapshots;
+
+    SeenUrlStore(Path file, Duration interval, InMemoryUrlCache cache) {
+        this.file = file;
+        this.interval = interval;
+        this.cache = cache;
+    }
+
+    public static SeenUrlStore open(Path dir, Duration interval) throws IOException {
+        Files.createDirectories(dir);
+        Path file = dir.resolve(FILE);
+        if (!Files.exists(file)) return new SeenUrlStore(file, interval, new InMemoryUrlCache());
+        long[] fingerprints = CrawlSnapshot.readFrom(file).getFingerprints();
+        log.info("Resuming with {} seen URLs from {}", fingerprints.length, file);
+        return new SeenUrlStore(file, interval, new InMemoryUrlCache(fingerprints));
+    }
+
+    public UrlCache urlCache() {
+        return cache;
+    }
+
+    public void start() {
+        snapshots = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "seen-urls");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long millis = interval.toMillis();
+        snapshots.scheduleWithFixedDelay(this::writeQuietly, millis, millis, TimeUnit.MILLISECONDS);
+    }
+
+    public void write() throws IOException {
+        new CrawlSnapshot(cache.fingerprints(), List.of()).writeTo(file);
+    }
+
+    // Stops the background writes and writes a last one
+    @Override
+    public void close() throws IOException {
+        if (snapshots != null) {
+            snapshots.shutdownNow();
+            try {
+                snapshots.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        write();
+    }
+
+    private void writeQuietly() {
+        try {
+            write();
+        } catch (IOException | RuntimeException e) {
+            log.warn("Couldn't save the seen URLs to {}: {}", file, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package com.conorsheppard.cluster;
+
+import com.conorsheppard.queue.UrlQueue;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+// Ends a crawl spread over several nodes sharing a frontier. Every node heartbeats whether it's idle along with what
+// it has added to and finished from the frontier since its last report. The crawl is over once every live node is
+// idle, every URL enqueued anywhere has been finished, and nothing about that has changed for two heartbeats, which
+// catches a node that picked up work after its last idle report. Nodes that stop heartbeating are dropped, their
+// unfinished URLs come back to the others through the queue's redelivery
+@Slf4j
+public class ClusterCoordinator implements CrawlCoordinator {
+    private static final Duration DEFAULT_HEARTBEAT = Duration.ofSeconds(1);
+    private static final Duration DEFAULT_NODE_TIMEOUT = Duration.ofSeconds(15);
+
+    private final ClusterStore store;
+    @Getter
+    private final String nodeId;
+    private final long heartbeatMillis;
+    private final long nodeTimeoutMillis;
+    private final LongSupplier clock;
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong finished = new AtomicLong();
+    private final AtomicLong finishedTotal = new AtomicLong();
+    private volatile boolean idle;
+    private ScheduledExecutorService heartbeats;
+    // The quiet state last seen by isFinished, without heartbeat times, and when it was first seen
+    private ClusterSnapshot quietState;
+    private long quietSince;
+
+    public ClusterCoordinator(ClusterStore store) {
+        this(store, defaultNodeId(), DEFAULT_HEARTBEAT, DEFAULT_NODE_TIMEOUT);
+    }
+
+    public ClusterCoordinator(ClusterStore store, String nodeId, Duration heartbeat, Duration nodeTimeout) {
+        this(store, nodeId, heartbeat, nodeTimeout, System::currentTimeMillis);
+    }
+
+    ClusterCoordinator(ClusterStore store, String nodeId, Duration heartbeat, Duration nodeTimeout, LongSupplier clock) {
+        this.store = store;
+        this.nodeId = nodeId;
+        this.heartbeatMillis = heartbeat.toMillis();
+        this.nodeTimeoutMillis = nodeTimeout.toMillis();
+        this.clock = clock;
+    }
+
+    // pid@hostname, plus a suffix so restarts and crawlers sharing a JVM don't collide
+    private static String defaultNodeId() {
+        return ManagementFactory.getRuntimeMXBean().getName() + "-" + UUID.randomUUID().toString().substring(0, 8);
+    }
+
+    @Override
+    public void start() {
+        heartbeat();
+        heartbeats = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "heartbeat-" + nodeId);
+            thread.setDaemon(true);
+            return thread;
+        });
+        heartbeats.scheduleAtFixedRate(this::heartbeatQuietly, heartbeatMillis, heartbeatMillis, TimeUnit.MILLISECONDS);
+        log.info("Joined crawl cluster as {}", nodeId);
+    }
+
+    @Override
+    public void busy() {
+        idle = false;
+    }
+
+    @Override
+    public void enqueued(int urls) {
+        enqueued.addAndGet(urls);
+    }
+
+    @Override
+    public void finished() {
+        finished.incrementAndGet();
+        finishedTotal.incrementAndGet();
+    }
+
+    // The local queue isn't asked whether it's drained: with a partitioned frontier a node only sees its own share,
+    // the shared counters cover the rest
+    @Override
+    public synchronized boolean isFinished(UrlQueue queue) {
+        idle = true;
+        heartbeat();
+        ClusterSnapshot snapshot = store.snapshot();
+        long now = clock.getAsLong();
+
+        Map<String, NodeState> live = new HashMap<>();
+        boolean allIdle = true;
+        for (Map.Entry<String, NodeState> node : snapshot.getNodes().entrySet()) {
+            if (now - node.getValue().getHeartbeatAt() > nodeTimeoutMillis) {
+                log.warn("Dropping crawler node {}, no heartbeat for {}ms", node.getKey(),
+                        now - node.getValue().getHeartbeatAt());
+                store.remove(node.getKey());
+                continue;
+            }
+            allIdle &= node.getValue().isIdle();
+            live.put(node.getKey(), new NodeState(node.getValue().isIdle(), node.getValue().getFinished(), 0));
+        }
+        // Redelivery after a node dies or a partition moves can finish a URL twice, so finished may overtake
+        if (!allIdle || snapshot.getFinished() < snapshot.getEnqueued()) {
+            quietState = null;
+            return false;
+        }
+
+        ClusterSnapshot state = new ClusterSnapshot(snapshot.getEnqueued(), snapshot.getFinished(), live);
+        if (!state.equals(quietState)) {
+            quietState = state;
+            quietSince = now;
+            return false;
+        }
+        return now - quietSince >= 2 * heartbeatMillis;
+    }
+
+    @Override
+    public void stop() {
+        if (heartbeats != null) {
+            heartbeats.shutdownNow();
+            try {
+                heartbeats.awaitTermination(heartbeatMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        // Flush what's left, the counters outlive the node
+        heartbeat();
+        store.remove(nodeId);
+        log.info("Left crawl cluster as {}", nodeId);
+    }
+
+    // Finished is read before enqueued. A URL's links are counted as enqueued before the URL is counted as finished,
+    // so the counters never show a URL finished without the links it found
+    void heartbeat() {
+        long finishedDelta = finished.getAndSet(0);
+        long enqueuedDelta = enqueued.getAndSet(0);
+        try {
+            store.report(nodeId, new NodeState(idle, finishedTotal.get(), clock.getAsLong()), enqueuedDelta,
+                    finishedDelta);
+        } catch (RuntimeException e) {
+            // Keep the counts for the next report
+            finished.addAndGet(finishedDelta);
+            enqueued.addAndGet(enqueuedDelta);
+            throw e;
+        }
+    }
+
+    private void heartbeatQuietly() {
+        try {
+            heartbeat();
+        } catch (RuntimeException e) {
+            log.warn("Heartbeat from {} failed: {}", nodeId, e.getMessage());
+        }
+    }
+}
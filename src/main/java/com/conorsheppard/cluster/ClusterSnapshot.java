@@ -0,0 +1,13 @@
+package com.conorsheppard.cluster;
+
+import lombok.Value;
+
+import java.util.Map;
+
+@Value
+public class ClusterSnapshot {
+    // URLs put on the frontier and URLs finished, summed over every node that has reported
+    long enqueued;
+    long finished;
+    Map<String, NodeState> nodes;
+}
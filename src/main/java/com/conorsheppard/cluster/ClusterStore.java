@@ -0,0 +1,11 @@
+package com.conorsheppard.cluster;
+
+// Where crawler nodes publish their state and the shared work counters
+public interface ClusterStore {
+    // Adds to the counters and records the node's state in one atomic step
+    void report(String nodeId, NodeState state, long enqueued, long finished);
+
+    ClusterSnapshot snapshot();
+
+    void remove(String nodeId);
+}
@@ -0,0 +1,27 @@
+package com.conorsheppard.cluster;
+
+import com.conorsheppard.queue.UrlQueue;
+
+// Decides when a crawl is over. The crawler reports what it puts on and takes off the shared frontier, and asks
+// once it has nothing in flight and its queue looks empty
+public interface CrawlCoordinator {
+    default void start() {
+    }
+
+    // The dispatcher has just taken a URL off the queue
+    default void busy() {
+    }
+
+    // URLs this node added to the frontier, reported before they're enqueued
+    default void enqueued(int urls) {
+    }
+
+    // A URL this node took off the frontier is done, reported after the links it found were enqueued
+    default void finished() {
+    }
+
+    boolean isFinished(UrlQueue queue);
+
+    default void stop() {
+    }
+}
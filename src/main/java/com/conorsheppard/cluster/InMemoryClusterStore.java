@@ -0,0 +1,28 @@
+package com.conorsheppard.cluster;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// Shared by crawlers in one JVM, a stand-in for Redis when running several nodes locally or in tests
+public class InMemoryClusterStore implements ClusterStore {
+    private final Map<String, NodeState> nodes = new HashMap<>();
+    private long enqueued;
+    private long finished;
+
+    @Override
+    public synchronized void report(String nodeId, NodeState state, long enqueued, long finished) {
+        this.enqueued += enqueued;
+        this.finished += finished;
+        nodes.put(nodeId, state);
+    }
+
+    @Override
+    public synchronized ClusterSnapshot snapshot() {
+        return new ClusterSnapshot(enqueued, finished, Map.copyOf(nodes));
+    }
+
+    @Override
+    public synchronized void remove(String nodeId) {
+        nodes.remove(nodeId);
+    }
+}
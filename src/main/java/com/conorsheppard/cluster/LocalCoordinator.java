@@ -0,0 +1,11 @@
+package com.conorsheppard.cluster;
+
+import com.conorsheppard.queue.UrlQueue;
+
+// A single crawler is finished once its own queue is drained
+public class LocalCoordinator implements CrawlCoordinator {
+    @Override
+    public boolean isFinished(UrlQueue queue) {
+        return queue.isDrained();
+    }
+}
@@ -0,0 +1,20 @@
+package com.conorsheppard.cluster;
+
+import lombok.Value;
+
+@Value
+public class NodeState {
+    boolean idle;
+    // URLs this node has finished over the whole crawl, so any work done between two looks shows up as a change
+    long finished;
+    long heartbeatAt;
+
+    String encode() {
+        return (idle ? "1" : "0") + ":" + finished + ":" + heartbeatAt;
+    }
+
+    static NodeState parse(String encoded) {
+        String[] parts = encoded.split(":");
+        return new NodeState(parts[0].equals("1"), Long.parseLong(parts[1]), Long.parseLong(parts[2]));
+    }
+}
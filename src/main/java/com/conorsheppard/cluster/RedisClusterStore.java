@@ -0,0 +1,55 @@
+package com.conorsheppard.cluster;
+
+import com.conorsheppard.cache.RedisScript;
+import io.lettuce.core.ScriptOutputType;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.api.sync.RedisCommands;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Node states live in one hash and the counters in two plain keys, each read or written by one script so a
+// snapshot never sees a node's state without the counts it flushed alongside it
+public class RedisClusterStore implements ClusterStore {
+    static final String NODES_KEY = "web-crawler-cluster:nodes";
+    static final String ENQUEUED_KEY = "web-crawler-cluster:enqueued";
+    static final String FINISHED_KEY = "web-crawler-cluster:finished";
+    private static final String[] KEYS = {ENQUEUED_KEY, FINISHED_KEY, NODES_KEY};
+    static final RedisScript REPORT = new RedisScript("""
+            redis.call('INCRBY', KEYS[1], ARGV[1])
+            redis.call('INCRBY', KEYS[2], ARGV[2])
+            return redis.call('HSET', KEYS[3], ARGV[3], ARGV[4])
+            """);
+    static final RedisScript SNAPSHOT = new RedisScript("""
+            return {redis.call('GET', KEYS[1]) or '0', redis.call('GET', KEYS[2]) or '0', redis.call('HGETALL', KEYS[3])}
+            """);
+
+    private final RedisCommands<String, String> redis;
+
+    public RedisClusterStore(StatefulRedisConnection<String, String> connection) {
+        this.redis = connection.sync();
+    }
+
+    @Override
+    public void report(String nodeId, NodeState state, long enqueued, long finished) {
+        REPORT.run(redis, ScriptOutputType.INTEGER, KEYS, Long.toString(enqueued), Long.toString(finished), nodeId,
+                state.encode());
+    }
+
+    @Override
+    public ClusterSnapshot snapshot() {
+        List<Object> reply = SNAPSHOT.run(redis, ScriptOutputType.MULTI, KEYS);
+        List<?> fields = (List<?>) reply.get(2);
+        Map<String, NodeState> nodes = new HashMap<>();
+        for (int i = 0; i + 1 < fields.size(); i += 2) {
+            nodes.put((String) fields.get(i), NodeState.parse((String) fields.get(i + 1)));
+        }
+        return new ClusterSnapshot(Long.parseLong((String) reply.get(0)), Long.parseLong((String) reply.get(1)), nodes);
+    }
+
+    @Override
+    public void remove(String nodeId) {
+        redis.hdel(NODES_KEY, nodeId);
+    }
+}
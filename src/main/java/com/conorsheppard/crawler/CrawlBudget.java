@@ -0,0 +1,51 @@
+package com.conorsheppard.crawler;
+
+import com.conorsheppard.queue.QueuedUrl;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+// The depth, page and time limits of a crawl. They're checked where links are found, so a page past them is never
+// fetched: links on a page at the maximum depth aren't followed, and once the page budget is handed out or the
+// time is up no more URLs go on the queue
+class CrawlBudget {
+    private final int maxDepth;
+    private final int maxPages;
+    private final long maxDurationNanos;
+    private final AtomicInteger admitted = new AtomicInteger();
+    private volatile long startedAt = System.nanoTime();
+
+    CrawlBudget(CrawlConfig config) {
+        this.maxDepth = config.getMaxDepth();
+        this.maxPages = config.getMaxPages();
+        this.maxDurationNanos = config.getMaxDuration().toNanos();
+    }
+
+    void start() {
+        startedAt = System.nanoTime();
+    }
+
+    boolean isExpired() {
+        return maxDurationNanos > 0 && System.nanoTime() - startedAt >= maxDurationNanos;
+    }
+
+    boolean followsLinksFrom(QueuedUrl page) {
+        return (maxDepth < 0 || page.getDepth() < maxDepth)
+                && (maxPages <= 0 || admitted.get() < maxPages)
+                && !isExpired();
+    }
+
+    // Up to count pages from what's left of the budget, all of them when it's unbounded. The caller releases any it
+    // doesn't use, so the count never runs past the limit
+    int reserve(int count) {
+        if (maxPages <= 0) return count;
+        while (true) {
+            int current = admitted.get();
+            int granted = Math.min(count, Math.max(0, maxPages - current));
+            if (granted == 0 || admitted.compareAndSet(current, current + granted)) return granted;
+        }
+    }
+
+    void release(int count) {
+        if (maxPages > 0 && count > 0) admitted.addAndGet(-count);
+    }
+}
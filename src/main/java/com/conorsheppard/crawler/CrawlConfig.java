@@ -0,0 +1,72 @@
+package com.conorsheppard.crawler;
+
+import com.conorsheppard.cluster.CrawlCoordinator;
+import com.conorsheppard.cluster.LocalCoordinator;
+import com.conorsheppard.parser.LinkExtractor;
+import com.conorsheppard.parser.StreamingLinkExtractor;
+import com.conorsheppard.url.QueryRules;
+import lombok.Builder;
+import lombok.Value;
+
+import java.time.Duration;
+import java.util.function.Consumer;
+
+@Value
+@Builder(toBuilder = true)
+public class CrawlConfig {
+    // Upper bound on URLs being crawled at once, the dispatcher won't dequeue more than this
+    @Builder.Default
+    int maxInFlight = Runtime.getRuntime().availableProcessors();
+    // Cap on concurrent fetches against a single host, zero or less means unbounded
+    @Builder.Default
+    int maxPerHost = 0;
+    @Builder.Default
+    FetchMode fetchMode = FetchMode.HEAD_THEN_GET;
+    // Used by the single request mode, the HEAD mode always walks the parsed DOM
+    @Builder.Default
+    LinkExtractor linkExtractor = new StreamingLinkExtractor();
+    // How long the dispatcher blocks on the queue before re-checking for quiescence
+    @Builder.Default
+    Duration pollTimeout = Duration.ofMillis(200);
+    @Builder.Default
+    boolean respectRobots = true;
+    // How long a host's robots.txt is trusted before it's fetched again
+    @Builder.Default
+    Duration robotsTtl = Duration.ofHours(24);
+    // How long before a robots.txt that couldn't be fetched is tried again, pages waiting on it are held that long
+    @Builder.Default
+    Duration robotsRetry = Duration.ofMinutes(1);
+    // Links on pages this many links from the start URL aren't followed, negative means unbounded
+    @Builder.Default
+    int maxDepth = -1;
+    // URLs put on the queue, the start URL included, zero or less means unbounded
+    @Builder.Default
+    int maxPages = 0;
+    // Nothing more is queued or dispatched after this long, zero means unbounded
+    @Builder.Default
+    Duration maxDuration = Duration.ZERO;
+    // A path segment appearing this many times makes a link a trap, zero or less turns it off
+    @Builder.Default
+    int maxSegmentRepeats = 3;
+    // Distinct query strings followed per path before new ones are taken for a trap, zero or less turns it off
+    @Builder.Default
+    int maxQueryVariants = 100;
+    // Which query parameters links keep, by default queries are dropped altogether
+    @Builder.Default
+    QueryRules queryRules = QueryRules.NONE;
+    // Links aren't followed from a page whose text is within this many bits of one already crawled by SimHash, up to
+    // 7, negative turns it off
+    @Builder.Default
+    int maxNearDuplicateDistance = -1;
+    // Told about each URL once it has been crawled, the crawler itself doesn't keep them
+    @Builder.Default
+    Consumer<String> crawledUrlListener = url -> {
+    };
+    // Decides when the crawl is over, a cluster coordinator when several crawlers share the queue
+    @Builder.Default
+    CrawlCoordinator coordinator = new LocalCoordinator();
+
+    public static CrawlConfig defaults() {
+        return CrawlConfig.builder().build();
+    }
+}
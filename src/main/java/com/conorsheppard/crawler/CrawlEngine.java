@@ -0,0 +1,23 @@
+package com.conorsheppard.crawler;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public enum CrawlEngine {
+    // A fixed pool of platform threads, concurrency is bounded by the pool size
+    PLATFORM {
+        @Override
+        public ExecutorService newExecutor(int threads) {
+            return Executors.newFixedThreadPool(threads);
+        }
+    },
+    // One virtual thread per URL, concurrency is bounded by the crawler's in-flight and per-host limits
+    VIRTUAL {
+        @Override
+        public ExecutorService newExecutor(int threads) {
+            return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("crawler-", 0).factory());
+        }
+    };
+
+    public abstract ExecutorService newExecutor(int threads);
+}
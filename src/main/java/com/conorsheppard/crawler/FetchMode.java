@@ -0,0 +1,8 @@
+package com.conorsheppard.crawler;
+
+public enum FetchMode {
+    // HEAD every URL to check its content type, then GET the HTML ones
+    HEAD_THEN_GET,
+    // One GET per URL, the body is abandoned as soon as the headers show it isn't HTML
+    SINGLE_REQUEST
+}
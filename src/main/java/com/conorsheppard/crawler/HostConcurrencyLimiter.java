@@ -0,0 +1,36 @@
+package com.conorsheppard.crawler;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+
+class HostConcurrencyLimiter {
+    private final int permitsPerHost;
+    private final Map<String, Semaphore> hosts = new ConcurrentHashMap<>();
+
+    HostConcurrencyLimiter(int permitsPerHost) {
+        this.permitsPerHost = permitsPerHost;
+    }
+
+    void acquire(String host) throws InterruptedException {
+        if (isUnbounded()) return;
+        semaphore(host).acquire();
+    }
+
+    void release(String host) {
+        if (isUnbounded()) return;
+        semaphore(host).release();
+    }
+
+    int available(String host) {
+        return isUnbounded() ? Integer.MAX_VALUE : semaphore(host).availablePermits();
+    }
+
+    private boolean isUnbounded() {
+        return permitsPerHost <= 0;
+    }
+
+    private Semaphore semaphore(String host) {
+        return hosts.computeIfAbsent(host == null ? "" : host, h -> new Semaphore(permitsPerHost));
+    }
+}
@@ -1,92 +1,330 @@
 package com.conorsheppard.crawler;
 
 import com.conorsheppard.cache.UrlCache;
+import com.conorsheppard.cluster.CrawlCoordinator;
+import com.conorsheppard.dedup.NearDuplicateIndex;
+import com.conorsheppard.dedup.SimHash;
+import com.conorsheppard.dedup.VisibleTextInputStream;
+import com.conorsheppard.parser.LinkExtractor;
+import com.conorsheppard.queue.CrawlOutcome;
+import com.conorsheppard.queue.ForwardingUrlQueue;
+import com.conorsheppard.queue.PoliteQueue;
+import com.conorsheppard.queue.QueuedUrl;
 import com.conorsheppard.queue.UrlQueue;
+import com.conorsheppard.robots.RobotsCache;
+import com.conorsheppard.url.CanonicalUrl;
+import com.conorsheppard.url.CrawlTrapDetector;
+import com.conorsheppard.url.QueryRules;
+import com.conorsheppard.url.UrlCanonicalizer;
+import com.conorsheppard.web.ContentTypeCache;
+import com.conorsheppard.web.FetchResult;
+import com.conorsheppard.web.ThrottledException;
 import com.conorsheppard.web.WebClient;
 import lombok.Data;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 import org.jline.terminal.Terminal;
-import org.jsoup.Connection;
+import org.jsoup.HttpStatusException;
 import org.jsoup.nodes.Document;
-import org.jsoup.nodes.Element;
 import org.jsoup.select.Elements;
 
 import java.io.IOException;
-import java.net.URI;
+import java.net.URISyntaxException;
+import java.time.Duration;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
 @Slf4j
 @Data
 public class SimpleWebCrawler {
+    private static final UrlCanonicalizer CANONICALIZER = new UrlCanonicalizer();
+    private static final String[] IGNORED_EXTENSIONS = {
+            ".pdf", ".jpg", ".png", ".gif", ".mp4", ".zip", ".exe", ".docx", ".xlsx", ".pptx", ".mp3"};
+    // A page waiting on a robots.txt that stays unavailable this many retries is skipped like a disallowed one
+    private static final int MAX_ROBOTS_RETRIES = 10;
     private final ExecutorService executor;
     private final UrlQueue urlQueue;
     private final UrlCache urlCache;
-    private final Set<String> visitedUrlSet = Collections.newSetFromMap(new ConcurrentHashMap<>());
-    private static final AtomicInteger activeCrawlers = new AtomicInteger(0);
+    // Every URL reaches the queue once, through the cache, so crawled URLs are counted rather than kept
+    private final AtomicInteger crawledCount = new AtomicInteger(0);
+    // URLs this crawler put on the queue, kept for the progress line so it never has to ask a remote cache its size
+    private final AtomicInteger discoveredCount = new AtomicInteger(0);
+    private final AtomicInteger inFlight = new AtomicInteger(0);
+    // Times each page was held back waiting for its robots.txt, see deferredForRobots
+    private final Map<String, Integer> robotsRetries = new ConcurrentHashMap<>();
+    private final Semaphore dispatchPermits;
+    private final HostConcurrencyLimiter hostLimiter;
+    private final ContentTypeCache contentTypes = new ContentTypeCache();
+    private final CrawlBudget budget;
+    private final CrawlTrapDetector traps;
+    // Applies the config's query rules, the static one only serves normalizeUrl and host lookups
+    private final UrlCanonicalizer canonicalizer;
+    // Null when robots.txt is ignored
+    private final RobotsCache robots;
+    // Null when near-duplicate pages are followed like any other
+    private final NearDuplicateIndex nearDuplicates;
     private final String baseDomain;
     private final Terminal terminal;
     private final WebClient webClient;
+    private final CrawlConfig config;
 
     public SimpleWebCrawler(String startUrl, UrlQueue urlQueue, UrlCache urlCache,
                             ExecutorService executor, Terminal terminal, WebClient webClient) {
+        this(startUrl, urlQueue, urlCache, executor, terminal, webClient, defaultConfig(executor));
+    }
+
+    public SimpleWebCrawler(String startUrl, UrlQueue urlQueue, UrlCache urlCache, ExecutorService executor,
+                            Terminal terminal, WebClient webClient, CrawlConfig config) {
         this.executor = executor;
+        this.config = config;
+        this.dispatchPermits = new Semaphore(config.getMaxInFlight());
+        this.hostLimiter = new HostConcurrencyLimiter(config.getMaxPerHost());
+        this.budget = new CrawlBudget(config);
+        this.traps = new CrawlTrapDetector(config.getMaxSegmentRepeats(), config.getMaxQueryVariants());
+        this.canonicalizer = config.getQueryRules() == QueryRules.NONE ? CANONICALIZER
+                : new UrlCanonicalizer(config.getQueryRules());
         this.urlQueue = urlQueue;
         this.urlCache = urlCache;
         this.baseDomain = getDomain(startUrl);
         this.terminal = terminal;
         this.webClient = webClient;
-        enqueueUrl(normalizeUrl(startUrl));
+        this.nearDuplicates = config.getMaxNearDuplicateDistance() < 0 ? null
+                : new NearDuplicateIndex(config.getMaxNearDuplicateDistance());
+        this.robots = config.isRespectRobots()
+                ? new RobotsCache(webClient, config.getRobotsTtl(), config.getRobotsRetry(),
+                crawlDelayListener(urlQueue))
+                : null;
+        enqueueUrl(normalize(canonicalizer, startUrl));
 
         startProgressBar();
     }
 
+    // Crawl-delay can only be honoured by the politeness frontier, a plain queue has no notion of per-host timing.
+    // It may sit under decorators tracking or timing the queue
+    private static BiConsumer<String, Duration> crawlDelayListener(UrlQueue urlQueue) {
+        if (ForwardingUrlQueue.unwrap(urlQueue) instanceof PoliteQueue politeQueue) return politeQueue::setCrawlDelay;
+        return (host, delay) -> log.debug("Ignoring Crawl-delay of {} for {} without --polite", delay, host);
+    }
+
+    private static CrawlConfig defaultConfig(ExecutorService executor) {
+        return executor instanceof ThreadPoolExecutor pool
+                ? CrawlConfig.builder().maxInFlight(pool.getMaximumPoolSize()).build()
+                : CrawlConfig.defaults();
+    }
+
     public void crawl() {
-        while (!urlQueue.isEmpty() || activeCrawlers.get() > 0) {
-            if (!urlQueue.isEmpty()) {
-                String url = urlQueue.dequeue();
+        long pollMillis = config.getPollTimeout().toMillis();
+        CrawlCoordinator coordinator = config.getCoordinator();
+        coordinator.start();
+        budget.start();
+        try {
+            while (true) {
+                // Only pull another URL once a worker slot is free, so the executor never builds a backlog
+                dispatchPermits.acquire();
+                if (budget.isExpired()) {
+                    log.info("Crawl time budget of {} used up, stopping", config.getMaxDuration());
+                    break;
+                }
+                QueuedUrl url = urlQueue.next(pollMillis, TimeUnit.MILLISECONDS);
                 if (url != null) {
-                    log.debug("submitting URL: {}", url);
+                    log.debug("submitting URL: {}", url.getUrl());
+                    coordinator.busy();
                     submitCrawl(url);
+                } else {
+                    dispatchPermits.release();
+                    if (isQuiescent()) break;
                 }
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Dispatcher interrupted, stopping crawl");
         }
         shutdownAndAwait();
+        coordinator.stop();
     }
 
-    private void submitCrawl(String url) {
-        activeCrawlers.incrementAndGet();
-        executor.submit(() -> {
+    // Workers enqueue their links before leaving the in-flight count, so reading the count first and the
+    // queue second can't miss work that is still being produced. The cheap emptiness estimate goes first so the
+    // coordinator, which may ask a broker or the other nodes, only runs when this node looks finished
+    private boolean isQuiescent() {
+        return inFlight.get() == 0 && urlQueue.isEmpty() && config.getCoordinator().isFinished(urlQueue);
+    }
+
+    private void submitCrawl(QueuedUrl page) {
+        inFlight.incrementAndGet();
+        try {
+            executor.submit(() -> {
+                if (deferredForRobots(page)) return;
+                CrawlOutcome outcome = CrawlOutcome.NONE;
+                try {
+                    outcome = crawl(page);
+                } finally {
+                    finishCrawl(page.getUrl(), outcome);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            finishCrawl(page.getUrl(), CrawlOutcome.NONE);
+            throw e;
+        }
+    }
+
+    // A URL the queue kept to retry, e.g. after being throttled, isn't counted yet as it'll be handed out again.
+    // The slot is always given back, a worker that leaked it would keep the crawl from ever looking finished
+    private void finishCrawl(String url, CrawlOutcome outcome) {
+        try {
+            if (urlQueue.complete(url, outcome)) {
+                crawledCount.incrementAndGet();
+                notifyCrawled(url);
+                config.getCoordinator().finished();
+            }
+        } finally {
+            inFlight.decrementAndGet();
+            dispatchPermits.release();
+        }
+    }
+
+    // A link found while its robots.txt couldn't be fetched is queued anyway, and held back here until the fetch is
+    // retried rather than crawled without knowing the rules. It stays in flight while it waits so the crawl doesn't
+    // end under it, and is only completed on the queue once it's back on it, so a durable queue can't lose it
+    private boolean deferredForRobots(QueuedUrl page) {
+        CanonicalUrl url = robots == null ? null : canonicalizer.canonicalize(page.getUrl());
+        if (url == null || robots.access(url) != RobotsCache.Access.UNAVAILABLE) {
+            robotsRetries.remove(page.getUrl());
+            return false;
+        }
+        int attempts = robotsRetries.merge(page.getUrl(), 1, Integer::sum);
+        if (attempts > MAX_ROBOTS_RETRIES) {
+            robotsRetries.remove(page.getUrl());
+            log.warn("Giving up on {}, its robots.txt was still unavailable after {} tries", page.getUrl(), attempts);
+            return false;
+        }
+        log.debug("Holding {} until its robots.txt can be fetched", page.getUrl());
+        dispatchPermits.release();
+        CompletableFuture.delayedExecutor(config.getRobotsRetry().toMillis(), TimeUnit.MILLISECONDS).execute(() -> {
             try {
-                crawl(url);
+                urlQueue.enqueue(page);
+                urlQueue.complete(page.getUrl(), CrawlOutcome.NONE);
             } finally {
-                activeCrawlers.decrementAndGet();
+                inFlight.decrementAndGet();
             }
         });
+        return true;
     }
 
-    private void crawl(String url) {
-        if (!visitedUrlSet.add(url)) return;
+    private void notifyCrawled(String url) {
+        try {
+            config.getCrawledUrlListener().accept(url);
+        } catch (Exception e) {
+            log.warn("Crawled URL listener failed for {}", url, e);
+        }
+    }
 
-        if (!isHtmlContent(url)) {
-            log.debug("Skipping non-HTML URL: {}", url);
-            return;
+    private CrawlOutcome crawl(QueuedUrl page) {
+        if (!isAllowedByRobots(page.getUrl())) {
+            log.debug("Skipping URL disallowed by robots.txt: {}", page.getUrl());
+            return CrawlOutcome.NONE;
+        }
+        String host = getDomain(page.getUrl());
+        try {
+            hostLimiter.acquire(host);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return CrawlOutcome.NONE;
         }
+        try {
+            return fetchAndEnqueueLinks(page);
+        } finally {
+            hostLimiter.release(host);
+        }
+    }
 
+    private CrawlOutcome fetchAndEnqueueLinks(QueuedUrl page) {
+        if (config.getFetchMode() == FetchMode.SINGLE_REQUEST) {
+            return fetchInSingleRequest(page);
+        }
+
+        String url = page.getUrl();
         try {
+            if (!isHtmlContent(url)) {
+                log.debug("Skipping non-HTML URL: {}", url);
+                return CrawlOutcome.NONE;
+            }
             Document doc = webClient.fetch(url);
-            Elements links = doc.select("a[href]");
-            links.forEach(this::normaliseAndEnqueue);
+            if (budget.followsLinksFrom(page) && !isNearDuplicate(url, doc)) enqueueLinks(page, doc);
+            return CrawlOutcome.of(200);
+        } catch (IOException e) {
+            return failed(url, e);
+        }
+    }
+
+    private CrawlOutcome fetchInSingleRequest(QueuedUrl page) {
+        String url = page.getUrl();
+        if (contentTypes.isKnownNonHtml(url)) {
+            log.debug("Skipping URL matching a non-HTML pattern: {}", url);
+            return CrawlOutcome.NONE;
+        }
+
+        Set<String> links = new LinkedHashSet<>();
+        boolean followsLinks = budget.followsLinksFrom(page);
+        Consumer<String> linkSink = followsLinks ? link -> collectLink(link, links) : link -> {};
+        // Pages whose links won't be followed anyway aren't fingerprinted
+        SimHash text = followsLinks && nearDuplicates != null ? new SimHash() : null;
+        try {
+            FetchResult result = webClient.fetchHtml(url, fingerprinting(text), linkSink);
+            contentTypes.record(url, result.isHtml());
+            if (!result.isHtml()) {
+                log.debug("Skipping non-HTML URL: {}", url);
+            } else if (text != null && nearDuplicates.isDuplicate(text)) {
+                log.debug("Not following links from near-duplicate page: {}", url);
+                links.clear();
+            }
+            return CrawlOutcome.of(result.getStatusCode());
         } catch (IOException e) {
-            log.error("Failed to crawl: {}", url, e);
+            return failed(url, e);
+        } finally {
+            // Links read before a truncated or failed body are still worth keeping
+            enqueueAll(page, links);
         }
     }
 
-    private void normaliseAndEnqueue(Element link) {
-        String nextUrl = normalizeUrl(link.absUrl("href"));
-        if (isValidUrl(nextUrl)) enqueueUrl(nextUrl);
+    // The link extractor reading the body also feeds its text into the page's SimHash
+    private LinkExtractor fingerprinting(SimHash text) {
+        LinkExtractor extractor = config.getLinkExtractor();
+        if (text == null) return extractor;
+        return (body, charset, baseUri, sink) ->
+                extractor.extract(new VisibleTextInputStream(body, text), charset, baseUri, sink);
+    }
+
+    private boolean isNearDuplicate(String url, Document doc) {
+        if (nearDuplicates == null || !nearDuplicates.isDuplicate(SimHash.of(doc.text()))) return false;
+        log.debug("Not following links from near-duplicate page: {}", url);
+        return true;
+    }
+
+    private static CrawlOutcome failed(String url, IOException e) {
+        if (e instanceof ThrottledException throttled) {
+            log.warn("Throttled by {} ({}), retry after {}", url, throttled.getStatusCode(), throttled.getRetryAfter());
+            return CrawlOutcome.of(throttled.getStatusCode(), throttled.getRetryAfter());
+        }
+        log.error("Failed to crawl: {}", url, e);
+        return e instanceof HttpStatusException status ? CrawlOutcome.of(status.getStatusCode()) : CrawlOutcome.NONE;
+    }
+
+    private void enqueueLinks(QueuedUrl page, Document doc) {
+        Elements elements = doc.select("a[href]");
+        Set<String> links = new LinkedHashSet<>();
+        elements.forEach(link -> collectLink(link.absUrl("href"), links));
+        enqueueAll(page, links);
+    }
+
+    // Runs for every link on every page, so the URL is parsed once and the host and path are read off the result.
+    // Links are only collected here, the page's distinct links then go through the cache in one batch
+    private void collectLink(String link, Set<String> links) {
+        CanonicalUrl next = canonicalizer.canonicalize(link);
+        if (isValidUrl(next) && !traps.isTrap(next)) links.add(next.getUrl());
     }
 
     public void startProgressBar() {
@@ -96,8 +334,9 @@ public class SimpleWebCrawler {
     @SneakyThrows
     void writeProgress() {
         while (!executor.isShutdown()) {
-            int scraped = visitedUrlSet.size();
-            int discovered = urlCache.size();
+            int scraped = crawledCount.get();
+            // URLs put back on the queue from a checkpoint weren't discovered by this crawler
+            int discovered = Math.max(discoveredCount.get(), scraped);
             int percentage = (discovered == 0) ? 0 : (scraped * 100) / discovered;
 
             terminal.writer().printf("\r🌍 Crawling: [%s] %d%% (%d/%d URLs)",
@@ -115,14 +354,58 @@ public class SimpleWebCrawler {
 
 
     private void enqueueUrl(String url) {
-        if (urlCache.add(url)) urlQueue.enqueue(url);
+        if (budget.reserve(1) == 0) return;
+        if (!urlCache.add(url)) {
+            budget.release(1);
+            return;
+        }
+        config.getCoordinator().enqueued(1);
+        discoveredCount.incrementAndGet();
+        urlQueue.enqueue(QueuedUrl.seed(url));
+    }
+
+    // More URLs to start from alongside the start URL, such as pages due a revisit. They take from the page budget
+    // and are counted the same way, and any already seen are skipped
+    public void seed(Collection<String> urls) {
+        List<String> added = addWithinBudget(urls);
+        config.getCoordinator().enqueued(added.size());
+        discoveredCount.addAndGet(added.size());
+        added.forEach(url -> urlQueue.enqueue(QueuedUrl.seed(url)));
+    }
+
+    // Checked again as the page may have taken the time or page budget past its limit while it was being fetched
+    private void enqueueAll(QueuedUrl page, Collection<String> urls) {
+        if (urls.isEmpty() || !budget.followsLinksFrom(page)) return;
+        List<String> added = addWithinBudget(urls);
+        config.getCoordinator().enqueued(added.size());
+        discoveredCount.addAndGet(added.size());
+        urlQueue.enqueueLinks(page, added, urls);
     }
 
-    public boolean isHtmlContent(String url) {
+    // URLs past the page budget never reach the cache, it may be shared with other nodes and later runs, and a
+    // checkpoint takes every URL offered to it as pending. Pages are reserved before the cache is asked and the ones
+    // taken by URLs it had already seen are handed back, so near the limit the rest of the links are tried in turn
+    private List<String> addWithinBudget(Collection<String> urls) {
+        List<String> remaining = urls instanceof List<String> list ? list : List.copyOf(urls);
+        List<String> added = new ArrayList<>();
+        while (!remaining.isEmpty()) {
+            int granted = budget.reserve(remaining.size());
+            if (granted == 0) break;
+            List<String> fresh = urlCache.addAll(remaining.subList(0, granted));
+            budget.release(granted - fresh.size());
+            added.addAll(fresh);
+            remaining = remaining.subList(granted, remaining.size());
+        }
+        return added;
+    }
+
+    // Being throttled isn't an answer about the content, it's thrown on so the frontier can back off and retry
+    public boolean isHtmlContent(String url) throws ThrottledException {
         try {
-            Connection.Response response = webClient.head(url);
-            String contentType = response.contentType();
+            String contentType = webClient.head(url).getContentType();
             return contentType != null && contentType.startsWith("text/html");
+        } catch (ThrottledException e) {
+            throw e;
         } catch (IOException e) {
             log.warn("HEAD request failed for: {}, {}", url, e.getMessage());
             return false;
@@ -130,30 +413,40 @@ public class SimpleWebCrawler {
     }
 
     public boolean isValidUrl(String url) {
-        return url.startsWith("http") &&
-                getDomain(url).equals(baseDomain) &&
-                !isIgnoredFile(url);
+        return isValidUrl(canonicalizer.canonicalize(url));
     }
 
-    private boolean isIgnoredFile(String url) {
-        String lowerUrl = url.toLowerCase();
-        return lowerUrl.matches(".*\\.(pdf|jpg|png|gif|mp4|zip|exe|docx|xlsx|pptx|mp3)(\\?.*)?$");
+    private boolean isValidUrl(CanonicalUrl url) {
+        return url != null &&
+                (url.getUrl().startsWith("http://") || url.getUrl().startsWith("https://")) &&
+                url.getHost().equals(baseDomain) &&
+                !url.hasExtension(IGNORED_EXTENSIONS) &&
+                (robots == null || robots.access(url) != RobotsCache.Access.DISALLOWED);
     }
 
+    // Links are let through while robots.txt is unavailable, so the rules are checked again before the fetch
+    private boolean isAllowedByRobots(String url) {
+        CanonicalUrl canonical = robots == null ? null : canonicalizer.canonicalize(url);
+        return canonical == null || robots.isAllowed(canonical);
+    }
+
+    // Null for relative URLs, empty for absolute ones with a malformed authority
     public String getDomain(String url) {
-        try {
-            return new URI(url).getHost();
-        } catch (Exception e) {
-            return "";
-        }
+        CanonicalUrl canonical = CANONICALIZER.canonicalize(url);
+        if (canonical != null) return canonical.getHost();
+        return url.contains("://") ? "" : null;
     }
 
-    @SneakyThrows
+    // Without any query rules, the query is dropped
     public static String normalizeUrl(String url) {
-        URI uri = new URI(url.trim().replace(" ", "%20"));
-        return (uri.getScheme() + "://" + uri.getHost() + uri.getPath())
-                .toLowerCase()
-                .replaceAll("/+$", "");
+        return normalize(CANONICALIZER, url);
+    }
+
+    @SneakyThrows
+    private static String normalize(UrlCanonicalizer canonicalizer, String url) {
+        CanonicalUrl canonical = canonicalizer.canonicalize(url);
+        if (canonical == null) throw new URISyntaxException(url, "Not an absolute URL");
+        return canonical.getUrl();
     }
 
     public void shutdownAndAwait() {
@@ -170,5 +463,8 @@ public class SimpleWebCrawler {
         }
         log.info("Crawling complete.");
         log.info("total valid URLs processed: {}", urlCache.size());
+        if (nearDuplicates != null) {
+            log.info("Links not followed from {} near-duplicate pages", nearDuplicates.duplicates());
+        }
     }
 }
@@ -0,0 +1,92 @@
+package com.conorsheppard.dedup;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Finds a fingerprint within a few bits of one already seen without comparing against every page. The 64 bits are
+// cut into maxDistance + 1 bands and two fingerprints that close must agree on at least one band entirely, so only
+// the fingerprints filed under one of the new fingerprint's band values are compared. Bands stay at least 8 bits wide
+// so a bucket holds a small share of the pages. Checking and adding is one step, two copies of a page fetched at
+// once can't both pass
+public class NearDuplicateIndex {
+    static final int MAX_DISTANCE = 7;
+    // Fewer words than this and a page is mostly template or empty, e.g. a 304 with no body, and isn't fingerprinted
+    static final int MIN_SHINGLES = 8;
+
+    private final int maxDistance;
+    private final int[] bandStart;
+    private final int[] bandWidth;
+    private final List<Map<Long, Bucket>> bands = new ArrayList<>();
+    private int size;
+    private long duplicates;
+
+    public NearDuplicateIndex(int maxDistance) {
+        if (maxDistance < 0 || maxDistance > MAX_DISTANCE) {
+            throw new IllegalArgumentException("Near-duplicate distance must be between 0 and " + MAX_DISTANCE
+                    + " bits but was " + maxDistance);
+        }
+        this.maxDistance = maxDistance;
+        int count = maxDistance + 1;
+        bandStart = new int[count];
+        bandWidth = new int[count];
+        for (int band = 0; band < count; band++) {
+            bandStart[band] = band * Long.SIZE / count;
+            bandWidth[band] = (band + 1) * Long.SIZE / count - bandStart[band];
+            bands.add(new HashMap<>());
+        }
+    }
+
+    public boolean isDuplicate(SimHash page) {
+        return page.shingles() >= MIN_SHINGLES && isDuplicate(page.value());
+    }
+
+    // True if a fingerprint within maxDistance bits is already indexed, otherwise this one is added
+    public synchronized boolean isDuplicate(long fingerprint) {
+        for (int band = 0; band < bands.size(); band++) {
+            Bucket bucket = bands.get(band).get(bandValue(fingerprint, band));
+            if (bucket != null && bucket.containsWithin(fingerprint, maxDistance)) {
+                duplicates++;
+                return true;
+            }
+        }
+        for (int band = 0; band < bands.size(); band++) {
+            bands.get(band).computeIfAbsent(bandValue(fingerprint, band), key -> new Bucket()).add(fingerprint);
+        }
+        size++;
+        return false;
+    }
+
+    private long bandValue(long fingerprint, int band) {
+        int width = bandWidth[band];
+        long value = fingerprint >>> bandStart[band];
+        return width == Long.SIZE ? value : value & ((1L << width) - 1);
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized long duplicates() {
+        return duplicates;
+    }
+
+    private static final class Bucket {
+        private long[] fingerprints = new long[2];
+        private int size;
+
+        void add(long fingerprint) {
+            if (size == fingerprints.length) fingerprints = Arrays.copyOf(fingerprints, size * 2);
+            fingerprints[size++] = fingerprint;
+        }
+
+        boolean containsWithin(long fingerprint, int maxDistance) {
+            for (int i = 0; i < size; i++) {
+                if (SimHash.distance(fingerprints[i], fingerprint) <= maxDistance) return true;
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.conorsheppard.dedup;
+
+// Charikar's SimHash over overlapping three word shingles of a page's text. Every shingle's 64 bit hash votes on each
+// bit of the fingerprint, so pages sharing most of their text end up a few bits apart however the differences are
+// spread, where an exact hash would be thrown by a single timestamp. Text arrives a char at a time, or a byte at a
+// time for the streamed body, and nothing but the current word's hash and the last two are kept
+public class SimHash {
+    static final int SHINGLE_WORDS = 3;
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final int[] votes = new int[Long.SIZE];
+    private final long[] window = new long[SHINGLE_WORDS];
+    private long word = FNV_OFFSET;
+    private boolean inWord;
+    private long words;
+    private int shingles;
+
+    public static SimHash of(CharSequence text) {
+        SimHash simHash = new SimHash();
+        simHash.append(text);
+        return simHash;
+    }
+
+    public static int distance(long a, long b) {
+        return Long.bitCount(a ^ b);
+    }
+
+    public void append(CharSequence text) {
+        for (int i = 0; i < text.length(); i++) accept(text.charAt(i));
+    }
+
+    // ASCII letters and digits make up words, lowercased, and anything past ASCII is taken as part of a word so UTF-8
+    // can be fed a byte at a time. Everything else ends the word
+    public void accept(int c) {
+        if (c >= 0x80 || (c >= '0' && c <= '9') || ((c | 0x20) >= 'a' && (c | 0x20) <= 'z')) {
+            if (c < 0x80) c |= 0x20;
+            word = (word ^ c) * FNV_PRIME;
+            inWord = true;
+        } else if (inWord) {
+            endWord();
+        }
+    }
+
+    private void endWord() {
+        window[(int) (words++ % SHINGLE_WORDS)] = word;
+        word = FNV_OFFSET;
+        inWord = false;
+        if (words < SHINGLE_WORDS) return;
+        // Rotated by position so the same words in another order make a different shingle
+        long shingle = fmix(window[(int) (words % SHINGLE_WORDS)]
+                ^ Long.rotateLeft(window[(int) ((words + 1) % SHINGLE_WORDS)], 21)
+                ^ Long.rotateLeft(window[(int) ((words + 2) % SHINGLE_WORDS)], 42));
+        for (int bit = 0; bit < Long.SIZE; bit++) votes[bit] += ((shingle >>> bit) & 1) == 1 ? 1 : -1;
+        shingles++;
+    }
+
+    public int shingles() {
+        if (inWord) endWord();
+        return shingles;
+    }
+
+    public long value() {
+        if (inWord) endWord();
+        long fingerprint = 0;
+        for (int bit = 0; bit < Long.SIZE; bit++) if (votes[bit] > 0) fingerprint |= 1L << bit;
+        return fingerprint;
+    }
+
+    // MurmurHash3's finalizer, FNV alone leaves the high bits of short words poorly mixed
+    private static long fmix(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+}
@@ -0,0 +1,114 @@
+package com.conorsheppard.dedup;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+// Feeds the text between tags into a SimHash as the link extractor reads the body, so a page is fingerprinted in the
+// same pass that finds its links. Tags, comments and the contents of script and style are left out, otherwise every
+// page on a site would share its template and look alike. Works on the raw bytes like the streaming extractor, so it
+// assumes an ASCII compatible charset
+public class VisibleTextInputStream extends FilterInputStream {
+    private static final byte[][] RAW_TEXT_ELEMENTS = {
+            "script".getBytes(StandardCharsets.US_ASCII), "style".getBytes(StandardCharsets.US_ASCII)};
+    private static final int MAX_NAME = 8;
+
+    private enum State { TEXT, TAG, RAW_TEXT }
+
+    private final SimHash simHash;
+    private State state = State.TEXT;
+    private final byte[] name = new byte[MAX_NAME];
+    private int nameLength;
+    private boolean readingName;
+    private boolean closing;
+    // The element whose end tag closes the raw text, and how much of "</name" has been matched
+    private byte[] rawText;
+    private int matched;
+
+    public VisibleTextInputStream(InputStream in, SimHash simHash) {
+        super(in);
+        this.simHash = simHash;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b >= 0) accept(b);
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int read = super.read(b, off, len);
+        for (int i = off; i < off + read; i++) accept(b[i] & 0xFF);
+        return read;
+    }
+
+    // Bytes read again after a reset would be counted twice, so readers needing a mark buffer above this instead
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    // Skipped bytes would go unseen, so they're read instead
+    @Override
+    public long skip(long n) throws IOException {
+        byte[] discard = new byte[(int) Math.min(n, 8192)];
+        int read = read(discard, 0, discard.length);
+        return Math.max(read, 0);
+    }
+
+    private void accept(int b) {
+        switch (state) {
+            case TEXT -> {
+                if (b == '<') {
+                    // A tag ends a word the same as a space, block elements mostly start new ones anyway
+                    simHash.accept(' ');
+                    state = State.TAG;
+                    nameLength = 0;
+                    readingName = true;
+                    closing = false;
+                } else {
+                    simHash.accept(b);
+                }
+            }
+            case TAG -> {
+                if (b == '>') {
+                    rawText = closing ? null : rawTextElement();
+                    matched = 0;
+                    state = rawText == null ? State.TEXT : State.RAW_TEXT;
+                } else if (readingName) {
+                    if (b == '/' && nameLength == 0 && !closing) {
+                        closing = true;
+                    } else if (((b | 0x20) >= 'a' && (b | 0x20) <= 'z') && nameLength < MAX_NAME) {
+                        name[nameLength++] = (byte) (b | 0x20);
+                    } else {
+                        readingName = false;
+                    }
+                }
+            }
+            case RAW_TEXT -> {
+                int expected = matched == 0 ? '<' : matched == 1 ? '/' : rawText[matched - 2];
+                if ((matched < 2 ? b : b | 0x20) == expected) matched++;
+                else matched = b == '<' ? 1 : 0;
+                if (matched == rawText.length + 2) {
+                    // The rest of the end tag is read as an ordinary tag
+                    state = State.TAG;
+                    readingName = false;
+                    closing = true;
+                }
+            }
+        }
+    }
+
+    private byte[] rawTextElement() {
+        for (byte[] element : RAW_TEXT_ELEMENTS) {
+            if (element.length != nameLength) continue;
+            boolean same = true;
+            for (int i = 0; i < nameLength && same; i++) same = element[i] == name[i];
+            if (same) return element;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,70 @@
+package com.conorsheppard.io;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+// The file layout shared by the snapshot, history and page cache index: a magic number and version, the body, then a
+// CRC32 of everything before it. Written to a temporary file and moved into place so a crash mid-write leaves the
+// previous file intact. Counts and lengths in the bodies are varints, seven bits a byte, low bits first
+public class BinaryFiles {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    public static void write(Path file, int magic, int version, BodyWriter body) throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        CRC32 crc = new CRC32();
+        try (DataOutputStream out = new DataOutputStream(new CheckedOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(tmp), BUFFER_SIZE), crc))) {
+            out.writeInt(magic);
+            out.writeInt(version);
+            body.write(out);
+            out.writeInt((int) crc.getValue());
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // What names the file in errors, e.g. "crawl snapshot"
+    public static <T> T read(Path file, int magic, int version, String what, BodyReader<T> body) throws IOException {
+        CRC32 crc = new CRC32();
+        try (DataInputStream in = new DataInputStream(new CheckedInputStream(
+                new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE), crc))) {
+            if (in.readInt() != magic) throw new IOException(file + " isn't a " + what);
+            int found = in.readInt();
+            if (found != version) throw new IOException("Unsupported " + what + " version " + found);
+            T value = body.read(in);
+            int expected = (int) crc.getValue();
+            if (in.readInt() != expected) throw new IOException(file + " is corrupt, checksum mismatch");
+            return value;
+        }
+    }
+
+    public static void writeVarint(DataOutput out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    public static long readVarint(DataInput in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    public interface BodyWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    public interface BodyReader<T> {
+        T read(DataInputStream in) throws IOException;
+    }
+}
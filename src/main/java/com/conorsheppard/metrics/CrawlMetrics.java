@@ -0,0 +1,166 @@
+package com.conorsheppard.metrics;
+
+import com.conorsheppard.cache.BloomFilteredUrlCache;
+import lombok.Getter;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+// Where a crawl spends its time. Every stage gets a latency histogram and the fetches are counted overall and per
+// host, all on LongAdders so the workers recording them never contend. Rates are worked out at report time from the
+// totals and the time since the crawl started
+public class CrawlMetrics {
+    private final Map<Stage, LatencyHistogram> latencies = new EnumMap<>(Stage.class);
+    private final LongAdder pages = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final Map<String, LongAdder> errors = new ConcurrentHashMap<>();
+    private final Map<String, HostStats> hosts = new ConcurrentHashMap<>();
+    private final LongSupplier nanoClock;
+    private final long startedAt;
+    // Read at report time from the cache's own counters, null without --bloom-filter
+    private volatile Supplier<BloomFilteredUrlCache.Stats> bloomFilter;
+
+    public CrawlMetrics() {
+        this(System::nanoTime);
+    }
+
+    CrawlMetrics(LongSupplier nanoClock) {
+        this.nanoClock = nanoClock;
+        this.startedAt = nanoClock.getAsLong();
+        for (Stage stage : Stage.values()) latencies.put(stage, new LatencyHistogram());
+    }
+
+    public void record(Stage stage, long nanos) {
+        latencies.get(stage).record(nanos);
+    }
+
+    // A HEAD or GET against a host, whatever came back
+    public void request(Stage stage, String host, long nanos) {
+        record(stage, nanos);
+        HostStats stats = host(host);
+        stats.requests.increment();
+        stats.requestNanos.add(nanos);
+    }
+
+    public void pageFetched(String host) {
+        pages.increment();
+        host(host).pages.increment();
+    }
+
+    public void bytesRead(String host, long count) {
+        bytes.add(count);
+        host(host).bytes.add(count);
+    }
+
+    public void failed(String host, String type) {
+        errors.computeIfAbsent(type, key -> new LongAdder()).increment();
+        host(host).errors.increment();
+    }
+
+    public void bloomFilter(Supplier<BloomFilteredUrlCache.Stats> stats) {
+        bloomFilter = stats;
+    }
+
+    public BloomFilteredUrlCache.Stats bloomFilterStats() {
+        Supplier<BloomFilteredUrlCache.Stats> stats = bloomFilter;
+        return stats == null ? null : stats.get();
+    }
+
+    public LatencyHistogram latency(Stage stage) {
+        return latencies.get(stage);
+    }
+
+    public long pages() {
+        return pages.sum();
+    }
+
+    public long bytes() {
+        return bytes.sum();
+    }
+
+    public Map<String, Long> errors() {
+        Map<String, Long> counts = new TreeMap<>();
+        errors.forEach((type, count) -> counts.put(type, count.sum()));
+        return counts;
+    }
+
+    public Map<String, HostStats> hosts() {
+        return new TreeMap<>(hosts);
+    }
+
+    public double elapsedSeconds() {
+        return (nanoClock.getAsLong() - startedAt) / (double) TimeUnit.SECONDS.toNanos(1);
+    }
+
+    public double pagesPerSecond() {
+        return perSecond(pages());
+    }
+
+    public double bytesPerSecond() {
+        return perSecond(bytes());
+    }
+
+    private double perSecond(long total) {
+        double seconds = elapsedSeconds();
+        return seconds <= 0 ? 0 : total / seconds;
+    }
+
+    public String prometheus() {
+        return MetricsFormat.prometheus(this);
+    }
+
+    public String jsonSummary() {
+        return MetricsFormat.json(this);
+    }
+
+    public String summary() {
+        LatencyHistogram get = latency(Stage.GET);
+        return String.format("Fetched %,d pages in %.1fs (%.1f/s), %,.1f MB (%.2f MB/s), %,d errors, GET p50 %.1fms "
+                        + "p99 %.1fms", pages(), elapsedSeconds(), pagesPerSecond(), bytes() / (1024.0 * 1024.0),
+                bytesPerSecond() / (1024.0 * 1024.0), errors().values().stream().mapToLong(Long::longValue).sum(),
+                millis(get.percentileNanos(0.5)), millis(get.percentileNanos(0.99)));
+    }
+
+    static double millis(double nanos) {
+        return nanos / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    private HostStats host(String host) {
+        return hosts.computeIfAbsent(host == null ? "" : host, key -> new HostStats());
+    }
+
+    public enum Stage {
+        HEAD, GET,
+        // Reading and extracting links from a streamed body in single request mode, also counted in the GET
+        PARSE,
+        // Checking links against the URL cache
+        DEDUP,
+        ENQUEUE,
+        // Only URLs actually handed out, so it includes time spent waiting for one to arrive
+        DEQUEUE;
+
+        public String label() {
+            return name().toLowerCase();
+        }
+    }
+
+    @Getter
+    public static class HostStats {
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder requestNanos = new LongAdder();
+        private final LongAdder pages = new LongAdder();
+        private final LongAdder bytes = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+
+        public double meanRequestNanos() {
+            long count = requests.sum();
+            return count == 0 ? 0 : (double) requestNanos.sum() / count;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.conorsheppard.metrics;
+
+import com.conorsheppard.cache.UrlCache;
+import com.conorsheppard.metrics.CrawlMetrics.Stage;
+
+import java.util.Collection;
+import java.util.List;
+
+// Times every lookup against the cache as dedup. size() isn't timed, it's not on the crawl path
+public class InstrumentedUrlCache implements UrlCache {
+    private final UrlCache delegate;
+    private final CrawlMetrics metrics;
+
+    public InstrumentedUrlCache(UrlCache delegate, CrawlMetrics metrics) {
+        this.delegate = delegate;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public boolean contains(String url) {
+        long start = System.nanoTime();
+        try {
+            return delegate.contains(url);
+        } finally {
+            metrics.record(Stage.DEDUP, System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public boolean add(String url) {
+        long start = System.nanoTime();
+        try {
+            return delegate.add(url);
+        } finally {
+            metrics.record(Stage.DEDUP, System.nanoTime() - start);
+        }
+    }
+
+    // A page's links in one call, so this is the time per page rather than per link
+    @Override
+    public List<String> addAll(Collection<String> urls) {
+        long start = System.nanoTime();
+        try {
+            return delegate.addAll(urls);
+        } finally {
+            metrics.record(Stage.DEDUP, System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public int size() {
+        return delegate.size();
+    }
+}
@@ -0,0 +1,57 @@
+package com.conorsheppard.metrics;
+
+import com.conorsheppard.metrics.CrawlMetrics.Stage;
+import com.conorsheppard.queue.ForwardingUrlQueue;
+import com.conorsheppard.queue.QueuedUrl;
+import com.conorsheppard.queue.UrlQueue;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+// Times enqueues, a page's links counting as one, and dequeues that hand out a URL. Polls that time out empty are
+// the dispatcher idling rather than the queue being slow, so they aren't recorded
+public class InstrumentedUrlQueue extends ForwardingUrlQueue {
+    private final CrawlMetrics metrics;
+
+    public InstrumentedUrlQueue(UrlQueue delegate, CrawlMetrics metrics) {
+        super(delegate);
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void enqueue(QueuedUrl url) {
+        long start = System.nanoTime();
+        try {
+            super.enqueue(url);
+        } finally {
+            metrics.record(Stage.ENQUEUE, System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void enqueueLinks(QueuedUrl page, Collection<String> added, Collection<String> links) {
+        long start = System.nanoTime();
+        try {
+            super.enqueueLinks(page, added, links);
+        } finally {
+            metrics.record(Stage.ENQUEUE, System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public QueuedUrl next() {
+        long start = System.nanoTime();
+        return handedOut(super.next(), start);
+    }
+
+    @Override
+    public QueuedUrl next(long timeout, TimeUnit unit) throws InterruptedException {
+        long start = System.nanoTime();
+        return handedOut(super.next(timeout, unit), start);
+    }
+
+    private QueuedUrl handedOut(QueuedUrl url, long start) {
+        if (url != null) metrics.record(Stage.DEQUEUE, System.nanoTime() - start);
+        return url;
+    }
+}
@@ -0,0 +1,145 @@
+package com.conorsheppard.metrics;
+
+import com.conorsheppard.metrics.CrawlMetrics.Stage;
+import com.conorsheppard.parser.LinkExtractor;
+import com.conorsheppard.queue.PoliteQueue;
+import com.conorsheppard.web.FetchResult;
+import com.conorsheppard.web.HeadResponse;
+import com.conorsheppard.web.ThrottledException;
+import com.conorsheppard.web.Validators;
+import com.conorsheppard.web.WebClient;
+import org.jsoup.HttpStatusException;
+import org.jsoup.nodes.Document;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.function.Consumer;
+
+// Times requests and counts pages, bytes and failures per host. In single request mode the extractor is wrapped so
+// reading and parsing the body is timed on its own and its bytes are counted as they stream past. A page fetched
+// whole by fetch() is parsed inside the client, so its bytes aren't seen. robots.txt fetches go straight through,
+// one a day per host would only skew the page latencies
+public class InstrumentedWebClient implements WebClient {
+    private final WebClient delegate;
+    private final CrawlMetrics metrics;
+
+    public InstrumentedWebClient(WebClient delegate, CrawlMetrics metrics) {
+        this.delegate = delegate;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public Document fetch(String url) throws IOException {
+        String host = PoliteQueue.hostOf(url);
+        long start = System.nanoTime();
+        try {
+            Document document = delegate.fetch(url);
+            metrics.pageFetched(host);
+            return document;
+        } catch (IOException e) {
+            metrics.failed(host, errorType(e));
+            throw e;
+        } finally {
+            metrics.request(Stage.GET, host, System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public HeadResponse head(String url) throws IOException {
+        String host = PoliteQueue.hostOf(url);
+        long start = System.nanoTime();
+        try {
+            return delegate.head(url);
+        } catch (IOException e) {
+            metrics.failed(host, errorType(e));
+            throw e;
+        } finally {
+            metrics.request(Stage.HEAD, host, System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public FetchResult fetchHtml(String url, LinkExtractor extractor, Consumer<String> links) throws IOException {
+        return timedFetch(url, timed -> delegate.fetchHtml(url, timed, links), extractor);
+    }
+
+    @Override
+    public FetchResult fetchHtml(String url, Validators validators, LinkExtractor extractor, Consumer<String> links)
+            throws IOException {
+        return timedFetch(url, timed -> delegate.fetchHtml(url, validators, timed, links), extractor);
+    }
+
+    private FetchResult timedFetch(String url, Fetch fetch, LinkExtractor extractor) throws IOException {
+        String host = PoliteQueue.hostOf(url);
+        long start = System.nanoTime();
+        try {
+            FetchResult result = fetch.with(timed(host, extractor));
+            if (result.isHtml()) metrics.pageFetched(host);
+            return result;
+        } catch (IOException e) {
+            metrics.failed(host, errorType(e));
+            throw e;
+        } finally {
+            metrics.request(Stage.GET, host, System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public String fetchText(String url, int maxBytes) throws IOException {
+        return delegate.fetchText(url, maxBytes);
+    }
+
+    private LinkExtractor timed(String host, LinkExtractor extractor) {
+        return (body, charset, baseUri, sink) -> {
+            CountingInputStream counted = new CountingInputStream(body);
+            long start = System.nanoTime();
+            try {
+                extractor.extract(counted, charset, baseUri, sink);
+            } finally {
+                metrics.record(Stage.PARSE, System.nanoTime() - start);
+                metrics.bytesRead(host, counted.count);
+            }
+        };
+    }
+
+    // HTTP errors by status, throttling apart as it's the server asking for less, anything else by exception
+    static String errorType(IOException e) {
+        if (e instanceof ThrottledException throttled) return "throttled_" + throttled.getStatusCode();
+        if (e instanceof HttpStatusException status) return "http_" + status.getStatusCode();
+        return e.getClass().getSimpleName();
+    }
+
+    private interface Fetch {
+        FetchResult with(LinkExtractor extractor) throws IOException;
+    }
+
+    private static final class CountingInputStream extends FilterInputStream {
+        private long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) count++;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0) count += read;
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
+}
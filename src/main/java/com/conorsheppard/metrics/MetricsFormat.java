@@ -0,0 +1,177 @@
+package com.conorsheppard.metrics;
+
+import com.conorsheppard.cache.BloomFilteredUrlCache;
+import com.conorsheppard.metrics.CrawlMetrics.HostStats;
+import com.conorsheppard.metrics.CrawlMetrics.Stage;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.Map;
+import java.util.function.ToDoubleFunction;
+
+// The Prometheus text exposition format for scraping while a crawl runs, and a JSON summary for the end of it.
+// Both are small enough to write by hand rather than pull in a client library or a JSON mapper
+final class MetricsFormat {
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+    private static final double NANOS_PER_SECOND = 1e9;
+    private static final MathContext SIGNIFICANT_DIGITS = new MathContext(6);
+
+    private MetricsFormat() {
+    }
+
+    static String prometheus(CrawlMetrics metrics) {
+        StringBuilder out = new StringBuilder(4096);
+        header(out, "crawler_stage_latency_seconds", "summary", "Time spent in each crawl stage");
+        for (Stage stage : Stage.values()) {
+            LatencyHistogram latency = metrics.latency(stage);
+            String label = "stage=\"" + stage.label() + "\"";
+            for (double quantile : QUANTILES) {
+                sample(out, "crawler_stage_latency_seconds", label + ",quantile=\"" + quantile + "\"",
+                        latency.percentileNanos(quantile) / NANOS_PER_SECOND);
+            }
+            sample(out, "crawler_stage_latency_seconds_sum", label, latency.totalNanos() / NANOS_PER_SECOND);
+            sample(out, "crawler_stage_latency_seconds_count", label, latency.count());
+        }
+        header(out, "crawler_stage_latency_seconds_max", "gauge", "Slowest time seen in each crawl stage");
+        for (Stage stage : Stage.values()) {
+            sample(out, "crawler_stage_latency_seconds_max", "stage=\"" + stage.label() + "\"",
+                    metrics.latency(stage).maxNanos() / NANOS_PER_SECOND);
+        }
+
+        header(out, "crawler_pages_total", "counter", "HTML pages fetched");
+        sample(out, "crawler_pages_total", null, metrics.pages());
+        header(out, "crawler_bytes_total", "counter", "Body bytes read from HTML pages");
+        sample(out, "crawler_bytes_total", null, metrics.bytes());
+        header(out, "crawler_errors_total", "counter", "Failed fetches by type");
+        metrics.errors().forEach((type, count) ->
+                sample(out, "crawler_errors_total", "type=\"" + escape(type) + "\"", count));
+        header(out, "crawler_uptime_seconds", "gauge", "Time since the crawl started");
+        sample(out, "crawler_uptime_seconds", null, metrics.elapsedSeconds());
+
+        BloomFilteredUrlCache.Stats bloom = metrics.bloomFilterStats();
+        if (bloom != null) {
+            header(out, "crawler_bloom_lookups_total", "counter", "URL cache lookups checked against the Bloom filter");
+            sample(out, "crawler_bloom_lookups_total", null, bloom.getLookups());
+            header(out, "crawler_bloom_local_hits_total", "counter", "Lookups the Bloom filter answered locally");
+            sample(out, "crawler_bloom_local_hits_total", null, bloom.getLocalHits());
+            header(out, "crawler_bloom_hit_ratio", "gauge", "Share of lookups answered without a round-trip");
+            sample(out, "crawler_bloom_hit_ratio", null, bloom.hitRatio());
+        }
+
+        Map<String, HostStats> hosts = metrics.hosts();
+        hostCounter(out, hosts, "crawler_host_requests_total", "Requests sent to each host",
+                stats -> stats.getRequests().sum());
+        hostCounter(out, hosts, "crawler_host_request_seconds_total", "Time spent on requests to each host",
+                stats -> stats.getRequestNanos().sum() / NANOS_PER_SECOND);
+        hostCounter(out, hosts, "crawler_host_pages_total", "HTML pages fetched from each host",
+                stats -> stats.getPages().sum());
+        hostCounter(out, hosts, "crawler_host_bytes_total", "Body bytes read from each host",
+                stats -> stats.getBytes().sum());
+        hostCounter(out, hosts, "crawler_host_errors_total", "Failed fetches from each host",
+                stats -> stats.getErrors().sum());
+        return out.toString();
+    }
+
+    private static void hostCounter(StringBuilder out, Map<String, HostStats> hosts, String name, String help,
+                                    ToDoubleFunction<HostStats> value) {
+        header(out, name, "counter", help);
+        hosts.forEach((host, stats) -> sample(out, name, "host=\"" + escape(host) + "\"", value.applyAsDouble(stats)));
+    }
+
+    static String json(CrawlMetrics metrics) {
+        StringBuilder out = new StringBuilder(1024);
+        out.append('{');
+        field(out, "elapsedSeconds", metrics.elapsedSeconds()).append(',');
+        field(out, "pages", metrics.pages()).append(',');
+        field(out, "pagesPerSecond", metrics.pagesPerSecond()).append(',');
+        field(out, "bytes", metrics.bytes()).append(',');
+        field(out, "bytesPerSecond", metrics.bytesPerSecond()).append(',');
+
+        string(out, "errors").append(":{");
+        String separator = "";
+        for (Map.Entry<String, Long> error : metrics.errors().entrySet()) {
+            field(out.append(separator), error.getKey(), error.getValue());
+            separator = ",";
+        }
+
+        string(out.append("},"), "stages").append(":{");
+        separator = "";
+        for (Stage stage : Stage.values()) {
+            LatencyHistogram latency = metrics.latency(stage);
+            string(out.append(separator), stage.label()).append(":{");
+            field(out, "count", latency.count()).append(',');
+            field(out, "meanMillis", CrawlMetrics.millis(latency.meanNanos())).append(',');
+            field(out, "p50Millis", CrawlMetrics.millis(latency.percentileNanos(0.5))).append(',');
+            field(out, "p90Millis", CrawlMetrics.millis(latency.percentileNanos(0.9))).append(',');
+            field(out, "p99Millis", CrawlMetrics.millis(latency.percentileNanos(0.99))).append(',');
+            field(out, "maxMillis", CrawlMetrics.millis(latency.maxNanos())).append('}');
+            separator = ",";
+        }
+
+        string(out.append("},"), "hosts").append(":{");
+        separator = "";
+        for (Map.Entry<String, HostStats> host : metrics.hosts().entrySet()) {
+            HostStats stats = host.getValue();
+            string(out.append(separator), host.getKey()).append(":{");
+            field(out, "requests", stats.getRequests().sum()).append(',');
+            field(out, "meanRequestMillis", CrawlMetrics.millis(stats.meanRequestNanos())).append(',');
+            field(out, "pages", stats.getPages().sum()).append(',');
+            field(out, "bytes", stats.getBytes().sum()).append(',');
+            field(out, "errors", stats.getErrors().sum()).append('}');
+            separator = ",";
+        }
+        out.append('}');
+
+        BloomFilteredUrlCache.Stats bloom = metrics.bloomFilterStats();
+        if (bloom != null) {
+            string(out.append(','), "bloomFilter").append(":{");
+            field(out, "lookups", bloom.getLookups()).append(',');
+            field(out, "localHits", bloom.getLocalHits()).append(',');
+            field(out, "hitRatio", bloom.hitRatio()).append('}');
+        }
+        return out.append('}').toString();
+    }
+
+    private static void header(StringBuilder out, String name, String type, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void sample(StringBuilder out, String name, String labels, double value) {
+        out.append(name);
+        if (labels != null) out.append('{').append(labels).append('}');
+        out.append(' ').append(number(value)).append('\n');
+    }
+
+    // Label values escape backslashes, quotes and newlines, the same set JSON strings need here
+    private static String escape(String value) {
+        StringBuilder escaped = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\' -> escaped.append("\\\\");
+                case '"' -> escaped.append("\\\"");
+                case '\n' -> escaped.append("\\n");
+                default -> {
+                    if (c < 0x20) escaped.append(String.format("\\u%04x", (int) c));
+                    else escaped.append(c);
+                }
+            }
+        }
+        return escaped.toString();
+    }
+
+    private static StringBuilder string(StringBuilder out, String value) {
+        return out.append('"').append(escape(value)).append('"');
+    }
+
+    private static StringBuilder field(StringBuilder out, String name, double value) {
+        return string(out, name).append(':').append(number(value));
+    }
+
+    // Six significant digits, whole numbers without a trailing .0, and never a locale's decimal comma
+    private static String number(double value) {
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) return Long.toString((long) value);
+        return BigDecimal.valueOf(value).round(SIGNIFICANT_DIGITS).stripTrailingZeros().toString();
+    }
+}
@@ -0,0 +1,24 @@
+package com.conorsheppard.parser;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.function.Consumer;
+
+// Builds the full Jsoup DOM and selects the anchors from it
+public class DomLinkExtractor implements LinkExtractor {
+
+    @Override
+    public void extract(InputStream body, String charset, String baseUri, Consumer<String> sink) throws IOException {
+        extract(Jsoup.parse(body, charset, baseUri), sink);
+    }
+
+    public void extract(Document document, Consumer<String> sink) {
+        for (Element link : document.select("a[href]")) {
+            sink.accept(link.absUrl("href"));
+        }
+    }
+}
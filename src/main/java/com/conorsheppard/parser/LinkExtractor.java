@@ -0,0 +1,10 @@
+package com.conorsheppard.parser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.function.Consumer;
+
+public interface LinkExtractor {
+    // Reads an HTML body and passes every <a href> to the sink as an absolute URL, charset may be null if unknown
+    void extract(InputStream body, String charset, String baseUri, Consumer<String> sink) throws IOException;
+}
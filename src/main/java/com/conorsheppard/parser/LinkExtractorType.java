@@ -0,0 +1,18 @@
+package com.conorsheppard.parser;
+
+public enum LinkExtractorType {
+    DOM {
+        @Override
+        public LinkExtractor create() {
+            return new DomLinkExtractor();
+        }
+    },
+    STREAMING {
+        @Override
+        public LinkExtractor create() {
+            return new StreamingLinkExtractor();
+        }
+    };
+
+    public abstract LinkExtractor create();
+}
@@ -0,0 +1,318 @@
+package com.conorsheppard.parser;
+
+import org.jsoup.internal.StringUtil;
+import org.jsoup.parser.Parser;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+// Tokenizes the raw bytes of an HTML body looking only at tags, never building a DOM. Memory use is a fixed read
+// buffer plus one attribute value capped at MAX_URL_BYTES, so it doesn't grow with the page. Charsets that
+// aren't ASCII compatible (UTF-16, UTF-32) fall back to the DOM extractor.
+public class StreamingLinkExtractor implements LinkExtractor {
+    static final int MAX_URL_BYTES = 8 * 1024;
+    private static final int BUFFER_SIZE = 8 * 1024;
+    private static final byte[] ASCII_PROBE = "<a href=\"/\">".getBytes(StandardCharsets.US_ASCII);
+    private final DomLinkExtractor fallback = new DomLinkExtractor();
+
+    @Override
+    public void extract(InputStream body, String charset, String baseUri, Consumer<String> sink) throws IOException {
+        InputStream in = body.markSupported() ? body : new BufferedInputStream(body, BUFFER_SIZE);
+        Charset declared = lookup(charset);
+        if (hasWideBom(in) || (declared != null && !isAsciiCompatible(declared))) {
+            fallback.extract(in, charset, baseUri, sink);
+            return;
+        }
+        new Tokenizer(in, declared, baseUri, sink).run();
+    }
+
+    private static Charset lookup(String charset) {
+        if (charset == null || charset.isBlank()) return null;
+        try {
+            return Charset.forName(charset.trim());
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static boolean isAsciiCompatible(Charset charset) {
+        return charset.canEncode() && Arrays.equals(ASCII_PROBE, new String(ASCII_PROBE,
+                StandardCharsets.US_ASCII).getBytes(charset));
+    }
+
+    private static boolean hasWideBom(InputStream in) throws IOException {
+        in.mark(2);
+        int first = in.read();
+        int second = in.read();
+        in.reset();
+        return (first == 0xFE && second == 0xFF) || (first == 0xFF && second == 0xFE);
+    }
+
+    private enum Tag { A, BASE, META, RAW_TEXT, OTHER }
+
+    private static final class Tokenizer {
+        private final InputStream in;
+        private final Consumer<String> sink;
+        private final byte[] buffer = new byte[BUFFER_SIZE];
+        private final byte[] value = new byte[MAX_URL_BYTES];
+        private final char[] name = new char[16];
+        private final char[] attribute = new char[16];
+        private int pos;
+        private int limit;
+        private int valueLength;
+        private boolean valueOverflow;
+        private Charset charset;
+        private boolean charsetDeclared;
+        private String base;
+        private boolean baseSeen;
+
+        private Tokenizer(InputStream in, Charset charset, String baseUri, Consumer<String> sink) {
+            this.in = in;
+            this.charset = charset == null ? StandardCharsets.UTF_8 : charset;
+            this.charsetDeclared = charset != null;
+            this.base = baseUri;
+            this.sink = sink;
+        }
+
+        void run() throws IOException {
+            int c;
+            while ((c = read()) != -1) {
+                if (c == '<') markup();
+            }
+        }
+
+        private void markup() throws IOException {
+            int c = read();
+            while (c == '<') c = read();
+            if (c == '!') {
+                int first = read();
+                if (first == '>') return;
+                int second = read();
+                if (first == '-' && second == '-') {
+                    skipComment();
+                } else if (second != '>') {
+                    skipPast('>');
+                }
+            } else if (c == '/' || c == '?') {
+                skipPast('>');
+            } else if (isAsciiLetter(c)) {
+                startTag(c);
+            }
+        }
+
+        private void startTag(int first) throws IOException {
+            int nameLength = readName(first, name);
+            Tag tag = classify(name, nameLength);
+            String rawTextName = tag == Tag.RAW_TEXT ? new String(name, 0, nameLength) : null;
+            boolean selfClosing = false;
+
+            while (true) {
+                int c = skipWhitespace();
+                if (c == -1) return;
+                if (c == '>') break;
+                if (c == '/') {
+                    selfClosing = true;
+                    continue;
+                }
+                selfClosing = false;
+                int attributeLength = readName(c, attribute);
+                boolean capture = isCaptured(tag, attribute, attributeLength);
+                c = skipWhitespace();
+                if (c != '=') {
+                    unread(c);
+                    continue;
+                }
+                if (!readValue(capture)) return;
+                if (!capture || valueOverflow) continue;
+
+                if (tag == Tag.A) {
+                    emit();
+                } else if (tag == Tag.BASE && !baseSeen) {
+                    baseSeen = true;
+                    String href = decodeValue();
+                    if (!href.isEmpty()) base = StringUtil.resolve(base, href);
+                } else if (tag == Tag.META) {
+                    String metaCharset = charsetFrom(decodeValue());
+                    if (metaCharset != null) useCharset(metaCharset);
+                }
+            }
+            if (rawTextName != null && !selfClosing) skipRawText(rawTextName);
+        }
+
+        private void emit() {
+            sink.accept(StringUtil.resolve(base, decodeValue()));
+        }
+
+        private String decodeValue() {
+            String decoded = new String(value, 0, valueLength, charset);
+            if (decoded.indexOf('&') >= 0) decoded = Parser.unescapeEntities(decoded, true);
+            return decoded.strip();
+        }
+
+        private void useCharset(String name) {
+            Charset candidate = lookup(name);
+            if (candidate != null && isAsciiCompatible(candidate)) {
+                charset = candidate;
+                charsetDeclared = true;
+            }
+        }
+
+        private static String charsetFrom(String attributeValue) {
+            // Either <meta charset="x"> or <meta http-equiv content="text/html; charset=x">
+            int index = attributeValue.toLowerCase().indexOf("charset=");
+            String charset = index < 0 ? attributeValue : attributeValue.substring(index + "charset=".length());
+            charset = charset.replace("\"", "").replace("'", "").split(";", 2)[0].strip();
+            return charset.isEmpty() || charset.indexOf(' ') >= 0 ? null : charset;
+        }
+
+        // Reads a lowercased tag or attribute name, keeping only as much as fits in the array
+        private int readName(int first, char[] target) throws IOException {
+            int length = 0;
+            int c = first;
+            while (c != -1 && c != '>' && c != '/' && c != '=' && !isWhitespace(c)) {
+                if (length < target.length) target[length] = (char) toLowerAscii(c);
+                length++;
+                c = read();
+            }
+            unread(c);
+            return Math.min(length, target.length + 1);
+        }
+
+        private boolean readValue(boolean capture) throws IOException {
+            valueLength = 0;
+            valueOverflow = false;
+            int c = skipWhitespace();
+            if (c == -1) return false;
+            if (c == '"' || c == '\'') {
+                int quote = c;
+                while ((c = read()) != quote) {
+                    if (c == -1) return false;
+                    if (capture) append(c);
+                }
+                return true;
+            }
+            while (c != -1 && c != '>' && !isWhitespace(c)) {
+                if (capture) append(c);
+                c = read();
+            }
+            unread(c);
+            return c != -1;
+        }
+
+        private void append(int c) {
+            if (valueLength == value.length) {
+                valueOverflow = true;
+                return;
+            }
+            value[valueLength++] = (byte) c;
+        }
+
+        private void skipComment() throws IOException {
+            int dashes = 0;
+            int c;
+            while ((c = read()) != -1) {
+                if (c == '>' && dashes >= 2) return;
+                dashes = c == '-' ? dashes + 1 : 0;
+            }
+        }
+
+        // <script>, <style>, <title> and <textarea> can contain '<' that isn't markup, skip to the matching end tag
+        private void skipRawText(String tagName) throws IOException {
+            int c;
+            while ((c = read()) != -1) {
+                if (c != '<') continue;
+                c = read();
+                if (c != '/') {
+                    unread(c);
+                    continue;
+                }
+                int matched = 0;
+                while (matched < tagName.length() && toLowerAscii(c = read()) == tagName.charAt(matched)) {
+                    matched++;
+                }
+                if (matched == tagName.length()) {
+                    c = read();
+                    if (c == '>' || c == '/' || isWhitespace(c)) {
+                        if (c != '>') skipPast('>');
+                        return;
+                    }
+                }
+                unread(c);
+            }
+        }
+
+        private void skipPast(int target) throws IOException {
+            int c;
+            while ((c = read()) != -1 && c != target) {
+                // skip
+            }
+        }
+
+        private int skipWhitespace() throws IOException {
+            int c;
+            do {
+                c = read();
+            } while (isWhitespace(c));
+            return c;
+        }
+
+        private int read() throws IOException {
+            if (pos == limit) {
+                limit = in.read(buffer, 0, buffer.length);
+                pos = 0;
+                if (limit <= 0) {
+                    limit = 0;
+                    return -1;
+                }
+            }
+            return buffer[pos++] & 0xFF;
+        }
+
+        private void unread(int c) {
+            if (c != -1) pos--;
+        }
+
+        private static Tag classify(char[] name, int length) {
+            return switch (length > name.length ? "" : new String(name, 0, length)) {
+                case "a" -> Tag.A;
+                case "base" -> Tag.BASE;
+                case "meta" -> Tag.META;
+                case "script", "style", "title", "textarea" -> Tag.RAW_TEXT;
+                default -> Tag.OTHER;
+            };
+        }
+
+        private boolean isCaptured(Tag tag, char[] attribute, int length) {
+            return switch (tag) {
+                case A, BASE -> is(attribute, length, "href");
+                case META -> !charsetDeclared && (is(attribute, length, "charset") || is(attribute, length, "content"));
+                default -> false;
+            };
+        }
+
+        private static boolean is(char[] attribute, int length, String expected) {
+            if (length != expected.length()) return false;
+            for (int i = 0; i < length; i++) {
+                if (attribute[i] != expected.charAt(i)) return false;
+            }
+            return true;
+        }
+
+        private static boolean isAsciiLetter(int c) {
+            return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+        }
+
+        private static boolean isWhitespace(int c) {
+            return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f';
+        }
+
+        private static int toLowerAscii(int c) {
+            return c >= 'A' && c <= 'Z' ? c + ('a' - 'A') : c;
+        }
+    }
+}
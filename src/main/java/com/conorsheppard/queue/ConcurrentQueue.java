@@ -1,21 +1,27 @@
 package com.conorsheppard.queue;
 
-import java.util.Queue;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 public class ConcurrentQueue implements UrlQueue {
-    private final Queue<String> queue = new ConcurrentLinkedQueue<>();
+    private final BlockingQueue<QueuedUrl> queue = new LinkedBlockingQueue<>();
 
     @Override
-    public void enqueue(String url) {
+    public void enqueue(QueuedUrl url) {
         queue.add(url);
     }
 
     @Override
-    public String dequeue() {
+    public QueuedUrl next() {
         return queue.poll();
     }
 
+    @Override
+    public QueuedUrl next(long timeout, TimeUnit unit) throws InterruptedException {
+        return queue.poll(timeout, unit);
+    }
+
     @Override
     public boolean isEmpty() {
         return queue.isEmpty();
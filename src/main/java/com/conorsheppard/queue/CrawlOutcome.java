@@ -0,0 +1,31 @@
+package com.conorsheppard.queue;
+
+import lombok.Value;
+
+import java.time.Duration;
+
+@Value
+public class CrawlOutcome {
+    // Nothing was fetched, the URL was skipped or the request failed without a response
+    public static final CrawlOutcome NONE = new CrawlOutcome(0, null);
+
+    int statusCode;
+    // Null unless the server sent a usable Retry-After header
+    Duration retryAfter;
+
+    public static CrawlOutcome of(int statusCode) {
+        return new CrawlOutcome(statusCode, null);
+    }
+
+    public static CrawlOutcome of(int statusCode, Duration retryAfter) {
+        return new CrawlOutcome(statusCode, retryAfter);
+    }
+
+    public boolean isSuccess() {
+        return statusCode >= 200 && statusCode < 400;
+    }
+
+    public boolean isThrottled() {
+        return statusCode == 429 || statusCode == 503;
+    }
+}
@@ -0,0 +1,70 @@
+package com.conorsheppard.queue;
+
+import lombok.Getter;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+// Base for decorators that watch a queue without changing what it hands out. Everything is forwarded, the default
+// methods included, so a frontier's own enqueueLinks or complete isn't bypassed by the wrapper
+@Getter
+public abstract class ForwardingUrlQueue implements UrlQueue, Closeable {
+    private final UrlQueue delegate;
+
+    protected ForwardingUrlQueue(UrlQueue delegate) {
+        this.delegate = delegate;
+    }
+
+    // The innermost queue that isn't a decorator, e.g. to reach the politeness frontier's per-host settings
+    public static UrlQueue unwrap(UrlQueue queue) {
+        while (queue instanceof ForwardingUrlQueue forwarding) queue = forwarding.getDelegate();
+        return queue;
+    }
+
+    @Override
+    public void enqueue(QueuedUrl url) {
+        delegate.enqueue(url);
+    }
+
+    @Override
+    public void enqueueLinks(QueuedUrl page, Collection<String> added, Collection<String> links) {
+        delegate.enqueueLinks(page, added, links);
+    }
+
+    @Override
+    public QueuedUrl next() {
+        return delegate.next();
+    }
+
+    @Override
+    public QueuedUrl next(long timeout, TimeUnit unit) throws InterruptedException {
+        return delegate.next(timeout, unit);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return delegate.isEmpty();
+    }
+
+    @Override
+    public int size() {
+        return delegate.size();
+    }
+
+    @Override
+    public boolean isDrained() {
+        return delegate.isDrained();
+    }
+
+    @Override
+    public boolean complete(String url, CrawlOutcome outcome) {
+        return delegate.complete(url, outcome);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (delegate instanceof Closeable closeable) closeable.close();
+    }
+}
@@ -2,52 +2,120 @@ package com.conorsheppard.queue;
 
 import lombok.Data;
 import lombok.SneakyThrows;
+import lombok.Value;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
 import org.apache.kafka.clients.producer.KafkaProducer;
 import org.apache.kafka.clients.producer.ProducerRecord;
 import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.header.Header;
 
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
-import java.util.Collections;
-import java.util.Map;
-import java.util.Properties;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
 
 import static com.conorsheppard.config.KafkaConfig.*;
 
+// A frontier over a topic keyed by host, so each host's URLs land on one partition and keep their order, while the
+// consumer group spreads partitions across crawler nodes. Each poll's records are buffered and handed out one dequeue
+// at a time, and an offset is only committed once every URL before it on the partition has been completed. Commits are
+// asynchronous and batched. A URL's depth travels in a record header, the value stays the bare URL. The consumer isn't
+// thread safe, so everything touching it runs on the dispatcher thread and completions from workers are handed over
+// through a queue
 @Slf4j
 @Data
 public class KafkaQueue implements UrlQueue {
     public static final String TOPIC = "web-crawler-urls";
+    static final String DEPTH_HEADER = "depth";
+    private static final Duration COMMIT_INTERVAL = Duration.ofSeconds(1);
+    private static final int COMMIT_BATCH = 500;
+    private static final Duration LAG_REFRESH_INTERVAL = Duration.ofSeconds(2);
+
     private final KafkaProducer<String, String> producer;
     private final KafkaConsumer<String, String> consumer;
+    private final Deque<ConsumerRecord<String, String>> buffer = new ArrayDeque<>();
+    private final Map<TopicPartition, PartitionOffsets> offsets = new HashMap<>();
+    private final Map<String, Position> handedOut = new ConcurrentHashMap<>();
+    private final Queue<Position> completed = new ConcurrentLinkedQueue<>();
+    // Sent but not yet acknowledged by the broker, so not visible to any consumer yet
+    private final AtomicInteger unacknowledged = new AtomicInteger();
+    private final Map<TopicPartition, Long> refreshedLag = new HashMap<>();
+    private final LongSupplier clock;
+    private long lagRefreshedAt;
+    private int completedSinceCommit;
+    private long lastCommitAt;
+    private final ConsumerRebalanceListener rebalanceListener = new RebalanceListener();
 
-    @SneakyThrows
     public KafkaQueue() {
+        this(System::nanoTime);
+    }
+
+    @SneakyThrows
+    KafkaQueue(LongSupplier clock) {
+        this.clock = clock;
+        this.lagRefreshedAt = clock.getAsLong() - LAG_REFRESH_INTERVAL.toNanos();
+        this.lastCommitAt = clock.getAsLong();
         Properties producerProps = loadKafkaProducerProperties();
         Properties consumerProps = loadKafkaConsumerProperties();
         producer = new KafkaProducer<>(producerProps);
         consumer = new KafkaConsumer<>(consumerProps);
-        consumer.assign(Collections.singleton(new TopicPartition(TOPIC, 0)));
-        // Poll once to allow the consumer to fetch the partition assignments
-        consumer.poll(Duration.ofMillis(100));
+        consumer.subscribe(List.of(TOPIC), rebalanceListener);
+    }
+
+    @Override
+    public void enqueue(QueuedUrl url) {
+        ProducerRecord<String, String> record = new ProducerRecord<>(TOPIC, PoliteQueue.hostOf(url.getUrl()), url.getUrl());
+        record.headers().add(DEPTH_HEADER, Integer.toString(url.getDepth()).getBytes(StandardCharsets.US_ASCII));
+        unacknowledged.incrementAndGet();
+        this.getProducer().send(record, (metadata, e) -> {
+            unacknowledged.decrementAndGet();
+            if (e != null) log.error("Failed to enqueue {}", url.getUrl(), e);
+        });
     }
 
     @Override
-    public void enqueue(String url) {
-        this.getProducer().send(new ProducerRecord<>(TOPIC, url));
+    public QueuedUrl next() {
+        return poll(Duration.ofMillis(500));
     }
 
     @Override
-    public String dequeue() {
-        var records = this.getConsumer().poll(Duration.ofMillis(500));
-        if (records.isEmpty()) {
-            return null;
-        } else {
-            var val = records.iterator().next().value();
-            consumer.commitSync();
-            return val;
+    public QueuedUrl next(long timeout, TimeUnit unit) {
+        return poll(Duration.ofMillis(unit.toMillis(timeout)));
+    }
+
+    private synchronized QueuedUrl poll(Duration timeout) {
+        commitCompleted();
+        if (buffer.isEmpty()) {
+            for (ConsumerRecord<String, String> record : this.getConsumer().poll(timeout)) buffer.addLast(record);
         }
+        ConsumerRecord<String, String> record = buffer.pollFirst();
+        if (record == null) return null;
+        TopicPartition partition = new TopicPartition(record.topic(), record.partition());
+        offsets.computeIfAbsent(partition, key -> new PartitionOffsets()).handOut(record.offset());
+        handedOut.put(record.value(), new Position(partition, record.offset()));
+        return new QueuedUrl(record.value(), depthOf(record));
+    }
+
+    // Records written before depth was tracked count as the start of the crawl
+    private static int depthOf(ConsumerRecord<String, String> record) {
+        Header depth = record.headers().lastHeader(DEPTH_HEADER);
+        return depth == null ? 0 : Integer.parseInt(new String(depth.value(), StandardCharsets.US_ASCII));
+    }
+
+    // Workers call this, so it only queues the offset for the dispatcher thread to pick up on its next dequeue
+    @Override
+    public boolean complete(String url, CrawlOutcome outcome) {
+        Position position = handedOut.remove(url);
+        if (position != null) completed.add(position);
+        return true;
     }
 
     @Override
@@ -55,13 +123,147 @@ public class KafkaQueue implements UrlQueue {
         return size() == 0;
     }
 
+    // An estimate that doesn't normally go to the broker, see estimatedLag
+    @Override
+    public synchronized int size() {
+        return (int) Math.min(Integer.MAX_VALUE, estimatedLag() + buffer.size() + unacknowledged.get());
+    }
+
+    // Asks the broker for the end offsets of every assigned partition. Without an assignment the group is still
+    // forming or rebalancing, and URLs may be waiting on partitions this node is about to be given
     @Override
-    public int size() {
-        TopicPartition partition0 = new TopicPartition(TOPIC, 0);
-        Map<TopicPartition, Long> endOffsets = this.getConsumer().endOffsets(Collections.singletonList(partition0));
-        long currentOffset = this.getConsumer().position(partition0);
-        long logEndOffset = endOffsets.get(partition0);
-        long lag = logEndOffset - currentOffset;
-        return (int) lag;
+    public synchronized boolean isDrained() {
+        if (!buffer.isEmpty() || unacknowledged.get() > 0) return false;
+        Set<TopicPartition> assignment = this.getConsumer().assignment();
+        return !assignment.isEmpty() && refreshLag(assignment) == 0;
+    }
+
+    // The consumer tracks each partition's lag from the high watermark in its fetch responses, so after a poll it's
+    // known locally. Only partitions it hasn't fetched yet fall back to the end offsets, refreshed at most once per
+    // interval rather than on every call
+    private long estimatedLag() {
+        Set<TopicPartition> assignment = this.getConsumer().assignment();
+        long lag = 0;
+        List<TopicPartition> unknown = new ArrayList<>();
+        for (TopicPartition partition : assignment) {
+            OptionalLong partitionLag = this.getConsumer().currentLag(partition);
+            if (partitionLag.isPresent()) lag += partitionLag.getAsLong();
+            else unknown.add(partition);
+        }
+        if (unknown.isEmpty()) return lag;
+        if (clock.getAsLong() - lagRefreshedAt >= LAG_REFRESH_INTERVAL.toNanos()) {
+            refreshLag(assignment);
+        }
+        for (TopicPartition partition : unknown) lag += refreshedLag.getOrDefault(partition, 0L);
+        return lag;
+    }
+
+    private long refreshLag(Set<TopicPartition> assignment) {
+        Map<TopicPartition, Long> endOffsets = this.getConsumer().endOffsets(assignment);
+        refreshedLag.clear();
+        long lag = 0;
+        for (TopicPartition partition : assignment) {
+            long partitionLag = Math.max(0, endOffsets.getOrDefault(partition, 0L) - this.getConsumer().position(partition));
+            refreshedLag.put(partition, partitionLag);
+            lag += partitionLag;
+        }
+        lagRefreshedAt = clock.getAsLong();
+        return lag;
+    }
+
+    private void commitCompleted() {
+        completedSinceCommit += drainCompleted();
+        boolean due = completedSinceCommit >= COMMIT_BATCH
+                || clock.getAsLong() - lastCommitAt >= COMMIT_INTERVAL.toNanos();
+        if (completedSinceCommit == 0 || !due) return;
+
+        Map<TopicPartition, OffsetAndMetadata> commits = committable(offsets.keySet());
+        if (!commits.isEmpty()) {
+            this.getConsumer().commitAsync(commits, (committed, e) -> {
+                if (e != null) log.warn("Failed to commit offsets {}, they are redelivered unless a later commit covers them", committed, e);
+            });
+        }
+        completedSinceCommit = 0;
+        lastCommitAt = clock.getAsLong();
+    }
+
+    private int drainCompleted() {
+        int drained = 0;
+        Position position;
+        while ((position = completed.poll()) != null) {
+            PartitionOffsets partition = offsets.get(position.getPartition());
+            if (partition != null) partition.complete(position.getOffset());
+            drained++;
+        }
+        return drained;
+    }
+
+    private Map<TopicPartition, OffsetAndMetadata> committable(Collection<TopicPartition> partitions) {
+        Map<TopicPartition, OffsetAndMetadata> commits = new HashMap<>();
+        for (TopicPartition partition : partitions) {
+            PartitionOffsets state = offsets.get(partition);
+            if (state != null && state.committable() > state.committed) {
+                commits.put(partition, new OffsetAndMetadata(state.committable()));
+                state.committed = state.committable();
+            }
+        }
+        return commits;
+    }
+
+    @Value
+    static class Position {
+        TopicPartition partition;
+        long offset;
+    }
+
+    // Offsets handed out and not yet completed. The consumer may only resume from the oldest of them, everything
+    // before it is done
+    static final class PartitionOffsets {
+        private final TreeSet<Long> pending = new TreeSet<>();
+        private long next = -1;
+        private long committed = -1;
+
+        void handOut(long offset) {
+            pending.add(offset);
+            next = Math.max(next, offset + 1);
+        }
+
+        void complete(long offset) {
+            pending.remove(offset);
+        }
+
+        long committable() {
+            return pending.isEmpty() ? next : pending.first();
+        }
+    }
+
+    // Runs inside poll on the dispatcher thread. Before giving partitions up, commit what's done on them and drop
+    // their buffered records, the new owner starts from the committed offset and gets them again. Lost partitions
+    // may already belong to another member, so nothing is committed for them, completions since the last commit are
+    // crawled again by the new owner
+    private final class RebalanceListener implements ConsumerRebalanceListener {
+        @Override
+        public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+            drainCompleted();
+            Map<TopicPartition, OffsetAndMetadata> commits = committable(partitions);
+            if (!commits.isEmpty()) consumer.commitSync(commits);
+            forget(partitions);
+        }
+
+        @Override
+        public void onPartitionsLost(Collection<TopicPartition> partitions) {
+            drainCompleted();
+            forget(partitions);
+        }
+
+        private void forget(Collection<TopicPartition> partitions) {
+            buffer.removeIf(record -> partitions.contains(new TopicPartition(record.topic(), record.partition())));
+            handedOut.values().removeIf(handed -> partitions.contains(handed.getPartition()));
+            partitions.forEach(offsets::remove);
+        }
+
+        @Override
+        public void onPartitionsAssigned(Collection<TopicPartition> partitions) {
+        }
     }
 }
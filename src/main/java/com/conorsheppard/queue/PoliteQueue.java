@@ -0,0 +1,294 @@
+package com.conorsheppard.queue;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+// A per-host frontier on top of another queue. URLs are pulled off the backing queue into one sub-queue per host,
+// and a heap ordered by the time each host may next be fetched picks what to hand out. A host is only in the heap
+// while it has URLs waiting and a free concurrency slot, so hosts that are rate limited, backing off or saturated
+// cost nothing to skip. Throttled responses (429/503) halve the host's rate, back it off for Retry-After or an
+// exponential delay and put the URL back, successful ones slowly restore the rate.
+@Slf4j
+public class PoliteQueue implements UrlQueue, Closeable {
+    // Longest the dispatcher blocks on the backing queue before re-checking hosts whose slots have freed up
+    private static final long MAX_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+    private static final double NANOS_PER_SECOND = 1_000_000_000d;
+
+    private final UrlQueue delegate;
+    private final PolitenessPolicy policy;
+    private final LongSupplier clock;
+    private final Map<String, Host> hosts = new HashMap<>();
+    private final PriorityQueue<Host> readyHosts = new PriorityQueue<>(Comparator.comparingLong(host -> host.readyAt));
+    private final Map<String, Double> crawlDelayRates = new HashMap<>();
+    private final Map<String, Integer> retries = new HashMap<>();
+    // Handed out and not completed, so a throttled URL goes back with its depth
+    private final Map<String, QueuedUrl> handedOut = new HashMap<>();
+    private int buffered;
+
+    public PoliteQueue(UrlQueue delegate, PolitenessPolicy policy) {
+        this(delegate, policy, System::nanoTime);
+    }
+
+    PoliteQueue(UrlQueue delegate, PolitenessPolicy policy, LongSupplier clock) {
+        if (policy.getRequestsPerSecond() <= 0 || policy.getBurst() < 1) {
+            throw new IllegalArgumentException("Politeness needs a positive rate and a burst of at least 1");
+        }
+        this.delegate = delegate;
+        this.policy = policy;
+        this.clock = clock;
+    }
+
+    @Override
+    public void enqueue(QueuedUrl url) {
+        delegate.enqueue(url);
+    }
+
+    @Override
+    public void enqueueLinks(QueuedUrl page, Collection<String> added, Collection<String> links) {
+        delegate.enqueueLinks(page, added, links);
+    }
+
+    @Override
+    public QueuedUrl next() {
+        try {
+            drain();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return take(clock.getAsLong());
+    }
+
+    @Override
+    public QueuedUrl next(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = clock.getAsLong() + unit.toNanos(timeout);
+        while (true) {
+            drain();
+            long now = clock.getAsLong();
+            QueuedUrl url = take(now);
+            if (url != null || now >= deadline) return url;
+            long wait = Math.min(Math.min(deadline, nextReadyAt()) - now, MAX_WAIT_NANOS);
+            url = delegate.next(Math.max(wait, 1), TimeUnit.NANOSECONDS);
+            if (url != null) add(url, now);
+        }
+    }
+
+    @Override
+    public boolean isEmpty() {
+        synchronized (this) {
+            if (buffered > 0) return false;
+        }
+        return delegate.isEmpty();
+    }
+
+    @Override
+    public boolean isDrained() {
+        synchronized (this) {
+            if (buffered > 0) return false;
+        }
+        return delegate.isDrained();
+    }
+
+    @Override
+    public int size() {
+        int local;
+        synchronized (this) {
+            local = buffered;
+        }
+        return local + delegate.size();
+    }
+
+    // A URL put back to retry only lives in the host heaps, so the delegate mustn't commit past it until it's done
+    @Override
+    public boolean complete(String url, CrawlOutcome outcome) {
+        if (!feedback(url, outcome)) return false;
+        delegate.complete(url, outcome);
+        return true;
+    }
+
+    // False when the URL was put back to retry
+    private synchronized boolean feedback(String url, CrawlOutcome outcome) {
+        QueuedUrl queued = handedOut.remove(url);
+        Host host = hosts.get(hostOf(url));
+        if (host == null) return true;
+        long now = clock.getAsLong();
+        host.inFlight--;
+
+        boolean finished = true;
+        if (outcome.isThrottled()) {
+            unschedule(host);
+            host.throttled(now, outcome.getRetryAfter());
+            int attempts = retries.merge(url, 1, Integer::sum);
+            if (attempts <= policy.getMaxRetries()) {
+                host.urls.addFirst(queued != null ? queued : QueuedUrl.seed(url));
+                buffered++;
+                finished = false;
+            } else {
+                retries.remove(url);
+                log.warn("Giving up on {} after {} throttled attempts", url, attempts);
+            }
+        } else {
+            retries.remove(url);
+            if (outcome.isSuccess()) host.recovered(now);
+        }
+        schedule(host, now);
+        evictIfIdle(host, now);
+        return finished;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (delegate instanceof Closeable closeable) closeable.close();
+    }
+
+    // Caps a host at one request per delay, e.g. from a robots.txt Crawl-delay
+    public synchronized void setCrawlDelay(String host, Duration delay) {
+        if (delay.isZero() || delay.isNegative()) return;
+        double rate = Math.min(policy.getRequestsPerSecond(), NANOS_PER_SECOND / delay.toNanos());
+        crawlDelayRates.put(host, rate);
+        Host state = hosts.get(host);
+        if (state != null) state.limitTo(rate);
+    }
+
+    private void drain() throws InterruptedException {
+        QueuedUrl url;
+        while (bufferHasRoom() && (url = delegate.next(0, TimeUnit.NANOSECONDS)) != null) {
+            add(url, clock.getAsLong());
+        }
+    }
+
+    private synchronized boolean bufferHasRoom() {
+        return buffered < policy.getMaxBuffered();
+    }
+
+    private synchronized void add(QueuedUrl url, long now) {
+        Host host = hosts.computeIfAbsent(hostOf(url.getUrl()), name -> new Host(name, now));
+        host.urls.addLast(url);
+        buffered++;
+        schedule(host, now);
+    }
+
+    private synchronized QueuedUrl take(long now) {
+        Host host = readyHosts.peek();
+        if (host == null || host.readyAt > now) return null;
+        unschedule(host);
+        QueuedUrl url = host.urls.pollFirst();
+        handedOut.put(url.getUrl(), url);
+        buffered--;
+        host.inFlight++;
+        host.consumeToken(now);
+        schedule(host, now);
+        return url;
+    }
+
+    private synchronized long nextReadyAt() {
+        Host host = readyHosts.peek();
+        return host == null ? Long.MAX_VALUE : host.readyAt;
+    }
+
+    private void schedule(Host host, long now) {
+        boolean hasSlot = policy.getMaxPerHost() <= 0 || host.inFlight < policy.getMaxPerHost();
+        if (host.scheduled || host.urls.isEmpty() || !hasSlot) return;
+        host.readyAt = Math.max(host.nextTokenAt(now), host.backoffUntil);
+        host.scheduled = true;
+        readyHosts.add(host);
+    }
+
+    // The heap is keyed on readyAt, so a host has to come out before its readyAt changes
+    private void unschedule(Host host) {
+        if (host.scheduled) {
+            readyHosts.remove(host);
+            host.scheduled = false;
+        }
+    }
+
+    // Forget hosts with nothing queued or in flight once their bucket is full again and any throttling has passed
+    private void evictIfIdle(Host host, long now) {
+        if (host.urls.isEmpty() && host.inFlight == 0 && host.backoffUntil <= now
+                && host.rate == host.maxRate && host.tokensAt(now) >= host.burst()) {
+            hosts.remove(host.name);
+        }
+    }
+
+    // URLs on the queue are already canonical, so the host is whatever sits between "://" and the next '/'
+    public static String hostOf(String url) {
+        int scheme = url.indexOf("://");
+        int start = scheme < 0 ? 0 : scheme + 3;
+        int end = url.indexOf('/', start);
+        return url.substring(start, end < 0 ? url.length() : end);
+    }
+
+    private final class Host {
+        private final String name;
+        private final ArrayDeque<QueuedUrl> urls = new ArrayDeque<>();
+        private double maxRate;
+        private double rate;
+        private double tokens;
+        private long refilledAt;
+        private long readyAt;
+        private long backoffUntil;
+        private int inFlight;
+        private int throttles;
+        private boolean scheduled;
+
+        private Host(String name, long now) {
+            this.name = name;
+            this.maxRate = crawlDelayRates.getOrDefault(name, policy.getRequestsPerSecond());
+            this.rate = maxRate;
+            this.tokens = burst();
+            this.refilledAt = now;
+        }
+
+        // A crawl delay means one request per delay, so it also gets no burst
+        private int burst() {
+            return crawlDelayRates.containsKey(name) ? 1 : policy.getBurst();
+        }
+
+        private double tokensAt(long now) {
+            return Math.min(burst(), tokens + (now - refilledAt) * rate / NANOS_PER_SECOND);
+        }
+
+        private void consumeToken(long now) {
+            tokens = tokensAt(now) - 1;
+            refilledAt = now;
+        }
+
+        private long nextTokenAt(long now) {
+            double available = tokensAt(now);
+            return available >= 1 ? now : now + (long) ((1 - available) / rate * NANOS_PER_SECOND);
+        }
+
+        private void limitTo(double limit) {
+            long now = clock.getAsLong();
+            tokens = Math.min(tokensAt(now), 1);
+            refilledAt = now;
+            maxRate = limit;
+            rate = Math.min(rate, limit);
+        }
+
+        private void throttled(long now, Duration retryAfter) {
+            throttles++;
+            tokens = tokensAt(now);
+            refilledAt = now;
+            rate = Math.max(policy.getMinRequestsPerSecond(), rate / 2);
+            Duration backoff = retryAfter != null
+                    ? retryAfter
+                    : policy.getBaseBackoff().multipliedBy(1L << Math.min(throttles - 1, 20));
+            if (backoff.compareTo(policy.getMaxBackoff()) > 0) backoff = policy.getMaxBackoff();
+            backoffUntil = Math.max(backoffUntil, now + backoff.toNanos());
+        }
+
+        // Additive increase back towards the configured rate
+        private void recovered(long now) {
+            tokens = tokensAt(now);
+            refilledAt = now;
+            throttles = 0;
+            rate = Math.min(maxRate, rate + maxRate / 10);
+        }
+    }
+}
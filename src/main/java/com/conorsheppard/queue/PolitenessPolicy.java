@@ -0,0 +1,37 @@
+package com.conorsheppard.queue;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.time.Duration;
+
+@Value
+@Builder(toBuilder = true)
+public class PolitenessPolicy {
+    // Token bucket refill rate and size per host
+    @Builder.Default
+    double requestsPerSecond = 5;
+    @Builder.Default
+    int burst = 5;
+    // Zero or less means unbounded
+    @Builder.Default
+    int maxPerHost = 0;
+    // A throttled host has its rate halved, but never below this
+    @Builder.Default
+    double minRequestsPerSecond = 0.1;
+    // Backoff after a 429/503 without Retry-After, doubling with each consecutive one
+    @Builder.Default
+    Duration baseBackoff = Duration.ofSeconds(1);
+    @Builder.Default
+    Duration maxBackoff = Duration.ofMinutes(5);
+    // How many times a throttled URL is put back before it's dropped
+    @Builder.Default
+    int maxRetries = 3;
+    // Upper bound on URLs pulled off the backing queue into the per-host queues
+    @Builder.Default
+    int maxBuffered = 100_000;
+
+    public static PolitenessPolicy defaults() {
+        return PolitenessPolicy.builder().build();
+    }
+}
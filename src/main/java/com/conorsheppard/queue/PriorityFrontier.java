@@ -0,0 +1,160 @@
+package com.conorsheppard.queue;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// An in-memory frontier that hands out the best scored URL first rather than the oldest. Scores are rounded into a
+// fixed number of buckets, each a lock-free FIFO, with a bitmask of the non-empty ones, so producers and consumers
+// only meet on the bucket they touch and a dequeue is a bit scan rather than a heap operation. URLs with close
+// scores come out in the order they were found. Each further page linking to a queued URL re-scores it, and a
+// shallower one also lowers its depth. Moving it to another bucket claims the old entry and queues a
+// new one, claimed entries are skipped when they come up
+public class PriorityFrontier implements UrlQueue {
+    static final int BUCKETS = 64;
+    private static final double DEFAULT_RESOLUTION = 0.5;
+
+    private final UrlScorer scorer;
+    // Score covered by one bucket, scores beyond the middle 64 * resolution all land in the outermost buckets
+    private final double resolution;
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private final Queue<Entry>[] buckets = new Queue[BUCKETS];
+    // Bit i set while bucket i may have entries
+    private final AtomicLong nonEmpty = new AtomicLong();
+    private final Map<String, Entry> queued = new ConcurrentHashMap<>();
+    // One permit per queued URL
+    private final Semaphore available = new Semaphore(0);
+
+    public PriorityFrontier(UrlScorer scorer) {
+        this(scorer, DEFAULT_RESOLUTION);
+    }
+
+    public PriorityFrontier(UrlScorer scorer, double resolution) {
+        this.scorer = scorer;
+        this.resolution = resolution;
+        for (int i = 0; i < BUCKETS; i++) buckets[i] = new ConcurrentLinkedQueue<>();
+    }
+
+    @Override
+    public void enqueue(QueuedUrl url) {
+        Entry entry = new Entry(url.getUrl(), url.getDepth(), 1, bucketOf(scorer.score(url.getUrl(), url.getDepth(), 1)));
+        // The cache only lets a URL through once, a repeat is a retry and keeps its place
+        if (queued.putIfAbsent(url.getUrl(), entry) != null) return;
+        push(entry);
+        available.release();
+    }
+
+    @Override
+    public void enqueueLinks(QueuedUrl page, Collection<String> added, Collection<String> links) {
+        for (String url : added) enqueue(page.child(url));
+        if (links.size() == added.size()) return;
+        int depth = page.getDepth() + 1;
+        for (String url : links) {
+            Entry entry = queued.get(url);
+            if (entry != null) linkedAgain(entry, depth);
+        }
+    }
+
+    @Override
+    public QueuedUrl next() {
+        return available.tryAcquire() ? take() : null;
+    }
+
+    @Override
+    public QueuedUrl next(long timeout, TimeUnit unit) throws InterruptedException {
+        return available.tryAcquire(timeout, unit) ? take() : null;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return available.availablePermits() == 0;
+    }
+
+    @Override
+    public int size() {
+        return available.availablePermits();
+    }
+
+    // Most re-scores leave the URL in its bucket and only bump the count. Two pages linking to it at once may
+    // both count before one of them moves it, an in-link lost that way only costs a little precision
+    private void linkedAgain(Entry entry, int depth) {
+        int inLinks = entry.inLinks.incrementAndGet();
+        int shallowest = Math.min(entry.depth, depth);
+        int bucket = bucketOf(scorer.score(entry.url, shallowest, inLinks));
+        if (bucket == entry.bucket || !entry.claimed.compareAndSet(false, true)) return;
+        Entry moved = new Entry(entry.url, shallowest, inLinks, bucket);
+        queued.replace(entry.url, entry, moved);
+        push(moved);
+    }
+
+    // The caller holds a permit, so a live entry is queued or about to be, a move may have it between buckets
+    private QueuedUrl take() {
+        while (true) {
+            long mask = nonEmpty.get();
+            if (mask == 0) {
+                Thread.onSpinWait();
+                continue;
+            }
+            int bucket = 63 - Long.numberOfLeadingZeros(mask);
+            Entry entry = buckets[bucket].poll();
+            if (entry == null) {
+                clear(bucket);
+                continue;
+            }
+            if (!entry.claimed.compareAndSet(false, true)) continue;
+            queued.remove(entry.url, entry);
+            return new QueuedUrl(entry.url, entry.depth);
+        }
+    }
+
+    private void push(Entry entry) {
+        buckets[entry.bucket].add(entry);
+        mark(entry.bucket);
+    }
+
+    private void mark(int bucket) {
+        long bit = 1L << bucket;
+        long mask;
+        while (((mask = nonEmpty.get()) & bit) == 0 && !nonEmpty.compareAndSet(mask, mask | bit)) {
+            Thread.onSpinWait();
+        }
+    }
+
+    // A push between the poll that found the bucket empty and clearing its bit would be stranded, so look again
+    private void clear(int bucket) {
+        long bit = 1L << bucket;
+        long mask;
+        while (((mask = nonEmpty.get()) & bit) != 0 && !nonEmpty.compareAndSet(mask, mask & ~bit)) {
+            Thread.onSpinWait();
+        }
+        if (!buckets[bucket].isEmpty()) mark(bucket);
+    }
+
+    int bucketOf(double score) {
+        long bucket = (long) Math.floor(score / resolution) + BUCKETS / 2;
+        return (int) Math.max(0, Math.min(BUCKETS - 1, bucket));
+    }
+
+    private static final class Entry {
+        final String url;
+        final int depth;
+        final AtomicInteger inLinks;
+        final int bucket;
+        // Set by whoever takes the entry out of play, a dequeue or a move to another bucket
+        final AtomicBoolean claimed = new AtomicBoolean();
+
+        Entry(String url, int depth, int inLinks, int bucket) {
+            this.url = url;
+            this.depth = depth;
+            this.inLinks = new AtomicInteger(inLinks);
+            this.bucket = bucket;
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.conorsheppard.queue;
+
+import lombok.Value;
+
+// A URL waiting to be crawled and how many links it is from the start URL
+@Value
+public class QueuedUrl {
+    String url;
+    int depth;
+
+    public static QueuedUrl seed(String url) {
+        return new QueuedUrl(url, 0);
+    }
+
+    public QueuedUrl child(String link) {
+        return new QueuedUrl(link, depth + 1);
+    }
+}
@@ -0,0 +1,248 @@
+package com.conorsheppard.queue;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+// A FIFO on local disk, so a frontier of any size costs next to no heap and survives the process dying. URLs are
+// appended to memory-mapped segment files as an int length, the URL's depth and the UTF-8 bytes. The length is
+// written last, so a zero length marks where the data ends and a record is never seen half written. A segment that
+// can't fit the next record is closed with a -1 and the log rolls over to a new one. The read cursor is checkpointed
+// every so many completions at the oldest URL still being crawled, so after a crash anything in flight is handed out
+// again, and segments wholly before the checkpoint are deleted
+@Slf4j
+public class SegmentedLogQueue implements UrlQueue, Closeable {
+    private static final int DEFAULT_SEGMENT_BYTES = 64 * 1024 * 1024;
+    private static final int DEFAULT_CHECKPOINT_EVERY = 1000;
+    private static final int END_OF_SEGMENT = -1;
+    // Length then depth
+    private static final int RECORD_HEADER = 2 * Integer.BYTES;
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String CURSOR_FILE = "cursor";
+
+    private final Path dir;
+    private final int segmentBytes;
+    private final int checkpointEvery;
+    // Positions of URLs handed out and not completed yet, as segment << 32 | offset so they sort in log order
+    private final TreeSet<Long> pending = new TreeSet<>();
+    private final Map<String, ArrayDeque<Long>> handedOut = new HashMap<>();
+    private MappedByteBuffer writeSegment;
+    private long writeIndex;
+    private int writePosition;
+    private MappedByteBuffer readSegment;
+    private long readIndex;
+    private int readPosition;
+    private long oldestSegment;
+    private long count;
+    private int completedSinceCheckpoint;
+
+    public SegmentedLogQueue(Path dir) {
+        this(dir, DEFAULT_SEGMENT_BYTES, DEFAULT_CHECKPOINT_EVERY);
+    }
+
+    public SegmentedLogQueue(Path dir, int segmentBytes, int checkpointEvery) {
+        this.dir = dir;
+        this.segmentBytes = segmentBytes;
+        this.checkpointEvery = checkpointEvery;
+        try {
+            Files.createDirectories(dir);
+            open();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Couldn't open the frontier in " + dir, e);
+        }
+    }
+
+    private void open() throws IOException {
+        List<Long> segments = listSegments();
+        long[] cursor = readCursor();
+        writeIndex = segments.isEmpty() ? (cursor == null ? 0 : cursor[0]) : segments.getLast();
+        writeSegment = map(writeIndex);
+        writePosition = endOf(writeSegment);
+
+        readIndex = cursor != null ? cursor[0] : segments.isEmpty() ? writeIndex : segments.getFirst();
+        readPosition = cursor != null ? (int) cursor[1] : 0;
+        readSegment = readIndex == writeIndex ? writeSegment : map(readIndex);
+        oldestSegment = segments.isEmpty() ? writeIndex : segments.getFirst();
+
+        count = countFrom(readIndex, readPosition);
+        if (count > 0) log.info("Resuming frontier in {} with {} URLs", dir, count);
+    }
+
+    @Override
+    public synchronized void enqueue(QueuedUrl url) {
+        byte[] bytes = url.getUrl().getBytes(StandardCharsets.UTF_8);
+        if (bytes.length == 0 || bytes.length + RECORD_HEADER + Integer.BYTES > segmentBytes) {
+            throw new IllegalArgumentException("URL doesn't fit in a segment: " + url.getUrl());
+        }
+        if (writePosition + RECORD_HEADER + bytes.length > writeSegment.capacity()) roll();
+        writeSegment.putInt(writePosition + Integer.BYTES, url.getDepth());
+        writeSegment.put(writePosition + RECORD_HEADER, bytes);
+        writeSegment.putInt(writePosition, bytes.length);
+        writePosition += RECORD_HEADER + bytes.length;
+        count++;
+        notifyAll();
+    }
+
+    @Override
+    public synchronized QueuedUrl next() {
+        return count == 0 ? null : read();
+    }
+
+    @Override
+    public synchronized QueuedUrl next(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (count == 0) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) return null;
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+        return read();
+    }
+
+    @Override
+    public synchronized boolean isEmpty() {
+        return count == 0;
+    }
+
+    @Override
+    public synchronized int size() {
+        return (int) Math.min(Integer.MAX_VALUE, count);
+    }
+
+    @Override
+    public synchronized boolean complete(String url, CrawlOutcome outcome) {
+        ArrayDeque<Long> positions = handedOut.get(url);
+        if (positions == null) return true;
+        pending.remove(positions.removeFirst());
+        if (positions.isEmpty()) handedOut.remove(url);
+        if (++completedSinceCheckpoint >= checkpointEvery) checkpoint();
+        return true;
+    }
+
+    @Override
+    public synchronized void close() {
+        checkpoint();
+        writeSegment.force();
+    }
+
+    // Only called with count > 0, so there's always a record at or after the read position
+    private QueuedUrl read() {
+        while (atEndOfSegment(readSegment, readPosition)) {
+            readIndex++;
+            readSegment = readIndex == writeIndex ? writeSegment : map(readIndex);
+            readPosition = 0;
+        }
+        int length = readSegment.getInt(readPosition);
+        int depth = readSegment.getInt(readPosition + Integer.BYTES);
+        byte[] bytes = new byte[length];
+        readSegment.get(readPosition + RECORD_HEADER, bytes);
+        long position = position(readIndex, readPosition);
+        readPosition += RECORD_HEADER + length;
+        count--;
+
+        String url = new String(bytes, StandardCharsets.UTF_8);
+        pending.add(position);
+        handedOut.computeIfAbsent(url, key -> new ArrayDeque<>()).addLast(position);
+        return new QueuedUrl(url, depth);
+    }
+
+    private void roll() {
+        if (writePosition + Integer.BYTES <= writeSegment.capacity()) writeSegment.putInt(writePosition, END_OF_SEGMENT);
+        writeIndex++;
+        writeSegment = map(writeIndex);
+        writePosition = 0;
+    }
+
+    private void checkpoint() {
+        long committed = pending.isEmpty() ? position(readIndex, readPosition) : pending.first();
+        long committedSegment = committed >>> 32;
+        try {
+            Path tmp = dir.resolve(CURSOR_FILE + ".tmp");
+            Files.write(tmp, ByteBuffer.allocate(2 * Long.BYTES)
+                    .putLong(committedSegment).putLong(committed & 0xFFFFFFFFL).array());
+            Files.move(tmp, dir.resolve(CURSOR_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            // Unmapping is left to the GC, Linux keeps a deleted file's pages until the last mapping goes
+            for (; oldestSegment < committedSegment; oldestSegment++) Files.deleteIfExists(segmentPath(oldestSegment));
+        } catch (IOException e) {
+            log.warn("Couldn't checkpoint the frontier in {}: {}", dir, e.getMessage());
+        }
+        completedSinceCheckpoint = 0;
+    }
+
+    private long countFrom(long segment, int position) {
+        long records = 0;
+        for (long index = segment; index <= writeIndex; index++) {
+            MappedByteBuffer buffer = index == writeIndex ? writeSegment : map(index);
+            int offset = index == segment ? position : 0;
+            while (!atEndOfSegment(buffer, offset) && buffer.getInt(offset) > 0) {
+                offset += RECORD_HEADER + buffer.getInt(offset);
+                records++;
+            }
+        }
+        return records;
+    }
+
+    // Where the next record goes, the end marker of a full segment counts as free space since roll() rewrites it
+    private static int endOf(MappedByteBuffer buffer) {
+        int offset = 0;
+        while (offset + Integer.BYTES <= buffer.capacity()) {
+            int length = buffer.getInt(offset);
+            if (length <= 0) return offset;
+            offset += RECORD_HEADER + length;
+        }
+        return offset;
+    }
+
+    private static boolean atEndOfSegment(MappedByteBuffer buffer, int offset) {
+        return offset + Integer.BYTES > buffer.capacity() || buffer.getInt(offset) == END_OF_SEGMENT;
+    }
+
+    private static long position(long segment, int offset) {
+        return segment << 32 | offset;
+    }
+
+    // New segments are created sparse at full size, existing ones are mapped at whatever size they were written with
+    private MappedByteBuffer map(long index) {
+        try (FileChannel channel = FileChannel.open(segmentPath(index), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = channel.size() > 0 ? channel.size() : segmentBytes;
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Couldn't map frontier segment " + index, e);
+        }
+    }
+
+    private Path segmentPath(long index) {
+        return dir.resolve(String.format("%020d%s", index, SEGMENT_SUFFIX));
+    }
+
+    private List<Long> listSegments() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.endsWith(SEGMENT_SUFFIX))
+                    .map(name -> Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length())))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private long[] readCursor() throws IOException {
+        Path cursor = dir.resolve(CURSOR_FILE);
+        if (!Files.exists(cursor)) return null;
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(cursor));
+        return new long[]{buffer.getLong(), buffer.getLong()};
+    }
+}
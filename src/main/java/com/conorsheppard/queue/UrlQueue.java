@@ -1,8 +1,45 @@
 package com.conorsheppard.queue;
 
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
 public interface UrlQueue {
-    void enqueue(String url);
-    String dequeue();
+    void enqueue(QueuedUrl url);
+    QueuedUrl next();
+    // Blocks for up to the given timeout waiting for a URL, returns null if none arrived in time
+    QueuedUrl next(long timeout, TimeUnit unit) throws InterruptedException;
+    // May be a cheap estimate, a queue backed by a broker can say empty while URLs are still arriving
     boolean isEmpty();
     int size();
+
+    default void enqueue(String url) {
+        enqueue(QueuedUrl.seed(url));
+    }
+
+    default String dequeue() {
+        QueuedUrl next = next();
+        return next == null ? null : next.getUrl();
+    }
+
+    default String dequeue(long timeout, TimeUnit unit) throws InterruptedException {
+        QueuedUrl next = next(timeout, unit);
+        return next == null ? null : next.getUrl();
+    }
+
+    // The links found on a page, added being the ones the cache let through. A frontier that orders URLs by where
+    // they were found overrides this, the rest of the links count as more pages linking to URLs it may still hold
+    default void enqueueLinks(QueuedUrl page, Collection<String> added, Collection<String> links) {
+        added.forEach(url -> enqueue(page.child(url)));
+    }
+
+    // Authoritative, true only when nothing is left to hand out. Costlier than isEmpty, so callers check that first
+    default boolean isDrained() {
+        return isEmpty();
+    }
+
+    // Called exactly once for every dequeued URL after it has been crawled. False means the queue kept the URL
+    // to hand out again, e.g. to retry a throttled fetch, so it isn't finished yet
+    default boolean complete(String url, CrawlOutcome outcome) {
+        return true;
+    }
 }
@@ -0,0 +1,7 @@
+package com.conorsheppard.queue;
+
+// Ranks URLs waiting in a PriorityFrontier, higher scores are crawled sooner. Called again for a queued URL when
+// another page links to it, so it should be cheap
+public interface UrlScorer {
+    double score(String url, int depth, int inLinks);
+}
@@ -0,0 +1,69 @@
+package com.conorsheppard.queue;
+
+import lombok.Builder;
+import lombok.Singular;
+import lombok.Value;
+
+import java.time.DateTimeException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// A sum of signals: shallower pages first, pages many others link to first, URLs matching configured patterns
+// boosted or buried by their weight, and pages whose URL carries a recent date (/2024/05/ or 2024-05-17) first,
+// halving the boost every half-life
+@Value
+@Builder(toBuilder = true)
+public class WeightedUrlScorer implements UrlScorer {
+    private static final Pattern DATE = Pattern.compile("(?<![0-9])((?:19|20)[0-9]{2})"
+            + "[/-](0[1-9]|1[0-2])"
+            + "(?:[/-](0[1-9]|[12][0-9]|3[01]))?(?![0-9])");
+
+    @Builder.Default
+    double depthWeight = 1;
+    // Applied to log2(1 + in-links), the first few links to a page say much more than the hundredth
+    @Builder.Default
+    double inLinkWeight = 1;
+    @Builder.Default
+    double freshnessWeight = 1;
+    @Builder.Default
+    Duration freshnessHalfLife = Duration.ofDays(30);
+    // Every pattern found anywhere in the URL adds its weight
+    @Singular
+    Map<Pattern, Double> patternWeights;
+    @Builder.Default
+    Supplier<LocalDate> today = LocalDate::now;
+
+    @Override
+    public double score(String url, int depth, int inLinks) {
+        double score = -depthWeight * depth + inLinkWeight * log2(1 + inLinks);
+        if (freshnessWeight != 0) score += freshnessWeight * freshness(url);
+        for (Map.Entry<Pattern, Double> pattern : patternWeights.entrySet()) {
+            if (pattern.getKey().matcher(url).find()) score += pattern.getValue();
+        }
+        return score;
+    }
+
+    // 1 for a URL dated today, 0 without a date
+    double freshness(String url) {
+        Matcher date = DATE.matcher(url);
+        if (!date.find()) return 0;
+        int day = date.group(3) == null ? 1 : Integer.parseInt(date.group(3));
+        LocalDate published;
+        try {
+            published = LocalDate.of(Integer.parseInt(date.group(1)), Integer.parseInt(date.group(2)), day);
+        } catch (DateTimeException e) {
+            return 0;
+        }
+        long ageDays = Math.max(0, ChronoUnit.DAYS.between(published, today.get()));
+        return Math.pow(0.5, (double) ageDays / Math.max(1, freshnessHalfLife.toDays()));
+    }
+
+    private static double log2(double value) {
+        return Math.log(value) / Math.log(2);
+    }
+}
@@ -0,0 +1,116 @@
+package com.conorsheppard.recrawl;
+
+import com.conorsheppard.io.BinaryFiles;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import static com.conorsheppard.io.BinaryFiles.readVarint;
+import static com.conorsheppard.io.BinaryFiles.writeVarint;
+
+// Every page fetched by earlier crawls with its content hash and revisit schedule, carried from one run to the next.
+// Updated by the workers as pages are fetched and written out once the crawl ends. On disk it's the URLs as
+// length-prefixed UTF-8, each followed by the hash and the fetch time and interval in varint seconds
+@Slf4j
+public class CrawlHistory {
+    private static final int MAGIC = 0x53574852;
+    private static final int VERSION = 1;
+
+    private final Map<String, PageHistory> pages = new ConcurrentHashMap<>();
+    private final RevisitPolicy policy;
+    private final LongSupplier clock;
+
+    public CrawlHistory(RevisitPolicy policy) {
+        this(policy, System::currentTimeMillis);
+    }
+
+    CrawlHistory(RevisitPolicy policy, LongSupplier clock) {
+        this.policy = policy;
+        this.clock = clock;
+    }
+
+    // An empty history when there's no file yet, the first run is a full crawl
+    public static CrawlHistory load(Path file, RevisitPolicy policy) throws IOException {
+        CrawlHistory history = new CrawlHistory(policy);
+        if (Files.exists(file)) history.pages.putAll(readPages(file));
+        return history;
+    }
+
+    public PageHistory get(String url) {
+        return pages.get(url);
+    }
+
+    public Set<String> urls() {
+        return pages.keySet();
+    }
+
+    public int size() {
+        return pages.size();
+    }
+
+    // True if the page is new or its content changed since the last crawl
+    public boolean record(String url, long contentHash) {
+        long now = clock.getAsLong();
+        PageHistory previous = pages.get(url);
+        pages.put(url, policy.next(previous, contentHash, now));
+        return previous == null || previous.getContentHash() != contentHash;
+    }
+
+    // Gone from the site, it won't be revisited
+    public void forget(String url) {
+        pages.remove(url);
+    }
+
+    public List<String> due() {
+        long now = clock.getAsLong();
+        List<String> due = new ArrayList<>();
+        pages.forEach((url, page) -> {
+            if (page.isDue(now)) due.add(url);
+        });
+        return due;
+    }
+
+    public void writeTo(Path file) throws IOException {
+        List<Map.Entry<String, PageHistory>> entries = new ArrayList<>(pages.entrySet());
+        BinaryFiles.write(file, MAGIC, VERSION, out -> {
+            writeVarint(out, entries.size());
+            for (Map.Entry<String, PageHistory> entry : entries) {
+                byte[] bytes = entry.getKey().getBytes(StandardCharsets.UTF_8);
+                writeVarint(out, bytes.length);
+                out.write(bytes);
+                PageHistory page = entry.getValue();
+                out.writeLong(page.getContentHash());
+                writeVarint(out, TimeUnit.MILLISECONDS.toSeconds(page.getFetchedAt()));
+                writeVarint(out, TimeUnit.MILLISECONDS.toSeconds(page.getRevisitMillis()));
+            }
+        });
+        log.info("Saved the history of {} pages to {}", entries.size(), file);
+    }
+
+    private static Map<String, PageHistory> readPages(Path file) throws IOException {
+        return BinaryFiles.read(file, MAGIC, VERSION, "crawl history", in -> {
+            Map<String, PageHistory> pages = new HashMap<>();
+            long count = readVarint(in);
+            for (long i = 0; i < count; i++) {
+                byte[] bytes = new byte[(int) readVarint(in)];
+                in.readFully(bytes);
+                long hash = in.readLong();
+                long fetchedAt = TimeUnit.SECONDS.toMillis(readVarint(in));
+                long revisit = TimeUnit.SECONDS.toMillis(readVarint(in));
+                pages.put(new String(bytes, StandardCharsets.UTF_8), new PageHistory(hash, fetchedAt, revisit));
+            }
+            return pages;
+        });
+    }
+}
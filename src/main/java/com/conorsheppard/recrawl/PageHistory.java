@@ -0,0 +1,21 @@
+package com.conorsheppard.recrawl;
+
+import lombok.Value;
+
+// What the last crawl saw of a page: a hash of its body, when it was fetched, and how long to leave it before the
+// next visit
+@Value
+public class PageHistory {
+    long contentHash;
+    // Epoch millis
+    long fetchedAt;
+    long revisitMillis;
+
+    public long dueAt() {
+        return fetchedAt + revisitMillis;
+    }
+
+    public boolean isDue(long now) {
+        return now >= dueAt();
+    }
+}
@@ -0,0 +1,118 @@
+package com.conorsheppard.recrawl;
+
+import com.conorsheppard.parser.LinkExtractor;
+import com.conorsheppard.web.FetchResult;
+import com.conorsheppard.web.HeadResponse;
+import com.conorsheppard.web.Validators;
+import com.conorsheppard.web.WebClient;
+import org.jsoup.HttpStatusException;
+import org.jsoup.nodes.Document;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+// Only follows links from pages that are new or have changed since the last crawl. The body is hashed as it streams
+// through the extractor and the page's links are held back until the hash is known, then handed on if the history
+// says the page changed and dropped if it didn't. A 304 from a cache in front of the server counts as unchanged.
+// A page the server says is gone is forgotten. If the body fails partway its links are kept, there's no telling
+// whether it changed. Only the single request fetch is followed, fetch() hands back a Document for the crawler to
+// take links from itself
+public class RecrawlWebClient implements WebClient {
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final WebClient delegate;
+    private final CrawlHistory history;
+
+    public RecrawlWebClient(WebClient delegate, CrawlHistory history) {
+        this.delegate = delegate;
+        this.history = history;
+    }
+
+    @Override
+    public Document fetch(String url) throws IOException {
+        return delegate.fetch(url);
+    }
+
+    @Override
+    public HeadResponse head(String url) throws IOException {
+        return delegate.head(url);
+    }
+
+    @Override
+    public FetchResult fetchHtml(String url, LinkExtractor extractor, Consumer<String> links) throws IOException {
+        List<String> found = new ArrayList<>();
+        long[] hash = {FNV_OFFSET};
+        LinkExtractor hashing = (body, charset, baseUri, sink) ->
+                extractor.extract(new HashingInputStream(body, hash), charset, baseUri, sink);
+        FetchResult result;
+        try {
+            result = delegate.fetchHtml(url, hashing, found::add);
+        } catch (HttpStatusException e) {
+            if (e.getStatusCode() == 404 || e.getStatusCode() == 410) history.forget(url);
+            found.forEach(links);
+            throw e;
+        } catch (IOException e) {
+            found.forEach(links);
+            throw e;
+        }
+
+        if (result.isNotModified()) {
+            PageHistory previous = history.get(url);
+            if (previous != null) history.record(url, previous.getContentHash());
+            else found.forEach(links);
+        } else if (result.isHtml() && history.record(url, hash[0])) {
+            found.forEach(links);
+        }
+        return result;
+    }
+
+    @Override
+    public FetchResult fetchHtml(String url, Validators validators, LinkExtractor extractor, Consumer<String> links)
+            throws IOException {
+        return delegate.fetchHtml(url, validators, extractor, links);
+    }
+
+    @Override
+    public String fetchText(String url, int maxBytes) throws IOException {
+        return delegate.fetchText(url, maxBytes);
+    }
+
+    // 64-bit FNV-1a over every byte read, cheap next to the parse it sits under
+    private static final class HashingInputStream extends FilterInputStream {
+        private final long[] hash;
+
+        HashingInputStream(InputStream in, long[] hash) {
+            super(in);
+            this.hash = hash;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) hash[0] = (hash[0] ^ b) * FNV_PRIME;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            long h = hash[0];
+            for (int i = off; i < off + read; i++) h = (h ^ (b[i] & 0xFF)) * FNV_PRIME;
+            hash[0] = h;
+            return read;
+        }
+
+        // Skipped bytes would go unhashed, so they're read instead
+        @Override
+        public long skip(long n) throws IOException {
+            byte[] discard = new byte[(int) Math.min(n, 8192)];
+            int read = read(discard, 0, discard.length);
+            return Math.max(read, 0);
+        }
+    }
+}
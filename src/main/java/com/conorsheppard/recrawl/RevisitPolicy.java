@@ -0,0 +1,33 @@
+package com.conorsheppard.recrawl;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.time.Duration;
+
+// Adapts each page's revisit interval to how often it's seen to change: a page found unchanged is left twice as long
+// next time, a changed one half as long, within the bounds. Pages that change daily settle near a day and pages
+// that never change drift out to the maximum, so a refresh spends its fetches where the changes are
+@Value
+@Builder(toBuilder = true)
+public class RevisitPolicy {
+    @Builder.Default
+    Duration initialInterval = Duration.ofDays(1);
+    @Builder.Default
+    Duration minInterval = Duration.ofHours(1);
+    @Builder.Default
+    Duration maxInterval = Duration.ofDays(30);
+
+    public static RevisitPolicy defaults() {
+        return RevisitPolicy.builder().build();
+    }
+
+    // Null previous for a page fetched for the first time
+    public PageHistory next(PageHistory previous, long contentHash, long now) {
+        if (previous == null) return new PageHistory(contentHash, now, initialInterval.toMillis());
+        long interval = previous.getContentHash() == contentHash
+                ? Math.min(maxInterval.toMillis(), previous.getRevisitMillis() * 2)
+                : Math.max(minInterval.toMillis(), previous.getRevisitMillis() / 2);
+        return new PageHistory(contentHash, now, interval);
+    }
+}
@@ -0,0 +1,111 @@
+package com.conorsheppard.robots;
+
+import com.conorsheppard.url.CanonicalUrl;
+import com.conorsheppard.web.WebClient;
+import lombok.extern.slf4j.Slf4j;
+import org.jsoup.HttpStatusException;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.LongSupplier;
+
+// Fetches robots.txt once per origin and keeps the compiled rules for a TTL, so checking a link is a map lookup
+// and a walk down the rules. Concurrent lookups for an origin that isn't loaded yet wait for the one fetch rather
+// than each sending their own. Follows RFC 9309 for failures: a 4xx means there are no rules, while a 5xx or an
+// unreachable host means everything is disallowed until a retry shortly after. That's told apart from rules that
+// disallow a URL, so the crawler can hold on to links it can't check yet
+@Slf4j
+public class RobotsCache {
+    public static final String PRODUCT_TOKEN = "simple-web-crawler-java";
+    // RFC 9309 asks crawlers to parse at least the first 500 KiB
+    private static final int MAX_ROBOTS_BYTES = 500 * 1024;
+    private static final int MAX_ORIGINS = 10_000;
+
+    private final WebClient webClient;
+    private final long ttlNanos;
+    private final long unreachableTtlNanos;
+    // Told about each host's Crawl-delay, keyed by authority (host[:port]) like the politeness frontier
+    private final BiConsumer<String, Duration> crawlDelayListener;
+    private final LongSupplier clock;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    public RobotsCache(WebClient webClient, Duration ttl, Duration unreachableTtl,
+                       BiConsumer<String, Duration> crawlDelayListener) {
+        this(webClient, ttl, unreachableTtl, crawlDelayListener, System::nanoTime);
+    }
+
+    RobotsCache(WebClient webClient, Duration ttl, Duration unreachableTtl,
+                BiConsumer<String, Duration> crawlDelayListener, LongSupplier clock) {
+        this.webClient = webClient;
+        this.ttlNanos = ttl.toNanos();
+        this.unreachableTtlNanos = unreachableTtl.toNanos();
+        this.crawlDelayListener = crawlDelayListener;
+        this.clock = clock;
+    }
+
+    public boolean isAllowed(CanonicalUrl url) {
+        return access(url) == Access.ALLOWED;
+    }
+
+    public Access access(CanonicalUrl url) {
+        Entry entry = entry(url.getUrl().substring(0, url.getPathStart()));
+        if (entry.unavailable) return Access.UNAVAILABLE;
+        return entry.rules.isAllowed(url.requestTarget()) ? Access.ALLOWED : Access.DISALLOWED;
+    }
+
+    private Entry entry(String origin) {
+        long now = clock.getAsLong();
+        Entry entry = entries.computeIfAbsent(origin, key -> new Entry(now));
+        if (entry.expiresAt - now > 0) return entry;
+        synchronized (entry) {
+            if (entry.expiresAt - now <= 0) load(origin, entry, now);
+            return entry;
+        }
+    }
+
+    private void load(String origin, Entry entry, long now) {
+        RobotsRules rules;
+        boolean unavailable = false;
+        try {
+            String robotsTxt = webClient.fetchText(origin + "/robots.txt", MAX_ROBOTS_BYTES);
+            rules = robotsTxt == null ? RobotsRules.ALLOW_ALL : RobotsParser.parse(robotsTxt, PRODUCT_TOKEN);
+        } catch (HttpStatusException e) {
+            unavailable = e.getStatusCode() >= 500;
+            rules = unavailable ? RobotsRules.DISALLOW_ALL : RobotsRules.ALLOW_ALL;
+        } catch (IOException e) {
+            log.warn("Couldn't fetch robots.txt for {}, treating it as disallowed: {}", origin, e.getMessage());
+            rules = RobotsRules.DISALLOW_ALL;
+            unavailable = true;
+        }
+
+        entry.rules = rules;
+        entry.unavailable = unavailable;
+        entry.expiresAt = now + (unavailable ? unreachableTtlNanos : ttlNanos);
+        if (rules.getCrawlDelay() != null) {
+            crawlDelayListener.accept(origin.substring(origin.indexOf("://") + 3), rules.getCrawlDelay());
+        }
+        if (entries.size() > MAX_ORIGINS) entries.values().removeIf(stale -> stale.expiresAt - now <= 0);
+    }
+
+    public enum Access {
+        ALLOWED,
+        DISALLOWED,
+        // robots.txt couldn't be fetched, everything is disallowed until it's retried
+        UNAVAILABLE
+    }
+
+    private static final class Entry {
+        // Written before expiresAt, so a reader that sees a live expiry also sees its rules
+        private volatile RobotsRules rules = RobotsRules.ALLOW_ALL;
+        private volatile boolean unavailable;
+        private volatile long expiresAt;
+
+        // Expired from the start, so the first lookup loads it
+        private Entry(long now) {
+            this.expiresAt = now;
+        }
+    }
+}
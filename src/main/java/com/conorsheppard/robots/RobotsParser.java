@@ -0,0 +1,74 @@
+package com.conorsheppard.robots;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+// Picks the rules that apply to one user agent out of a robots.txt. Every group naming the agent's product token
+// is merged, falling back to the '*' groups when none does. Unknown lines, e.g. Sitemap, are ignored
+public class RobotsParser {
+    public static RobotsRules parse(String robotsTxt, String productToken) {
+        String token = productToken.toLowerCase(Locale.ROOT);
+        List<Group> groups = new ArrayList<>();
+        Group current = null;
+        boolean inAgentLines = false;
+
+        for (String line : robotsTxt.split("\r\n|\r|\n")) {
+            int comment = line.indexOf('#');
+            if (comment >= 0) line = line.substring(0, comment);
+            int colon = line.indexOf(':');
+            if (colon < 0) continue;
+            String key = line.substring(0, colon).trim().toLowerCase(Locale.ROOT);
+            String value = line.substring(colon + 1).trim();
+
+            if (key.equals("user-agent")) {
+                // Consecutive user-agent lines share one group
+                if (!inAgentLines) {
+                    current = new Group();
+                    groups.add(current);
+                }
+                current.agents.add(value.toLowerCase(Locale.ROOT));
+                inAgentLines = true;
+                continue;
+            }
+            inAgentLines = false;
+            if (current == null) continue;
+            switch (key) {
+                case "allow", "disallow" -> {
+                    // An empty Disallow allows everything, so it adds no rule
+                    if (!value.isEmpty()) current.rules.add(new RobotsRules.Rule(value, key.equals("allow")));
+                }
+                case "crawl-delay" -> current.crawlDelay = parseDelay(value);
+                default -> {
+                }
+            }
+        }
+
+        List<Group> matching = groups.stream().filter(group -> group.agents.contains(token)).toList();
+        if (matching.isEmpty()) matching = groups.stream().filter(group -> group.agents.contains("*")).toList();
+
+        List<RobotsRules.Rule> rules = new ArrayList<>();
+        Duration crawlDelay = null;
+        for (Group group : matching) {
+            rules.addAll(group.rules);
+            if (group.crawlDelay != null) crawlDelay = group.crawlDelay;
+        }
+        return rules.isEmpty() && crawlDelay == null ? RobotsRules.ALLOW_ALL : new RobotsRules(rules, crawlDelay);
+    }
+
+    private static Duration parseDelay(String value) {
+        try {
+            double seconds = Double.parseDouble(value);
+            return seconds > 0 ? Duration.ofMillis((long) (seconds * 1000)) : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static final class Group {
+        private final List<String> agents = new ArrayList<>();
+        private final List<RobotsRules.Rule> rules = new ArrayList<>();
+        private Duration crawlDelay;
+    }
+}
@@ -0,0 +1,131 @@
+package com.conorsheppard.robots;
+
+import lombok.Getter;
+import lombok.Value;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.*;
+
+// The Allow/Disallow rules of one robots.txt group, compiled for matching against paths. Plain prefixes go in a
+// trie so the longest match is found in one walk down the path, wildcard patterns are kept longest first and only
+// tried while they could still beat the trie's match. The longest matching rule wins and Allow wins ties (RFC 9309)
+public class RobotsRules {
+    public static final RobotsRules ALLOW_ALL = new RobotsRules(List.of(), null);
+    public static final RobotsRules DISALLOW_ALL = new RobotsRules(List.of(new Rule("/", false)), null);
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    private final Node root = new Node();
+    private final List<Rule> wildcardRules = new ArrayList<>();
+    // Null when the group didn't set one
+    @Getter
+    private final Duration crawlDelay;
+
+    RobotsRules(List<Rule> rules, Duration crawlDelay) {
+        this.crawlDelay = crawlDelay;
+        for (Rule rule : rules) {
+            String pattern = normalise(rule.pattern);
+            if (pattern.indexOf('*') >= 0 || pattern.endsWith("$")) {
+                wildcardRules.add(new Rule(pattern, rule.allow));
+            } else {
+                insert(pattern, rule.allow);
+            }
+        }
+        wildcardRules.sort(Comparator.comparingInt((Rule rule) -> rule.pattern.length()).reversed()
+                .thenComparing(rule -> !rule.allow));
+    }
+
+    // Path and query of the URL, starting with '/'
+    public boolean isAllowed(String path) {
+        if (path.isEmpty()) path = "/";
+        if (path.equals("/robots.txt")) return true;
+
+        int longest = -1;
+        boolean allowed = true;
+        Node node = root;
+        for (int i = 0; node != null; i++) {
+            if (node.hasRule) {
+                longest = i;
+                allowed = node.allow;
+            }
+            node = i < path.length() ? node.children.get(path.charAt(i)) : null;
+        }
+
+        for (Rule rule : wildcardRules) {
+            int length = rule.pattern.length();
+            if (length < longest || (length == longest && (allowed || !rule.allow))) break;
+            if (matches(rule.pattern, path)) return rule.allow;
+        }
+        return longest < 0 || allowed;
+    }
+
+    private void insert(String pattern, boolean allow) {
+        Node node = root;
+        for (int i = 0; i < pattern.length(); i++) {
+            node = node.children.computeIfAbsent(pattern.charAt(i), c -> new Node());
+        }
+        node.allow = node.hasRule ? node.allow || allow : allow;
+        node.hasRule = true;
+    }
+
+    // '*' matches any run of characters, a trailing '$' anchors the pattern to the end of the path
+    static boolean matches(String pattern, String path) {
+        boolean anchored = pattern.endsWith("$");
+        int patternLength = anchored ? pattern.length() - 1 : pattern.length();
+        int p = 0;
+        int s = 0;
+        int star = -1;
+        int starMatch = 0;
+        while (s < path.length()) {
+            if (p < patternLength && pattern.charAt(p) == '*') {
+                star = p++;
+                starMatch = s;
+            } else if (p < patternLength && pattern.charAt(p) == path.charAt(s)) {
+                p++;
+                s++;
+            } else if (p == patternLength && !anchored) {
+                return true;
+            } else if (star >= 0) {
+                p = star + 1;
+                s = ++starMatch;
+            } else {
+                return false;
+            }
+        }
+        while (p < patternLength && pattern.charAt(p) == '*') p++;
+        return p == patternLength;
+    }
+
+    // Crawled URLs are percent-encoded with uppercase hex, so patterns are brought into the same form
+    private static String normalise(String pattern) {
+        StringBuilder out = new StringBuilder(pattern.length());
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            if (c == '%' && i + 2 < pattern.length()) {
+                out.append(c).append(Character.toUpperCase(pattern.charAt(++i)))
+                        .append(Character.toUpperCase(pattern.charAt(++i)));
+            } else if (c > ' ' && c < 0x7F) {
+                out.append(c);
+            } else {
+                int end = Character.isHighSurrogate(c) && i + 1 < pattern.length() ? i + 2 : i + 1;
+                for (byte b : pattern.substring(i, end).getBytes(StandardCharsets.UTF_8)) {
+                    out.append('%').append(HEX[(b >> 4) & 0xF]).append(HEX[b & 0xF]);
+                }
+                i = end - 1;
+            }
+        }
+        return out.toString();
+    }
+
+    @Value
+    static class Rule {
+        String pattern;
+        boolean allow;
+    }
+
+    private static final class Node {
+        private final Map<Character, Node> children = new HashMap<>(4);
+        private boolean hasRule;
+        private boolean allow;
+    }
+}
@@ -0,0 +1,33 @@
+package com.conorsheppard.url;
+
+import lombok.Value;
+
+@Value
+public class CanonicalUrl {
+    String url;
+    String host;
+    // Bounds of the path within url, so callers can inspect it without another substring
+    int pathStart;
+    int pathEnd;
+    // The link's path ended in a slash before canonicalisation took it off
+    boolean trailingSlash;
+
+    public String path() {
+        return url.substring(pathStart, pathEnd);
+    }
+
+    // The path and query as the link had them, so rules written for "/dir/" still see the slash
+    public String requestTarget() {
+        if (!trailingSlash) return url.substring(pathStart);
+        return path() + "/" + url.substring(pathEnd);
+    }
+
+    public boolean hasExtension(String[] dottedExtensions) {
+        int lastSlash = url.lastIndexOf('/', pathEnd - 1);
+        for (String extension : dottedExtensions) {
+            int offset = pathEnd - extension.length();
+            if (offset > lastSlash && url.regionMatches(true, offset, extension, 0, extension.length())) return true;
+        }
+        return false;
+    }
+}
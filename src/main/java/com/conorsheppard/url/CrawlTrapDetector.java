@@ -0,0 +1,67 @@
+package com.conorsheppard.url;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Spots links that lead into URL spaces without end, judged from the URL alone so they're dropped before they cost
+// a cache lookup or a fetch. Paths repeating a segment, as relative links resolved against the wrong base produce
+// (/a/b/a/b/a/b), or nested absurdly deep are traps. So is a path reached with more distinct query strings than a
+// real page has variants, as calendars and faceted search produce. Only a hash of each query is kept per path
+public class CrawlTrapDetector {
+    private static final int MAX_PATH_SEGMENTS = 32;
+
+    private final int maxSegmentRepeats;
+    private final int maxQueryVariants;
+    private final Map<String, Set<Integer>> queryVariants = new ConcurrentHashMap<>();
+
+    // Zero or less turns a check off
+    public CrawlTrapDetector(int maxSegmentRepeats, int maxQueryVariants) {
+        this.maxSegmentRepeats = maxSegmentRepeats;
+        this.maxQueryVariants = maxQueryVariants;
+    }
+
+    public boolean isTrap(CanonicalUrl url) {
+        return repeatsSegments(url) || explodesQueries(url);
+    }
+
+    // Compares segments in place, a path has few enough that pairwise is cheaper than splitting it
+    private boolean repeatsSegments(CanonicalUrl url) {
+        String text = url.getUrl();
+        int start = url.getPathStart();
+        int end = url.getPathEnd();
+        int segments = 0;
+        for (int i = start; i < end; i++) if (text.charAt(i) == '/') segments++;
+        if (segments > MAX_PATH_SEGMENTS) return true;
+        if (maxSegmentRepeats <= 0 || segments < maxSegmentRepeats) return false;
+
+        int[] bounds = new int[segments + 1];
+        int count = 0;
+        for (int i = start; i < end; i++) if (text.charAt(i) == '/') bounds[count++] = i + 1;
+        bounds[count] = end + 1;
+        for (int i = 0; i < count; i++) {
+            int length = bounds[i + 1] - 1 - bounds[i];
+            if (length == 0) continue;
+            int repeats = 1;
+            for (int j = i + 1; j < count && repeats < maxSegmentRepeats; j++) {
+                if (bounds[j + 1] - 1 - bounds[j] == length && text.regionMatches(bounds[i], text, bounds[j], length)) {
+                    repeats++;
+                }
+            }
+            if (repeats >= maxSegmentRepeats) return true;
+        }
+        return false;
+    }
+
+    // Variants already seen stay allowed, the limit only turns away new ones
+    private boolean explodesQueries(CanonicalUrl url) {
+        String text = url.getUrl();
+        int query = url.getPathEnd();
+        if (maxQueryVariants <= 0 || query >= text.length() || text.charAt(query) != '?') return false;
+        Set<Integer> variants = queryVariants.computeIfAbsent(text.substring(0, query), path -> ConcurrentHashMap.newKeySet());
+        int hash = text.substring(query).hashCode();
+        if (variants.size() >= maxQueryVariants && !variants.contains(hash)) return true;
+        variants.add(hash);
+        return false;
+    }
+}
@@ -0,0 +1,155 @@
+package com.conorsheppard.url;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Which query parameters survive canonicalisation. Rules are one per line, either for every host or for one host
+// and its subdomains:
+//
+//   deny sessionid sort
+//   books.toscrape.com allow page
+//   shop.example.com deny view_*
+//
+// A host's allow list keeps only the parameters it names, anything else is kept unless a deny list for every host
+// or that host names it. Tracking parameters are always denied unless allowed by name. A trailing * matches a
+// prefix. The lines are compiled once into arrays per host, so a link costs a map lookup or two and a scan over a
+// handful of names, with no substrings or regexes. NONE drops every query, as the crawler always used to
+public class QueryRules {
+    public static final QueryRules NONE = new QueryRules(false, new Matcher(null, List.of()), Map.of(), 0, 0);
+    static final List<String> TRACKING_PARAMS = List.of(
+            "utm_*", "fbclid", "gclid", "dclid", "msclkid", "mc_cid", "mc_eid", "_ga", "_gl", "yclid", "igshid");
+    public static final int DEFAULT_MAX_PARAMS = 10;
+    public static final int DEFAULT_MAX_VALUE_LENGTH = 256;
+
+    private final boolean keepsQueries;
+    private final Matcher everyHost;
+    private final Map<String, Matcher> hosts;
+    // Past either limit a query is most likely session state or a search explosion, and is dropped as a whole
+    private final int maxParams;
+    private final int maxValueLength;
+
+    private QueryRules(boolean keepsQueries, Matcher everyHost, Map<String, Matcher> hosts, int maxParams,
+                       int maxValueLength) {
+        this.keepsQueries = keepsQueries;
+        this.everyHost = everyHost;
+        this.hosts = hosts;
+        this.maxParams = maxParams;
+        this.maxValueLength = maxValueLength;
+    }
+
+    // Keeps queries with only the tracking parameters stripped
+    public static QueryRules defaults() {
+        return compile(List.of(), DEFAULT_MAX_PARAMS, DEFAULT_MAX_VALUE_LENGTH);
+    }
+
+    public static QueryRules load(Path file, int maxParams, int maxValueLength) throws IOException {
+        return compile(Files.readAllLines(file), maxParams, maxValueLength);
+    }
+
+    public static QueryRules compile(List<String> lines, int maxParams, int maxValueLength) {
+        List<String> allowed = null;
+        List<String> denied = new ArrayList<>(TRACKING_PARAMS);
+        Map<String, List<String>> hostAllowed = new LinkedHashMap<>();
+        Map<String, List<String>> hostDenied = new LinkedHashMap<>();
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i).strip();
+            if (line.isEmpty() || line.startsWith("#")) continue;
+            String[] words = line.split("\\s+");
+            int action = words[0].equals("allow") || words[0].equals("deny") ? 0 : 1;
+            if (action >= words.length || !(words[action].equals("allow") || words[action].equals("deny"))) {
+                throw new IllegalArgumentException("Line " + (i + 1) + " of the query rules needs allow or deny: "
+                        + line);
+            }
+            List<String> names = List.of(words).subList(action + 1, words.length);
+            boolean allow = words[action].equals("allow");
+            if (action == 0 && allow) {
+                if (allowed == null) allowed = new ArrayList<>();
+                allowed.addAll(names);
+            } else if (action == 0) {
+                denied.addAll(names);
+            } else {
+                String host = words[0].toLowerCase();
+                (allow ? hostAllowed : hostDenied).computeIfAbsent(host, key -> new ArrayList<>()).addAll(names);
+                hostAllowed.putIfAbsent(host, null);
+            }
+        }
+
+        // Each host's rules are merged with those for every host up front, so a link only looks up one matcher
+        Map<String, Matcher> hosts = new HashMap<>();
+        for (Map.Entry<String, List<String>> host : hostAllowed.entrySet()) {
+            List<String> hostDeny = new ArrayList<>(denied);
+            hostDeny.addAll(hostDenied.getOrDefault(host.getKey(), List.of()));
+            hosts.put(host.getKey(), new Matcher(host.getValue() != null ? host.getValue() : allowed, hostDeny));
+        }
+        return new QueryRules(true, new Matcher(allowed, denied), hosts, maxParams, maxValueLength);
+    }
+
+    public boolean keepsQueries() {
+        return keepsQueries;
+    }
+
+    int maxParams() {
+        return maxParams <= 0 ? Integer.MAX_VALUE : maxParams;
+    }
+
+    int maxValueLength() {
+        return maxValueLength <= 0 ? Integer.MAX_VALUE : maxValueLength;
+    }
+
+    // The most specific host with rules of its own, so rules for example.com also cover www.example.com
+    Matcher forHost(String host) {
+        if (hosts.isEmpty()) return everyHost;
+        String suffix = host;
+        while (true) {
+            Matcher matcher = hosts.get(suffix);
+            if (matcher != null) return matcher;
+            int dot = suffix.indexOf('.');
+            if (dot < 0) return everyHost;
+            suffix = suffix.substring(dot + 1);
+        }
+    }
+
+    static final class Matcher {
+        // Null when everything not denied is kept
+        private final Names allowed;
+        private final Names denied;
+
+        Matcher(List<String> allowed, List<String> denied) {
+            this.allowed = allowed == null ? null : new Names(allowed);
+            this.denied = new Names(denied);
+        }
+
+        // The parameter name at url[start, end)
+        boolean keeps(String url, int start, int end) {
+            return allowed != null ? allowed.matches(url, start, end) : !denied.matches(url, start, end);
+        }
+    }
+
+    private static final class Names {
+        private final String[] exact;
+        private final String[] prefixes;
+
+        Names(List<String> names) {
+            exact = names.stream().filter(name -> !name.endsWith("*")).distinct().toArray(String[]::new);
+            prefixes = names.stream().filter(name -> name.endsWith("*"))
+                    .map(name -> name.substring(0, name.length() - 1)).distinct().toArray(String[]::new);
+        }
+
+        boolean matches(String url, int start, int end) {
+            int length = end - start;
+            for (String name : exact) {
+                if (name.length() == length && url.regionMatches(start, name, 0, length)) return true;
+            }
+            for (String prefix : prefixes) {
+                if (prefix.length() <= length && url.regionMatches(start, prefix, 0, prefix.length())) return true;
+            }
+            return false;
+        }
+    }
+}
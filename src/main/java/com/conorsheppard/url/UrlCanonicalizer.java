@@ -0,0 +1,267 @@
+package com.conorsheppard.url;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+// Canonicalises absolute URLs in a single pass over the string, without regexes or java.net.URI. The scheme
+// and host are lowercased, the path keeps its case, default ports, userinfo and the fragment are dropped, dot
+// segments are resolved and trailing slashes are removed. The query is dropped too unless the rules keep it, then
+// only the parameters they allow are kept, sorted by name. Characters that aren't legal in a path or query are
+// percent-encoded as UTF-8 and existing escapes get uppercase hex, so equivalent links compare equal.
+public class UrlCanonicalizer {
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    private final QueryRules queryRules;
+
+    public UrlCanonicalizer() {
+        this(QueryRules.NONE);
+    }
+
+    public UrlCanonicalizer(QueryRules queryRules) {
+        this.queryRules = queryRules;
+    }
+
+    // Returns null if the URL isn't absolute or its authority is malformed
+    public CanonicalUrl canonicalize(String url) {
+        if (url == null) return null;
+        int start = 0;
+        int end = url.length();
+        while (start < end && url.charAt(start) <= ' ') start++;
+        while (end > start && url.charAt(end - 1) <= ' ') end--;
+
+        int schemeEnd = schemeEnd(url, start, end);
+        if (schemeEnd < 0 || !url.startsWith("//", schemeEnd + 1)) return null;
+        String scheme = scheme(url, start, schemeEnd);
+
+        int authorityStart = schemeEnd + 3;
+        int authorityEnd = authorityStart;
+        while (authorityEnd < end && !isAuthorityTerminator(url.charAt(authorityEnd))) authorityEnd++;
+        int hostStart = url.lastIndexOf('@', authorityEnd - 1) + 1;
+        if (hostStart < authorityStart) hostStart = authorityStart;
+
+        int hostEnd = hostEnd(url, hostStart, authorityEnd);
+        if (hostEnd < 0) return null;
+        int port = port(url, hostEnd, authorityEnd);
+        if (port == Integer.MIN_VALUE) return null;
+
+        int fragment = url.indexOf('#', authorityEnd);
+        int pathLimit = fragment < 0 || fragment > end ? end : fragment;
+        int queryEnd = pathLimit;
+        int query = url.indexOf('?', authorityEnd);
+        if (query >= 0 && query < pathLimit) pathLimit = query;
+
+        StringBuilder out = new StringBuilder(end - start + 8);
+        out.append(scheme).append("://");
+        int outHostStart = out.length();
+        for (int i = hostStart; i < hostEnd; i++) out.append(toLowerAscii(url.charAt(i)));
+        String host = out.substring(outHostStart);
+        if (port >= 0 && port != defaultPort(scheme)) out.append(':').append(port);
+
+        int pathStart = out.length();
+        appendPath(out, url, authorityEnd, pathLimit, pathStart);
+        int length = out.length();
+        while (length > pathStart && out.charAt(length - 1) == '/') length--;
+        boolean trailingSlash = length < out.length();
+        out.setLength(length);
+        if (queryRules.keepsQueries() && pathLimit == query) {
+            appendQuery(out, url, query + 1, queryEnd, queryRules.forHost(host));
+        }
+
+        return new CanonicalUrl(out.toString(), host, pathStart, length, trailingSlash);
+    }
+
+    // Parameters are found in place and only their bounds kept, in order as they're found. Few enough reach here that
+    // an insertion sort beats anything cleverer. Identical parameters are kept once. Too many parameters, or one value
+    // too long, and the whole query is dropped rather than guessing which parts matter
+    private void appendQuery(StringBuilder out, String url, int start, int end, QueryRules.Matcher rules) {
+        int maxParams = queryRules.maxParams();
+        int[] bounds = new int[Math.min(maxParams, 16) * 3];
+        int count = 0;
+        for (int paramStart = start, paramEnd; paramStart < end; paramStart = paramEnd + 1) {
+            paramEnd = url.indexOf('&', paramStart);
+            if (paramEnd < 0 || paramEnd > end) paramEnd = end;
+            int nameEnd = url.indexOf('=', paramStart);
+            if (nameEnd < 0 || nameEnd > paramEnd) nameEnd = paramEnd;
+            if (nameEnd == paramStart || !rules.keeps(url, paramStart, nameEnd)) continue;
+
+            int at = count * 3;
+            while (at > 0 && compare(url, bounds, at - 3, paramStart, nameEnd, paramEnd) > 0) at -= 3;
+            if (at > 0 && compare(url, bounds, at - 3, paramStart, nameEnd, paramEnd) == 0) continue;
+            if (count == maxParams || paramEnd - nameEnd - 1 > queryRules.maxValueLength()) return;
+            if ((count + 1) * 3 > bounds.length) bounds = Arrays.copyOf(bounds, bounds.length * 2);
+            System.arraycopy(bounds, at, bounds, at + 3, count * 3 - at);
+            bounds[at] = paramStart;
+            bounds[at + 1] = nameEnd;
+            bounds[at + 2] = paramEnd;
+            count++;
+        }
+
+        for (int i = 0; i < count * 3; i += 3) {
+            out.append(i == 0 ? '?' : '&');
+            appendEncoded(out, url, bounds[i], bounds[i + 2], true);
+        }
+    }
+
+    // By name and then the whole parameter, so the order a page wrote them in never matters
+    private static int compare(String url, int[] bounds, int at, int start, int nameEnd, int end) {
+        int byName = compareRegions(url, bounds[at], bounds[at + 1], start, nameEnd);
+        return byName != 0 ? byName : compareRegions(url, bounds[at], bounds[at + 2], start, end);
+    }
+
+    private static int compareRegions(String url, int aStart, int aEnd, int bStart, int bEnd) {
+        int length = Math.min(aEnd - aStart, bEnd - bStart);
+        for (int i = 0; i < length; i++) {
+            int diff = url.charAt(aStart + i) - url.charAt(bStart + i);
+            if (diff != 0) return diff;
+        }
+        return (aEnd - aStart) - (bEnd - bStart);
+    }
+
+    // Index of the ':' ending a valid RFC 3986 scheme, or -1
+    private static int schemeEnd(String url, int start, int end) {
+        if (start == end || !isAsciiLetter(url.charAt(start))) return -1;
+        for (int i = start + 1; i < end; i++) {
+            char c = url.charAt(i);
+            if (c == ':') return i;
+            if (!isAsciiLetter(c) && !isDigit(c) && c != '+' && c != '-' && c != '.') return -1;
+        }
+        return -1;
+    }
+
+    // Reuses the constants for the common schemes so the hot path doesn't allocate
+    private static String scheme(String url, int start, int end) {
+        int length = end - start;
+        if (length == 5 && url.regionMatches(true, start, "https", 0, 5)) return "https";
+        if (length == 4 && url.regionMatches(true, start, "http", 0, 4)) return "http";
+        StringBuilder scheme = new StringBuilder(length);
+        for (int i = start; i < end; i++) scheme.append(toLowerAscii(url.charAt(i)));
+        return scheme.toString();
+    }
+
+    // Index after the host, or -1 if it's empty or contains characters a host can't
+    private static int hostEnd(String url, int start, int end) {
+        if (start < end && url.charAt(start) == '[') {
+            int close = url.indexOf(']', start);
+            if (close < 0 || close >= end) return -1;
+            for (int i = start + 1; i < close; i++) {
+                char c = url.charAt(i);
+                if (!isHexDigit(c) && c != ':' && c != '.') return -1;
+            }
+            return close + 1;
+        }
+        int i = start;
+        while (i < end && url.charAt(i) != ':') {
+            char c = url.charAt(i);
+            if (!isAsciiLetter(c) && !isDigit(c) && c != '-' && c != '.' && c != '_') return -1;
+            i++;
+        }
+        return i == start ? -1 : i;
+    }
+
+    // -1 when no port is given, Integer.MIN_VALUE when it isn't a valid port number
+    private static int port(String url, int hostEnd, int authorityEnd) {
+        if (hostEnd == authorityEnd) return -1;
+        if (url.charAt(hostEnd) != ':') return Integer.MIN_VALUE;
+        if (hostEnd + 1 == authorityEnd) return -1;
+        int port = 0;
+        for (int i = hostEnd + 1; i < authorityEnd; i++) {
+            char c = url.charAt(i);
+            if (!isDigit(c)) return Integer.MIN_VALUE;
+            port = port * 10 + (c - '0');
+            if (port > 65535) return Integer.MIN_VALUE;
+        }
+        return port;
+    }
+
+    private static int defaultPort(String scheme) {
+        return switch (scheme) {
+            case "http" -> 80;
+            case "https" -> 443;
+            default -> -1;
+        };
+    }
+
+    // Appends the path one segment at a time, resolving "." and ".." against what has been written so far
+    private static void appendPath(StringBuilder out, String url, int start, int end, int floor) {
+        int segmentStart = start < end && url.charAt(start) == '/' ? start + 1 : start;
+        if (segmentStart == start && start == end) return;
+        while (segmentStart <= end) {
+            int segmentEnd = url.indexOf('/', segmentStart);
+            if (segmentEnd < 0 || segmentEnd > end) segmentEnd = end;
+            if (isDotSegment(url, segmentStart, segmentEnd, 1)) {
+                if (segmentEnd == end) out.append('/');
+            } else if (isDotSegment(url, segmentStart, segmentEnd, 2)) {
+                int parent = out.lastIndexOf("/");
+                out.setLength(Math.max(parent, floor));
+                if (segmentEnd == end) out.append('/');
+            } else {
+                out.append('/');
+                appendEncoded(out, url, segmentStart, segmentEnd, false);
+            }
+            segmentStart = segmentEnd + 1;
+        }
+    }
+
+    private static boolean isDotSegment(String url, int start, int end, int dots) {
+        if (end - start != dots) return false;
+        for (int i = start; i < end; i++) {
+            if (url.charAt(i) != '.') return false;
+        }
+        return true;
+    }
+
+    private static void appendEncoded(StringBuilder out, String url, int start, int end, boolean query) {
+        for (int i = start; i < end; i++) {
+            char c = url.charAt(i);
+            if (c == '%' && i + 2 < end && isHexDigit(url.charAt(i + 1)) && isHexDigit(url.charAt(i + 2))) {
+                out.append('%').append(toUpperAscii(url.charAt(i + 1))).append(toUpperAscii(url.charAt(i + 2)));
+                i += 2;
+            } else if (isPathChar(c) || (query && (c == '/' || c == '?'))) {
+                out.append(c);
+            } else if (c < 0x80) {
+                appendEscaped(out, c);
+            } else {
+                int codePointEnd = Character.isHighSurrogate(c) && i + 1 < end ? i + 2 : i + 1;
+                for (byte b : url.substring(i, codePointEnd).getBytes(StandardCharsets.UTF_8)) appendEscaped(out, b);
+                i = codePointEnd - 1;
+            }
+        }
+    }
+
+    private static void appendEscaped(StringBuilder out, int b) {
+        out.append('%').append(HEX[(b >> 4) & 0xF]).append(HEX[b & 0xF]);
+    }
+
+    // RFC 3986 pchar: unreserved, sub-delims, ':' and '@'
+    private static boolean isPathChar(char c) {
+        if (isAsciiLetter(c) || isDigit(c)) return true;
+        return switch (c) {
+            case '-', '.', '_', '~', '!', '$', '&', '\'', '(', ')', '*', '+', ',', ';', '=', ':', '@' -> true;
+            default -> false;
+        };
+    }
+
+    private static boolean isAuthorityTerminator(char c) {
+        return c == '/' || c == '?' || c == '#';
+    }
+
+    private static boolean isAsciiLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isHexDigit(char c) {
+        return isDigit(c) || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F');
+    }
+
+    private static char toLowerAscii(char c) {
+        return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+    }
+
+    private static char toUpperAscii(char c) {
+        return c >= 'a' && c <= 'z' ? (char) (c - ('a' - 'A')) : c;
+    }
+}
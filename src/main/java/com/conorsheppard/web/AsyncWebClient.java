@@ -0,0 +1,64 @@
+package com.conorsheppard.web;
+
+import com.conorsheppard.parser.LinkExtractor;
+import org.jsoup.nodes.Document;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+
+public interface AsyncWebClient extends WebClient {
+    CompletableFuture<Document> fetchAsync(String url);
+    CompletableFuture<HeadResponse> headAsync(String url);
+    CompletableFuture<FetchResult> fetchHtmlAsync(String url, Validators validators, LinkExtractor extractor,
+                                                  Consumer<String> links);
+    CompletableFuture<String> fetchTextAsync(String url, int maxBytes);
+
+    @Override
+    default Document fetch(String url) throws IOException {
+        return await(fetchAsync(url));
+    }
+
+    @Override
+    default HeadResponse head(String url) throws IOException {
+        return await(headAsync(url));
+    }
+
+    @Override
+    default FetchResult fetchHtml(String url, LinkExtractor extractor, Consumer<String> links) throws IOException {
+        return fetchHtml(url, Validators.NONE, extractor, links);
+    }
+
+    @Override
+    default FetchResult fetchHtml(String url, Validators validators, LinkExtractor extractor, Consumer<String> links)
+            throws IOException {
+        return await(fetchHtmlAsync(url, validators, extractor, links));
+    }
+
+    @Override
+    default String fetchText(String url, int maxBytes) throws IOException {
+        return await(fetchTextAsync(url, maxBytes));
+    }
+
+    private static <T> T await(CompletableFuture<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for response", e);
+        } catch (ExecutionException e) {
+            throw unwrap(e.getCause());
+        }
+    }
+
+    static IOException unwrap(Throwable cause) {
+        while ((cause instanceof CompletionException || cause instanceof UncheckedIOException)
+                && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause instanceof IOException io ? io : new IOException(cause);
+    }
+}
@@ -0,0 +1,27 @@
+package com.conorsheppard.web;
+
+import lombok.Value;
+
+@Value
+public class BodyLimit {
+    // Bodies are truncated after this many bytes, zero or less means unlimited
+    int maxBytes;
+    // Also ask the server for only the first maxBytes with a Range header
+    boolean rangeRequest;
+
+    public static BodyLimit unlimited() {
+        return new BodyLimit(0, false);
+    }
+
+    public static BodyLimit of(int maxBytes) {
+        return new BodyLimit(maxBytes, false);
+    }
+
+    public boolean isCapped() {
+        return maxBytes > 0;
+    }
+
+    public String rangeHeader() {
+        return "bytes=0-" + (maxBytes - 1);
+    }
+}
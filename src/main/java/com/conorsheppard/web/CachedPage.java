@@ -0,0 +1,14 @@
+package com.conorsheppard.web;
+
+import lombok.Value;
+
+import java.util.List;
+
+// What's kept of a fetched page to revalidate it later: the server's validators, and the links found on it so a
+// 304 can be answered without the body
+@Value
+public class CachedPage {
+    Validators validators;
+    String contentType;
+    List<String> links;
+}
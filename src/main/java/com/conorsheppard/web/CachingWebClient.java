@@ -0,0 +1,110 @@
+package com.conorsheppard.web;
+
+import com.conorsheppard.parser.LinkExtractor;
+import lombok.extern.slf4j.Slf4j;
+import org.jsoup.nodes.Document;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+// Revalidates pages kept from an earlier crawl instead of downloading them again. An HTML page's validators and the
+// links found on it go into the page cache, the next fetch is sent conditionally and a 304 replays the cached links
+// into the sink with no body to read or parse. Only the single request fetch goes through the cache, fetch() hands
+// back a parsed Document which the links alone can't stand in for. The cache is an optimisation, so a failure
+// reading or writing it is logged and the page fetched as if it weren't there
+@Slf4j
+public class CachingWebClient implements WebClient, Closeable {
+    private final WebClient delegate;
+    private final PageCache cache;
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder notModified = new LongAdder();
+
+    public CachingWebClient(WebClient delegate, PageCache cache) {
+        this.delegate = delegate;
+        this.cache = cache;
+    }
+
+    @Override
+    public Document fetch(String url) throws IOException {
+        return delegate.fetch(url);
+    }
+
+    @Override
+    public HeadResponse head(String url) throws IOException {
+        return delegate.head(url);
+    }
+
+    @Override
+    public FetchResult fetchHtml(String url, LinkExtractor extractor, Consumer<String> links) throws IOException {
+        CachedPage cached = lookup(url);
+        Validators validators = cached == null ? Validators.NONE : cached.getValidators();
+        List<String> found = new ArrayList<>();
+        FetchResult result = delegate.fetchHtml(url, validators, extractor, link -> {
+            found.add(link);
+            links.accept(link);
+        });
+
+        if (result.isNotModified() && cached != null) {
+            notModified.increment();
+            cached.getLinks().forEach(links);
+            // A 304 may carry fresher validators, e.g. a new Last-Modified
+            Validators current = result.getValidators().isEmpty() ? validators : result.getValidators();
+            if (!current.equals(validators)) {
+                store(url, new CachedPage(current, cached.getContentType(), cached.getLinks()));
+            }
+            return FetchResult.html(FetchResult.NOT_MODIFIED, cached.getContentType(), current);
+        }
+        // Without validators there's nothing to send next time, and a page that stopped being HTML has no links
+        if (result.isHtml() && !result.getValidators().isEmpty()) {
+            store(url, new CachedPage(result.getValidators(), result.getContentType(), found));
+        } else if (cached != null) {
+            cache.remove(url);
+        }
+        return result;
+    }
+
+    // Already conditional, the caller has its own idea of what the page was
+    @Override
+    public FetchResult fetchHtml(String url, Validators validators, LinkExtractor extractor, Consumer<String> links)
+            throws IOException {
+        return delegate.fetchHtml(url, validators, extractor, links);
+    }
+
+    @Override
+    public String fetchText(String url, int maxBytes) throws IOException {
+        return delegate.fetchText(url, maxBytes);
+    }
+
+    private CachedPage lookup(String url) {
+        lookups.increment();
+        try {
+            return cache.get(url);
+        } catch (IOException e) {
+            log.warn("Couldn't read {} from the page cache: {}", url, e.getMessage());
+            return null;
+        }
+    }
+
+    private void store(String url, CachedPage page) {
+        try {
+            cache.put(url, page);
+        } catch (IOException e) {
+            log.warn("Couldn't write {} to the page cache: {}", url, e.getMessage());
+        }
+    }
+
+    public String summary() {
+        long total = lookups.sum();
+        return String.format("Page cache answered %,d of %,d fetches with a 304 (%.1f%%), %,d pages cached",
+                notModified.sum(), total, total == 0 ? 0 : notModified.sum() * 100.0 / total, cache.size());
+    }
+
+    @Override
+    public void close() throws IOException {
+        cache.close();
+    }
+}
@@ -0,0 +1,68 @@
+package com.conorsheppard.web;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// Learns which URL patterns (host + directory + file extension) never serve HTML, so they can be skipped unfetched.
+// Only paths ending in an extension are learned. Without one, a directory's PDFs or JSON endpoints say nothing about
+// its other pages, so extensionless URLs are always fetched
+public class ContentTypeCache {
+    private static final int DEFAULT_MIN_OBSERVATIONS = 3;
+    private static final int DEFAULT_MAX_PATTERNS = 10_000;
+    private final Map<String, Observations> patterns = new ConcurrentHashMap<>();
+    private final int minObservations;
+    private final int maxPatterns;
+
+    public ContentTypeCache() {
+        this(DEFAULT_MIN_OBSERVATIONS, DEFAULT_MAX_PATTERNS);
+    }
+
+    public ContentTypeCache(int minObservations, int maxPatterns) {
+        this.minObservations = minObservations;
+        this.maxPatterns = maxPatterns;
+    }
+
+    public boolean isKnownNonHtml(String url) {
+        String pattern = pattern(url);
+        if (pattern == null) return false;
+        Observations observations = patterns.get(pattern);
+        return observations != null && observations.html.sum() == 0
+                && observations.nonHtml.sum() >= minObservations;
+    }
+
+    public void record(String url, boolean html) {
+        String pattern = pattern(url);
+        if (pattern == null) return;
+        Observations observations = patterns.get(pattern);
+        if (observations == null) {
+            if (patterns.size() >= maxPatterns) return;
+            observations = patterns.computeIfAbsent(pattern, p -> new Observations());
+        }
+        (html ? observations.html : observations.nonHtml).increment();
+    }
+
+    // https://example.com/img/logo.png?v=2 -> example.com/img/*.png, null when the last segment has no extension
+    static String pattern(String url) {
+        int start = url.indexOf("://");
+        start = start < 0 ? 0 : start + 3;
+        int end = url.length();
+        for (int i = start; i < url.length(); i++) {
+            char c = url.charAt(i);
+            if (c == '?' || c == '#') {
+                end = i;
+                break;
+            }
+        }
+        int lastSlash = url.lastIndexOf('/', end - 1);
+        if (lastSlash < start) return null;
+        int dot = url.lastIndexOf('.', end - 1);
+        if (dot <= lastSlash + 1 || dot == end - 1) return null;
+        return url.substring(start, lastSlash + 1) + "*" + url.substring(dot, end).toLowerCase();
+    }
+
+    private static final class Observations {
+        private final LongAdder html = new LongAdder();
+        private final LongAdder nonHtml = new LongAdder();
+    }
+}
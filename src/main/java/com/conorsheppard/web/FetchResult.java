@@ -0,0 +1,40 @@
+package com.conorsheppard.web;
+
+import lombok.Value;
+
+@Value
+public class FetchResult {
+    public static final int NOT_MODIFIED = 304;
+
+    int statusCode;
+    String contentType;
+    // False when the response wasn't HTML and its body was never read
+    boolean html;
+    // The ETag and Last-Modified the response came with, to revalidate it on a later crawl
+    Validators validators;
+
+    public static FetchResult html(int statusCode, String contentType) {
+        return html(statusCode, contentType, Validators.NONE);
+    }
+
+    public static FetchResult html(int statusCode, String contentType, Validators validators) {
+        return new FetchResult(statusCode, contentType, true, validators);
+    }
+
+    public static FetchResult notHtml(int statusCode, String contentType) {
+        return new FetchResult(statusCode, contentType, false, Validators.NONE);
+    }
+
+    // The answer to a conditional request when the page hasn't changed, there's no body and so no links
+    public static FetchResult notModified(Validators validators) {
+        return new FetchResult(NOT_MODIFIED, null, false, validators);
+    }
+
+    public boolean isNotModified() {
+        return statusCode == NOT_MODIFIED;
+    }
+
+    public static boolean isHtml(String contentType) {
+        return contentType != null && contentType.regionMatches(true, 0, "text/html", 0, "text/html".length());
+    }
+}
@@ -0,0 +1,27 @@
+package com.conorsheppard.web;
+
+import lombok.Value;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+// All the crawler reads off a HEAD request. Header names are matched without regard to case, and a header sent more
+// than once keeps its first value
+@Value
+public class HeadResponse {
+    int statusCode;
+    // Null when the server didn't send one
+    String contentType;
+    Map<String, String> headers;
+
+    public static HeadResponse of(int statusCode, Map<String, String> headers) {
+        Map<String, String> byName = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        headers.forEach(byName::putIfAbsent);
+        return new HeadResponse(statusCode, byName.get("Content-Type"), Collections.unmodifiableMap(byName));
+    }
+
+    public String header(String name) {
+        return headers.get(name);
+    }
+}
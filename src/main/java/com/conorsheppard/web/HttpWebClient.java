@@ -0,0 +1,197 @@
+package com.conorsheppard.web;
+
+import com.conorsheppard.parser.LinkExtractor;
+import lombok.Getter;
+import org.jsoup.HttpStatusException;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandler;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+@Getter
+public class HttpWebClient implements AsyncWebClient {
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+    private static final int DEFAULT_MAX_BODY_BYTES = 2 * 1024 * 1024;
+    private static final String USER_AGENT = "simple-web-crawler-java/1.0";
+    // The JDK ships gzip and deflate decoders only, so brotli isn't advertised
+    private static final String ACCEPT_ENCODING = "gzip, deflate";
+
+    // One client for the whole crawl so connections are pooled and HTTP/2 streams are multiplexed
+    private final HttpClient client;
+    private final BodyLimit bodyLimit;
+
+    public HttpWebClient() {
+        this(BodyLimit.of(DEFAULT_MAX_BODY_BYTES));
+    }
+
+    public HttpWebClient(BodyLimit bodyLimit) {
+        this(HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(TIMEOUT)
+                .build(), bodyLimit);
+    }
+
+    public HttpWebClient(HttpClient client, BodyLimit bodyLimit) {
+        this.client = client;
+        this.bodyLimit = bodyLimit;
+    }
+
+    @Override
+    public CompletableFuture<Document> fetchAsync(String url) {
+        return send(url, "GET", this::limitBody, BodyHandlers.ofInputStream())
+                .thenApply(response -> unchecked(() -> parse(response)));
+    }
+
+    @Override
+    public CompletableFuture<HeadResponse> headAsync(String url) {
+        return send(url, "HEAD", UnaryOperator.identity(), BodyHandlers.discarding())
+                .thenApply(response -> unchecked(() -> toHeadResponse(checkStatus(response))));
+    }
+
+    @Override
+    public CompletableFuture<FetchResult> fetchHtmlAsync(String url, Validators validators, LinkExtractor extractor,
+                                                         Consumer<String> links) {
+        UnaryOperator<HttpRequest.Builder> headers = builder -> {
+            limitBody(builder);
+            if (validators.getEtag() != null) builder.header("If-None-Match", validators.getEtag());
+            if (validators.getLastModified() != null) builder.header("If-Modified-Since", validators.getLastModified());
+            return builder;
+        };
+        return send(url, "GET", headers, BodyHandlers.ofInputStream())
+                .thenApply(response -> unchecked(() -> extractLinks(response, extractor, links)));
+    }
+
+    @Override
+    public CompletableFuture<String> fetchTextAsync(String url, int maxBytes) {
+        return send(url, "GET", UnaryOperator.identity(), BodyHandlers.ofInputStream())
+                .thenApply(response -> unchecked(() -> readText(response, maxBytes)));
+    }
+
+    private HttpRequest.Builder limitBody(HttpRequest.Builder builder) {
+        if (bodyLimit.isCapped() && bodyLimit.isRangeRequest()) builder.header("Range", bodyLimit.rangeHeader());
+        return builder;
+    }
+
+    <T> CompletableFuture<HttpResponse<T>> send(String url, String method, UnaryOperator<HttpRequest.Builder> customizer,
+                                                BodyHandler<T> handler) {
+        HttpRequest request;
+        try {
+            request = customizer.apply(HttpRequest.newBuilder(URI.create(url))
+                            .timeout(TIMEOUT)
+                            .header("User-Agent", USER_AGENT)
+                            .header("Accept-Encoding", ACCEPT_ENCODING)
+                            .method(method, HttpRequest.BodyPublishers.noBody()))
+                    .build();
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(new IOException("Invalid URL: " + url, e));
+        }
+        return client.sendAsync(request, handler);
+    }
+
+    interface IOSupplier<T> {
+        T get() throws IOException;
+    }
+
+    static <T> T unchecked(IOSupplier<T> supplier) {
+        try {
+            return supplier.get();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static <T> HttpResponse<T> checkStatus(HttpResponse<T> response) throws HttpStatusException {
+        int status = response.statusCode();
+        if (status < 200 || status >= 400) {
+            throw ThrottledException.forStatus(status, response.uri().toString(),
+                    response.headers().firstValue("Retry-After").orElse(null));
+        }
+        return response;
+    }
+
+    private static HeadResponse toHeadResponse(HttpResponse<?> response) {
+        Map<String, String> headers = new LinkedHashMap<>();
+        response.headers().map().forEach((name, values) -> {
+            if (!values.isEmpty()) headers.put(name, values.get(0));
+        });
+        return HeadResponse.of(response.statusCode(), headers);
+    }
+
+    private FetchResult extractLinks(HttpResponse<InputStream> response, LinkExtractor extractor,
+                                     Consumer<String> links) throws IOException {
+        String contentType = contentType(response.headers());
+        // The response completes once the headers are in, closing an unread body cancels the rest of the transfer
+        try (InputStream body = response.body()) {
+            checkStatus(response);
+            Validators served = Validators.of(response.headers().firstValue("ETag").orElse(null),
+                    response.headers().firstValue("Last-Modified").orElse(null));
+            if (response.statusCode() == FetchResult.NOT_MODIFIED) return FetchResult.notModified(served);
+            if (!FetchResult.isHtml(contentType)) return FetchResult.notHtml(response.statusCode(), contentType);
+            extractor.extract(CappedInputStream.cap(decode(response.headers(), body), bodyLimit),
+                    charset(response.headers()), response.uri().toString(), links);
+            return FetchResult.html(response.statusCode(), contentType, served);
+        }
+    }
+
+    private static String readText(HttpResponse<InputStream> response, int maxBytes) throws IOException {
+        try (InputStream body = response.body()) {
+            checkStatus(response);
+            String charset = charset(response.headers());
+            byte[] bytes = decode(response.headers(), body).readNBytes(maxBytes);
+            return new String(bytes, charset == null ? StandardCharsets.UTF_8 : Charset.forName(charset));
+        }
+    }
+
+    // Read straight off the connection up to the body limit, like the streaming fetch, not buffered whole first
+    private Document parse(HttpResponse<InputStream> response) throws IOException {
+        try (InputStream body = response.body()) {
+            checkStatus(response);
+            return Jsoup.parse(CappedInputStream.cap(decode(response.headers(), body), bodyLimit),
+                    charset(response.headers()), response.uri().toString());
+        }
+    }
+
+    static InputStream decode(HttpHeaders headers, InputStream body) throws IOException {
+        String encoding = headers.firstValue("Content-Encoding").orElse("").trim().toLowerCase(Locale.ROOT);
+        return switch (encoding) {
+            case "gzip", "x-gzip" -> new GZIPInputStream(body);
+            case "deflate" -> new InflaterInputStream(body);
+            default -> body;
+        };
+    }
+
+    static String contentType(HttpHeaders headers) {
+        return headers.firstValue("Content-Type").orElse(null);
+    }
+
+    // Null lets Jsoup sniff the charset from the BOM or <meta> tag
+    static String charset(HttpHeaders headers) {
+        String contentType = headers.firstValue("Content-Type").orElse("");
+        int index = contentType.toLowerCase(Locale.ROOT).indexOf("charset=");
+        if (index < 0) return null;
+        String charset = contentType.substring(index + "charset=".length()).split(";", 2)[0]
+                .replace("\"", "").trim();
+        return charset.isEmpty() ? null : charset;
+    }
+}
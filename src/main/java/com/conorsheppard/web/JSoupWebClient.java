@@ -1,20 +1,90 @@
 package com.conorsheppard.web;
 
+import com.conorsheppard.parser.LinkExtractor;
 import org.jsoup.Connection;
 import org.jsoup.Connection.Response;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.function.Consumer;
 
 public class JSoupWebClient implements WebClient {
+    private static final int TIMEOUT_MILLIS = 5000;
+    private static final int DEFAULT_MAX_BODY_BYTES = 2 * 1024 * 1024;
+    private final BodyLimit bodyLimit;
+
+    public JSoupWebClient() {
+        this(BodyLimit.of(DEFAULT_MAX_BODY_BYTES));
+    }
+
+    public JSoupWebClient(BodyLimit bodyLimit) {
+        this.bodyLimit = bodyLimit;
+    }
+
     @Override
     public Document fetch(String url) throws IOException {
-        return Jsoup.connect(url).timeout(5000).get();
+        return Jsoup.connect(url).timeout(TIMEOUT_MILLIS).get();
+    }
+
+    @Override
+    public HeadResponse head(String url) throws IOException {
+        Response response = Jsoup.connect(url)
+                .timeout(TIMEOUT_MILLIS)
+                .method(Connection.Method.HEAD)
+                .ignoreContentType(true)
+                .ignoreHttpErrors(true)
+                .execute();
+        // Checked here for the same reason as fetchHtml, a throttled HEAD has to reach the frontier with Retry-After
+        if (response.statusCode() >= 400) {
+            throw ThrottledException.forStatus(response.statusCode(), url, response.header("Retry-After"));
+        }
+        return HeadResponse.of(response.statusCode(), response.headers());
+    }
+
+    @Override
+    public FetchResult fetchHtml(String url, LinkExtractor extractor, Consumer<String> links) throws IOException {
+        return fetchHtml(url, Validators.NONE, extractor, links);
+    }
+
+    @Override
+    public FetchResult fetchHtml(String url, Validators validators, LinkExtractor extractor, Consumer<String> links)
+            throws IOException {
+        Connection connection = Jsoup.connect(url)
+                .timeout(TIMEOUT_MILLIS)
+                .ignoreContentType(true)
+                .ignoreHttpErrors(true)
+                .maxBodySize(bodyLimit.getMaxBytes());
+        if (bodyLimit.isCapped() && bodyLimit.isRangeRequest()) connection.header("Range", bodyLimit.rangeHeader());
+        if (validators.getEtag() != null) connection.header("If-None-Match", validators.getEtag());
+        if (validators.getLastModified() != null) connection.header("If-Modified-Since", validators.getLastModified());
+
+        // execute() returns once the headers are in, the body is only read through bodyStream(). HTTP errors are
+        // checked here rather than by Jsoup so Retry-After can be read off throttled responses
+        Response response = connection.execute();
+        try (InputStream body = response.bodyStream()) {
+            if (response.statusCode() >= 400) {
+                throw ThrottledException.forStatus(response.statusCode(), url, response.header("Retry-After"));
+            }
+            Validators served = Validators.of(response.header("ETag"), response.header("Last-Modified"));
+            if (response.statusCode() == FetchResult.NOT_MODIFIED) return FetchResult.notModified(served);
+            if (!FetchResult.isHtml(response.contentType())) {
+                return FetchResult.notHtml(response.statusCode(), response.contentType());
+            }
+            extractor.extract(CappedInputStream.cap(body, bodyLimit), response.charset(),
+                    response.url().toExternalForm(), links);
+            return FetchResult.html(response.statusCode(), response.contentType(), served);
+        }
     }
 
     @Override
-    public Response head(String url) throws IOException {
-        return Jsoup.connect(url).method(Connection.Method.HEAD).execute();
+    public String fetchText(String url, int maxBytes) throws IOException {
+        return Jsoup.connect(url)
+                .timeout(TIMEOUT_MILLIS)
+                .ignoreContentType(true)
+                .maxBodySize(maxBytes)
+                .execute()
+                .body();
     }
 }
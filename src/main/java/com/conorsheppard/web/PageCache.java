@@ -0,0 +1,261 @@
+package com.conorsheppard.web;
+
+import com.conorsheppard.cache.UrlFingerprints;
+import com.conorsheppard.io.BinaryFiles;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.stream.Stream;
+
+import static com.conorsheppard.io.BinaryFiles.readVarint;
+import static com.conorsheppard.io.BinaryFiles.writeVarint;
+
+// Cached pages on disk, kept to a byte budget by evicting the least recently used. Pages are appended to a data file
+// as the URL, the validators and the links, each link stored as the bytes it shares with the one before and the rest,
+// so a page's links sorted or not take a fraction of their plain size. In memory there's only the index: each URL's
+// 64-bit fingerprint to where its record sits, in access order, 20 bytes per page when written out. A replaced or
+// evicted record is left where it is, and once dead records make up half the data file the live ones are copied to a
+// new generation. The index is written on close and after each compaction, so a crash loses what was cached since,
+// never what the index points at. Everything is under one lock, a read or write is a few KB against a page fetch
+@Slf4j
+public class PageCache implements Closeable {
+    private static final int MAGIC = 0x53574843;
+    private static final int VERSION = 1;
+    private static final String INDEX_FILE = "index";
+    private static final String DATA_PREFIX = "data-";
+    private static final long MIN_COMPACTION_BYTES = 1024 * 1024;
+
+    private final Path dir;
+    private final long maxBytes;
+    private final LinkedHashMap<Long, Slot> slots = new LinkedHashMap<>(1024, 0.75f, true);
+    private FileChannel data;
+    private long generation;
+    private long dataEnd;
+    private long liveBytes;
+
+    public PageCache(Path dir, long maxBytes) throws IOException {
+        this.dir = dir;
+        this.maxBytes = maxBytes;
+        Files.createDirectories(dir);
+        open();
+    }
+
+    private void open() throws IOException {
+        try {
+            readIndex();
+        } catch (IOException e) {
+            if (Files.exists(dir.resolve(INDEX_FILE))) {
+                log.warn("Discarding the page cache in {}: {}", dir, e.getMessage());
+            }
+            slots.clear();
+            generation = 0;
+        }
+        Path dataFile = dataPath(generation);
+        if (slots.isEmpty()) Files.deleteIfExists(dataFile);
+        data = FileChannel.open(dataFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        dataEnd = data.size();
+        for (Slot slot : slots.values()) liveBytes += slot.length;
+        deleteDataFilesExcept(generation);
+        if (!slots.isEmpty()) log.info("Opened page cache in {} with {} pages", dir, slots.size());
+    }
+
+    public synchronized CachedPage get(String url) throws IOException {
+        Slot slot = slots.get(fingerprint(url));
+        if (slot == null) return null;
+        ByteBuffer record = ByteBuffer.allocate(slot.length);
+        while (record.hasRemaining()) {
+            if (data.read(record, slot.offset + record.position()) < 0) throw new EOFException("Truncated page cache");
+        }
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(record.array()));
+        // Another URL with the same fingerprint, as good as a miss
+        if (!url.equals(readString(in))) return null;
+        return readPage(in);
+    }
+
+    public synchronized void put(String url, CachedPage page) throws IOException {
+        byte[] record = encode(url, page);
+        if (record.length > maxBytes) return;
+        data.write(ByteBuffer.wrap(record), dataEnd);
+        Slot previous = slots.put(fingerprint(url), new Slot(dataEnd, record.length));
+        dataEnd += record.length;
+        liveBytes += record.length - (previous == null ? 0 : previous.length);
+        evict();
+        if (dataEnd > Math.max(MIN_COMPACTION_BYTES, 2 * liveBytes)) compact();
+    }
+
+    public synchronized void remove(String url) {
+        Slot previous = slots.remove(fingerprint(url));
+        if (previous != null) liveBytes -= previous.length;
+    }
+
+    public synchronized int size() {
+        return slots.size();
+    }
+
+    synchronized long liveBytes() {
+        return liveBytes;
+    }
+
+    synchronized long dataBytes() {
+        return dataEnd;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        data.force(false);
+        writeIndex();
+        data.close();
+    }
+
+    private void evict() {
+        Iterator<Slot> eldest = slots.values().iterator();
+        while (liveBytes > maxBytes && eldest.hasNext()) {
+            liveBytes -= eldest.next().length;
+            eldest.remove();
+        }
+    }
+
+    // Iterating the values doesn't count as access, so the copy keeps the LRU order
+    private void compact() throws IOException {
+        long next = generation + 1;
+        Map<Long, Slot> moved = new LinkedHashMap<>();
+        long position = 0;
+        try (FileChannel target = FileChannel.open(dataPath(next), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            for (Map.Entry<Long, Slot> entry : slots.entrySet()) {
+                Slot slot = entry.getValue();
+                long copied = 0;
+                while (copied < slot.length) {
+                    copied += data.transferTo(slot.offset + copied, slot.length - copied, target);
+                }
+                moved.put(entry.getKey(), new Slot(position, slot.length));
+                position += slot.length;
+            }
+            target.force(false);
+        }
+        slots.clear();
+        slots.putAll(moved);
+        data.close();
+        generation = next;
+        data = FileChannel.open(dataPath(generation), StandardOpenOption.READ, StandardOpenOption.WRITE);
+        dataEnd = position;
+        // Once the index names the new generation the old one is garbage
+        writeIndex();
+        deleteDataFilesExcept(generation);
+    }
+
+    private void writeIndex() throws IOException {
+        BinaryFiles.write(dir.resolve(INDEX_FILE), MAGIC, VERSION, out -> {
+            out.writeLong(generation);
+            out.writeInt(slots.size());
+            // Least recently used first, so reading it back in order restores the LRU order
+            for (Map.Entry<Long, Slot> entry : slots.entrySet()) {
+                out.writeLong(entry.getKey());
+                out.writeLong(entry.getValue().offset);
+                out.writeInt(entry.getValue().length);
+            }
+        });
+    }
+
+    private void readIndex() throws IOException {
+        generation = BinaryFiles.read(dir.resolve(INDEX_FILE), MAGIC, VERSION, "page cache index", in -> {
+            long generation = in.readLong();
+            long dataSize = Files.size(dataPath(generation));
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                long fingerprint = in.readLong();
+                Slot slot = new Slot(in.readLong(), in.readInt());
+                if (slot.offset + slot.length > dataSize) throw new IOException("index points past the data file");
+                slots.put(fingerprint, slot);
+            }
+            return generation;
+        });
+    }
+
+    private void deleteDataFilesExcept(long keep) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : files.filter(path -> path.getFileName().toString().startsWith(DATA_PREFIX)).toList()) {
+                if (!file.equals(dataPath(keep))) Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    private Path dataPath(long generation) {
+        return dir.resolve(String.format("%s%020d", DATA_PREFIX, generation));
+    }
+
+    private static long fingerprint(String url) {
+        return UrlFingerprints.murmur3(url)[0];
+    }
+
+    static byte[] encode(String url, CachedPage page) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        DataOutputStream out = new DataOutputStream(bytes);
+        writeString(out, url);
+        writeString(out, page.getValidators().getEtag());
+        writeString(out, page.getValidators().getLastModified());
+        writeString(out, page.getContentType());
+        writeVarint(out, page.getLinks().size());
+        byte[] previous = new byte[0];
+        for (String link : page.getLinks()) {
+            byte[] current = link.getBytes(StandardCharsets.UTF_8);
+            int shared = Arrays.mismatch(previous, current);
+            // Equal to the previous link, a duplicate
+            if (shared < 0) shared = current.length;
+            writeVarint(out, shared);
+            writeVarint(out, current.length - shared);
+            out.write(current, shared, current.length - shared);
+            previous = current;
+        }
+        return bytes.toByteArray();
+    }
+
+    private static CachedPage readPage(DataInputStream in) throws IOException {
+        Validators validators = Validators.of(readString(in), readString(in));
+        String contentType = readString(in);
+        int count = (int) readVarint(in);
+        List<String> links = new ArrayList<>(count);
+        byte[] previous = new byte[0];
+        for (int i = 0; i < count; i++) {
+            int shared = (int) readVarint(in);
+            byte[] current = Arrays.copyOf(previous, shared + (int) readVarint(in));
+            in.readFully(current, shared, current.length - shared);
+            links.add(new String(current, StandardCharsets.UTF_8));
+            previous = current;
+        }
+        return new CachedPage(validators, contentType, links);
+    }
+
+    // Length plus one, zero for null
+    private static void writeString(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            writeVarint(out, 0);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarint(out, bytes.length + 1L);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInput in) throws IOException {
+        int length = (int) readVarint(in);
+        if (length == 0) return null;
+        byte[] bytes = new byte[length - 1];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Value
+    private static class Slot {
+        long offset;
+        int length;
+    }
+}
@@ -0,0 +1,43 @@
+package com.conorsheppard.web;
+
+import lombok.Getter;
+import org.jsoup.HttpStatusException;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
+// A 429 or 503, carrying the server's Retry-After so the frontier can back off for as long as it asked
+@Getter
+public class ThrottledException extends HttpStatusException {
+    private static final long serialVersionUID = 1L;
+
+    // Null when the header was missing or unparseable
+    private final Duration retryAfter;
+
+    public ThrottledException(int statusCode, String url, Duration retryAfter) {
+        super("Throttled fetching URL", statusCode, url);
+        this.retryAfter = retryAfter;
+    }
+
+    static HttpStatusException forStatus(int statusCode, String url, String retryAfterHeader) {
+        return statusCode == 429 || statusCode == 503
+                ? new ThrottledException(statusCode, url, parseRetryAfter(retryAfterHeader))
+                : new HttpStatusException("HTTP error fetching URL", statusCode, url);
+    }
+
+    // Retry-After is either delta-seconds or an HTTP date
+    static Duration parseRetryAfter(String header) {
+        if (header == null || header.isBlank()) return null;
+        String value = header.trim();
+        try {
+            if (value.chars().allMatch(Character::isDigit)) return Duration.ofSeconds(Long.parseLong(value));
+            Duration untilDate = Duration.between(ZonedDateTime.now(),
+                    ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME));
+            return untilDate.isNegative() ? Duration.ZERO : untilDate;
+        } catch (NumberFormatException | DateTimeParseException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.conorsheppard.web;
+
+import lombok.Value;
+
+// What a server gave to tell whether a page has changed since it was fetched, either may be null. Sent back as
+// If-None-Match and If-Modified-Since, the server answers 304 if nothing has
+@Value
+public class Validators {
+    public static final Validators NONE = new Validators(null, null);
+
+    String etag;
+    String lastModified;
+
+    public static Validators of(String etag, String lastModified) {
+        return etag == null && lastModified == null ? NONE : new Validators(etag, lastModified);
+    }
+
+    public boolean isEmpty() {
+        return etag == null && lastModified == null;
+    }
+}
@@ -1,11 +1,24 @@
 package com.conorsheppard.web;
 
-import org.jsoup.Connection.Response;
+import com.conorsheppard.parser.LinkExtractor;
 import org.jsoup.nodes.Document;
 
 import java.io.IOException;
+import java.util.function.Consumer;
 
 public interface WebClient {
     Document fetch(String url) throws IOException;
-    Response head(String url) throws IOException;
+    HeadResponse head(String url) throws IOException;
+    // Single GET that only reads the body when the response is HTML, streaming it through the extractor into the
+    // link sink. Non-HTML transfers are aborted after the headers
+    FetchResult fetchHtml(String url, LinkExtractor extractor, Consumer<String> links) throws IOException;
+    // The same as a conditional GET with the validators from an earlier fetch. If the page hasn't changed the server
+    // answers 304 and nothing reaches the sink. Clients that can't send them fetch the page in full
+    default FetchResult fetchHtml(String url, Validators validators, LinkExtractor extractor, Consumer<String> links)
+            throws IOException {
+        return fetchHtml(url, extractor, links);
+    }
+    // Whole body as text whatever the content type, for small resources like robots.txt. HTTP errors are thrown
+    // as HttpStatusException
+    String fetchText(String url, int maxBytes) throws IOException;
 }
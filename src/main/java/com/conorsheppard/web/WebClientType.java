@@ -0,0 +1,20 @@
+package com.conorsheppard.web;
+
+public enum WebClientType {
+    // A fresh Jsoup connection per request
+    JSOUP {
+        @Override
+        public WebClient create(BodyLimit bodyLimit) {
+            return new JSoupWebClient(bodyLimit);
+        }
+    },
+    // A shared java.net.http client with pooled HTTP/2 connections and compressed transfer
+    HTTP {
+        @Override
+        public WebClient create(BodyLimit bodyLimit) {
+            return new HttpWebClient(bodyLimit);
+        }
+    };
+
+    public abstract WebClient create(BodyLimit bodyLimit);
+}
@@ -1,31 +1,57 @@
 package com.conorsheppard;
 
 import com.conorsheppard.cache.InMemoryUrlCache;
+import com.conorsheppard.checkpoint.CrawlCheckpointer;
+import com.conorsheppard.checkpoint.CrawlSnapshot;
+import com.conorsheppard.checkpoint.SeenUrlStore;
+import com.conorsheppard.crawler.CrawlConfig;
+import com.conorsheppard.crawler.FetchMode;
 import com.conorsheppard.crawler.SimpleWebCrawler;
+import com.conorsheppard.parser.LinkExtractor;
 import com.conorsheppard.queue.ConcurrentQueue;
+import com.conorsheppard.queue.CrawlOutcome;
+import com.conorsheppard.queue.QueuedUrl;
+import com.conorsheppard.queue.SegmentedLogQueue;
+import com.conorsheppard.web.FetchResult;
+import com.conorsheppard.web.HeadResponse;
+import com.conorsheppard.web.ThrottledException;
 import com.conorsheppard.web.WebClient;
 import lombok.SneakyThrows;
 import org.jline.terminal.TerminalBuilder;
-import org.jsoup.Connection;
+import org.jsoup.HttpStatusException;
+import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
 import org.jsoup.select.Elements;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvSource;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 import static com.conorsheppard.crawler.SimpleWebCrawler.normalizeUrl;
 import static org.junit.jupiter.api.Assertions.*;
@@ -99,14 +125,15 @@ class SimpleWebCrawlerTest {
         assertEquals("https://example.com/page",
                 SimpleWebCrawler.normalizeUrl("https://example.com/page///"));
 
-        assertEquals("https://example.com/supporting-customers",
-                normalizeUrl("https://example.com/supporting-Customers/"));
+        // Only the scheme and host are case-insensitive, the path keeps its case
+        assertEquals("https://example.com/supporting-Customers",
+                normalizeUrl("HTTPS://Example.COM/supporting-Customers/"));
 
         // Ensure different paths are not mistakenly treated as the same
         assertNotEquals("https://example.com/supporting-customers",
                 normalizeUrl("https://example.com/another-path"));
 
-        assertEquals("https://example.com/supporting customers",
+        assertEquals("https://example.com/supporting%20customers",
                 normalizeUrl("https://example.com/supporting customers"));
 
         assertThrows(URISyntaxException.class, () -> normalizeUrl("http://exa<mple.com"));
@@ -144,19 +171,76 @@ class SimpleWebCrawlerTest {
 
     @SneakyThrows
     @Test
-    void testVisitedUrlsHandling() {
-        // Add URL to visited set
-        crawler.getVisitedUrlSet().add("https://example.com/visited");
-
-        Method crawlMethod = crawler.getClass().getDeclaredMethod("enqueueUrl", String.class);
-        crawlMethod.setAccessible(true); // This allows access to the private method
+    void testCrawledUrlsAreCountedAndReportedRatherThanKept() {
+        List<String> crawled = new CopyOnWriteArrayList<>();
+        SimpleWebCrawler countingCrawler = new SimpleWebCrawler(EXAMPLE_URL, new ConcurrentQueue(),
+                new InMemoryUrlCache(), Executors.newSingleThreadExecutor(), TerminalBuilder.builder().dumb(true).build(),
+                mockWebClient, CrawlConfig.builder().fetchMode(FetchMode.SINGLE_REQUEST)
+                .pollTimeout(Duration.ofMillis(10)).crawledUrlListener(crawled::add).build());
+        when(mockWebClient.fetchHtml(anyString(), any(), any())).thenAnswer(invocation -> {
+            Consumer<String> links = invocation.getArgument(2);
+            links.accept("https://example.com/page2");
+            links.accept(EXAMPLE_URL);
+            return FetchResult.html(200, "text/html");
+        });
+
+        countingCrawler.crawl();
+
+        // Each page links to both URLs, but the cache lets each one through to the queue once
+        assertEquals(2, countingCrawler.getCrawledCount().get());
+        assertEquals(List.of(EXAMPLE_URL, "https://example.com/page2"), crawled);
+    }
 
-        // Attempt to crawl visited URL
-        crawlMethod.invoke(crawler, "https://example.com/new-page");
+    @SneakyThrows
+    @Test
+    void testAFailingListenerDoesntKeepTheCrawlFromFinishing() {
+        SimpleWebCrawler failingCrawler = new SimpleWebCrawler(EXAMPLE_URL, new ConcurrentQueue(),
+                new InMemoryUrlCache(), Executors.newSingleThreadExecutor(), TerminalBuilder.builder().dumb(true).build(),
+                mockWebClient, CrawlConfig.builder().fetchMode(FetchMode.SINGLE_REQUEST)
+                .pollTimeout(Duration.ofMillis(10)).crawledUrlListener(url -> {
+                    throw new UncheckedIOException(new IOException("disk full"));
+                }).build());
+        when(mockWebClient.fetchHtml(anyString(), any(), any())).thenAnswer(invocation -> {
+            Consumer<String> links = invocation.getArgument(2);
+            links.accept("https://example.com/page2");
+            return FetchResult.html(200, "text/html");
+        });
+
+        assertTimeoutPreemptively(Duration.ofSeconds(10), failingCrawler::crawl);
+        assertEquals(2, failingCrawler.getCrawledCount().get());
+    }
 
-        // Verify visited URL was not processed again
-        // crawler is already seeded with https://example.com + this one (https://example.com/visited) == 2
-        assertEquals(1, crawler.getVisitedUrlSet().size());
+    @SneakyThrows
+    @Test
+    void testLinksFoundWhileRobotsTxtIsUnavailableAreHeldUntilItCanBeChecked() {
+        AtomicBoolean robotsDown = new AtomicBoolean();
+        when(mockWebClient.fetchText(eq(EXAMPLE_URL + "/robots.txt"), anyInt())).thenAnswer(invocation -> {
+            // Down for a single fetch, the one checking the start page's links
+            if (robotsDown.getAndSet(false)) {
+                throw new HttpStatusException("Unavailable", 503, invocation.getArgument(0));
+            }
+            return "User-agent: *\nDisallow: /private\n";
+        });
+        when(mockWebClient.fetchHtml(anyString(), any(), any())).thenAnswer(invocation -> {
+            Consumer<String> links = invocation.getArgument(2);
+            if (invocation.getArgument(0).equals(EXAMPLE_URL)) {
+                robotsDown.set(true);
+                links.accept("https://example.com/page2");
+                links.accept("https://example.com/private");
+            }
+            return FetchResult.html(200, "text/html");
+        });
+        // Rules are fetched for every check, so robots.txt can go down between the start page and its links
+        SimpleWebCrawler robotsCrawler = new SimpleWebCrawler(EXAMPLE_URL, new ConcurrentQueue(),
+                new InMemoryUrlCache(), Executors.newSingleThreadExecutor(), TerminalBuilder.builder().dumb(true).build(),
+                mockWebClient, CrawlConfig.builder().fetchMode(FetchMode.SINGLE_REQUEST).robotsTtl(Duration.ZERO)
+                .robotsRetry(Duration.ofMillis(200)).pollTimeout(Duration.ofMillis(10)).build());
+
+        assertTimeoutPreemptively(Duration.ofSeconds(10), robotsCrawler::crawl);
+
+        assertTrue(robotsCrawler.getUrlCache().contains("https://example.com/private"));
+        verify(mockWebClient).fetchHtml(eq("https://example.com/page2"), any(), any());
+        verify(mockWebClient, never()).fetchHtml(eq("https://example.com/private"), any(), any());
     }
 
     @Test
@@ -186,8 +270,7 @@ class SimpleWebCrawlerTest {
     @SneakyThrows
     @Test
     void testWhenResponseIsJson_isHtmlContentReturnsFalse() {
-        Connection.Response mockResponse = mock(Connection.Response.class);
-        when(mockResponse.contentType()).thenReturn("application/json");
+        HeadResponse mockResponse = new HeadResponse(200, "application/json", Map.of());
         when(mockWebClient.head(EXAMPLE_URL)).thenReturn(mockResponse);
         assertFalse(crawler.isHtmlContent(EXAMPLE_URL));
     }
@@ -195,8 +278,7 @@ class SimpleWebCrawlerTest {
     @SneakyThrows
     @Test
     void testWhenResponseIsNull_isHtmlContentReturnsFalse() {
-        Connection.Response mockResponse = mock(Connection.Response.class);
-        when(mockResponse.contentType()).thenReturn(null);
+        HeadResponse mockResponse = new HeadResponse(200, null, Map.of());
         when(mockWebClient.head(EXAMPLE_URL)).thenReturn(mockResponse);
         assertFalse(crawler.isHtmlContent(EXAMPLE_URL));
     }
@@ -204,16 +286,13 @@ class SimpleWebCrawlerTest {
     @SneakyThrows
     @Test
     void testWhenOnceLinkExistsInThePage_FetchIsCalledOnce() {
-        Connection.Response mockResponse = mock(Connection.Response.class);
-        when(mockResponse.contentType()).thenReturn("text/html");
+        HeadResponse mockResponse = new HeadResponse(200, "text/html", Map.of());
         when(mockWebClient.head(EXAMPLE_URL)).thenReturn(mockResponse);
 
         Document mockDocument = mock(Document.class);
         Element element = new Element("a");
         element.attr("href", "https://example.com/page2");
         when(mockDocument.select("a[href]")).thenReturn(new Elements(List.of(element)));
-
-        when(mockResponse.body()).thenReturn("<html><body><a href='https://example.com/page2'>Next</a></body></html>");
         when(mockWebClient.fetch(EXAMPLE_URL)).thenReturn(mockDocument);
         crawler.crawl();
         verify(mockWebClient, times(1)).fetch(EXAMPLE_URL);
@@ -224,8 +303,7 @@ class SimpleWebCrawlerTest {
     @SneakyThrows
     @Test
     void testWhenResponseIsEmpty_isHtmlContentReturnsFalse() {
-        Connection.Response mockResponse = mock(Connection.Response.class);
-        when(mockResponse.contentType()).thenReturn("");
+        HeadResponse mockResponse = new HeadResponse(200, "", Map.of());
         when(mockWebClient.head(EXAMPLE_URL)).thenReturn(mockResponse);
         assertFalse(crawler.isHtmlContent(EXAMPLE_URL));
     }
@@ -233,8 +311,7 @@ class SimpleWebCrawlerTest {
     @SneakyThrows
     @Test
     void testWhenResponseIsValid_isHtmlContentReturnsTrue() {
-        Connection.Response mockResponse = mock(Connection.Response.class);
-        when(mockResponse.contentType()).thenReturn("text/html; charset=UTF-8");
+        HeadResponse mockResponse = new HeadResponse(200, "text/html; charset=UTF-8", Map.of());
         when(mockWebClient.head(EXAMPLE_URL)).thenReturn(mockResponse);
         assertTrue(crawler.isHtmlContent(EXAMPLE_URL));
     }
@@ -246,6 +323,23 @@ class SimpleWebCrawlerTest {
         assertFalse(crawler.isHtmlContent(EXAMPLE_URL));
     }
 
+    @SneakyThrows
+    @Test
+    void testThrottledHeadRequestsReachTheQueueWithTheirRetryAfter() {
+        ConcurrentQueue queue = spy(new ConcurrentQueue());
+        SimpleWebCrawler headCrawler = new SimpleWebCrawler(EXAMPLE_URL, queue, new InMemoryUrlCache(),
+                Executors.newSingleThreadExecutor(), TerminalBuilder.builder().dumb(true).build(), mockWebClient,
+                CrawlConfig.builder().pollTimeout(Duration.ofMillis(10)).build());
+        when(mockWebClient.head(EXAMPLE_URL))
+                .thenThrow(new ThrottledException(429, EXAMPLE_URL, Duration.ofSeconds(5)));
+
+        assertThrows(ThrottledException.class, () -> headCrawler.isHtmlContent(EXAMPLE_URL));
+        headCrawler.crawl();
+
+        verify(queue).complete(EXAMPLE_URL, CrawlOutcome.of(429, Duration.ofSeconds(5)));
+        verify(mockWebClient, never()).fetch(anyString());
+    }
+
     @SneakyThrows
     @Test
     void testCrawlUsesThreadPool() {
@@ -257,8 +351,7 @@ class SimpleWebCrawlerTest {
                 spyExecutor, TerminalBuilder.terminal(), mockWebClient
         );
 
-        Connection.Response mockResponse = mock(Connection.Response.class);
-        when(mockResponse.contentType()).thenReturn("application/json");
+        HeadResponse mockResponse = new HeadResponse(200, "application/json", Map.of());
         when(mockWebClient.head(EXAMPLE_URL)).thenReturn(mockResponse);
 
         simpleWebCrawler.crawl();
@@ -327,8 +420,7 @@ class SimpleWebCrawlerTest {
         crawler = new SimpleWebCrawler(EXAMPLE_URL, new ConcurrentQueue(), new InMemoryUrlCache(),
                 Executors.newSingleThreadExecutor(), TerminalBuilder.terminal(), mockWebClient);
 
-        Connection.Response mockResponse = mock(Connection.Response.class);
-        when(mockResponse.contentType()).thenReturn("text/html");
+        HeadResponse mockResponse = new HeadResponse(200, "text/html", Map.of());
         when(mockWebClient.head(EXAMPLE_URL)).thenReturn(mockResponse);
 
         Document mockDocument = mock(Document.class);
@@ -339,14 +431,265 @@ class SimpleWebCrawlerTest {
         when(mockWebClient.fetch(EXAMPLE_URL)).thenThrow(new IOException("Network error"));
 
         // Access the private crawl method via reflection
-        Method crawlMethod = crawler.getClass().getDeclaredMethod("crawl", String.class);
+        Method crawlMethod = crawler.getClass().getDeclaredMethod("crawl", QueuedUrl.class);
         crawlMethod.setAccessible(true);
 
         // Invoke the crawl method and expect it to handle IOException internally
-        crawlMethod.invoke(crawler, EXAMPLE_URL);
+        crawlMethod.invoke(crawler, QueuedUrl.seed(EXAMPLE_URL));
 
         assertEquals(1, crawler.getUrlCache().size());
         assertTrue(crawler.getUrlCache().contains("https://example.com"));
         assertFalse(crawler.getUrlCache().contains("https://example.com/page2"));
     }
+
+    @SneakyThrows
+    @Test
+    void testDispatcherNeverExceedsMaxInFlight() {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        HeadResponse mockResponse = new HeadResponse(200, "text/html", Map.of());
+        when(mockWebClient.head(anyString())).thenReturn(mockResponse);
+        StringBuilder links = new StringBuilder();
+        for (int i = 0; i < 10; i++) links.append("<a href='/page").append(i).append("'>").append(i).append("</a>");
+        when(mockWebClient.fetch(anyString())).thenAnswer(invocation -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            Thread.sleep(20);
+            running.decrementAndGet();
+            String url = invocation.getArgument(0);
+            return Jsoup.parse(url.equals(EXAMPLE_URL) ? links.toString() : "", url);
+        });
+
+        SimpleWebCrawler boundedCrawler = new SimpleWebCrawler(EXAMPLE_URL, new ConcurrentQueue(),
+                new InMemoryUrlCache(), Executors.newFixedThreadPool(8), TerminalBuilder.builder().dumb(true).build(),
+                mockWebClient, CrawlConfig.builder().maxInFlight(2).pollTimeout(Duration.ofMillis(10)).build());
+        boundedCrawler.crawl();
+
+        verify(mockWebClient, times(11)).fetch(anyString());
+        assertTrue(maxRunning.get() <= 2, "at most 2 URLs should be crawled concurrently");
+        assertEquals(0, boundedCrawler.getInFlight().get());
+    }
+
+    @SneakyThrows
+    @Test
+    void testSingleRequestModeNeverSendsHead() {
+        SimpleWebCrawler singleRequestCrawler = new SimpleWebCrawler(EXAMPLE_URL, new ConcurrentQueue(),
+                new InMemoryUrlCache(), Executors.newSingleThreadExecutor(), TerminalBuilder.builder().dumb(true).build(),
+                mockWebClient, CrawlConfig.builder().fetchMode(FetchMode.SINGLE_REQUEST).build());
+        when(mockWebClient.fetchHtml(eq(EXAMPLE_URL), any(), any())).thenAnswer(invocation -> {
+            Consumer<String> links = invocation.getArgument(2);
+            links.accept("https://example.com/page2");
+            links.accept("https://example.com/logo.png");
+            return FetchResult.html(200, "text/html");
+        });
+        when(mockWebClient.fetchHtml(eq("https://example.com/page2"), any(), any()))
+                .thenReturn(FetchResult.notHtml(200, "text/plain"));
+
+        singleRequestCrawler.crawl();
+
+        verify(mockWebClient, never()).head(anyString());
+        verify(mockWebClient, never()).fetch(anyString());
+        verify(mockWebClient).fetchHtml(eq("https://example.com/page2"), any(), any());
+        assertFalse(singleRequestCrawler.getUrlCache().contains("https://example.com/logo.png"));
+    }
+
+    @SneakyThrows
+    @Test
+    void testEachPageDeduplicatesItsLinksInOneBatch() {
+        InMemoryUrlCache cache = spy(new InMemoryUrlCache());
+        SimpleWebCrawler batchingCrawler = new SimpleWebCrawler(EXAMPLE_URL, new ConcurrentQueue(), cache,
+                Executors.newSingleThreadExecutor(), TerminalBuilder.builder().dumb(true).build(),
+                mockWebClient, CrawlConfig.builder().fetchMode(FetchMode.SINGLE_REQUEST).build());
+        when(mockWebClient.fetchHtml(eq(EXAMPLE_URL), any(), any())).thenAnswer(invocation -> {
+            Consumer<String> links = invocation.getArgument(2);
+            links.accept("https://example.com/page2");
+            links.accept("https://example.com/page3");
+            links.accept("https://example.com/page2#top");
+            links.accept("https://example.com");
+            return FetchResult.html(200, "text/html");
+        });
+        when(mockWebClient.fetchHtml(startsWith("https://example.com/page"), any(), any()))
+                .thenReturn(FetchResult.html(200, "text/html"));
+
+        batchingCrawler.crawl();
+
+        ArgumentCaptor<Collection<String>> batch = ArgumentCaptor.captor();
+        verify(cache, times(1)).addAll(batch.capture());
+        assertEquals(List.of("https://example.com/page2", "https://example.com/page3", "https://example.com"),
+                List.copyOf(batch.getValue()));
+        verify(mockWebClient, times(3)).fetchHtml(anyString(), any(), any());
+    }
+
+    // Every page links to the next one down a chain that never ends
+    private SimpleWebCrawler chainCrawler(CrawlConfig.CrawlConfigBuilder config) throws IOException {
+        when(mockWebClient.fetchHtml(anyString(), any(), any())).thenAnswer(invocation -> {
+            String url = invocation.getArgument(0);
+            Consumer<String> links = invocation.getArgument(2);
+            int page = url.equals(EXAMPLE_URL) ? 0 : Integer.parseInt(url.substring(url.lastIndexOf('/') + 1));
+            links.accept("https://example.com/chain/" + (page + 1));
+            return FetchResult.html(200, "text/html");
+        });
+        return new SimpleWebCrawler(EXAMPLE_URL, new ConcurrentQueue(), new InMemoryUrlCache(),
+                Executors.newSingleThreadExecutor(), TerminalBuilder.builder().dumb(true).build(), mockWebClient,
+                config.fetchMode(FetchMode.SINGLE_REQUEST).pollTimeout(Duration.ofMillis(10)).build());
+    }
+
+    @SneakyThrows
+    @Test
+    void testLinksBeyondMaxDepthAreNeverQueued() {
+        SimpleWebCrawler depthLimited = chainCrawler(CrawlConfig.builder().maxDepth(2));
+        depthLimited.crawl();
+
+        verify(mockWebClient, times(3)).fetchHtml(anyString(), any(), any());
+        assertTrue(depthLimited.getUrlCache().contains("https://example.com/chain/2"));
+        assertFalse(depthLimited.getUrlCache().contains("https://example.com/chain/3"));
+    }
+
+    @SneakyThrows
+    @Test
+    void testMaxPagesCountsTheStartUrl() {
+        when(mockWebClient.fetchHtml(anyString(), any(), any())).thenAnswer(invocation -> {
+            Consumer<String> links = invocation.getArgument(2);
+            for (int i = 0; i < 10; i++) links.accept("https://example.com/page" + i);
+            return FetchResult.html(200, "text/html");
+        });
+        SimpleWebCrawler pageLimited = new SimpleWebCrawler(EXAMPLE_URL, new ConcurrentQueue(), new InMemoryUrlCache(),
+                Executors.newSingleThreadExecutor(), TerminalBuilder.builder().dumb(true).build(), mockWebClient,
+                CrawlConfig.builder().fetchMode(FetchMode.SINGLE_REQUEST).maxPages(4).build());
+        pageLimited.crawl();
+
+        verify(mockWebClient, times(4)).fetchHtml(anyString(), any(), any());
+        assertEquals(4, pageLimited.getCrawledCount().get());
+    }
+
+    @SneakyThrows
+    @Test
+    void testLinksPastMaxPagesAreNeverMarkedAsSeenOrLeftPendingInACheckpoint(@TempDir Path dir) {
+        when(mockWebClient.fetchHtml(anyString(), any(), any())).thenAnswer(invocation -> {
+            Consumer<String> links = invocation.getArgument(2);
+            for (int i = 0; i < 10; i++) links.accept("https://example.com/page" + i);
+            return FetchResult.html(200, "text/html");
+        });
+        CrawlCheckpointer checkpointer = new CrawlCheckpointer(dir.resolve("crawl.checkpoint"));
+        SimpleWebCrawler pageLimited = new SimpleWebCrawler(EXAMPLE_URL, checkpointer.wrap(new ConcurrentQueue()),
+                checkpointer.urlCache(), Executors.newSingleThreadExecutor(),
+                TerminalBuilder.builder().dumb(true).build(), mockWebClient,
+                CrawlConfig.builder().fetchMode(FetchMode.SINGLE_REQUEST).maxPages(3).build());
+        pageLimited.crawl();
+
+        CrawlSnapshot snapshot = checkpointer.capture();
+        assertEquals(3, snapshot.getFingerprints().length);
+        assertEquals(List.of(), snapshot.getPending());
+        assertFalse(pageLimited.getUrlCache().contains("https://example.com/page2"));
+    }
+
+    @SneakyThrows
+    @Test
+    void testARestartedCrawlOnADiskFrontierOnlyCrawlsWhatWasLeft(@TempDir Path dir) {
+        when(mockWebClient.fetchHtml(anyString(), any(), any())).thenAnswer(invocation -> {
+            Consumer<String> links = invocation.getArgument(2);
+            links.accept(EXAMPLE_URL);
+            links.accept("https://example.com/a");
+            if (invocation.getArgument(0).equals("https://example.com/c")) links.accept("https://example.com/d");
+            return FetchResult.html(200, "text/html");
+        });
+        crawlFrontier(dir);
+        verify(mockWebClient, times(2)).fetchHtml(anyString(), any(), any());
+
+        // As if the crawler died with /c still in the frontier
+        try (SegmentedLogQueue leftover = new SegmentedLogQueue(dir)) {
+            leftover.enqueue(new QueuedUrl("https://example.com/c", 1));
+        }
+        clearInvocations(mockWebClient);
+        crawlFrontier(dir);
+
+        verify(mockWebClient).fetchHtml(eq("https://example.com/c"), any(), any());
+        verify(mockWebClient).fetchHtml(eq("https://example.com/d"), any(), any());
+        verify(mockWebClient, times(2)).fetchHtml(anyString(), any(), any());
+    }
+
+    @SneakyThrows
+    private void crawlFrontier(Path dir) {
+        try (SeenUrlStore seen = SeenUrlStore.open(dir, Duration.ofMinutes(1));
+             SegmentedLogQueue queue = new SegmentedLogQueue(dir)) {
+            new SimpleWebCrawler(EXAMPLE_URL, queue, seen.urlCache(), Executors.newSingleThreadExecutor(),
+                    TerminalBuilder.builder().dumb(true).build(), mockWebClient,
+                    CrawlConfig.builder().fetchMode(FetchMode.SINGLE_REQUEST).pollTimeout(Duration.ofMillis(10))
+                            .build()).crawl();
+        }
+    }
+
+    @SneakyThrows
+    @Test
+    void testSeededUrlsTakeFromThePageBudget() {
+        when(mockWebClient.fetchHtml(anyString(), any(), any())).thenReturn(FetchResult.html(200, "text/html"));
+        InMemoryUrlCache cache = new InMemoryUrlCache();
+        SimpleWebCrawler pageLimited = new SimpleWebCrawler(EXAMPLE_URL, new ConcurrentQueue(), cache,
+                Executors.newSingleThreadExecutor(), TerminalBuilder.builder().dumb(true).build(), mockWebClient,
+                CrawlConfig.builder().fetchMode(FetchMode.SINGLE_REQUEST).maxPages(3).build());
+        pageLimited.seed(List.of(EXAMPLE_URL, "https://example.com/a", "https://example.com/b",
+                "https://example.com/c"));
+        pageLimited.crawl();
+
+        verify(mockWebClient, times(1)).fetchHtml(eq(EXAMPLE_URL), any(), any());
+        verify(mockWebClient, times(3)).fetchHtml(anyString(), any(), any());
+        assertFalse(cache.contains("https://example.com/c"));
+    }
+
+    @SneakyThrows
+    @Test
+    void testCrawlStopsWhenTheTimeBudgetIsUsedUp() {
+        SimpleWebCrawler timeLimited = chainCrawler(CrawlConfig.builder().maxDuration(Duration.ofMillis(300)));
+        long start = System.nanoTime();
+        timeLimited.crawl();
+
+        assertTrue(Duration.ofNanos(System.nanoTime() - start).compareTo(Duration.ofSeconds(5)) < 0);
+        assertTrue(timeLimited.getCrawledCount().get() > 0);
+    }
+
+    @SneakyThrows
+    @Test
+    void testTrapLinksAreDroppedBeforeTheCache() {
+        InMemoryUrlCache cache = new InMemoryUrlCache();
+        when(mockWebClient.fetchHtml(eq(EXAMPLE_URL), any(), any())).thenAnswer(invocation -> {
+            Consumer<String> links = invocation.getArgument(2);
+            links.accept("https://example.com/a/b/a/b/a/b");
+            links.accept("https://example.com/a/b");
+            return FetchResult.html(200, "text/html");
+        });
+        when(mockWebClient.fetchHtml(eq("https://example.com/a/b"), any(), any()))
+                .thenReturn(FetchResult.html(200, "text/html"));
+        SimpleWebCrawler trapAware = new SimpleWebCrawler(EXAMPLE_URL, new ConcurrentQueue(), cache,
+                Executors.newSingleThreadExecutor(), TerminalBuilder.builder().dumb(true).build(), mockWebClient,
+                CrawlConfig.builder().fetchMode(FetchMode.SINGLE_REQUEST).build());
+        trapAware.crawl();
+
+        assertFalse(cache.contains("https://example.com/a/b/a/b/a/b"));
+        verify(mockWebClient, times(2)).fetchHtml(anyString(), any(), any());
+    }
+
+    @SneakyThrows
+    @Test
+    void testLinksAreNotFollowedFromNearDuplicatePages() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 300; i++) text.append("word").append(i % 97).append(i % 13).append(' ');
+        when(mockWebClient.fetchHtml(anyString(), any(), any())).thenAnswer(invocation -> {
+            String url = invocation.getArgument(0);
+            String html = url.equals(EXAMPLE_URL) ? "<a href='/print'>print</a><a href='/article'>article</a>"
+                    : "<p>" + text + "</p><a href='" + url + "/next'>next</a>";
+            invocation.<LinkExtractor>getArgument(1).extract(new ByteArrayInputStream(
+                    html.getBytes(StandardCharsets.UTF_8)), "UTF-8", url, invocation.getArgument(2));
+            return FetchResult.html(200, "text/html");
+        });
+        SimpleWebCrawler dedupingCrawler = new SimpleWebCrawler(EXAMPLE_URL, new ConcurrentQueue(),
+                new InMemoryUrlCache(), Executors.newSingleThreadExecutor(), TerminalBuilder.builder().dumb(true).build(),
+                mockWebClient, CrawlConfig.builder().fetchMode(FetchMode.SINGLE_REQUEST).maxNearDuplicateDistance(3)
+                        .pollTimeout(Duration.ofMillis(10)).build());
+        dedupingCrawler.crawl();
+
+        assertTrue(dedupingCrawler.getUrlCache().contains("https://example.com/print/next"));
+        assertFalse(dedupingCrawler.getUrlCache().contains("https://example.com/article/next"));
+        assertFalse(dedupingCrawler.getUrlCache().contains("https://example.com/print/next/next"));
+        // The article and the page after the print view both repeat the print view's text
+        assertEquals(2, dedupingCrawler.getNearDuplicates().duplicates());
+    }
 }
@@ -0,0 +1,76 @@
+package com.conorsheppard.cache;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class BloomFilteredUrlCacheTest {
+    private UrlCache redis;
+    private BloomFilteredUrlCache cache;
+
+    @BeforeEach
+    void setUp() {
+        redis = mock(UrlCache.class);
+        cache = new BloomFilteredUrlCache(redis, 1000, 1e-6);
+    }
+
+    @Test
+    void testRepeatAddsAreAnsweredLocally() {
+        when(redis.add("https://example.com/a")).thenReturn(true);
+
+        assertTrue(cache.add("https://example.com/a"));
+        assertFalse(cache.add("https://example.com/a"));
+        assertTrue(cache.contains("https://example.com/a"));
+
+        verify(redis, times(1)).add("https://example.com/a");
+        verify(redis, never()).contains(anyString());
+        assertEquals(2.0 / 3, cache.stats().hitRatio(), 1e-9);
+    }
+
+    @Test
+    void testUrlsAddedByOtherNodesAreLearntFromTheSharedCache() {
+        when(redis.add("https://example.com/b")).thenReturn(false);
+        when(redis.contains("https://example.com/c")).thenReturn(true);
+
+        assertFalse(cache.add("https://example.com/b"));
+        assertTrue(cache.contains("https://example.com/c"));
+        assertFalse(cache.add("https://example.com/c"));
+
+        verify(redis, never()).add("https://example.com/c");
+    }
+
+    @Test
+    void testFilterIsSizedForTheFalsePositiveRate() {
+        BloomFilter filter = BloomFilter.create(10_000, 0.01);
+        // About 9.6 bits and 7 hashes per element for 1%
+        assertEquals(7, filter.hashCount());
+        assertTrue(filter.bitSize() >= 95_850 && filter.bitSize() < 96_000);
+
+        for (int i = 0; i < 10_000; i++) filter.put("https://example.com/seen/" + i);
+        for (int i = 0; i < 10_000; i++) assertTrue(filter.mightContain("https://example.com/seen/" + i));
+
+        int falsePositives = 0;
+        for (int i = 0; i < 10_000; i++) {
+            if (filter.mightContain("https://example.com/unseen/" + i)) falsePositives++;
+        }
+        assertTrue(falsePositives < 200, "expected about 1% false positives, got " + falsePositives);
+        assertEquals(0.01, filter.expectedFalsePositiveRate(), 0.005);
+    }
+
+    @Test
+    void testAddAllOnlySendsUrlsTheFilterHasNotSeen() {
+        when(redis.add("https://example.com/a")).thenReturn(true);
+        when(redis.addAll(List.of("https://example.com/b", "https://example.com/c")))
+                .thenReturn(List.of("https://example.com/c"));
+        cache.add("https://example.com/a");
+
+        assertEquals(List.of("https://example.com/c"),
+                cache.addAll(List.of("https://example.com/a", "https://example.com/b", "https://example.com/c")));
+        assertTrue(cache.addAll(List.of("https://example.com/b", "https://example.com/c")).isEmpty());
+        verify(redis, times(1)).addAll(any());
+    }
+}
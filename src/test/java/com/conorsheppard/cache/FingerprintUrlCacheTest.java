@@ -0,0 +1,85 @@
+package com.conorsheppard.cache;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FingerprintUrlCacheTest {
+
+    @ParameterizedTest
+    @ValueSource(booleans = {true, false})
+    void testAddAndContains(boolean offHeap) {
+        FingerprintUrlCache cache = FingerprintUrlCache.builder().expectedUrls(100).offHeap(offHeap).build();
+
+        assertFalse(cache.contains("https://example.com/a"));
+        assertTrue(cache.add("https://example.com/a"));
+        assertFalse(cache.add("https://example.com/a"));
+        assertTrue(cache.contains("https://example.com/a"));
+        assertFalse(cache.contains("https://example.com/b"));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void testStripesGrowPastTheExpectedSize() {
+        FingerprintUrlCache cache = FingerprintUrlCache.builder().expectedUrls(10).stripes(4).build();
+
+        for (int i = 0; i < 50_000; i++) assertTrue(cache.add("https://example.com/page/" + i));
+        for (int i = 0; i < 50_000; i++) assertTrue(cache.contains("https://example.com/page/" + i));
+        assertFalse(cache.contains("https://example.com/page/50000"));
+        assertEquals(50_000, cache.size());
+    }
+
+    @Test
+    void testConcurrentAddsOfOverlappingUrlsCountEachOnce() throws InterruptedException {
+        FingerprintUrlCache cache = FingerprintUrlCache.builder().expectedUrls(1000).build();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int thread = 0; thread < 8; thread++) {
+            executor.submit(() -> {
+                for (int i = 0; i < 10_000; i++) cache.add("https://example.com/" + i);
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals(10_000, cache.size());
+    }
+
+    @Test
+    void testFingerprintWidthFollowsTheCollisionBudget() {
+        // 1M URLs over 64 bits collide with a chance of about 2.7e-8
+        assertEquals(64, FingerprintUrlCache.fingerprintBits(1_000_000, 1e-6));
+        assertEquals(128, FingerprintUrlCache.fingerprintBits(1_000_000, 1e-9));
+        assertEquals(128, FingerprintUrlCache.fingerprintBits(100_000_000, 1e-6));
+    }
+
+    @Test
+    void testMemoryReport() {
+        FingerprintUrlCache cache = FingerprintUrlCache.builder()
+                .expectedUrls(1_000).maxCollisionProbability(1e-30).stripes(8).build();
+        cache.add("https://example.com/a");
+        cache.add("https://example.com/b");
+
+        FingerprintUrlCache.MemoryReport report = cache.memoryReport();
+
+        assertEquals(2, report.getEntries());
+        assertEquals(128, report.getFingerprintBits());
+        // 1000 / 8 stripes / 0.75 load factor rounds up to 256 slots a stripe
+        assertEquals(8 * 256, report.getSlots());
+        assertEquals(8 * 256 * 16, report.getBytes());
+        assertTrue(report.isOffHeap());
+        assertTrue(report.summary().startsWith("2 URL fingerprints in 0.0 MB off-heap (128-bit"));
+    }
+
+    @Test
+    void testFingerprintsAreStableAndSpread() {
+        assertArrayEquals(UrlFingerprints.murmur3("https://example.com/a"), UrlFingerprints.murmur3("https://example.com/a"));
+        assertNotEquals(UrlFingerprints.murmur3("https://example.com/a")[0], UrlFingerprints.murmur3("https://example.com/b")[0]);
+        assertNotEquals(0, UrlFingerprints.murmur3("")[0]);
+    }
+}
@@ -1,11 +1,15 @@
 package com.conorsheppard.cache;
 
+import io.lettuce.core.RedisNoScriptException;
+import io.lettuce.core.ScriptOutputType;
 import io.lettuce.core.api.StatefulRedisConnection;
 import io.lettuce.core.api.sync.RedisCommands;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 
+import java.util.List;
+
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
@@ -66,4 +70,40 @@ class RedisUrlCacheTest {
         assertEquals(5, redisUrlCache.size());
         verify(mockRedis, times(1)).scard("web-crawler-url-cache");
     }
+
+    @Test
+    void testAddAll_ReturnsNewUrlsFromOneScriptCall() {
+        List<String> urls = List.of("http://example.com/a", "http://example.com/b", "http://example.com/c");
+        when(mockRedis.evalsha(eq(RedisUrlCache.ADD_ALL.getSha()), eq(ScriptOutputType.MULTI), any(String[].class),
+                any(String[].class))).thenReturn(List.of("http://example.com/a", "http://example.com/c"));
+
+        assertEquals(List.of("http://example.com/a", "http://example.com/c"), redisUrlCache.addAll(urls));
+        verify(mockRedis, times(1)).evalsha(RedisUrlCache.ADD_ALL.getSha(), ScriptOutputType.MULTI,
+                new String[]{"web-crawler-url-cache"}, "http://example.com/a", "http://example.com/b",
+                "http://example.com/c");
+        verify(mockRedis, never()).sadd(anyString(), any(String[].class));
+    }
+
+    @Test
+    void testAddAll_LoadsTheScriptWhenRedisDoesNotHaveIt() {
+        when(mockRedis.evalsha(anyString(), any(), any(String[].class), any(String[].class)))
+                .thenThrow(new RedisNoScriptException("NOSCRIPT No matching script"));
+        when(mockRedis.eval(eq(RedisUrlCache.ADD_ALL.getBody()), eq(ScriptOutputType.MULTI), any(String[].class),
+                any(String[].class))).thenReturn(List.of("http://example.com/a"));
+
+        assertEquals(List.of("http://example.com/a"), redisUrlCache.addAll(List.of("http://example.com/a")));
+    }
+
+    @Test
+    void testAddAll_WithNoUrlsSkipsRedis() {
+        assertTrue(redisUrlCache.addAll(List.of()).isEmpty());
+        verifyNoInteractions(mockRedis);
+    }
+
+    @Test
+    void testScriptShaMatchesRedis() {
+        // SCRIPT LOAD returns the hex SHA-1 of the script body, which EVALSHA is then called with
+        assertEquals(40, RedisUrlCache.ADD_ALL.getSha().length());
+        assertTrue(RedisUrlCache.ADD_ALL.getSha().matches("[0-9a-f]+"));
+    }
 }
@@ -0,0 +1,98 @@
+package com.conorsheppard.cache;
+
+import io.lettuce.core.ScanArgs;
+import io.lettuce.core.ScanCursor;
+import io.lettuce.core.ScriptOutputType;
+import io.lettuce.core.ValueScanCursor;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.api.sync.RedisCommands;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class ShardedRedisUrlCacheTest {
+    private RedisCommands<String, String> redis;
+    private ShardedRedisUrlCache cache;
+
+    @BeforeEach
+    void setUp() {
+        StatefulRedisConnection<String, String> connection = mock(StatefulRedisConnection.class);
+        redis = mock(RedisCommands.class);
+        when(connection.sync()).thenReturn(redis);
+        when(redis.get("web-crawler-url-fp:shard-bits")).thenReturn("10");
+        cache = new ShardedRedisUrlCache(connection, 50_000);
+    }
+
+    @Test
+    void testShardsAreSizedToStayListpackEncoded() {
+        assertEquals(0, ShardedRedisUrlCache.shardBits(10));
+        assertEquals(1, ShardedRedisUrlCache.shardBits(100));
+        // 50M URLs over 2^20 shards is under 48 fingerprints a hash
+        assertEquals(20, ShardedRedisUrlCache.shardBits(50_000_000));
+        assertEquals(24, ShardedRedisUrlCache.shardBits(Long.MAX_VALUE / 2));
+    }
+
+    @Test
+    void testShardBitsAlreadyInRedisWin() {
+        verify(redis).setnx("web-crawler-url-fp:shard-bits", "10");
+        assertEquals(10, cache.getShardBits());
+    }
+
+    @Test
+    void testFingerprintsAreSplitIntoShardKeyAndIntegerField() {
+        long[] fingerprint = UrlFingerprints.murmur3("https://example.com/a");
+        String key = cache.shardKey(fingerprint);
+        String field = ShardedRedisUrlCache.field(fingerprint);
+
+        assertEquals("web-crawler-url-fp:" + Long.toHexString(fingerprint[0] >>> 54), key);
+        assertEquals(fingerprint[1], Long.parseLong(field));
+        when(redis.hexists(key, field)).thenReturn(true);
+        assertTrue(cache.contains("https://example.com/a"));
+    }
+
+    @Test
+    void testAddAllReturnsTheUrlsTheScriptReportsAsNew() {
+        List<String> urls = List.of("https://example.com/a", "https://example.com/b", "https://example.com/c");
+        when(redis.evalsha(eq(ShardedRedisUrlCache.ADD_ALL.getSha()), eq(ScriptOutputType.MULTI), any(String[].class),
+                any(String[].class))).thenReturn(List.of(1L, 3L));
+
+        assertEquals(List.of("https://example.com/a", "https://example.com/c"), cache.addAll(urls));
+
+        ArgumentCaptor<String[]> keys = ArgumentCaptor.forClass(String[].class);
+        verify(redis, times(1)).evalsha(anyString(), eq(ScriptOutputType.MULTI), keys.capture(), any(String[].class));
+        assertEquals("web-crawler-url-fp:count", keys.getValue()[0]);
+        assertEquals(cache.shardKey(UrlFingerprints.murmur3("https://example.com/b")), keys.getValue()[2]);
+    }
+
+    @Test
+    void testSizeReadsTheCounter() {
+        assertEquals(0, cache.size());
+        when(redis.get("web-crawler-url-fp:count")).thenReturn("42");
+        assertEquals(42, cache.size());
+        verify(redis, never()).hlen(anyString());
+    }
+
+    @Test
+    void testMigrationCopiesTheUrlSetInBatches() {
+        ValueScanCursor<String> first = new ValueScanCursor<>();
+        first.setCursor("7");
+        first.getValues().addAll(List.of("https://example.com/a", "https://example.com/b"));
+        ValueScanCursor<String> last = new ValueScanCursor<>();
+        last.setCursor("0");
+        last.setFinished(true);
+        last.getValues().add("https://example.com/c");
+        when(redis.sscan(eq("web-crawler-url-cache"), eq(ScanCursor.INITIAL), any(ScanArgs.class))).thenReturn(first);
+        when(redis.sscan(eq("web-crawler-url-cache"), eq(first), any(ScanArgs.class))).thenReturn(last);
+        when(redis.evalsha(anyString(), eq(ScriptOutputType.MULTI), any(String[].class), any(String[].class)))
+                .thenReturn(List.of(1L, 2L), List.of());
+
+        assertEquals(2, cache.migrateFromUrlSet());
+        verify(redis, times(2)).evalsha(anyString(), eq(ScriptOutputType.MULTI), any(String[].class),
+                any(String[].class));
+    }
+}
@@ -0,0 +1,111 @@
+package com.conorsheppard.checkpoint;
+
+import com.conorsheppard.cache.InMemoryUrlCache;
+import com.conorsheppard.cache.UrlCache;
+import com.conorsheppard.cache.UrlFingerprints;
+import com.conorsheppard.queue.ConcurrentQueue;
+import com.conorsheppard.queue.CrawlOutcome;
+import com.conorsheppard.queue.QueuedUrl;
+import com.conorsheppard.queue.UrlQueue;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CrawlCheckpointerTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void testSnapshotHoldsEverySeenUrlAndOnlyTheUnfinishedOnesAsPending() {
+        CrawlCheckpointer checkpointer = new CrawlCheckpointer(dir.resolve("crawl.checkpoint"));
+        UrlCache cache = checkpointer.urlCache();
+        UrlQueue queue = checkpointer.wrap(new ConcurrentQueue());
+        for (String url : List.of("https://example.com/", "https://example.com/a", "https://example.com/b")) {
+            assertTrue(cache.add(url));
+            queue.enqueue(url);
+        }
+        queue.complete(queue.dequeue(), CrawlOutcome.of(200));
+        String inFlight = queue.dequeue();
+
+        CrawlSnapshot snapshot = checkpointer.capture();
+
+        assertEquals(3, snapshot.getFingerprints().length);
+        assertEquals(Set.of(QueuedUrl.seed(inFlight), QueuedUrl.seed("https://example.com/b")),
+                new HashSet<>(snapshot.getPending()));
+    }
+
+    @Test
+    void testARepeatAddDoesntDropAUrlStillInTheFrontier() {
+        CrawlCheckpointer checkpointer = new CrawlCheckpointer(dir.resolve("crawl.checkpoint"));
+        UrlCache cache = checkpointer.urlCache();
+        cache.add("https://example.com/a");
+
+        assertFalse(cache.add("https://example.com/a"));
+        assertEquals(List.of(QueuedUrl.seed("https://example.com/a")), checkpointer.capture().getPending());
+    }
+
+    @Test
+    void testRetriedUrlsStayPending() {
+        CrawlCheckpointer checkpointer = new CrawlCheckpointer(dir.resolve("crawl.checkpoint"));
+        checkpointer.urlCache().add("https://example.com/a");
+        UrlQueue queue = checkpointer.wrap(new ConcurrentQueue() {
+            @Override
+            public boolean complete(String url, CrawlOutcome outcome) {
+                return false;
+            }
+        });
+
+        queue.complete("https://example.com/a", CrawlOutcome.of(429));
+
+        assertEquals(List.of(QueuedUrl.seed("https://example.com/a")), checkpointer.capture().getPending());
+    }
+
+    @Test
+    void testResumeSkipsSeenUrlsAndRequeuesPendingOnes() throws IOException {
+        Path file = dir.resolve("crawl.checkpoint");
+        CrawlCheckpointer first = new CrawlCheckpointer(file);
+        UrlCache cache = first.urlCache();
+        UrlQueue queue = first.wrap(new ConcurrentQueue());
+        cache.add("https://example.com/");
+        queue.enqueue("https://example.com/");
+        QueuedUrl seed = queue.next();
+        cache.add("https://example.com/a");
+        queue.enqueueLinks(seed, List.of("https://example.com/a"), List.of("https://example.com/a"));
+        queue.complete("https://example.com/", CrawlOutcome.of(200));
+        first.close();
+
+        CrawlCheckpointer resumed = CrawlCheckpointer.resume(file, Duration.ofMinutes(1));
+        UrlCache resumedCache = resumed.urlCache();
+        ConcurrentQueue resumedQueue = new ConcurrentQueue();
+        resumed.enqueuePending(resumed.wrap(resumedQueue));
+
+        assertEquals(new QueuedUrl("https://example.com/a", 1), resumedQueue.next());
+        assertTrue(resumedQueue.isEmpty());
+        assertFalse(resumedCache.add("https://example.com/"));
+        assertFalse(resumedCache.add("https://example.com/a"));
+        assertTrue(resumedCache.add("https://example.com/b"));
+        assertEquals(3, resumedCache.size());
+    }
+
+    @Test
+    void testRestoredFingerprintsAreMergedIntoTheNextSnapshot() {
+        long restored = UrlFingerprints.murmur3("https://example.com/old")[0];
+        InMemoryUrlCache cache = new InMemoryUrlCache(new long[]{restored});
+        cache.add("https://example.com/new");
+        cache.add("https://example.com/old");
+
+        long[] fingerprints = cache.fingerprints();
+
+        assertEquals(2, fingerprints.length);
+        assertTrue(fingerprints[0] < fingerprints[1]);
+        assertTrue(cache.contains("https://example.com/old"));
+    }
+}
@@ -0,0 +1,56 @@
+package com.conorsheppard.checkpoint;
+
+import com.conorsheppard.queue.QueuedUrl;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CrawlSnapshotTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void testRoundTripsFingerprintsAcrossTheSignBoundary() throws IOException {
+        long[] fingerprints = {Long.MIN_VALUE, -42, 0, 7, Long.MAX_VALUE};
+        List<QueuedUrl> pending = List.of(QueuedUrl.seed("https://example.com/a"),
+                new QueuedUrl("https://example.com/café", 300));
+        Path file = dir.resolve("crawl.checkpoint");
+
+        new CrawlSnapshot(fingerprints, pending).writeTo(file);
+        CrawlSnapshot read = CrawlSnapshot.readFrom(file);
+
+        assertArrayEquals(fingerprints, read.getFingerprints());
+        assertEquals(pending, read.getPending());
+        assertFalse(Files.exists(dir.resolve("crawl.checkpoint.tmp")));
+    }
+
+    @Test
+    void testGapsTakeLessThanRawLongs() throws IOException {
+        long[] fingerprints = new Random(1).longs(100_000).sorted().toArray();
+        Path file = dir.resolve("crawl.checkpoint");
+
+        new CrawlSnapshot(fingerprints, List.of()).writeTo(file);
+
+        assertTrue(Files.size(file) < fingerprints.length * Long.BYTES * 0.9);
+        assertTrue(Arrays.equals(fingerprints, CrawlSnapshot.readFrom(file).getFingerprints()));
+    }
+
+    @Test
+    void testCorruptionIsDetected() throws IOException {
+        Path file = dir.resolve("crawl.checkpoint");
+        new CrawlSnapshot(new long[]{1, 2, 3}, List.of(QueuedUrl.seed("https://example.com/"))).writeTo(file);
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[bytes.length - 6] ^= 1;
+        Files.write(file, bytes);
+
+        assertThrows(IOException.class, () -> CrawlSnapshot.readFrom(file));
+    }
+}
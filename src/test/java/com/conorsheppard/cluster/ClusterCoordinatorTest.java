@@ -0,0 +1,115 @@
+package com.conorsheppard.cluster;
+
+import com.conorsheppard.queue.ConcurrentQueue;
+import com.conorsheppard.queue.UrlQueue;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClusterCoordinatorTest {
+    private static final Duration HEARTBEAT = Duration.ofSeconds(1);
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    private final AtomicLong clock = new AtomicLong(1_000_000);
+    private final UrlQueue queue = new ConcurrentQueue();
+    private InMemoryClusterStore store;
+    private ClusterCoordinator node1;
+    private ClusterCoordinator node2;
+
+    @BeforeEach
+    void setUp() {
+        store = new InMemoryClusterStore();
+        node1 = new ClusterCoordinator(store, "node-1", HEARTBEAT, TIMEOUT, clock::get);
+        node2 = new ClusterCoordinator(store, "node-2", HEARTBEAT, TIMEOUT, clock::get);
+        node1.heartbeat();
+        node2.heartbeat();
+    }
+
+    @Test
+    void testFinishedOnlyAfterEveryNodeHasBeenQuietForTwoHeartbeats() {
+        node1.enqueued(1);
+        node1.busy();
+        node1.finished();
+
+        assertFalse(node1.isFinished(queue), "node-2 hasn't reported idle yet");
+        assertFalse(node2.isFinished(queue), "first quiet look");
+        clock.addAndGet(1000);
+        assertFalse(node2.isFinished(queue));
+        clock.addAndGet(1000);
+        assertTrue(node2.isFinished(queue));
+    }
+
+    @Test
+    void testNotFinishedWhileAnEnqueuedUrlIsUnfinished() {
+        node1.enqueued(2);
+        node1.finished();
+        node2.isFinished(queue);
+
+        for (int i = 0; i < 5; i++) {
+            clock.addAndGet(1000);
+            assertFalse(node1.isFinished(queue), "one URL is still on the frontier");
+        }
+        node2.finished();
+        node2.isFinished(queue);
+        clock.addAndGet(2000);
+        assertFalse(node1.isFinished(queue), "the quiet window starts again after node-2's work");
+        clock.addAndGet(2000);
+        assertTrue(node1.isFinished(queue));
+    }
+
+    @Test
+    void testWorkPickedUpAfterAnIdleReportRestartsTheWindow() {
+        node1.enqueued(1);
+        node1.finished();
+        node2.isFinished(queue);
+        assertFalse(node1.isFinished(queue));
+
+        // node-2 takes a URL another node enqueued and finishes it between heartbeats
+        clock.addAndGet(1500);
+        node2.enqueued(1);
+        node2.busy();
+        node2.finished();
+        node2.heartbeat();
+        assertFalse(node1.isFinished(queue), "node-2 is busy");
+        node2.isFinished(queue);
+        clock.addAndGet(1000);
+        assertFalse(node1.isFinished(queue), "node-2's finished count changed since the last quiet look");
+    }
+
+    @Test
+    void testNodesThatStopHeartbeatingAreDropped() {
+        node1.enqueued(1);
+        node1.finished();
+        node2.busy();
+        node2.heartbeat();
+        assertFalse(node1.isFinished(queue));
+
+        clock.addAndGet(TIMEOUT.toMillis() + 1);
+        assertFalse(node1.isFinished(queue));
+        assertFalse(store.snapshot().getNodes().containsKey("node-2"));
+        clock.addAndGet(2000);
+        assertTrue(node1.isFinished(queue));
+    }
+
+    @Test
+    void testStoppedNodesLeaveTheirCountsBehind() {
+        node2.enqueued(3);
+        node2.finished();
+        node2.stop();
+
+        ClusterSnapshot snapshot = store.snapshot();
+        assertEquals(3, snapshot.getEnqueued());
+        assertEquals(1, snapshot.getFinished());
+        assertFalse(snapshot.getNodes().containsKey("node-2"));
+    }
+
+    @Test
+    void testNodeStateRoundTrips() {
+        NodeState state = new NodeState(true, 42, 1_700_000_000_000L);
+        assertEquals(state, NodeState.parse(state.encode()));
+    }
+}
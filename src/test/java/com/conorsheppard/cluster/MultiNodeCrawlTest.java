@@ -0,0 +1,89 @@
+package com.conorsheppard.cluster;
+
+import com.conorsheppard.cache.InMemoryUrlCache;
+import com.conorsheppard.crawler.CrawlConfig;
+import com.conorsheppard.crawler.FetchMode;
+import com.conorsheppard.crawler.SimpleWebCrawler;
+import com.conorsheppard.queue.ConcurrentQueue;
+import com.conorsheppard.web.FetchResult;
+import com.conorsheppard.web.WebClient;
+import lombok.SneakyThrows;
+import org.jline.terminal.TerminalBuilder;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+// Several crawlers in one JVM sharing an in-memory frontier, cache and cluster store, standing in for Kafka and Redis
+class MultiNodeCrawlTest {
+    private static final int PAGES = 60;
+    private static final int NODES = 3;
+
+    @SneakyThrows
+    @Test
+    void testEveryNodeKeepsCrawlingUntilTheWholeSiteIsDone() {
+        ConcurrentQueue frontier = new ConcurrentQueue();
+        InMemoryUrlCache cache = new InMemoryUrlCache();
+        InMemoryClusterStore store = new InMemoryClusterStore();
+        Map<String, Integer> fetches = new ConcurrentHashMap<>();
+        AtomicLong lastFetchAt = new AtomicLong();
+
+        // A tree of pages, each linking to its two children, so the frontier stays small and work trickles in
+        WebClient webClient = mock(WebClient.class);
+        when(webClient.fetchHtml(anyString(), any(), any())).thenAnswer(invocation -> {
+            String url = invocation.getArgument(0);
+            Consumer<String> links = invocation.getArgument(2);
+            fetches.merge(url, 1, Integer::sum);
+            Thread.sleep(20);
+            int page = url.equals("https://example.com") ? 0 : Integer.parseInt(url.substring(url.lastIndexOf('/') + 1));
+            for (int child = 2 * page + 1; child <= 2 * page + 2 && child < PAGES; child++) {
+                links.accept("https://example.com/page/" + child);
+            }
+            lastFetchAt.set(System.nanoTime());
+            return FetchResult.html(200, "text/html");
+        });
+
+        List<SimpleWebCrawler> crawlers = new ArrayList<>();
+        for (int i = 0; i < NODES; i++) {
+            CrawlConfig config = CrawlConfig.builder()
+                    .fetchMode(FetchMode.SINGLE_REQUEST)
+                    .respectRobots(false)
+                    .maxInFlight(2)
+                    .pollTimeout(Duration.ofMillis(10))
+                    .coordinator(new ClusterCoordinator(store, "node-" + i, Duration.ofMillis(50), Duration.ofSeconds(5)))
+                    .build();
+            crawlers.add(new SimpleWebCrawler("https://example.com", frontier, cache, Executors.newFixedThreadPool(2),
+                    TerminalBuilder.builder().dumb(true).build(), webClient, config));
+        }
+
+        ExecutorService nodes = Executors.newFixedThreadPool(NODES);
+        List<Future<Long>> finishedAt = new ArrayList<>();
+        for (SimpleWebCrawler crawler : crawlers) {
+            finishedAt.add(nodes.submit(() -> {
+                crawler.crawl();
+                return System.nanoTime();
+            }));
+        }
+
+        for (Future<Long> node : finishedAt) {
+            assertTrue(node.get(30, TimeUnit.SECONDS) >= lastFetchAt.get(), "a node finished before the crawl did");
+        }
+        nodes.shutdown();
+
+        assertEquals(PAGES, fetches.size());
+        assertTrue(fetches.values().stream().allMatch(count -> count == 1), "every page is crawled exactly once");
+        int crawledAcrossNodes = crawlers.stream().mapToInt(crawler -> crawler.getCrawledCount().get()).sum();
+        assertEquals(PAGES, crawledAcrossNodes);
+        assertTrue(crawlers.stream().filter(crawler -> crawler.getCrawledCount().get() > 0).count() > 1,
+                "the work should be shared between nodes");
+        assertTrue(store.snapshot().getNodes().isEmpty(), "every node leaves the cluster once done");
+    }
+}
@@ -0,0 +1,48 @@
+package com.conorsheppard.cluster;
+
+import io.lettuce.core.ScriptOutputType;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.api.sync.RedisCommands;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class RedisClusterStoreTest {
+    private RedisCommands<String, String> redis;
+    private RedisClusterStore store;
+
+    @BeforeEach
+    void setUp() {
+        StatefulRedisConnection<String, String> connection = mock(StatefulRedisConnection.class);
+        redis = mock(RedisCommands.class);
+        when(connection.sync()).thenReturn(redis);
+        store = new RedisClusterStore(connection);
+    }
+
+    @Test
+    void testReportFlushesCountsAndStateInOneScript() {
+        store.report("node-1", new NodeState(true, 7, 1000), 3, 2);
+
+        verify(redis).evalsha(RedisClusterStore.REPORT.getSha(), ScriptOutputType.INTEGER,
+                new String[]{"web-crawler-cluster:enqueued", "web-crawler-cluster:finished", "web-crawler-cluster:nodes"},
+                "3", "2", "node-1", "1:7:1000");
+    }
+
+    @Test
+    void testSnapshotReadsCountersAndNodes() {
+        when(redis.evalsha(eq(RedisClusterStore.SNAPSHOT.getSha()), eq(ScriptOutputType.MULTI), any(String[].class),
+                any(String[].class)))
+                .thenReturn(List.of("12", "10", List.of("node-1", "1:4:1000", "node-2", "0:6:1200")));
+
+        ClusterSnapshot snapshot = store.snapshot();
+
+        assertEquals(12, snapshot.getEnqueued());
+        assertEquals(10, snapshot.getFinished());
+        assertEquals(new NodeState(false, 6, 1200), snapshot.getNodes().get("node-2"));
+        assertTrue(snapshot.getNodes().get("node-1").isIdle());
+    }
+}
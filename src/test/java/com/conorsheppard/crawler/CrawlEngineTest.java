@@ -0,0 +1,65 @@
+package com.conorsheppard.crawler;
+
+import com.conorsheppard.cache.InMemoryUrlCache;
+import com.conorsheppard.queue.ConcurrentQueue;
+import com.conorsheppard.web.HeadResponse;
+import com.conorsheppard.web.WebClient;
+import lombok.SneakyThrows;
+import org.jline.terminal.TerminalBuilder;
+import org.jsoup.Jsoup;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class CrawlEngineTest {
+    private static final String EXAMPLE_URL = "https://example.com";
+
+    @SneakyThrows
+    @Test
+    void testVirtualEngineRunsTasksOnVirtualThreads() {
+        try (ExecutorService executor = CrawlEngine.VIRTUAL.newExecutor(1)) {
+            assertTrue(executor.submit(() -> Thread.currentThread().isVirtual()).get());
+        }
+    }
+
+    @SneakyThrows
+    @Test
+    void testPlatformEngineRunsTasksOnPlatformThreads() {
+        try (ExecutorService executor = CrawlEngine.PLATFORM.newExecutor(1)) {
+            assertFalse(executor.submit(() -> Thread.currentThread().isVirtual()).get());
+        }
+    }
+
+    @SneakyThrows
+    @Test
+    void testVirtualEngineRespectsPerHostLimit() {
+        WebClient webClient = mock(WebClient.class);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        HeadResponse htmlResponse = new HeadResponse(200, "text/html", Map.of());
+        when(webClient.head(anyString())).thenReturn(htmlResponse);
+        StringBuilder links = new StringBuilder();
+        for (int i = 0; i < 20; i++) links.append("<a href='/page").append(i).append("'>").append(i).append("</a>");
+        when(webClient.fetch(anyString())).thenAnswer(invocation -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            Thread.sleep(10);
+            running.decrementAndGet();
+            String url = invocation.getArgument(0);
+            return Jsoup.parse(url.equals(EXAMPLE_URL) ? links.toString() : "", url);
+        });
+
+        SimpleWebCrawler crawler = new SimpleWebCrawler(EXAMPLE_URL, new ConcurrentQueue(), new InMemoryUrlCache(),
+                CrawlEngine.VIRTUAL.newExecutor(0), TerminalBuilder.builder().dumb(true).build(), webClient,
+                CrawlConfig.builder().maxInFlight(1000).maxPerHost(3).pollTimeout(Duration.ofMillis(10)).build());
+        crawler.crawl();
+
+        verify(webClient, times(21)).fetch(anyString());
+        assertTrue(maxRunning.get() <= 3, "at most 3 fetches should hit the same host at once");
+    }
+}
@@ -0,0 +1,52 @@
+package com.conorsheppard.dedup;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NearDuplicateIndexTest {
+
+    @Test
+    void testFindsEveryFingerprintWithinTheDistance() {
+        Random random = new Random(7);
+        NearDuplicateIndex index = new NearDuplicateIndex(3);
+        long[] pages = new long[1000];
+        for (int i = 0; i < pages.length; i++) {
+            pages[i] = random.nextLong();
+            assertFalse(index.isDuplicate(pages[i]));
+        }
+
+        for (long page : pages) {
+            assertTrue(index.isDuplicate(flip(page, random, 3)));
+            assertFalse(index.isDuplicate(flip(page, random, 12)));
+        }
+        assertEquals(1000, index.duplicates());
+        assertEquals(2000, index.size());
+    }
+
+    @Test
+    void testZeroDistanceOnlyMatchesExactCopies() {
+        NearDuplicateIndex index = new NearDuplicateIndex(0);
+        assertFalse(index.isDuplicate(-1L));
+        assertTrue(index.isDuplicate(-1L));
+        assertFalse(index.isDuplicate(Long.MAX_VALUE));
+    }
+
+    @Test
+    void testPagesWithLittleTextAreNeverDuplicates() {
+        NearDuplicateIndex index = new NearDuplicateIndex(3);
+        assertFalse(index.isDuplicate(SimHash.of("Page not found")));
+        assertFalse(index.isDuplicate(SimHash.of("Page not found")));
+        assertEquals(0, index.size());
+        assertThrows(IllegalArgumentException.class, () -> new NearDuplicateIndex(8));
+    }
+
+    // Flips that many distinct bits
+    private static long flip(long fingerprint, Random random, int bits) {
+        long mask = 0;
+        while (Long.bitCount(mask) < bits) mask |= 1L << random.nextInt(Long.SIZE);
+        return fingerprint ^ mask;
+    }
+}
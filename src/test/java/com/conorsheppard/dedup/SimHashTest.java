@@ -0,0 +1,62 @@
+package com.conorsheppard.dedup;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SimHashTest {
+    private static final String ARTICLE = "It is a truth universally acknowledged, that a single man in possession of "
+            + "a good fortune, must be in want of a wife. However little known the feelings or views of such a man "
+            + "may be on his first entering a neighbourhood, this truth is so well fixed in the minds of the "
+            + "surrounding families, that he is considered the rightful property of some one or other of their "
+            + "daughters.";
+
+    @Test
+    void testSmallEditsMoveTheFingerprintByAFewBits() {
+        String page = words(0, 600);
+        long original = SimHash.of(page).value();
+
+        assertEquals(original, SimHash.of(page.toUpperCase().replace(" ", ", ")).value());
+        assertTrue(SimHash.distance(original, SimHash.of(page + " Printed 12 March 2024").value()) <= 3);
+        assertTrue(SimHash.distance(original, SimHash.of(words(1, 600)).value()) > 10);
+        assertTrue(SimHash.distance(SimHash.of(ARTICLE).value(), SimHash.of(page).value()) > 10);
+    }
+
+    // A page's worth of text drawn from a small vocabulary, like real text it repeats words but rarely phrases
+    private static String words(int seed, int count) {
+        Random random = new Random(seed);
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < count; i++) text.append("word").append(random.nextInt(2000)).append(' ');
+        return text.toString();
+    }
+
+    @Test
+    void testShinglesNeedThreeWords() {
+        assertEquals(0, SimHash.of("two words").shingles());
+        assertEquals(1, SimHash.of("three words here").shingles());
+        assertEquals(3, SimHash.of("one two three four five").shingles());
+    }
+
+    @Test
+    void testOnlyVisibleTextIsFingerprinted() throws IOException {
+        String html = "<html><head><title>Pride</title><style>p { color: red }</style>"
+                + "<script>var a = '<p>not text</p>';</script></head><body><!-- a comment -->"
+                + "<p class=\"lead\">" + ARTICLE.replace(", ", ", <b>").replace(". ", "</b>. ") + "</p></body></html>";
+        SimHash streamed = new SimHash();
+        try (InputStream in = new VisibleTextInputStream(
+                new ByteArrayInputStream(html.getBytes(StandardCharsets.UTF_8)), streamed)) {
+            in.transferTo(OutputStream.nullOutputStream());
+        }
+
+        assertEquals(SimHash.of("Pride " + ARTICLE).value(), streamed.value());
+        assertFalse(new VisibleTextInputStream(InputStream.nullInputStream(), streamed).markSupported());
+    }
+
+}
@@ -0,0 +1,72 @@
+package com.conorsheppard.io;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BinaryFilesTest {
+    private static final int MAGIC = 0x54455354;
+
+    @TempDir
+    Path dir;
+
+    @ParameterizedTest
+    @ValueSource(longs = {0, 1, 127, 128, 300, Integer.MAX_VALUE, Long.MAX_VALUE, -1, Long.MIN_VALUE})
+    void testVarintRoundTrip(long value) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        BinaryFiles.writeVarint(new DataOutputStream(bytes), value);
+
+        assertEquals(value, BinaryFiles.readVarint(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()))));
+    }
+
+    @Test
+    void testSmallValuesTakeOneByte() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        BinaryFiles.writeVarint(new DataOutputStream(bytes), 127);
+        assertEquals(1, bytes.size());
+    }
+
+    @Test
+    void testBodyIsReadBackAndNoTemporaryFileIsLeft() throws IOException {
+        Path file = dir.resolve("data");
+        BinaryFiles.write(file, MAGIC, 3, out -> out.writeUTF("hello"));
+
+        assertEquals("hello", BinaryFiles.read(file, MAGIC, 3, "test file", in -> in.readUTF()));
+        assertFalse(Files.exists(dir.resolve("data.tmp")));
+    }
+
+    @Test
+    void testCorruptedBodyFailsTheChecksum() throws IOException {
+        Path file = dir.resolve("data");
+        BinaryFiles.write(file, MAGIC, 3, out -> out.writeUTF("hello"));
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[10] ^= 1;
+        Files.write(file, bytes);
+
+        IOException e = assertThrows(IOException.class,
+                () -> BinaryFiles.read(file, MAGIC, 3, "test file", in -> in.readUTF()));
+        assertTrue(e.getMessage().contains("checksum mismatch"));
+    }
+
+    @Test
+    void testWrongMagicOrVersionIsRejected() throws IOException {
+        Path file = dir.resolve("data");
+        BinaryFiles.write(file, MAGIC, 3, out -> out.writeUTF("hello"));
+
+        assertThrows(IOException.class, () -> BinaryFiles.read(file, MAGIC + 1, 3, "test file", in -> null));
+        IOException e = assertThrows(IOException.class,
+                () -> BinaryFiles.read(file, MAGIC, 4, "test file", in -> null));
+        assertEquals("Unsupported test file version 3", e.getMessage());
+    }
+}
@@ -0,0 +1,116 @@
+package com.conorsheppard.metrics;
+
+import com.conorsheppard.cache.BloomFilteredUrlCache;
+import com.conorsheppard.cache.InMemoryUrlCache;
+import com.conorsheppard.metrics.CrawlMetrics.Stage;
+import com.conorsheppard.queue.ConcurrentQueue;
+import com.conorsheppard.queue.QueuedUrl;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CrawlMetricsTest {
+    private final AtomicLong clock = new AtomicLong();
+    private final CrawlMetrics metrics = new CrawlMetrics(clock::get);
+
+    @Test
+    void testRatesComeFromTheTotalsOverTheElapsedTime() {
+        metrics.request(Stage.GET, "example.com", TimeUnit.MILLISECONDS.toNanos(20));
+        metrics.pageFetched("example.com");
+        metrics.bytesRead("example.com", 3000);
+        metrics.failed("other.com", "http_404");
+        metrics.failed("other.com", "http_404");
+        clock.set(TimeUnit.SECONDS.toNanos(2));
+
+        assertEquals(0.5, metrics.pagesPerSecond());
+        assertEquals(1500, metrics.bytesPerSecond());
+        assertEquals(2, metrics.errors().get("http_404"));
+        assertEquals(1, metrics.hosts().get("example.com").getPages().sum());
+        assertEquals(2, metrics.hosts().get("other.com").getErrors().sum());
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(20), metrics.hosts().get("example.com").meanRequestNanos());
+    }
+
+    @Test
+    void testPrometheusText() {
+        metrics.request(Stage.GET, "example.com", TimeUnit.MILLISECONDS.toNanos(4));
+        metrics.pageFetched("example.com");
+        metrics.failed("example.com", "Socket\"Timeout");
+
+        String text = metrics.prometheus();
+        assertTrue(text.contains("# TYPE crawler_stage_latency_seconds summary\n"));
+        assertTrue(text.contains("crawler_stage_latency_seconds_count{stage=\"get\"} 1\n"));
+        assertTrue(text.contains("crawler_stage_latency_seconds_sum{stage=\"get\"} 0.004\n"));
+        assertTrue(text.contains("crawler_pages_total 1\n"));
+        assertTrue(text.contains("crawler_errors_total{type=\"Socket\\\"Timeout\"} 1\n"));
+        assertTrue(text.contains("crawler_host_requests_total{host=\"example.com\"} 1\n"));
+    }
+
+    @Test
+    void testJsonSummary() {
+        metrics.request(Stage.HEAD, "example.com", TimeUnit.MILLISECONDS.toNanos(1));
+        metrics.bytesRead("example.com", 10);
+        clock.set(TimeUnit.SECONDS.toNanos(4));
+
+        String json = metrics.jsonSummary();
+        assertTrue(json.startsWith("{\"elapsedSeconds\":4,\"pages\":0,\"pagesPerSecond\":0,\"bytes\":10,"
+                + "\"bytesPerSecond\":2.5,\"errors\":{},\"stages\":{\"head\":{\"count\":1,\"meanMillis\":1,"), json);
+        assertTrue(json.endsWith("\"hosts\":{\"example.com\":{\"requests\":1,\"meanRequestMillis\":1,\"pages\":0,"
+                + "\"bytes\":10,\"errors\":0}}}"), json);
+    }
+
+    @Test
+    void testBloomFilterHitsAreReportedOnceRegistered() {
+        assertFalse(metrics.prometheus().contains("crawler_bloom"));
+        assertFalse(metrics.jsonSummary().contains("bloomFilter"));
+
+        metrics.bloomFilter(() -> new BloomFilteredUrlCache.Stats(8, 6, 1024, 7, 0.01));
+
+        String text = metrics.prometheus();
+        assertTrue(text.contains("crawler_bloom_lookups_total 8\n"));
+        assertTrue(text.contains("crawler_bloom_local_hits_total 6\n"));
+        assertTrue(text.contains("crawler_bloom_hit_ratio 0.75\n"));
+        String json = metrics.jsonSummary();
+        assertTrue(json.endsWith(",\"bloomFilter\":{\"lookups\":8,\"localHits\":6,\"hitRatio\":0.75}}"), json);
+    }
+
+    @Test
+    void testQueueAndCacheDecoratorsRecordTheirStages() throws InterruptedException {
+        InstrumentedUrlQueue queue = new InstrumentedUrlQueue(new ConcurrentQueue(), metrics);
+        InstrumentedUrlCache cache = new InstrumentedUrlCache(new InMemoryUrlCache(), metrics);
+
+        List<String> added = cache.addAll(List.of("https://example.com/a", "https://example.com/b"));
+        queue.enqueueLinks(QueuedUrl.seed("https://example.com/"), added, added);
+        assertNull(new InstrumentedUrlQueue(new ConcurrentQueue(), metrics).next(1, TimeUnit.MILLISECONDS));
+        assertEquals(new QueuedUrl("https://example.com/a", 1), queue.next(1, TimeUnit.SECONDS));
+
+        assertEquals(1, metrics.latency(Stage.DEDUP).count());
+        assertEquals(1, metrics.latency(Stage.ENQUEUE).count());
+        // The empty poll isn't counted
+        assertEquals(1, metrics.latency(Stage.DEQUEUE).count());
+        assertEquals(1, queue.size());
+    }
+
+    @Test
+    void testServerExposesTheMetricsOnLocalhost() throws IOException, InterruptedException {
+        metrics.pageFetched("example.com");
+        try (MetricsServer server = new MetricsServer(metrics, 0);
+             HttpClient client = HttpClient.newHttpClient()) {
+            URI uri = URI.create("http://localhost:" + server.getPort() + "/metrics");
+            HttpResponse<String> response = client.send(HttpRequest.newBuilder(uri).build(),
+                    HttpResponse.BodyHandlers.ofString());
+
+            assertEquals(200, response.statusCode());
+            assertTrue(response.headers().firstValue("Content-Type").orElseThrow().startsWith("text/plain"));
+            assertTrue(response.body().contains("crawler_pages_total 1\n"));
+        }
+    }
+}
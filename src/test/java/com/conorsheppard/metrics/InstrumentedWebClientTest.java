@@ -0,0 +1,81 @@
+package com.conorsheppard.metrics;
+
+import com.conorsheppard.metrics.CrawlMetrics.Stage;
+import com.conorsheppard.parser.LinkExtractor;
+import com.conorsheppard.web.FetchResult;
+import com.conorsheppard.web.ThrottledException;
+import com.conorsheppard.web.WebClient;
+import org.jsoup.HttpStatusException;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class InstrumentedWebClientTest {
+    private static final String URL = "https://example.com/page";
+    private static final String BODY = "<a href=\"/next\">next</a>";
+
+    private final WebClient delegate = mock(WebClient.class);
+    private final CrawlMetrics metrics = new CrawlMetrics();
+    private final InstrumentedWebClient client = new InstrumentedWebClient(delegate, metrics);
+
+    @Test
+    void testStreamedPageIsTimedAndItsBytesCounted() throws IOException {
+        // Stands in for the real client, handing the extractor a body the way it would
+        when(delegate.fetchHtml(eq(URL), any(), any())).thenAnswer(invocation -> {
+            LinkExtractor extractor = invocation.getArgument(1);
+            extractor.extract(new ByteArrayInputStream(BODY.getBytes(StandardCharsets.UTF_8)), "UTF-8", URL,
+                    invocation.getArgument(2));
+            return FetchResult.html(200, "text/html");
+        });
+        List<String> links = new ArrayList<>();
+
+        client.fetchHtml(URL, (body, charset, baseUri, sink) -> {
+            body.readAllBytes();
+            sink.accept("https://example.com/next");
+        }, links::add);
+
+        assertEquals(List.of("https://example.com/next"), links);
+        assertEquals(1, metrics.pages());
+        assertEquals(BODY.length(), metrics.bytes());
+        assertEquals(1, metrics.latency(Stage.GET).count());
+        assertEquals(1, metrics.latency(Stage.PARSE).count());
+        assertEquals(BODY.length(), metrics.hosts().get("example.com").getBytes().sum());
+    }
+
+    @Test
+    void testNonHtmlResponseIsntCountedAsAPage() throws IOException {
+        when(delegate.fetchHtml(eq(URL), any(), any())).thenReturn(FetchResult.notHtml(200, "image/png"));
+
+        client.fetchHtml(URL, (body, charset, baseUri, sink) -> {}, link -> {});
+
+        assertEquals(0, metrics.pages());
+        assertEquals(1, metrics.latency(Stage.GET).count());
+        assertEquals(0, metrics.latency(Stage.PARSE).count());
+    }
+
+    @Test
+    void testFailuresAreCountedByType() throws IOException {
+        when(delegate.fetch(URL)).thenThrow(new SocketTimeoutException("timed out"));
+        when(delegate.head(URL)).thenThrow(new HttpStatusException("Not found", 404, URL));
+        when(delegate.fetchHtml(eq(URL), any(), any())).thenThrow(new ThrottledException(429, URL, null));
+
+        assertThrows(SocketTimeoutException.class, () -> client.fetch(URL));
+        assertThrows(HttpStatusException.class, () -> client.head(URL));
+        assertThrows(ThrottledException.class, () -> client.fetchHtml(URL, mock(LinkExtractor.class), link -> {}));
+
+        assertEquals(1, metrics.errors().get("SocketTimeoutException"));
+        assertEquals(1, metrics.errors().get("http_404"));
+        assertEquals(1, metrics.errors().get("throttled_429"));
+        assertEquals(3, metrics.hosts().get("example.com").getErrors().sum());
+        assertEquals(3, metrics.hosts().get("example.com").getRequests().sum());
+    }
+}
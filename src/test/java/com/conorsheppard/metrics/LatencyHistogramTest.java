@@ -0,0 +1,47 @@
+package com.conorsheppard.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LatencyHistogramTest {
+
+    @Test
+    void testBucketsTileTheRangeWithoutGaps() {
+        for (long value = 0; value < 100_000; value++) {
+            int index = LatencyHistogram.indexOf(value);
+            assertTrue(LatencyHistogram.lowestIn(index) <= value && value <= LatencyHistogram.highestIn(index),
+                    "value " + value + " outside bucket " + index);
+        }
+        assertEquals(LatencyHistogram.highestIn(40) + 1, LatencyHistogram.lowestIn(41));
+    }
+
+    @Test
+    void testPercentilesAreWithinTheBucketPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int millis = 1; millis <= 1000; millis++) histogram.record(TimeUnit.MILLISECONDS.toNanos(millis));
+
+        assertEquals(1000, histogram.count());
+        // Within the ~6% a sub-bucket spans
+        assertEquals(500e6, histogram.percentileNanos(0.5), 500e6 * 0.07);
+        assertEquals(990e6, histogram.percentileNanos(0.99), 990e6 * 0.07);
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(1000), histogram.percentileNanos(1.0));
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(1000), histogram.maxNanos());
+        assertEquals(TimeUnit.MICROSECONDS.toNanos(500_500), histogram.meanNanos(), 1);
+    }
+
+    @Test
+    void testEmptyAndOutOfRangeValues() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.percentileNanos(0.99));
+        assertEquals(0, histogram.meanNanos());
+
+        histogram.record(-5);
+        histogram.record(TimeUnit.DAYS.toNanos(1));
+        assertEquals(2, histogram.count());
+        assertEquals(0, histogram.percentileNanos(0.5));
+        assertEquals(LatencyHistogram.MAX_TRACKABLE_NANOS, histogram.percentileNanos(1.0));
+    }
+}
@@ -0,0 +1,108 @@
+package com.conorsheppard.parser;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StreamingLinkExtractorTest {
+    private static final String BASE_URI = "https://example.com/catalogue/index.html";
+    private static final String PAGE = """
+            <!DOCTYPE html>
+            <html>
+            <head>
+              <title>Links <a href="/not-a-link">in a title</a></title>
+              <script>if (a < b) document.write('<a href="/from-script">x</a>');</script>
+              <style>a[href^="/styled"] { color: red }</style>
+            </head>
+            <body>
+              <!-- <a href="/commented-out">gone</a> -->
+              <A HREF="/absolute-path">Upper case</A>
+              <a class="x" href='relative/page.html?x=1&amp;y=2'>Relative with entities</a>
+              <a href=unquoted>Unquoted</a>
+              <a id="no-href">No href</a>
+              <a href="https://other.com/page">Other host</a>
+              <a
+                 href = "  /spaced  ">Whitespace around</a>
+              <p>1 < 2 and <a href="#fragment">fragment</a></p>
+            </body>
+            </html>
+            """;
+
+    @Test
+    void testExtractsTheSameLinksAsTheDomExtractor() throws IOException {
+        assertEquals(extract(new DomLinkExtractor(), PAGE, StandardCharsets.UTF_8, null),
+                extract(new StreamingLinkExtractor(), PAGE, StandardCharsets.UTF_8, null));
+    }
+
+    @Test
+    void testSkipsCommentsScriptsAndRawText() throws IOException {
+        List<String> links = extract(new StreamingLinkExtractor(), PAGE, StandardCharsets.UTF_8, null);
+
+        assertTrue(links.contains("https://example.com/absolute-path"));
+        assertTrue(links.contains("https://example.com/catalogue/relative/page.html?x=1&y=2"));
+        assertTrue(links.contains("https://example.com/catalogue/unquoted"));
+        assertTrue(links.contains("https://example.com/spaced"));
+        assertFalse(links.stream().anyMatch(link -> link.contains("not-a-link") || link.contains("from-script")
+                || link.contains("commented-out") || link.contains("styled")));
+    }
+
+    @Test
+    void testHonoursBaseHref() throws IOException {
+        String page = "<head><base href='https://cdn.example.com/root/'></head><a href='page'>p</a>"
+                + "<base href='https://ignored.com/'><a href='/top'>t</a>";
+
+        List<String> links = extract(new StreamingLinkExtractor(), page, StandardCharsets.UTF_8, null);
+
+        assertEquals(List.of("https://cdn.example.com/root/page", "https://cdn.example.com/top"), links);
+        assertEquals(extract(new DomLinkExtractor(), page, StandardCharsets.UTF_8, null), links);
+    }
+
+    @Test
+    void testDecodesHrefsWithMetaCharset() throws IOException {
+        String page = "<meta charset=\"ISO-8859-1\"><a href=\"/caf\u00e9\">caf\u00e9</a>";
+
+        List<String> links = extract(new StreamingLinkExtractor(), page, StandardCharsets.ISO_8859_1, null);
+
+        assertEquals(extract(new DomLinkExtractor(), page, StandardCharsets.ISO_8859_1, null), links);
+    }
+
+    @Test
+    void testFallsBackToDomForUtf16() throws IOException {
+        String page = "\uFEFF<a href=\"/wide\">wide</a>";
+
+        List<String> links = extract(new StreamingLinkExtractor(), page, StandardCharsets.UTF_16, "UTF-16");
+
+        assertEquals(List.of("https://example.com/wide"), links);
+    }
+
+    @Test
+    void testDropsHrefsLongerThanTheValueBuffer() throws IOException {
+        String page = "<a href=\"/" + "x".repeat(StreamingLinkExtractor.MAX_URL_BYTES) + "\">long</a><a href=\"/short\">s</a>";
+
+        List<String> links = extract(new StreamingLinkExtractor(), page, StandardCharsets.UTF_8, null);
+
+        assertEquals(List.of("https://example.com/short"), links);
+    }
+
+    @Test
+    void testStopsCleanlyOnTruncatedInput() throws IOException {
+        List<String> links = extract(new StreamingLinkExtractor(), "<a href=\"/ok\">ok</a><a href=\"/cut",
+                StandardCharsets.UTF_8, null);
+
+        assertEquals(List.of("https://example.com/ok"), links);
+    }
+
+    private static List<String> extract(LinkExtractor extractor, String page, Charset encoding, String charset)
+            throws IOException {
+        List<String> links = new ArrayList<>();
+        extractor.extract(new ByteArrayInputStream(page.getBytes(encoding)), charset, BASE_URI, links::add);
+        return links;
+    }
+}
@@ -3,16 +3,24 @@ package com.conorsheppard.queue;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.apache.kafka.clients.consumer.ConsumerRecords;
 import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
 import org.apache.kafka.clients.producer.KafkaProducer;
 import org.apache.kafka.clients.producer.ProducerRecord;
 import org.apache.kafka.common.TopicPartition;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 
 import java.time.Duration;
 import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.OptionalLong;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -21,11 +29,12 @@ class KafkaQueueTest {
     private KafkaProducer<String, String> mockProducer;
     private KafkaConsumer<String, String> mockConsumer;
     private KafkaQueue kafkaQueue;
+    private final AtomicLong now = new AtomicLong();
     private static final String TOPIC = "web-crawler-urls";
 
     @BeforeEach
     void setUp() {
-        kafkaQueue = spy(new KafkaQueue());
+        kafkaQueue = spy(new KafkaQueue(now::get));
         mockProducer = mock(KafkaProducer.class);
         mockConsumer = mock(KafkaConsumer.class);
 
@@ -37,11 +46,11 @@ class KafkaQueueTest {
     @Test
     void testEnqueue() {
         String url = "http://example.com";
-        when(mockProducer.send(any(ProducerRecord.class))).thenReturn(CompletableFuture.completedFuture(null));
+        when(mockProducer.send(any(ProducerRecord.class), any())).thenReturn(CompletableFuture.completedFuture(null));
 
         kafkaQueue.enqueue(url);
 
-        verify(mockProducer, times(1)).send(any(ProducerRecord.class));
+        verify(mockProducer, times(1)).send(any(ProducerRecord.class), any());
     }
 
     @Test
@@ -65,61 +74,175 @@ class KafkaQueueTest {
     }
 
     @Test
-    void testIsEmptyWhenSizeIsZero() {
-        // Prepare mocks for endOffsets and position
+    void testTimedDequeuePollsForTheGivenTimeout() throws InterruptedException {
+        when(mockConsumer.poll(Duration.ofMillis(50))).thenReturn(new ConsumerRecords<>(Collections.emptyMap()));
+        assertNull(kafkaQueue.dequeue(50, TimeUnit.MILLISECONDS));
+        verify(mockConsumer).poll(Duration.ofMillis(50));
+    }
+
+    @Test
+    void testEnqueueKeysRecordsByHost() {
+        when(mockProducer.send(any(ProducerRecord.class), any())).thenReturn(CompletableFuture.completedFuture(null));
+
+        kafkaQueue.enqueue("https://example.com:8080/a/b");
+
+        ArgumentCaptor<ProducerRecord<String, String>> record = ArgumentCaptor.forClass(ProducerRecord.class);
+        verify(mockProducer).send(record.capture(), any());
+        assertEquals("example.com:8080", record.getValue().key());
+        assertEquals("https://example.com:8080/a/b", record.getValue().value());
+    }
+
+    @Test
+    void testDepthTravelsInAHeader() {
+        when(mockProducer.send(any(ProducerRecord.class), any())).thenReturn(CompletableFuture.completedFuture(null));
+        kafkaQueue.enqueue(new QueuedUrl("https://example.com/a", 4));
+
+        ArgumentCaptor<ProducerRecord<String, String>> sent = ArgumentCaptor.forClass(ProducerRecord.class);
+        verify(mockProducer).send(sent.capture(), any());
+        ConsumerRecord<String, String> withDepth = new ConsumerRecord<>(TOPIC, 0, 1L, "example.com", "https://example.com/a");
+        sent.getValue().headers().forEach(header -> withDepth.headers().add(header));
+        ConsumerRecord<String, String> withoutDepth = new ConsumerRecord<>(TOPIC, 0, 2L, "example.com", "https://example.com/b");
+        when(mockConsumer.poll(Duration.ofMillis(500)))
+                .thenReturn(new ConsumerRecords<>(Map.of(new TopicPartition(TOPIC, 0), List.of(withDepth, withoutDepth))));
+
+        assertEquals(new QueuedUrl("https://example.com/a", 4), kafkaQueue.next());
+        assertEquals(QueuedUrl.seed("https://example.com/b"), kafkaQueue.next());
+    }
+
+    @Test
+    void testEveryPolledRecordIsHandedOutFromTheBuffer() {
+        TopicPartition partition = new TopicPartition(TOPIC, 3);
+        var kafkaRecords = new ConsumerRecords<>(Map.of(partition, List.of(
+                new ConsumerRecord<>(TOPIC, 3, 10L, "example.com", "http://example.com/a"),
+                new ConsumerRecord<>(TOPIC, 3, 11L, "example.com", "http://example.com/b"),
+                new ConsumerRecord<>(TOPIC, 3, 12L, "example.com", "http://example.com/c"))));
+        when(mockConsumer.poll(Duration.ofMillis(500))).thenReturn(kafkaRecords);
+
+        assertEquals("http://example.com/a", kafkaQueue.dequeue());
+        assertEquals("http://example.com/b", kafkaQueue.dequeue());
+        assertEquals("http://example.com/c", kafkaQueue.dequeue());
+        verify(mockConsumer, times(1)).poll(any(Duration.class));
+        verify(mockConsumer, never()).commitSync();
+    }
+
+    @Test
+    void testOffsetsAreOnlyCommittedUpToTheOldestUnfinishedUrl() {
+        KafkaQueue.PartitionOffsets offsets = new KafkaQueue.PartitionOffsets();
+        offsets.handOut(10);
+        offsets.handOut(11);
+        offsets.handOut(12);
+
+        offsets.complete(11);
+        offsets.complete(12);
+        assertEquals(10, offsets.committable());
+        offsets.complete(10);
+        assertEquals(13, offsets.committable());
+    }
+
+    @Test
+    void testCompletedUrlsAreCommittedAsynchronouslyOnALaterDequeue() throws InterruptedException {
         TopicPartition partition = new TopicPartition(TOPIC, 0);
+        var kafkaRecords = new ConsumerRecords<>(Map.of(partition, List.of(
+                new ConsumerRecord<>(TOPIC, 0, 5L, "example.com", "http://example.com/a"))));
+        when(mockConsumer.poll(any(Duration.class)))
+                .thenReturn(kafkaRecords, new ConsumerRecords<>(Collections.emptyMap()));
 
-        // Define mock behavior for the KafkaConsumer methods
-        Map<TopicPartition, Long> endOffsets = Collections.singletonMap(partition, 100L);
-        when(mockConsumer.endOffsets(Collections.singletonList(partition))).thenReturn(endOffsets);
-        when(mockConsumer.position(partition)).thenReturn(100L);  // Position == endOffset means size() should be 0
+        kafkaQueue.dequeue();
+        kafkaQueue.complete("http://example.com/a", CrawlOutcome.of(200));
+        kafkaQueue.dequeue(10, TimeUnit.MILLISECONDS);
+        verify(mockConsumer, never()).commitAsync(anyMap(), any());
 
-        // Call isEmpty() and verify the result
-        assertTrue(kafkaQueue.isEmpty(), "The isEmpty() method should return true when size() is 0");
+        now.addAndGet(Duration.ofSeconds(1).toNanos());
+        kafkaQueue.dequeue(10, TimeUnit.MILLISECONDS);
 
-        // Verify that KafkaConsumer methods were called
-        verify(mockConsumer).endOffsets(Collections.singletonList(partition));
-        verify(mockConsumer).position(partition);
+        verify(mockConsumer).commitAsync(eq(Map.of(partition, new OffsetAndMetadata(6L))), any());
+        verify(mockConsumer, never()).commitSync();
     }
 
     @Test
-    void testIsEmptyWhenSizeIsNotZero() {
-        // Prepare mocks for endOffsets and position
+    void testLostPartitionsAreDroppedWithoutCommitting() {
+        TopicPartition lost = new TopicPartition(TOPIC, 0);
+        TopicPartition kept = new TopicPartition(TOPIC, 1);
+        Map<TopicPartition, List<ConsumerRecord<String, String>>> records = new LinkedHashMap<>();
+        records.put(lost, List.of(new ConsumerRecord<>(TOPIC, 0, 5L, "example.com", "http://example.com/a"),
+                new ConsumerRecord<>(TOPIC, 0, 6L, "example.com", "http://example.com/b")));
+        records.put(kept, List.of(new ConsumerRecord<>(TOPIC, 1, 7L, "example.org", "http://example.org/c")));
+        when(mockConsumer.poll(any(Duration.class))).thenReturn(new ConsumerRecords<>(records));
+
+        assertEquals("http://example.com/a", kafkaQueue.dequeue());
+        kafkaQueue.complete("http://example.com/a", CrawlOutcome.of(200));
+        kafkaQueue.getRebalanceListener().onPartitionsLost(List.of(lost));
+
+        assertEquals("http://example.org/c", kafkaQueue.dequeue());
+        assertEquals(Set.of(kept), kafkaQueue.getOffsets().keySet());
+        verify(mockConsumer, never()).commitSync(anyMap());
+        verify(mockConsumer, never()).commitAsync(anyMap(), any());
+    }
+
+    @Test
+    void testIsEmptyUsesTheLagTrackedFromFetches() {
         TopicPartition partition = new TopicPartition(TOPIC, 0);
+        when(mockConsumer.assignment()).thenReturn(Set.of(partition));
+        when(mockConsumer.currentLag(partition)).thenReturn(OptionalLong.of(0), OptionalLong.of(4));
 
-        // Define mock behavior for the KafkaConsumer methods
-        Map<TopicPartition, Long> endOffsets = Collections.singletonMap(partition, 100L);
-        when(mockConsumer.endOffsets(Collections.singletonList(partition))).thenReturn(endOffsets);
-        when(mockConsumer.position(partition)).thenReturn(90L);  // Position < endOffset means size() should be > 0
+        assertTrue(kafkaQueue.isEmpty());
+        assertFalse(kafkaQueue.isEmpty());
+        verify(mockConsumer, never()).endOffsets(anyCollection());
+    }
 
-        // Call isEmpty() and verify the result
-        assertFalse(kafkaQueue.isEmpty(), "The isEmpty() method should return false when size() is not 0");
+    @Test
+    void testUnfetchedPartitionsAreRefreshedAtMostOncePerInterval() {
+        TopicPartition partition = new TopicPartition(TOPIC, 0);
+        when(mockConsumer.assignment()).thenReturn(Set.of(partition));
+        when(mockConsumer.endOffsets(Set.of(partition))).thenReturn(Map.of(partition, 100L));
+        when(mockConsumer.position(partition)).thenReturn(90L);
 
-        // Verify that KafkaConsumer methods were called
-        verify(mockConsumer).endOffsets(Collections.singletonList(partition));
-        verify(mockConsumer).position(partition);
+        for (int i = 0; i < 50; i++) assertEquals(10, kafkaQueue.size());
+        verify(mockConsumer, times(1)).endOffsets(anyCollection());
     }
 
     @Test
-    void testSize() {
-        // Prepare mocks for endOffsets and position
-        TopicPartition partition0 = new TopicPartition(TOPIC, 0);
+    void testDrainedAlwaysChecksTheBroker() {
+        TopicPartition partition = new TopicPartition(TOPIC, 0);
+        when(mockConsumer.assignment()).thenReturn(Set.of(partition));
+        when(mockConsumer.currentLag(partition)).thenReturn(OptionalLong.of(0));
+        when(mockConsumer.endOffsets(Set.of(partition))).thenReturn(Map.of(partition, 100L), Map.of(partition, 101L));
+        when(mockConsumer.position(partition)).thenReturn(100L);
+
+        assertTrue(kafkaQueue.isEmpty());
+        assertTrue(kafkaQueue.isDrained());
+        assertFalse(kafkaQueue.isDrained(), "a URL produced by another node since the last fetch");
+        verify(mockConsumer, times(2)).endOffsets(anyCollection());
+    }
 
-        // Define mock behavior for the KafkaConsumer methods
-        Map<TopicPartition, Long> endOffsets = Collections.singletonMap(partition0, 100L);
-        when(mockConsumer.endOffsets(Collections.singletonList(partition0))).thenReturn(endOffsets);
-        when(mockConsumer.position(partition0)).thenReturn(90L);
+    @Test
+    void testNotDrainedWithoutAnAssignment() {
+        when(mockConsumer.assignment()).thenReturn(Set.of());
+        assertTrue(kafkaQueue.isEmpty());
+        assertFalse(kafkaQueue.isDrained());
+    }
 
-        // Call the method you want to test
-        int size = kafkaQueue.size();
+    @Test
+    void testIsEmptyWhileASendIsUnacknowledged() {
+        when(mockConsumer.assignment()).thenReturn(Set.of());
+        kafkaQueue.enqueue("http://example.com");
 
-        // Validate that the method returns the correct value
-        // lag = logEndOffset - currentOffset = 100 - 90 = 10
-        assertEquals(10, size);
+        assertFalse(kafkaQueue.isEmpty(), "a URL the broker hasn't acknowledged yet isn't visible in the offsets");
+        assertEquals(1, kafkaQueue.size());
+    }
 
-        // Verify that KafkaConsumer methods were called
-        verify(mockConsumer).endOffsets(Collections.singletonList(partition0));
-        verify(mockConsumer).position(partition0);
+    @Test
+    void testSizeSumsLagAcrossAssignedPartitions() {
+        TopicPartition partition0 = new TopicPartition(TOPIC, 0);
+        TopicPartition partition1 = new TopicPartition(TOPIC, 1);
+        when(mockConsumer.assignment()).thenReturn(Set.of(partition0, partition1));
+        when(mockConsumer.currentLag(partition0)).thenReturn(OptionalLong.of(10));
+        when(mockConsumer.endOffsets(Set.of(partition0, partition1)))
+                .thenReturn(Map.of(partition0, 100L, partition1, 50L));
+        when(mockConsumer.position(partition0)).thenReturn(90L);
+        when(mockConsumer.position(partition1)).thenReturn(45L);
+
+        // lag = 10 known from fetches + (50 - 45) refreshed for the partition not fetched yet
+        assertEquals(15, kafkaQueue.size());
     }
 }
-
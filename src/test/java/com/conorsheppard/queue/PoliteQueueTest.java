@@ -0,0 +1,156 @@
+package com.conorsheppard.queue;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class PoliteQueueTest {
+    private final AtomicLong clock = new AtomicLong();
+
+    private PoliteQueue queue(PolitenessPolicy policy) {
+        return new PoliteQueue(new ConcurrentQueue(), policy, clock::get);
+    }
+
+    private void advance(Duration duration) {
+        clock.addAndGet(duration.toNanos());
+    }
+
+    @Test
+    void testHostIsHeldToItsRate() {
+        PoliteQueue queue = queue(PolitenessPolicy.builder().requestsPerSecond(2).burst(1).build());
+        queue.enqueue("https://a.com/1");
+        queue.enqueue("https://a.com/2");
+
+        assertEquals("https://a.com/1", queue.dequeue());
+        assertNull(queue.dequeue());
+        advance(Duration.ofMillis(499));
+        assertNull(queue.dequeue());
+        advance(Duration.ofMillis(1));
+        assertEquals("https://a.com/2", queue.dequeue());
+    }
+
+    @Test
+    void testOtherHostsAreServedWhileOneIsRateLimited() {
+        PoliteQueue queue = queue(PolitenessPolicy.builder().requestsPerSecond(1).burst(1).build());
+        queue.enqueue("https://a.com/1");
+        queue.enqueue("https://a.com/2");
+        queue.enqueue("https://a.com/3");
+        queue.enqueue("https://b.com/1");
+
+        assertEquals("https://a.com/1", queue.dequeue());
+        assertEquals("https://b.com/1", queue.dequeue());
+        assertNull(queue.dequeue());
+        assertFalse(queue.isEmpty());
+        assertEquals(2, queue.size());
+    }
+
+    @Test
+    void testHostConcurrencyIsReleasedOnCompletion() {
+        PoliteQueue queue = queue(PolitenessPolicy.builder().requestsPerSecond(100).maxPerHost(1).build());
+        queue.enqueue("https://a.com/1");
+        queue.enqueue("https://a.com/2");
+
+        assertEquals("https://a.com/1", queue.dequeue());
+        advance(Duration.ofSeconds(1));
+        assertNull(queue.dequeue());
+
+        queue.complete("https://a.com/1", CrawlOutcome.of(200));
+        assertEquals("https://a.com/2", queue.dequeue());
+    }
+
+    @Test
+    void testThrottledUrlIsRetriedAfterRetryAfter() {
+        PoliteQueue queue = queue(PolitenessPolicy.defaults());
+        queue.enqueue("https://a.com/1");
+        queue.enqueue("https://a.com/2");
+
+        assertEquals("https://a.com/1", queue.dequeue());
+        queue.complete("https://a.com/1", CrawlOutcome.of(429, Duration.ofSeconds(30)));
+
+        advance(Duration.ofSeconds(29));
+        assertNull(queue.dequeue());
+        advance(Duration.ofSeconds(1));
+        assertEquals("https://a.com/1", queue.dequeue());
+    }
+
+    @Test
+    void testThrottledUrlKeepsItsDepth() {
+        PoliteQueue queue = queue(PolitenessPolicy.defaults());
+        queue.enqueue(new QueuedUrl("https://a.com/1", 3));
+
+        assertEquals(new QueuedUrl("https://a.com/1", 3), queue.next());
+        queue.complete("https://a.com/1", CrawlOutcome.of(429, Duration.ofSeconds(1)));
+        advance(Duration.ofSeconds(1));
+        assertEquals(new QueuedUrl("https://a.com/1", 3), queue.next());
+    }
+
+    @Test
+    void testThrottledUrlWithoutRetryAfterBacksOffExponentially() {
+        PoliteQueue queue = queue(PolitenessPolicy.builder().baseBackoff(Duration.ofSeconds(1)).build());
+        queue.enqueue("https://a.com/1");
+
+        assertEquals("https://a.com/1", queue.dequeue());
+        queue.complete("https://a.com/1", CrawlOutcome.of(503));
+        advance(Duration.ofSeconds(1));
+        assertEquals("https://a.com/1", queue.dequeue());
+
+        queue.complete("https://a.com/1", CrawlOutcome.of(503));
+        advance(Duration.ofSeconds(1));
+        assertNull(queue.dequeue());
+        advance(Duration.ofSeconds(1));
+        assertEquals("https://a.com/1", queue.dequeue());
+    }
+
+    @Test
+    void testThrottledUrlIsDroppedAfterMaxRetries() {
+        PoliteQueue queue = queue(PolitenessPolicy.builder().maxRetries(1).build());
+        queue.enqueue("https://a.com/1");
+
+        queue.complete(queue.dequeue(), CrawlOutcome.of(429, Duration.ZERO));
+        queue.complete(queue.dequeue(), CrawlOutcome.of(429, Duration.ZERO));
+
+        assertNull(queue.dequeue());
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    void testThrottledUrlIsOnlyCompletedOnTheDelegateOnceItIsDone() {
+        UrlQueue delegate = spy(new ConcurrentQueue());
+        PoliteQueue queue = new PoliteQueue(delegate, PolitenessPolicy.builder().maxRetries(1).build(), clock::get);
+        queue.enqueue("https://a.com/1");
+
+        assertFalse(queue.complete(queue.dequeue(), CrawlOutcome.of(429, Duration.ZERO)));
+        verify(delegate, never()).complete(anyString(), any());
+
+        assertTrue(queue.complete(queue.dequeue(), CrawlOutcome.of(429, Duration.ZERO)));
+        verify(delegate).complete("https://a.com/1", CrawlOutcome.of(429, Duration.ZERO));
+    }
+
+    @Test
+    void testCrawlDelayLimitsHostToOneRequestPerDelay() {
+        PoliteQueue queue = queue(PolitenessPolicy.builder().requestsPerSecond(10).burst(10).build());
+        queue.setCrawlDelay("a.com", Duration.ofSeconds(5));
+        queue.enqueue("https://a.com/1");
+        queue.enqueue("https://a.com/2");
+
+        assertEquals("https://a.com/1", queue.dequeue());
+        advance(Duration.ofSeconds(4));
+        assertNull(queue.dequeue());
+        advance(Duration.ofSeconds(1));
+        assertEquals("https://a.com/2", queue.dequeue());
+    }
+
+    @Test
+    void testTimedDequeueReturnsNullWhenNothingIsReady() throws InterruptedException {
+        PoliteQueue queue = new PoliteQueue(new ConcurrentQueue(), PolitenessPolicy.defaults());
+        assertNull(queue.dequeue(20, TimeUnit.MILLISECONDS));
+
+        queue.enqueue("https://a.com/1");
+        assertEquals("https://a.com/1", queue.dequeue(20, TimeUnit.MILLISECONDS));
+    }
+}
@@ -0,0 +1,121 @@
+package com.conorsheppard.queue;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PriorityFrontierTest {
+    private static final UrlScorer BY_DEPTH_AND_IN_LINKS =
+            WeightedUrlScorer.builder().depthWeight(1).inLinkWeight(1).freshnessWeight(0).build();
+
+    @Test
+    void testHigherScoresComeOutFirstAndTiesInTheOrderFound() {
+        Map<String, Double> scores = Map.of("https://example.com/low", -3.0, "https://example.com/high", 5.0,
+                "https://example.com/mid-1", 1.0, "https://example.com/mid-2", 1.0);
+        PriorityFrontier frontier = new PriorityFrontier((url, depth, inLinks) -> scores.get(url));
+        List.of("https://example.com/low", "https://example.com/mid-1", "https://example.com/high",
+                "https://example.com/mid-2").forEach(frontier::enqueue);
+
+        assertEquals(4, frontier.size());
+        assertEquals(List.of("https://example.com/high", "https://example.com/mid-1", "https://example.com/mid-2",
+                "https://example.com/low"), drain(frontier));
+        assertTrue(frontier.isEmpty());
+    }
+
+    @Test
+    void testLinksAreOneDeeperThanThePageTheyWereFoundOn() {
+        PriorityFrontier frontier = new PriorityFrontier(BY_DEPTH_AND_IN_LINKS);
+        frontier.enqueue("https://example.com/");
+        QueuedUrl seed = frontier.next();
+        frontier.enqueueLinks(seed, List.of("https://example.com/a"), List.of("https://example.com/a"));
+        QueuedUrl a = frontier.next();
+        assertEquals(1, a.getDepth());
+        frontier.enqueueLinks(a, List.of("https://example.com/a/deep"), List.of("https://example.com/a/deep"));
+        frontier.enqueueLinks(seed, List.of("https://example.com/b"), List.of("https://example.com/b"));
+
+        assertEquals(List.of("https://example.com/b", "https://example.com/a/deep"), drain(frontier));
+    }
+
+    @Test
+    void testUrlsMoreLinkedToMoveAhead() {
+        PriorityFrontier frontier = new PriorityFrontier(BY_DEPTH_AND_IN_LINKS);
+        QueuedUrl seed = QueuedUrl.seed("https://example.com/");
+        frontier.enqueueLinks(seed, List.of("https://example.com/a", "https://example.com/b"),
+                List.of("https://example.com/a", "https://example.com/b"));
+        for (int page = 0; page < 3; page++) {
+            frontier.enqueueLinks(new QueuedUrl("https://example.com/" + page, 3), List.of(),
+                    List.of("https://example.com/b"));
+        }
+
+        assertEquals(2, frontier.size());
+        assertEquals(List.of("https://example.com/b", "https://example.com/a"), drain(frontier));
+    }
+
+    @Test
+    void testScoresOutsideTheRangeShareTheOutermostBuckets() {
+        PriorityFrontier frontier = new PriorityFrontier(BY_DEPTH_AND_IN_LINKS, 1);
+        assertEquals(0, frontier.bucketOf(-1000));
+        assertEquals(PriorityFrontier.BUCKETS / 2, frontier.bucketOf(0.5));
+        assertEquals(PriorityFrontier.BUCKETS - 1, frontier.bucketOf(1000));
+    }
+
+    @Test
+    void testTimedDequeueWaitsForAnEnqueue() throws InterruptedException {
+        PriorityFrontier frontier = new PriorityFrontier(BY_DEPTH_AND_IN_LINKS);
+        assertNull(frontier.dequeue(10, TimeUnit.MILLISECONDS));
+
+        ScheduledExecutorService producer = Executors.newSingleThreadScheduledExecutor();
+        producer.schedule(() -> frontier.enqueue("https://example.com/late"), 50, TimeUnit.MILLISECONDS);
+        assertEquals("https://example.com/late", frontier.dequeue(5, TimeUnit.SECONDS));
+        producer.shutdown();
+    }
+
+    @Test
+    void testEveryUrlIsHandedOutOnceUnderConcurrentProducersAndConsumers() throws Exception {
+        PriorityFrontier frontier = new PriorityFrontier(BY_DEPTH_AND_IN_LINKS);
+        int producers = 4;
+        int perProducer = 5_000;
+        ExecutorService pool = Executors.newFixedThreadPool(producers * 2);
+        Set<String> taken = ConcurrentHashMap.newKeySet();
+        CountDownLatch consumed = new CountDownLatch(producers * perProducer);
+
+        for (int p = 0; p < producers; p++) {
+            int producer = p;
+            pool.submit(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    String url = "https://example.com/" + producer + "/" + i;
+                    frontier.enqueueLinks(QueuedUrl.seed("https://example.com/" + producer), List.of(url), List.of(url));
+                    // Re-link an earlier URL so entries move between buckets while being taken
+                    if (i > 0) frontier.enqueueLinks(QueuedUrl.seed("https://example.com/x"), List.of(),
+                            List.of("https://example.com/" + producer + "/" + (i / 2)));
+                }
+            });
+            pool.submit(() -> {
+                try {
+                    String url;
+                    while ((url = frontier.dequeue(2, TimeUnit.SECONDS)) != null) {
+                        assertTrue(taken.add(url), url + " handed out twice");
+                        consumed.countDown();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+
+        assertTrue(consumed.await(30, TimeUnit.SECONDS));
+        pool.shutdownNow();
+        assertEquals(producers * perProducer, taken.size());
+        assertTrue(frontier.isEmpty());
+    }
+
+    private static List<String> drain(PriorityFrontier frontier) {
+        List<String> urls = new ArrayList<>();
+        String url;
+        while ((url = frontier.dequeue()) != null) urls.add(url);
+        return urls;
+    }
+}
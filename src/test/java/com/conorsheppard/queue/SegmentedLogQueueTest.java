@@ -0,0 +1,128 @@
+package com.conorsheppard.queue;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SegmentedLogQueueTest {
+    // Small enough that a handful of URLs rolls over to a new segment
+    private static final int SEGMENT_BYTES = 128;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void testUrlsComeOutInOrderAcrossSegments() throws IOException {
+        SegmentedLogQueue queue = new SegmentedLogQueue(dir, SEGMENT_BYTES, 1);
+        for (int i = 0; i < 20; i++) queue.enqueue("https://example.com/page/" + i);
+
+        assertEquals(20, queue.size());
+        assertTrue(segments().size() > 1);
+        for (int i = 0; i < 20; i++) assertEquals("https://example.com/page/" + i, queue.dequeue());
+        assertNull(queue.dequeue());
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    void testNonAsciiUrlsRoundTrip() {
+        SegmentedLogQueue queue = new SegmentedLogQueue(dir, SEGMENT_BYTES, 1);
+        queue.enqueue("https://example.com/café/日本");
+        assertEquals("https://example.com/café/日本", queue.dequeue());
+    }
+
+    @Test
+    void testDepthSurvivesAReopen() {
+        SegmentedLogQueue queue = new SegmentedLogQueue(dir, SEGMENT_BYTES, 1);
+        queue.enqueue(new QueuedUrl("https://example.com/deep", 7));
+
+        assertEquals(new QueuedUrl("https://example.com/deep", 7), new SegmentedLogQueue(dir, SEGMENT_BYTES, 1).next());
+    }
+
+    @Test
+    void testReopeningResumesAfterTheCompletedUrls() {
+        SegmentedLogQueue queue = new SegmentedLogQueue(dir, SEGMENT_BYTES, 1);
+        for (int i = 0; i < 10; i++) queue.enqueue("https://example.com/" + i);
+        for (int i = 0; i < 4; i++) queue.complete(queue.dequeue(), CrawlOutcome.of(200));
+
+        SegmentedLogQueue reopened = new SegmentedLogQueue(dir, SEGMENT_BYTES, 1);
+        assertEquals(6, reopened.size());
+        assertEquals("https://example.com/4", reopened.dequeue());
+        reopened.enqueue("https://example.com/new");
+        List<String> rest = drain(reopened);
+        assertEquals(List.of("https://example.com/5", "https://example.com/6", "https://example.com/7",
+                "https://example.com/8", "https://example.com/9", "https://example.com/new"), rest);
+    }
+
+    @Test
+    void testUrlsStillBeingCrawledAreHandedOutAgainAfterACrash() {
+        SegmentedLogQueue queue = new SegmentedLogQueue(dir, SEGMENT_BYTES, 1);
+        for (int i = 0; i < 3; i++) queue.enqueue("https://example.com/" + i);
+        String first = queue.dequeue();
+        String second = queue.dequeue();
+        queue.complete(second, CrawlOutcome.of(200));
+
+        // The first URL never completed, so the checkpoint can't move past it
+        SegmentedLogQueue reopened = new SegmentedLogQueue(dir, SEGMENT_BYTES, 1);
+        assertEquals(first, reopened.dequeue());
+        assertEquals(3, drain(reopened).size() + 1);
+    }
+
+    @Test
+    void testConsumedSegmentsAreDeleted() throws IOException {
+        SegmentedLogQueue queue = new SegmentedLogQueue(dir, SEGMENT_BYTES, 1);
+        for (int i = 0; i < 30; i++) queue.enqueue("https://example.com/page/" + i);
+        int written = segments().size();
+
+        for (int i = 0; i < 30; i++) queue.complete(queue.dequeue(), CrawlOutcome.of(200));
+
+        assertTrue(segments().size() < written);
+        assertEquals(1, segments().size());
+        assertTrue(new SegmentedLogQueue(dir, SEGMENT_BYTES, 1).isEmpty());
+    }
+
+    @Test
+    void testTimedDequeueWaitsForAnEnqueue() throws InterruptedException {
+        SegmentedLogQueue queue = new SegmentedLogQueue(dir, SEGMENT_BYTES, 1);
+        assertNull(queue.dequeue(10, TimeUnit.MILLISECONDS));
+
+        Thread producer = new Thread(() -> {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            queue.enqueue("https://example.com/late");
+        });
+        producer.start();
+        assertEquals("https://example.com/late", queue.dequeue(5, TimeUnit.SECONDS));
+        producer.join();
+    }
+
+    @Test
+    void testRejectsUrlsLargerThanASegment() {
+        SegmentedLogQueue queue = new SegmentedLogQueue(dir, SEGMENT_BYTES, 1);
+        assertThrows(IllegalArgumentException.class, () -> queue.enqueue("https://example.com/" + "a".repeat(200)));
+    }
+
+    private static List<String> drain(SegmentedLogQueue queue) {
+        List<String> urls = new ArrayList<>();
+        String url;
+        while ((url = queue.dequeue()) != null) urls.add(url);
+        return urls;
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(path -> path.toString().endsWith(".seg")).toList();
+        }
+    }
+}
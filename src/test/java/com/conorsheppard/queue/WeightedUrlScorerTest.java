@@ -0,0 +1,50 @@
+package com.conorsheppard.queue;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WeightedUrlScorerTest {
+    private static final LocalDate TODAY = LocalDate.of(2026, 10, 17);
+
+    private final WeightedUrlScorer scorer = WeightedUrlScorer.builder()
+            .freshnessHalfLife(Duration.ofDays(10))
+            .today(() -> TODAY)
+            .build();
+
+    @Test
+    void testDeeperPagesScoreLowerAndLinkedPagesHigher() {
+        assertEquals(-2, scorer.score("https://example.com/a", 3, 1), 1e-9);
+        assertEquals(1, scorer.score("https://example.com/a", 3, 15) - scorer.score("https://example.com/a", 3, 7), 1e-9);
+    }
+
+    @Test
+    void testFreshnessHalvesEveryHalfLife() {
+        assertEquals(1, scorer.freshness("https://example.com/news/2026/10/17/story"), 1e-9);
+        assertEquals(0.5, scorer.freshness("https://example.com/news/2026-10-07-story"), 1e-9);
+        // Without a day the first of the month is assumed
+        assertEquals(Math.pow(0.5, 16 / 10d), scorer.freshness("https://example.com/archive/2026/10/"), 1e-9);
+    }
+
+    @Test
+    void testUrlsWithoutAValidDateAreNotFresh() {
+        assertEquals(0, scorer.freshness("https://example.com/products/12345"));
+        assertEquals(0, scorer.freshness("https://example.com/2026/02/30/"));
+        assertEquals(0, scorer.freshness("https://example.com/id/120261017"));
+    }
+
+    @Test
+    void testMatchingPatternsAddTheirWeights() {
+        WeightedUrlScorer patterns = scorer.toBuilder()
+                .patternWeight(Pattern.compile("/product/"), 3.0)
+                .patternWeight(Pattern.compile("[?&]page=\\d+"), -2.0)
+                .build();
+
+        assertEquals(3, patterns.score("https://example.com/product/1", 0, 0), 1e-9);
+        assertEquals(1, patterns.score("https://example.com/product/list?page=4", 0, 0), 1e-9);
+    }
+}
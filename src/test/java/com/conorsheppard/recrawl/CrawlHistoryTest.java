@@ -0,0 +1,78 @@
+package com.conorsheppard.recrawl;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CrawlHistoryTest {
+    private static final long DAY = Duration.ofDays(1).toMillis();
+
+    @TempDir
+    Path dir;
+
+    private final AtomicLong clock = new AtomicLong(Duration.ofDays(20_000).toMillis());
+    private final CrawlHistory history = new CrawlHistory(RevisitPolicy.defaults(), clock::get);
+
+    @Test
+    void testIntervalsGrowWhileAPageIsUnchangedAndShrinkWhenItChanges() {
+        assertTrue(history.record("https://example.com/", 1));
+        assertEquals(DAY, history.get("https://example.com/").getRevisitMillis());
+
+        assertFalse(history.record("https://example.com/", 1));
+        assertFalse(history.record("https://example.com/", 1));
+        assertEquals(4 * DAY, history.get("https://example.com/").getRevisitMillis());
+
+        assertTrue(history.record("https://example.com/", 2));
+        assertEquals(2 * DAY, history.get("https://example.com/").getRevisitMillis());
+    }
+
+    @Test
+    void testIntervalsStayWithinTheBounds() {
+        RevisitPolicy policy = RevisitPolicy.defaults();
+        PageHistory page = policy.next(null, 1, 0);
+        for (int i = 0; i < 20; i++) page = policy.next(page, 1, 0);
+        assertEquals(policy.getMaxInterval().toMillis(), page.getRevisitMillis());
+        for (int i = 0; i < 20; i++) page = policy.next(page, i + 2, 0);
+        assertEquals(policy.getMinInterval().toMillis(), page.getRevisitMillis());
+    }
+
+    @Test
+    void testOnlyPagesPastTheirIntervalAreDue() {
+        history.record("https://example.com/daily", 1);
+        history.record("https://example.com/weekly", 1);
+        history.record("https://example.com/weekly", 1);
+        history.record("https://example.com/weekly", 1);
+        clock.addAndGet(2 * DAY);
+
+        assertEquals(List.of("https://example.com/daily"), history.due());
+        clock.addAndGet(2 * DAY);
+        assertEquals(2, history.due().size());
+    }
+
+    @Test
+    void testRoundTripsThroughAFile() throws IOException {
+        history.record("https://example.com/", 42);
+        history.record("https://example.com/café", -7);
+        Path file = dir.resolve("history");
+        history.writeTo(file);
+
+        CrawlHistory loaded = CrawlHistory.load(file, RevisitPolicy.defaults());
+        assertEquals(2, loaded.size());
+        assertEquals(history.get("https://example.com/"), loaded.get("https://example.com/"));
+        assertEquals(-7, loaded.get("https://example.com/café").getContentHash());
+        assertEquals(0, CrawlHistory.load(dir.resolve("missing"), RevisitPolicy.defaults()).size());
+
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[bytes.length - 5] ^= 1;
+        Files.write(file, bytes);
+        assertThrows(IOException.class, () -> CrawlHistory.load(file, RevisitPolicy.defaults()));
+    }
+}
@@ -0,0 +1,82 @@
+package com.conorsheppard.recrawl;
+
+import com.conorsheppard.parser.LinkExtractor;
+import com.conorsheppard.parser.StreamingLinkExtractor;
+import com.conorsheppard.web.FetchResult;
+import com.conorsheppard.web.Validators;
+import com.conorsheppard.web.WebClient;
+import org.jsoup.HttpStatusException;
+import org.junit.jupiter.api.Test;
+import org.mockito.stubbing.Answer;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class RecrawlWebClientTest {
+    private static final String URL = "https://example.com/page";
+
+    private final WebClient delegate = mock(WebClient.class);
+    private final CrawlHistory history = new CrawlHistory(RevisitPolicy.defaults());
+    private final RecrawlWebClient client = new RecrawlWebClient(delegate, history);
+
+    @Test
+    void testLinksAreOnlyFollowedFromNewOrChangedPages() throws IOException {
+        when(delegate.fetchHtml(eq(URL), any(), any()))
+                .thenAnswer(serving("<a href='/a'>a</a>"))
+                .thenAnswer(serving("<a href='/a'>a</a>"))
+                .thenAnswer(serving("<a href='/a'>a</a><a href='/b'>b</a>"));
+
+        assertEquals(List.of("https://example.com/a"), fetchLinks());
+        assertEquals(List.of(), fetchLinks());
+        assertEquals(List.of("https://example.com/a", "https://example.com/b"), fetchLinks());
+        assertEquals(1, history.size());
+    }
+
+    @Test
+    void testNotModifiedCountsAsUnchanged() throws IOException {
+        history.record(URL, 5);
+        long interval = history.get(URL).getRevisitMillis();
+        when(delegate.fetchHtml(eq(URL), any(), any())).thenAnswer(invocation -> {
+            // A cache in front of the server replays the links it kept
+            invocation.<Consumer<String>>getArgument(2).accept("https://example.com/a");
+            return FetchResult.html(FetchResult.NOT_MODIFIED, "text/html", Validators.NONE);
+        });
+
+        assertEquals(List.of(), fetchLinks());
+        assertEquals(5, history.get(URL).getContentHash());
+        assertEquals(2 * interval, history.get(URL).getRevisitMillis());
+    }
+
+    @Test
+    void testGonePagesAreForgotten() throws IOException {
+        history.record(URL, 5);
+        when(delegate.fetchHtml(eq(URL), any(), any())).thenThrow(new HttpStatusException("Gone", 410, URL));
+
+        assertThrows(HttpStatusException.class, this::fetchLinks);
+        assertNull(history.get(URL));
+    }
+
+    private List<String> fetchLinks() throws IOException {
+        List<String> links = new ArrayList<>();
+        client.fetchHtml(URL, new StreamingLinkExtractor(), links::add);
+        return links;
+    }
+
+    // Streams the body through the extractor it's given, the way a real client does
+    private static Answer<FetchResult> serving(String html) {
+        return invocation -> {
+            ByteArrayInputStream body = new ByteArrayInputStream(html.getBytes(StandardCharsets.UTF_8));
+            invocation.<LinkExtractor>getArgument(1).extract(body, "UTF-8", URL, invocation.getArgument(2));
+            return FetchResult.html(200, "text/html");
+        };
+    }
+}
@@ -0,0 +1,98 @@
+package com.conorsheppard.robots;
+
+import com.conorsheppard.url.UrlCanonicalizer;
+import com.conorsheppard.web.WebClient;
+import org.jsoup.HttpStatusException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class RobotsCacheTest {
+    private final UrlCanonicalizer canonicalizer = new UrlCanonicalizer();
+    private final AtomicLong clock = new AtomicLong();
+    private final Map<String, Duration> crawlDelays = new HashMap<>();
+    private WebClient webClient;
+    private RobotsCache robots;
+
+    @BeforeEach
+    void setUp() {
+        webClient = mock(WebClient.class);
+        robots = new RobotsCache(webClient, Duration.ofHours(1), Duration.ofMinutes(1), crawlDelays::put, clock::get);
+    }
+
+    private boolean isAllowed(String url) {
+        return robots.isAllowed(canonicalizer.canonicalize(url));
+    }
+
+    @Test
+    void testRobotsTxtIsFetchedOncePerOriginUntilItExpires() throws IOException {
+        when(webClient.fetchText(eq("https://example.com/robots.txt"), anyInt()))
+                .thenReturn("User-agent: *\nDisallow: /private\nCrawl-delay: 3\n");
+
+        assertTrue(isAllowed("https://example.com/page"));
+        assertFalse(isAllowed("https://example.com/private/page"));
+        verify(webClient, times(1)).fetchText(eq("https://example.com/robots.txt"), anyInt());
+        assertEquals(Map.of("example.com", Duration.ofSeconds(3)), crawlDelays);
+
+        clock.addAndGet(Duration.ofHours(1).toNanos());
+        assertTrue(isAllowed("https://example.com/page"));
+        verify(webClient, times(2)).fetchText(eq("https://example.com/robots.txt"), anyInt());
+    }
+
+    @Test
+    void testDirectoryRulesMatchTheSlashTheLinkEndedIn() throws IOException {
+        when(webClient.fetchText(eq("https://example.com/robots.txt"), anyInt()))
+                .thenReturn("User-agent: *\nDisallow: /private/\n");
+
+        assertFalse(isAllowed("https://example.com/private/"));
+        assertFalse(isAllowed("https://example.com/private/?page=2"));
+        assertTrue(isAllowed("https://example.com/private"));
+        assertTrue(isAllowed("https://example.com/"));
+    }
+
+    @Test
+    void testMissingRobotsTxtAllowsEverything() throws IOException {
+        when(webClient.fetchText(eq("http://example.com:8080/robots.txt"), anyInt()))
+                .thenThrow(new HttpStatusException("Not found", 404, "http://example.com:8080/robots.txt"));
+
+        assertTrue(isAllowed("http://example.com:8080/anything"));
+    }
+
+    @Test
+    void testUnreachableRobotsTxtDisallowsEverythingUntilRetried() throws IOException {
+        when(webClient.fetchText(eq("https://example.com/robots.txt"), anyInt()))
+                .thenThrow(new HttpStatusException("Unavailable", 503, "https://example.com/robots.txt"))
+                .thenThrow(new SocketTimeoutException("timed out"))
+                .thenReturn("");
+
+        assertFalse(isAllowed("https://example.com/page"));
+        clock.addAndGet(Duration.ofMinutes(1).toNanos());
+        assertFalse(isAllowed("https://example.com/page"));
+        clock.addAndGet(Duration.ofMinutes(1).toNanos());
+        assertTrue(isAllowed("https://example.com/page"));
+    }
+
+    @Test
+    void testUnavailableRobotsTxtIsToldApartFromADisallowRule() throws IOException {
+        when(webClient.fetchText(eq("https://example.com/robots.txt"), anyInt()))
+                .thenThrow(new HttpStatusException("Unavailable", 503, "https://example.com/robots.txt"))
+                .thenReturn("User-agent: *\nDisallow: /private\n");
+
+        assertEquals(RobotsCache.Access.UNAVAILABLE, robots.access(canonicalizer.canonicalize("https://example.com/")));
+        clock.addAndGet(Duration.ofMinutes(1).toNanos());
+        assertEquals(RobotsCache.Access.ALLOWED, robots.access(canonicalizer.canonicalize("https://example.com/")));
+        assertEquals(RobotsCache.Access.DISALLOWED,
+                robots.access(canonicalizer.canonicalize("https://example.com/private")));
+    }
+}
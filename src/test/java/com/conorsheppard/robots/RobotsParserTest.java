@@ -0,0 +1,81 @@
+package com.conorsheppard.robots;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RobotsParserTest {
+    private static final String ROBOTS_TXT = """
+            # Rules for everyone else
+            User-agent: *
+            Disallow: /private/
+            Allow: /private/press/
+            Disallow: /*.json$
+            Disallow: /search*results
+            Disallow: /caf%c3%a9/
+
+            User-agent: Googlebot
+            Disallow: /
+            """;
+
+    private final RobotsRules rules = RobotsParser.parse(ROBOTS_TXT, "simple-web-crawler-java");
+
+    @ParameterizedTest
+    @CsvSource({
+            "'/', true",
+            "'', true",
+            "'/about', true",
+            "'/private', true",
+            "'/private/accounts', false",
+            "'/private/press/2024', true",
+            "'/data/items.json', false",
+            "'/data/items.json/view', true",
+            "'/search/books/results', false",
+            "'/search/books', true",
+            "'/café/menu', true",
+            "'/caf%C3%A9/menu', false",
+            "'/robots.txt', true"
+    })
+    void testLongestMatchingRuleWins(String path, boolean expected) {
+        assertEquals(expected, rules.isAllowed(path));
+    }
+
+    @Test
+    void testGroupsNamingTheAgentReplaceTheWildcardGroup() {
+        RobotsRules named = RobotsParser.parse("""
+                User-agent: *
+                Disallow: /
+
+                User-agent: other-bot
+                User-agent: Simple-Web-Crawler-Java
+                Disallow: /admin
+                Crawl-delay: 2.5
+                """, "simple-web-crawler-java");
+
+        assertTrue(named.isAllowed("/page"));
+        assertFalse(named.isAllowed("/admin/users"));
+        assertEquals(Duration.ofMillis(2500), named.getCrawlDelay());
+    }
+
+    @Test
+    void testAllowWinsTiesAndEmptyDisallowAllowsEverything() {
+        RobotsRules tie = RobotsParser.parse("User-agent: *\nDisallow: /page\nAllow: /page\n", "bot");
+        assertTrue(tie.isAllowed("/page"));
+
+        RobotsRules empty = RobotsParser.parse("User-agent: *\nDisallow:\n", "bot");
+        assertSame(RobotsRules.ALLOW_ALL, empty);
+    }
+
+    @Test
+    void testWildcardMatching() {
+        assertTrue(RobotsRules.matches("/*/edit", "/docs/1/edit/history"));
+        assertTrue(RobotsRules.matches("/a*b*c$", "/axxbyyc"));
+        assertFalse(RobotsRules.matches("/a*b*c$", "/axxbyycd"));
+        assertTrue(RobotsRules.matches("/*$", "/anything"));
+        assertFalse(RobotsRules.matches("/page$", "/page2"));
+    }
+}
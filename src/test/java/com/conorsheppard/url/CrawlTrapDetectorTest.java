@@ -0,0 +1,57 @@
+package com.conorsheppard.url;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CrawlTrapDetectorTest {
+    private final CrawlTrapDetector detector = new CrawlTrapDetector(3, 2);
+
+    @Test
+    void testRepeatingSegmentsAreTraps() {
+        assertTrue(detector.isTrap(url("https://example.com/a/b/a/b/a/b")));
+        assertTrue(detector.isTrap(url("https://example.com/x/img/y/img/z/img")));
+        assertFalse(detector.isTrap(url("https://example.com/a/b/a/b")));
+        assertFalse(detector.isTrap(url("https://example.com/docs/api/v1/users")));
+    }
+
+    @Test
+    void testSegmentsOnlyMatchWhole() {
+        assertFalse(detector.isTrap(url("https://example.com/ab/a/abc/a")));
+        assertFalse(detector.isTrap(url("https://example.com/a/aa/aaa/a")));
+    }
+
+    @Test
+    void testVeryDeepPathsAreTraps() {
+        StringBuilder path = new StringBuilder("https://example.com");
+        for (int i = 0; i < 40; i++) path.append("/p").append(i);
+        assertTrue(detector.isTrap(url(path.toString())));
+    }
+
+    @Test
+    void testQueryVariantsPerPathAreCapped() {
+        assertFalse(detector.isTrap(canonical("https://example.com/calendar?day=1")));
+        assertFalse(detector.isTrap(canonical("https://example.com/calendar?day=2")));
+        assertTrue(detector.isTrap(canonical("https://example.com/calendar?day=3")));
+        // Variants already let through stay allowed, other paths have their own allowance
+        assertFalse(detector.isTrap(canonical("https://example.com/calendar?day=1")));
+        assertFalse(detector.isTrap(canonical("https://example.com/search?q=a")));
+    }
+
+    @Test
+    void testZeroTurnsChecksOff() {
+        CrawlTrapDetector off = new CrawlTrapDetector(0, 0);
+        assertFalse(off.isTrap(url("https://example.com/a/a/a/a")));
+        for (int i = 0; i < 10; i++) assertFalse(off.isTrap(canonical("https://example.com/c?d=" + i)));
+    }
+
+    private static CanonicalUrl url(String url) {
+        return new UrlCanonicalizer().canonicalize(url);
+    }
+
+    // The canonicaliser drops queries, so URLs with one are built by hand
+    private static CanonicalUrl canonical(String url) {
+        int query = url.indexOf('?');
+        return new CanonicalUrl(url, "example.com", "https://example.com".length(), query, false);
+    }
+}
@@ -0,0 +1,61 @@
+package com.conorsheppard.url;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QueryRulesTest {
+    private static final List<String> RULES = List.of(
+            "# Session state is never worth a fetch",
+            "deny sessionid",
+            "",
+            "books.example.com allow page utm_source",
+            "shop.example.com deny view_*");
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void testHostRulesCoverSubdomainsAndAddToTheRulesForEveryHost() {
+        QueryRules rules = QueryRules.compile(RULES, 10, 256);
+
+        assertTrue(keeps(rules, "example.com", "page"));
+        assertFalse(keeps(rules, "example.com", "sessionid"));
+        assertFalse(keeps(rules, "example.com", "utm_campaign"));
+        assertFalse(keeps(rules, "www.shop.example.com", "view_grid"));
+        assertFalse(keeps(rules, "shop.example.com", "sessionid"));
+        assertTrue(keeps(rules, "shop.example.com", "view"));
+    }
+
+    @Test
+    void testAnAllowListKeepsOnlyWhatItNames() {
+        QueryRules rules = QueryRules.compile(RULES, 10, 256);
+
+        assertTrue(keeps(rules, "books.example.com", "page"));
+        assertTrue(keeps(rules, "books.example.com", "utm_source"));
+        assertFalse(keeps(rules, "books.example.com", "sort"));
+        assertFalse(keeps(rules, "books.example.com", "pages"));
+    }
+
+    @Test
+    void testLoadsRulesFromAFileAndRejectsLinesWithoutAnAction() throws IOException {
+        Path file = dir.resolve("query-rules");
+        Files.write(file, RULES);
+
+        assertTrue(keeps(QueryRules.load(file, 0, 0), "books.example.com", "page"));
+        assertThrows(IllegalArgumentException.class, () -> QueryRules.compile(List.of("example.com page"), 10, 256));
+        assertFalse(QueryRules.NONE.keepsQueries());
+        assertTrue(QueryRules.defaults().keepsQueries());
+    }
+
+    private static boolean keeps(QueryRules rules, String host, String name) {
+        String url = "?" + name + "=1";
+        return rules.forHost(host).keeps(url, 1, 1 + name.length());
+    }
+}
@@ -0,0 +1,102 @@
+package com.conorsheppard.web;
+
+import com.conorsheppard.parser.LinkExtractor;
+import com.conorsheppard.parser.StreamingLinkExtractor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.stubbing.Answer;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class CachingWebClientTest {
+    private static final String URL = "https://example.com/page";
+    private static final Validators V1 = Validators.of("\"v1\"", "Tue, 01 Sep 2026 10:00:00 GMT");
+
+    @TempDir
+    Path dir;
+
+    private final WebClient delegate = mock(WebClient.class);
+    private final LinkExtractor extractor = new StreamingLinkExtractor();
+    private PageCache cache;
+    private CachingWebClient client;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        cache = new PageCache(dir, 1024 * 1024);
+        client = new CachingWebClient(delegate, cache);
+    }
+
+    @Test
+    void testUnchangedPageReplaysItsLinksWithoutABody() throws IOException {
+        when(delegate.fetchHtml(eq(URL), eq(Validators.NONE), any(), any()))
+                .thenAnswer(serving(FetchResult.html(200, "text/html", V1),
+                        "https://example.com/a", "https://example.com/b"));
+        when(delegate.fetchHtml(eq(URL), eq(V1), any(), any())).thenReturn(FetchResult.notModified(Validators.NONE));
+
+        List<String> first = new ArrayList<>();
+        client.fetchHtml(URL, extractor, first::add);
+        List<String> second = new ArrayList<>();
+        FetchResult result = client.fetchHtml(URL, extractor, second::add);
+
+        assertEquals(List.of("https://example.com/a", "https://example.com/b"), first);
+        assertEquals(first, second);
+        assertTrue(result.isHtml());
+        assertTrue(result.isNotModified());
+        assertEquals(V1, result.getValidators());
+        assertTrue(client.summary().startsWith("Page cache answered 1 of 2 fetches"));
+    }
+
+    @Test
+    void testChangedPageReplacesTheCachedLinks() throws IOException {
+        Validators v2 = Validators.of("\"v2\"", null);
+        cache.put(URL, new CachedPage(V1, "text/html", List.of("https://example.com/old")));
+        when(delegate.fetchHtml(eq(URL), eq(V1), any(), any()))
+                .thenAnswer(serving(FetchResult.html(200, "text/html", v2), "https://example.com/new"));
+
+        List<String> links = new ArrayList<>();
+        client.fetchHtml(URL, extractor, links::add);
+
+        assertEquals(List.of("https://example.com/new"), links);
+        assertEquals(new CachedPage(v2, "text/html", List.of("https://example.com/new")), cache.get(URL));
+    }
+
+    @Test
+    void testPagesWithoutValidatorsArentKept() throws IOException {
+        cache.put(URL, new CachedPage(V1, "text/html", List.of("https://example.com/old")));
+        when(delegate.fetchHtml(eq(URL), eq(V1), any(), any()))
+                .thenAnswer(serving(FetchResult.html(200, "text/html"), "https://example.com/new"));
+
+        client.fetchHtml(URL, extractor, link -> {});
+
+        assertNull(cache.get(URL));
+    }
+
+    @Test
+    void testFailedFetchLeavesTheCacheAlone() throws IOException {
+        cache.put(URL, new CachedPage(V1, "text/html", List.of("https://example.com/old")));
+        when(delegate.fetchHtml(eq(URL), eq(V1), any(), any())).thenThrow(new IOException("reset"));
+
+        assertThrows(IOException.class, () -> client.fetchHtml(URL, extractor, link -> {}));
+
+        assertNotNull(cache.get(URL));
+    }
+
+    // Feeds the links to the sink the way a real client's extractor would, then returns the result
+    private static Answer<FetchResult> serving(FetchResult result, String... links) {
+        return invocation -> {
+            Consumer<String> sink = invocation.getArgument(3);
+            for (String link : links) sink.accept(link);
+            return result;
+        };
+    }
+}
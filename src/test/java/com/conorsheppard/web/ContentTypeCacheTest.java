@@ -0,0 +1,67 @@
+package com.conorsheppard.web;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ContentTypeCacheTest {
+
+    @ParameterizedTest
+    @CsvSource({
+            "'https://example.com/img/logo.png', 'example.com/img/*.png'",
+            "'https://example.com/img/logo.PNG?v=2', 'example.com/img/*.png'",
+            "'https://example.com/v1.2/app.JS', 'example.com/v1.2/*.js'",
+            "'https://example.com/docs/about',",
+            "'https://example.com/v1.2/about',",
+            "'https://example.com/docs/.hidden',",
+            "'https://example.com',",
+            "'https://example.com/',"
+    })
+    void testPattern(String url, String expected) {
+        assertEquals(expected, ContentTypeCache.pattern(url));
+    }
+
+    @Test
+    void testPatternIsSkippedAfterRepeatedNonHtmlResponses() {
+        ContentTypeCache cache = new ContentTypeCache(2, 100);
+        cache.record("https://example.com/files/a.json", false);
+        assertFalse(cache.isKnownNonHtml("https://example.com/files/b.json"));
+
+        cache.record("https://example.com/files/c.json", false);
+        assertTrue(cache.isKnownNonHtml("https://example.com/files/b.json"));
+        assertFalse(cache.isKnownNonHtml("https://example.com/files/b.html"));
+        assertFalse(cache.isKnownNonHtml("https://example.com/other/b.json"));
+    }
+
+    @Test
+    void testPatternThatServedHtmlIsNeverSkipped() {
+        ContentTypeCache cache = new ContentTypeCache(1, 100);
+        cache.record("https://example.com/pages/a.php", true);
+        cache.record("https://example.com/pages/b.php", false);
+        cache.record("https://example.com/pages/c.php", false);
+        assertFalse(cache.isKnownNonHtml("https://example.com/pages/d.php"));
+    }
+
+    @Test
+    void testExtensionlessUrlsAreAlwaysFetched() {
+        ContentTypeCache cache = new ContentTypeCache(3, 100);
+        cache.record("https://example.com/docs/report", false);
+        cache.record("https://example.com/docs/export", false);
+        cache.record("https://example.com/docs/data", false);
+        assertFalse(cache.isKnownNonHtml("https://example.com/docs/getting-started"));
+
+        cache.record("https://example.com/docs/getting-started", true);
+        assertFalse(cache.isKnownNonHtml("https://example.com/docs/report"));
+    }
+
+    @Test
+    void testNewPatternsAreIgnoredOncePatternLimitIsReached() {
+        ContentTypeCache cache = new ContentTypeCache(1, 1);
+        cache.record("https://example.com/a/x.css", false);
+        cache.record("https://example.com/b/x.css", false);
+        assertTrue(cache.isKnownNonHtml("https://example.com/a/y.css"));
+        assertFalse(cache.isKnownNonHtml("https://example.com/b/y.css"));
+    }
+}
@@ -0,0 +1,169 @@
+package com.conorsheppard.web;
+
+import com.conorsheppard.parser.StreamingLinkExtractor;
+import com.github.tomakehurst.wiremock.WireMockServer;
+import org.jsoup.HttpStatusException;
+import org.jsoup.nodes.Document;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class HttpWebClientTest {
+    private static final String BASE_URL = "http://localhost:8090";
+    private static WireMockServer wireMockServer;
+    private HttpWebClient webClient;
+
+    @BeforeAll
+    static void setupWireMock() {
+        wireMockServer = new WireMockServer(8090);
+        wireMockServer.start();
+        configureFor("localhost", 8090);
+    }
+
+    @AfterAll
+    static void stopWireMock() {
+        wireMockServer.stop();
+    }
+
+    @BeforeEach
+    void setUp() {
+        webClient = new HttpWebClient();
+    }
+
+    @Test
+    void testFetch() throws IOException {
+        stubFor(get(urlEqualTo("/test-page"))
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withHeader("Content-Type", "text/html; charset=UTF-8")
+                        .withBody("<html><head><title>Test Page</title></head><body><a href='/next'>Next</a></body></html>")));
+
+        Document document = webClient.fetch(BASE_URL + "/test-page");
+
+        assertEquals("Test Page", document.title());
+        assertEquals(BASE_URL + "/next", document.select("a[href]").first().absUrl("href"));
+        verify(getRequestedFor(urlEqualTo("/test-page")).withHeader("Accept-Encoding", containing("gzip")));
+    }
+
+    @Test
+    void testFetchAsyncDecodesGzipBodies() throws Exception {
+        stubFor(get(urlEqualTo("/gzipped"))
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withHeader("Content-Type", "text/html")
+                        .withHeader("Content-Encoding", "gzip")
+                        .withBody(gzip("<html><head><title>Compressed</title></head></html>"))));
+
+        Document document = webClient.fetchAsync(BASE_URL + "/gzipped").get();
+
+        assertEquals("Compressed", document.title());
+    }
+
+    @Test
+    void testFetchAsyncStopsReadingAtTheBodyLimit() throws Exception {
+        String head = "<html><head><title>Capped</title></head><body>";
+        stubFor(get(urlEqualTo("/large"))
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withHeader("Content-Type", "text/html")
+                        .withBody(head + "x".repeat(10_000) + "<a href='/past-the-limit'>Next</a></body></html>")));
+
+        Document document = new HttpWebClient(BodyLimit.of(head.length() + 100))
+                .fetchAsync(BASE_URL + "/large").get();
+
+        assertEquals("Capped", document.title());
+        assertTrue(document.select("a[href]").isEmpty());
+    }
+
+    @Test
+    void testHead() throws IOException {
+        stubFor(head(urlEqualTo("/test-page"))
+                .willReturn(aResponse().withStatus(200).withHeader("Content-Type", "text/html")));
+
+        HeadResponse response = webClient.head(BASE_URL + "/test-page");
+
+        assertEquals(200, response.getStatusCode());
+        assertEquals("text/html", response.getContentType());
+        assertEquals("text/html", response.header("content-type"));
+    }
+
+    @Test
+    void testFetchThrowsHttpStatusExceptionOnErrorStatus() {
+        stubFor(get(urlEqualTo("/missing")).willReturn(aResponse().withStatus(404)));
+
+        HttpStatusException e = assertThrows(HttpStatusException.class, () -> webClient.fetch(BASE_URL + "/missing"));
+        assertEquals(404, e.getStatusCode());
+    }
+
+    @Test
+    void testFetchThrowsIOExceptionOnInvalidUrl() {
+        assertThrows(IOException.class, () -> webClient.fetch("http://exa<mple.com"));
+        assertThrows(IOException.class, () -> webClient.fetch("http://invalid.url"));
+    }
+
+    @Test
+    void testFetchHtmlStreamsLinksOfHtmlResponses() throws IOException {
+        stubFor(get(urlEqualTo("/fused-page"))
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withHeader("Content-Type", "text/html; charset=UTF-8")
+                        .withBody("<html><head><title>Fused</title></head><body><a href='/next'>Next</a></body></html>")));
+
+        List<String> links = new ArrayList<>();
+        FetchResult result = webClient.fetchHtml(BASE_URL + "/fused-page", new StreamingLinkExtractor(), links::add);
+
+        assertTrue(result.isHtml());
+        assertEquals(200, result.getStatusCode());
+        assertEquals(List.of(BASE_URL + "/next"), links);
+    }
+
+    @Test
+    void testConditionalFetchHtmlReportsNotModified() throws IOException {
+        stubFor(get(urlEqualTo("/unchanged"))
+                .withHeader("If-None-Match", equalTo("\"v1\""))
+                .willReturn(aResponse().withStatus(304).withHeader("ETag", "\"v1\"")));
+
+        List<String> links = new ArrayList<>();
+        FetchResult result = webClient.fetchHtml(BASE_URL + "/unchanged", Validators.of("\"v1\"", null),
+                new StreamingLinkExtractor(), links::add);
+
+        assertTrue(result.isNotModified());
+        assertEquals(Validators.of("\"v1\"", null), result.getValidators());
+        assertTrue(links.isEmpty());
+    }
+
+    @Test
+    void testFetchHtmlSkipsBodyOfNonHtmlResponses() throws IOException {
+        stubFor(get(urlEqualTo("/report.pdf"))
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withHeader("Content-Type", "application/pdf")
+                        .withBody(new byte[64 * 1024])));
+
+        List<String> links = new ArrayList<>();
+        FetchResult result = webClient.fetchHtml(BASE_URL + "/report.pdf", new StreamingLinkExtractor(), links::add);
+
+        assertFalse(result.isHtml());
+        assertTrue(links.isEmpty());
+        assertEquals("application/pdf", result.getContentType());
+    }
+
+    private static byte[] gzip(String body) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(bytes)) {
+            gzip.write(body.getBytes(StandardCharsets.UTF_8));
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -1,7 +1,7 @@
 package com.conorsheppard.web;
 
+import com.conorsheppard.parser.StreamingLinkExtractor;
 import com.github.tomakehurst.wiremock.WireMockServer;
-import org.jsoup.Connection;
 import org.jsoup.nodes.Document;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
@@ -9,6 +9,9 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 
 import static com.github.tomakehurst.wiremock.client.WireMock.*;
 import static org.junit.jupiter.api.Assertions.*;
@@ -54,14 +57,104 @@ class JSoupWebClientTest {
         stubFor(head(urlEqualTo("/test-page"))
                 .willReturn(aResponse().withStatus(200)));
 
-        Connection.Response response = webClient.head("http://localhost:8089/test-page");
+        HeadResponse response = webClient.head("http://localhost:8089/test-page");
 
         assertNotNull(response);
-        assertEquals(200, response.statusCode());
+        assertEquals(200, response.getStatusCode());
     }
 
     @Test
     void testFetchThrowsIOExceptionOnInvalidUrl() {
         assertThrows(IOException.class, () -> webClient.fetch("http://invalid.url"));
     }
+
+    @Test
+    void testFetchHtmlStreamsLinksOfHtmlResponses() throws IOException {
+        stubFor(get(urlEqualTo("/fused-page"))
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withHeader("Content-Type", "text/html; charset=UTF-8")
+                        .withBody("<html><head><title>Fused</title></head><body><a href='/next'>Next</a></body></html>")));
+
+        List<String> links = new ArrayList<>();
+        FetchResult result = webClient.fetchHtml("http://localhost:8089/fused-page", new StreamingLinkExtractor(), links::add);
+
+        assertTrue(result.isHtml());
+        assertEquals(200, result.getStatusCode());
+        assertEquals(List.of("http://localhost:8089/next"), links);
+    }
+
+    @Test
+    void testFetchHtmlSkipsBodyOfNonHtmlResponses() throws IOException {
+        stubFor(get(urlEqualTo("/report.pdf"))
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withHeader("Content-Type", "application/pdf")
+                        .withBody(new byte[64 * 1024])));
+
+        List<String> links = new ArrayList<>();
+        FetchResult result = webClient.fetchHtml("http://localhost:8089/report.pdf", new StreamingLinkExtractor(), links::add);
+
+        assertFalse(result.isHtml());
+        assertTrue(links.isEmpty());
+        assertEquals("application/pdf", result.getContentType());
+    }
+
+    @Test
+    void testConditionalFetchHtmlSendsTheValidatorsAndReportsNotModified() throws IOException {
+        stubFor(get(urlEqualTo("/unchanged"))
+                .withHeader("If-None-Match", equalTo("\"v1\""))
+                .withHeader("If-Modified-Since", equalTo("Tue, 01 Sep 2026 10:00:00 GMT"))
+                .willReturn(aResponse()
+                        .withStatus(304)
+                        .withHeader("ETag", "\"v1\"")));
+        stubFor(get(urlEqualTo("/changed"))
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withHeader("Content-Type", "text/html")
+                        .withHeader("ETag", "\"v2\"")
+                        .withHeader("Last-Modified", "Wed, 02 Sep 2026 10:00:00 GMT")
+                        .withBody("<a href='/next'>Next</a>")));
+        Validators validators = Validators.of("\"v1\"", "Tue, 01 Sep 2026 10:00:00 GMT");
+
+        List<String> links = new ArrayList<>();
+        FetchResult unchanged = webClient.fetchHtml("http://localhost:8089/unchanged", validators,
+                new StreamingLinkExtractor(), links::add);
+        FetchResult changed = webClient.fetchHtml("http://localhost:8089/changed", new StreamingLinkExtractor(), links::add);
+
+        assertTrue(unchanged.isNotModified());
+        assertEquals("\"v1\"", unchanged.getValidators().getEtag());
+        // WireMock gzips the body and tags the ETag to match, as some servers do
+        assertTrue(changed.getValidators().getEtag().startsWith("\"v2"));
+        assertEquals("Wed, 02 Sep 2026 10:00:00 GMT", changed.getValidators().getLastModified());
+        assertEquals(List.of("http://localhost:8089/next"), links);
+    }
+
+    @Test
+    void testFetchHtmlReportsRetryAfterOfThrottledResponses() {
+        stubFor(get(urlEqualTo("/busy"))
+                .willReturn(aResponse()
+                        .withStatus(429)
+                        .withHeader("Retry-After", "120")));
+
+        ThrottledException e = assertThrows(ThrottledException.class, () ->
+                webClient.fetchHtml("http://localhost:8089/busy", new StreamingLinkExtractor(), link -> {}));
+
+        assertEquals(429, e.getStatusCode());
+        assertEquals(Duration.ofSeconds(120), e.getRetryAfter());
+    }
+
+    @Test
+    void testHeadReportsRetryAfterOfThrottledResponses() {
+        stubFor(head(urlEqualTo("/busy-head"))
+                .willReturn(aResponse()
+                        .withStatus(503)
+                        .withHeader("Retry-After", "30")));
+
+        ThrottledException e = assertThrows(ThrottledException.class, () ->
+                webClient.head("http://localhost:8089/busy-head"));
+
+        assertEquals(503, e.getStatusCode());
+        assertEquals(Duration.ofSeconds(30), e.getRetryAfter());
+    }
 }
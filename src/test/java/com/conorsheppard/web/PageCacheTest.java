@@ -0,0 +1,112 @@
+package com.conorsheppard.web;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PageCacheTest {
+    private static final long MAX_BYTES = 64 * 1024;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void testPagesRoundTripAcrossAReopen() throws IOException {
+        CachedPage page = new CachedPage(Validators.of("\"abc\"", "Tue, 01 Sep 2026 10:00:00 GMT"), "text/html",
+                List.of("https://example.com/a/1", "https://example.com/a/12", "https://example.com/b",
+                        "https://example.com/b", "https://example.com/café"));
+        try (PageCache cache = new PageCache(dir, MAX_BYTES)) {
+            cache.put("https://example.com/", page);
+            cache.put("https://example.com/empty", new CachedPage(Validators.of(null, "yesterday"), null, List.of()));
+            assertEquals(page, cache.get("https://example.com/"));
+        }
+
+        try (PageCache reopened = new PageCache(dir, MAX_BYTES)) {
+            assertEquals(2, reopened.size());
+            assertEquals(page, reopened.get("https://example.com/"));
+            assertEquals(new CachedPage(Validators.of(null, "yesterday"), null, List.of()),
+                    reopened.get("https://example.com/empty"));
+            assertNull(reopened.get("https://example.com/missing"));
+        }
+    }
+
+    @Test
+    void testLinksSharingPrefixesAreStoredCompactly() throws IOException {
+        List<String> links = new ArrayList<>();
+        for (int i = 0; i < 100; i++) links.add("https://example.com/catalogue/category/books/page-" + i + ".html");
+        int plain = links.stream().mapToInt(String::length).sum();
+
+        CachedPage page = new CachedPage(Validators.of("\"x\"", null), "text/html", links);
+        int encoded = PageCache.encode("https://example.com/", page).length;
+
+        assertTrue(encoded < plain / 4, encoded + " bytes for " + plain);
+    }
+
+    @Test
+    void testLeastRecentlyUsedPagesAreEvictedOverTheBudget() throws IOException {
+        try (PageCache cache = new PageCache(dir, 1024)) {
+            cache.put("https://example.com/0", page(0));
+            for (int i = 1; i < 20; i++) {
+                cache.put("https://example.com/" + i, page(i));
+                // Reading the first page keeps it from being the least recently used
+                assertNotNull(cache.get("https://example.com/0"));
+            }
+
+            assertTrue(cache.liveBytes() <= 1024);
+            assertNotNull(cache.get("https://example.com/0"));
+            assertNull(cache.get("https://example.com/1"));
+            assertNotNull(cache.get("https://example.com/19"));
+        }
+    }
+
+    @Test
+    void testDeadRecordsAreCompactedAway() throws IOException {
+        try (PageCache cache = new PageCache(dir, 2 * 1024 * 1024)) {
+            // Rewriting the same few pages leaves every earlier copy dead
+            for (int round = 0; round < 400; round++) {
+                for (int i = 0; i < 10; i++) cache.put("https://example.com/" + i, page(round));
+            }
+            assertTrue(cache.dataBytes() <= Math.max(1024 * 1024, 2 * cache.liveBytes()));
+            assertEquals(page(399), cache.get("https://example.com/3"));
+            assertEquals(1, dataFiles().size());
+        }
+        try (PageCache reopened = new PageCache(dir, 2 * 1024 * 1024)) {
+            assertEquals(page(399), reopened.get("https://example.com/9"));
+        }
+    }
+
+    @Test
+    void testCorruptIndexStartsEmpty() throws IOException {
+        try (PageCache cache = new PageCache(dir, MAX_BYTES)) {
+            cache.put("https://example.com/", page(1));
+        }
+        byte[] index = Files.readAllBytes(dir.resolve("index"));
+        index[index.length - 1] ^= 1;
+        Files.write(dir.resolve("index"), index);
+
+        try (PageCache reopened = new PageCache(dir, MAX_BYTES)) {
+            assertEquals(0, reopened.size());
+            assertNull(reopened.get("https://example.com/"));
+        }
+    }
+
+    private static CachedPage page(int version) {
+        List<String> links = new ArrayList<>();
+        for (int i = 0; i < 20; i++) links.add("https://example.com/v" + version + "/link/" + i);
+        return new CachedPage(Validators.of("\"" + version + "\"", null), "text/html", links);
+    }
+
+    private List<Path> dataFiles() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(path -> path.getFileName().toString().startsWith("data-")).toList();
+        }
+    }
+}